@@ -0,0 +1,513 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.riken.kscope.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+
+import jp.riken.kscope.Application;
+import jp.riken.kscope.data.FILE_TYPE;
+import jp.riken.kscope.data.SourceFile;
+import jp.riken.kscope.language.Fortran;
+import jp.riken.kscope.language.Procedure;
+import jp.riken.kscope.language.ProgramUnit;
+import jp.riken.kscope.language.utils.DependencyGraph;
+import jp.riken.kscope.language.utils.OperationCounterUtils;
+import jp.riken.kscope.model.FileTreeModel;
+import jp.riken.kscope.model.LanguageTreeModel;
+import jp.riken.kscope.model.ModuleTreeModel;
+import jp.riken.kscope.model.SearchResultModel;
+import jp.riken.kscope.profiler.dprof.DProfReader;
+import jp.riken.kscope.profiler.utils.ProfilerReaderUtil;
+import jp.riken.kscope.properties.KscopeProperties;
+import jp.riken.kscope.properties.OperationProperties;
+import jp.riken.kscope.service.AnalysisSearchService;
+import jp.riken.kscope.service.LanguageService;
+import jp.riken.kscope.utils.ResourceUtils;
+import jp.riken.kscope.utils.SourceGrepIndex;
+import jp.riken.kscope.xcodeml.XcodeMLParserStax;
+
+/**
+ * 構造解析、データベース入出力、検索、演算カウント、プロファイラ読込のベンチマーククラス.<br/>
+ * 合成プロジェクトを生成して、各処理の1回当りの実行時間と割当メモリ量を計測する.
+ * 計測前にウォームアップを実行する.割当メモリ量は計測スレッドの割当量とする.
+ * @author RIKEN
+ */
+public class KscopeBenchmark {
+
+    /** 計測結果の保持:JITによる処理の除去を避ける */
+    private static volatile Object sink;
+
+    /** モジュール数 */
+    private int modules = 20;
+    /** モジュール毎の手続き数 */
+    private int procedures = 10;
+    /** 手続き毎の文数 */
+    private int statements = 40;
+    /** 手続き毎の手続き呼出数 */
+    private int fanout = 3;
+    /** ウォームアップ回数 */
+    private int warmup = 3;
+    /** 計測回数 */
+    private int iterations = 5;
+    /** 実行ベンチマーク名(nullは全て) */
+    private List<String> includes = null;
+    /** 作業フォルダ(nullは一時フォルダ) */
+    private File workFolder = null;
+
+    /** 合成プロジェクトフォルダ */
+    private File projectFolder;
+    /** XcodeMLファイルリスト */
+    private SourceFile[] xmlFiles;
+    /** ソースファイルリスト */
+    private SourceFile[] sourceFiles;
+    /** 構造解析済みデータベース */
+    private Fortran fortran;
+    /** データベースフォルダ */
+    private File databaseFolder;
+    /** DProfファイル */
+    private File dprofFile;
+
+    /**
+     * ベンチマーククラス.<br/>
+     * setUpは計測開始前に1回、setUpIterationは各回の実行前に呼び出され、計測に含めない.
+     */
+    private abstract static class Workload {
+        /** ベンチマーク名 */
+        private String name;
+
+        /**
+         * コンストラクタ
+         * @param name		ベンチマーク名
+         */
+        Workload(String name) {
+            this.name = name;
+        }
+
+        /**
+         * ベンチマーク名を取得する.
+         * @return		ベンチマーク名
+         */
+        String getName() {
+            return this.name;
+        }
+
+        /**
+         * 各回の実行前の準備を行う.
+         * @throws Exception		準備エラー
+         */
+        void setUpIteration() throws Exception {
+        }
+
+        /**
+         * 計測処理を実行する.
+         * @return		実行結果
+         * @throws Exception		実行エラー
+         */
+        abstract Object run() throws Exception;
+    }
+
+    /**
+     * メインメソッド
+     * @param args		起動引数
+     * @throws Exception		実行エラー
+     */
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        Application.setHeadless(true);
+
+        KscopeBenchmark benchmark = new KscopeBenchmark();
+        if (!benchmark.parseArgs(args)) {
+            System.err.println("Usage: KscopeBenchmark [-modules n] [-procedures n] [-statements n] [-fanout n]"
+                    + " [-warmup n] [-iterations n] [-bench name,...] [-work folder]");
+            System.exit(2);
+        }
+        benchmark.execute();
+    }
+
+    /**
+     * 起動引数を解析する.
+     * @param args		起動引数
+     * @return		true=正常
+     */
+    private boolean parseArgs(String[] args) {
+        try {
+            for (int i = 0; i + 1 < args.length; i += 2) {
+                String option = args[i];
+                String value = args[i + 1];
+                if ("-modules".equals(option)) {
+                    this.modules = Integer.parseInt(value);
+                } else if ("-procedures".equals(option)) {
+                    this.procedures = Integer.parseInt(value);
+                } else if ("-statements".equals(option)) {
+                    this.statements = Integer.parseInt(value);
+                } else if ("-fanout".equals(option)) {
+                    this.fanout = Integer.parseInt(value);
+                } else if ("-warmup".equals(option)) {
+                    this.warmup = Integer.parseInt(value);
+                } else if ("-iterations".equals(option)) {
+                    this.iterations = Integer.parseInt(value);
+                } else if ("-bench".equals(option)) {
+                    this.includes = Arrays.asList(value.split(","));
+                } else if ("-work".equals(option)) {
+                    this.workFolder = new File(value);
+                } else {
+                    return false;
+                }
+            }
+            return args.length % 2 == 0;
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * ベンチマークを実行する.
+     * @throws Exception		実行エラー
+     */
+    private void execute() throws Exception {
+        // プロパティファイルの読込
+        KscopeProperties.PROPERTIES_FILE = KscopeProperties.PROPERTIES_FILE_DEFAULT;
+        ResourceUtils.setRootAppClass(jp.riken.kscope.Kscope.class);
+        KscopeProperties.loadXml();
+
+        boolean temporary = (this.workFolder == null);
+        File folder = temporary ? createTempFolder() : this.workFolder;
+        try {
+            setUp(folder);
+            System.out.println(String.format("project: modules=%d, procedures=%d, statements=%d, fanout=%d",
+                    this.modules, this.procedures, this.statements, this.fanout));
+            System.out.println(String.format("%-16s %12s %12s %12s %14s %14s",
+                    "benchmark", "ms/op", "stdev", "min", "alloc MB/op", "alloc MB/s"));
+            for (Workload workload : createWorkloads()) {
+                if (this.includes != null && !this.includes.contains(workload.getName())) continue;
+                measure(workload);
+            }
+        } finally {
+            if (temporary) {
+                deleteFolder(folder);
+            }
+        }
+    }
+
+    /**
+     * 合成プロジェクトを生成して、計測対象のデータを準備する.
+     * @param folder		作業フォルダ
+     * @throws Exception		準備エラー
+     */
+    private void setUp(File folder) throws Exception {
+        this.projectFolder = new File(folder, "project");
+        SyntheticProject project = new SyntheticProject(this.modules, this.procedures, this.statements, this.fanout);
+        List<File> files = project.generate(this.projectFolder);
+        this.xmlFiles = new SourceFile[files.size()];
+        this.sourceFiles = new SourceFile[files.size()];
+        for (int i = 0; i < files.size(); i++) {
+            File xml = files.get(i);
+            this.xmlFiles[i] = new SourceFile(xml, FILE_TYPE.XCODEML_XML);
+            String name = xml.getName().replaceAll("\\.xml$", ".f90");
+            this.sourceFiles[i] = new SourceFile(new File(this.projectFolder, name), FILE_TYPE.FORTRAN_FREE);
+        }
+        this.dprofFile = new File(folder, "synthetic.dprf");
+        project.generateDprof(this.dprofFile, 7);
+
+        this.fortran = parse();
+        this.fortran.analyseDB();
+        this.databaseFolder = new File(folder, KscopeProperties.SETTINGS_FOLDER);
+        this.databaseFolder.mkdirs();
+        new LanguageService(this.fortran).writeLanguage(this.databaseFolder);
+    }
+
+    /**
+     * ベンチマークリストを作成する.
+     * @return		ベンチマークリスト
+     */
+    private List<Workload> createWorkloads() {
+        List<Workload> list = new ArrayList<Workload>();
+
+        // XcodeMLParserStax.parseFile
+        list.add(new Workload("parse") {
+            @Override
+            Object run() throws Exception {
+                return parse();
+            }
+        });
+
+        // Fortran.analyseDB
+        list.add(new Workload("analyseDB") {
+            private Fortran target;
+            @Override
+            void setUpIteration() throws Exception {
+                this.target = parse();
+            }
+            @Override
+            Object run() throws Exception {
+                this.target.analyseDB();
+                return this.target;
+            }
+        });
+
+        // LanguageService.writeLanguage
+        list.add(new Workload("writeLanguage") {
+            @Override
+            Object run() throws Exception {
+                new LanguageService(fortran).writeLanguage(databaseFolder);
+                return databaseFolder;
+            }
+        });
+
+        // LanguageService.readLanguage
+        list.add(new Workload("readLanguage") {
+            @Override
+            Object run() throws Exception {
+                LanguageService service = createLanguageService(new Fortran());
+                service.readLanguage(databaseFolder);
+                return service.getFortranLanguage();
+            }
+        });
+
+        // AnalysisSearchService.searchFile
+        list.add(new Workload("searchFile") {
+            private FileTreeModel modelFile;
+            @Override
+            void setUpIteration() throws Exception {
+                if (this.modelFile != null) return;
+                this.modelFile = new FileTreeModel();
+                this.modelFile.setProjectFolder(projectFolder);
+                this.modelFile.setSourceFile(sourceFiles);
+            }
+            @Override
+            Object run() throws Exception {
+                AnalysisSearchService service = createSearchService("b3");
+                service.setExploreTreeNode(
+                        (DefaultMutableTreeNode) this.modelFile.getTreeModel().getRoot());
+                service.searchFile(sourceFiles);
+                return service.getSearchModel();
+            }
+        });
+
+        // AnalysisSearchService.searchFile(索引使用)
+        list.add(new Workload("searchIndexed") {
+            private FileTreeModel modelFile;
+            @Override
+            void setUpIteration() throws Exception {
+                if (this.modelFile != null) return;
+                this.modelFile = new FileTreeModel();
+                this.modelFile.setProjectFolder(projectFolder);
+                this.modelFile.setSourceFile(sourceFiles);
+            }
+            @Override
+            Object run() throws Exception {
+                AnalysisSearchService service = createSearchService("b3");
+                service.setExploreTreeNode(
+                        (DefaultMutableTreeNode) this.modelFile.getTreeModel().getRoot());
+                service.setGrepIndex(SourceGrepIndex.open(databaseFolder));
+                service.searchFile(sourceFiles);
+                return service.getSearchModel();
+            }
+        });
+
+        // AnalysisSearchService.searchLanguage
+        list.add(new Workload("searchLanguage") {
+            private LanguageTreeModel modelLanguage;
+            @Override
+            void setUpIteration() throws Exception {
+                if (this.modelLanguage != null) return;
+                this.modelLanguage = new LanguageTreeModel();
+                LanguageService service = createLanguageService(fortran);
+                service.setLanguageTreeModel(this.modelLanguage);
+                service.writeTree();
+            }
+            @Override
+            Object run() throws Exception {
+                AnalysisSearchService service = createSearchService("b3");
+                service.setExploreTreeNode(this.modelLanguage.getRootNode());
+                service.searchLanguage();
+                return service.getSearchModel();
+            }
+        });
+
+        // OperationCounterUtils.countBlock
+        list.add(new Workload("countBlock") {
+            private List<Procedure> procs;
+            private OperationProperties properties;
+            @Override
+            void setUpIteration() throws Exception {
+                if (this.procs != null) return;
+                this.procs = new ArrayList<Procedure>();
+                for (ProgramUnit unit : DependencyGraph.getUnits(fortran)) {
+                    DependencyGraph.collectProcedures(unit, this.procs);
+                }
+                this.properties = new OperationProperties();
+            }
+            @Override
+            Object run() throws Exception {
+                int flop = 0;
+                for (Procedure proc : this.procs) {
+                    OperationCounterUtils utils = new OperationCounterUtils(this.properties);
+                    utils.countBlock(proc);
+                    flop += utils.getOperandFlop();
+                }
+                return flop;
+            }
+        });
+
+        // DProfReader.readFile
+        list.add(new Workload("dprofRead") {
+            @Override
+            Object run() throws Exception {
+                DProfReader reader = new DProfReader();
+                reader.readFile(dprofFile, ProfilerReaderUtil.BIG_ENDIAN);
+                return reader;
+            }
+        });
+
+        return list;
+    }
+
+    /**
+     * 合成プロジェクトを構造解析する.
+     * @return		データベース
+     * @throws Exception		構造解析エラー
+     */
+    private Fortran parse() throws Exception {
+        Fortran db = new Fortran();
+        XcodeMLParserStax parser = new XcodeMLParserStax();
+        parser.setBaseFolder(this.projectFolder);
+        for (SourceFile file : this.xmlFiles) {
+            parser.readFile(file);
+            parser.parseFile(db);
+        }
+        return db;
+    }
+
+    /**
+     * 構造解析サービスを作成する.
+     * @param db		データベース
+     * @return		構造解析サービス
+     */
+    private LanguageService createLanguageService(Fortran db) {
+        LanguageService service = new LanguageService(db);
+        FileTreeModel modelFile = new FileTreeModel();
+        modelFile.setProjectFolder(this.projectFolder);
+        service.setSourceTreeModel(modelFile);
+        service.setLanguageTreeModel(new LanguageTreeModel());
+        service.setModuleTreeModel(new ModuleTreeModel());
+        service.setProjectFolder(this.projectFolder);
+        return service;
+    }
+
+    /**
+     * 検索サービスを作成する.
+     * @param text		検索文字列
+     * @return		検索サービス
+     */
+    private AnalysisSearchService createSearchService(String text) {
+        AnalysisSearchService service = new AnalysisSearchService();
+        service.setSearchModel(new SearchResultModel());
+        service.setSearchText(text);
+        service.setSensitivecase(false);
+        service.setRegex(false);
+        service.setWord(true);
+        return service;
+    }
+
+    /**
+     * ベンチマークを計測して結果を出力する.
+     * @param workload		ベンチマーク
+     * @throws Exception		実行エラー
+     */
+    private void measure(Workload workload) throws Exception {
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        for (int i = 0; i < this.warmup; i++) {
+            workload.setUpIteration();
+            sink = workload.run();
+        }
+        double[] times = new double[this.iterations];
+        long allocated = 0;
+        long elapsed = 0;
+        for (int i = 0; i < this.iterations; i++) {
+            workload.setUpIteration();
+            long alloc = threadBean.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            sink = workload.run();
+            long time = System.nanoTime() - start;
+            allocated += threadBean.getThreadAllocatedBytes(threadId) - alloc;
+            elapsed += time;
+            times[i] = time / 1e6;
+        }
+        sink = null;
+
+        double mean = 0;
+        double min = Double.MAX_VALUE;
+        for (double time : times) {
+            mean += time;
+            min = Math.min(min, time);
+        }
+        mean /= Math.max(times.length, 1);
+        double variance = 0;
+        for (double time : times) {
+            variance += (time - mean) * (time - mean);
+        }
+        double stdev = times.length > 1 ? Math.sqrt(variance / (times.length - 1)) : 0;
+        double allocPerOp = allocated / 1048576.0 / Math.max(this.iterations, 1);
+        double allocRate = elapsed > 0 ? allocated / 1048576.0 / (elapsed / 1e9) : 0;
+
+        System.out.println(String.format("%-16s %12.3f %12.3f %12.3f %14.3f %14.1f",
+                workload.getName(), mean, stdev, min, allocPerOp, allocRate));
+    }
+
+    /**
+     * 一時フォルダを作成する.
+     * @return		一時フォルダ
+     * @throws IOException		作成エラー
+     */
+    private static File createTempFolder() throws IOException {
+        File file = File.createTempFile("kscope", "bench");
+        if (!file.delete() || !file.mkdirs()) {
+            throw new IOException("cannot create " + file);
+        }
+        return file;
+    }
+
+    /**
+     * フォルダを削除する.
+     * @param folder		削除フォルダ
+     */
+    private static void deleteFolder(File folder) {
+        File[] children = folder.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                if (child.isDirectory()) {
+                    deleteFolder(child);
+                } else {
+                    child.delete();
+                }
+            }
+        }
+        folder.delete();
+    }
+}
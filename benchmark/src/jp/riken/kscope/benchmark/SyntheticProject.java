@@ -0,0 +1,482 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.riken.kscope.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * ベンチマーク用の合成プロジェクト生成クラス.<br/>
+ * モジュール数、モジュール毎の手続き数、手続き毎の文数、手続き呼出数を指定して、
+ * Fortranソースファイルと対応するXcodeMLファイル、DProfファイルを生成する.<br/>
+ * モジュールm(i)はモジュールm(i-1)をUSEして、その手続きを呼び出す.
+ * 主プログラムは最後のモジュールの手続きを呼び出す.
+ * @author RIKEN
+ */
+public class SyntheticProject {
+
+    /** XcodeMLヘッダ */
+    private static final String XML_HEADER =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+        + "<XcodeProgram source=\"%s\" language=\"Fortran\" time=\"2013-01-01 00:00:00\""
+        + " compiler-info=\"XcodeML/Fortran-FrontEnd\" version=\"1.0\">\n"
+        + "<typeTable>"
+        + "<FfunctionType type=\"F0\" return_type=\"Fvoid\"><params><name type=\"Fint\">a</name></params></FfunctionType>"
+        + "<FfunctionType type=\"F1\" return_type=\"Fvoid\"/>"
+        + "<FfunctionType type=\"F2\" return_type=\"Fvoid\" is_program=\"true\"/>"
+        + "</typeTable>\n"
+        + "<globalSymbols/>\n"
+        + "<globalDeclarations>\n";
+    /** XcodeMLフッタ */
+    private static final String XML_FOOTER = "</globalDeclarations>\n</XcodeProgram>\n";
+    /** 手続きのローカル変数数 */
+    private static final int LOCAL_COUNT = 5;
+    /** DO文の間隔(文数) */
+    private static final int LOOP_INTERVAL = 8;
+    /** DO文の本体の文数 */
+    private static final int LOOP_BODY = 3;
+
+    /** モジュール数 */
+    private int modules;
+    /** モジュール毎の手続き数 */
+    private int procedures;
+    /** 手続き毎の文数 */
+    private int statements;
+    /** 手続き毎の手続き呼出数 */
+    private int fanout;
+
+    /**
+     * コンストラクタ
+     * @param modules		モジュール数
+     * @param procedures		モジュール毎の手続き数
+     * @param statements		手続き毎の文数
+     * @param fanout		手続き毎の手続き呼出数
+     */
+    public SyntheticProject(int modules, int procedures, int statements, int fanout) {
+        this.modules = Math.max(modules, 1);
+        this.procedures = Math.max(procedures, 1);
+        this.statements = Math.max(statements, 1);
+        this.fanout = Math.max(fanout, 0);
+    }
+
+    /**
+     * プロジェクトを生成する.
+     * @param folder		出力フォルダ
+     * @return		生成XcodeMLファイルリスト
+     * @throws IOException		出力エラー
+     */
+    public List<File> generate(File folder) throws IOException {
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IOException("cannot create " + folder);
+        }
+        List<File> files = new ArrayList<File>();
+        for (int i = 0; i < this.modules; i++) {
+            files.add(writeModule(folder, i));
+        }
+        files.add(writeMain(folder));
+        return files;
+    }
+
+    /**
+     * モジュールのソースファイルとXcodeMLファイルを出力する.
+     * @param folder		出力フォルダ
+     * @param index		モジュール番号
+     * @return		XcodeMLファイル
+     * @throws IOException		出力エラー
+     */
+    private File writeModule(File folder, int index) throws IOException {
+        String file = "m" + index + ".f90";
+        StringBuilder src = new StringBuilder();
+        StringBuilder xml = new StringBuilder();
+        int line = 0;
+
+        // モジュール宣言
+        src.append("module m").append(index).append("\n"); line++;
+        StringBuilder decls = new StringBuilder();
+        if (index > 0) {
+            src.append("  use m").append(index - 1).append("\n"); line++;
+            decls.append(String.format("<FuseDecl name=\"m%d\" lineno=\"%d\" file=\"%s\"/>", index - 1, line, file));
+        }
+        src.append("  implicit none\n"); line++;
+        src.append(String.format("  integer :: gv%d_0, gv%d_1, gv%d_2\n", index, index, index)); line++;
+        for (int v = 0; v < 3; v++) {
+            decls.append(String.format("<varDecl lineno=\"%d\" file=\"%s\"><name type=\"Fint\">gv%d_%d</name></varDecl>",
+                    line, file, index, v));
+        }
+        if (this.procedures > 1) {
+            src.append(String.format("  interface g%d\n    module procedure s%d_0, s%d_1\n  end interface\n",
+                    index, index, index));
+            line += 3;
+            decls.append(String.format("<FinterfaceDecl name=\"g%d\" lineno=\"%d\" file=\"%s\">"
+                    + "<FmoduleProcedureDecl><name>s%d_0</name><name>s%d_1</name></FmoduleProcedureDecl></FinterfaceDecl>",
+                    index, line - 2, file, index, index));
+        }
+        src.append("contains\n"); line++;
+        int contains = line;
+
+        StringBuilder syms = new StringBuilder();
+        for (int p = 0; p < this.procedures; p++) {
+            syms.append(String.format("<id type=\"F0\" sclass=\"ffunc\"><name>s%d_%d</name></id>", index, p));
+        }
+        for (int v = 0; v < 3; v++) {
+            syms.append(String.format("<id type=\"Fint\" sclass=\"flocal\"><name>gv%d_%d</name></id>", index, v));
+        }
+
+        StringBuilder procs = new StringBuilder();
+        for (int p = 0; p < this.procedures; p++) {
+            line = writeProcedure(src, procs, file, line, index, p);
+        }
+        src.append("end module m").append(index).append("\n");
+
+        xml.append(String.format(XML_HEADER, file));
+        xml.append(String.format("<FmoduleDefinition name=\"m%d\" lineno=\"1\" file=\"%s\">\n", index, file));
+        xml.append("<symbols>").append(syms).append("</symbols>\n");
+        xml.append("<declarations>").append(decls).append("</declarations>\n");
+        xml.append(String.format("<FcontainsStatement lineno=\"%d\" file=\"%s\">\n", contains, file));
+        xml.append(procs);
+        xml.append("</FcontainsStatement>\n</FmoduleDefinition>\n");
+        xml.append(XML_FOOTER);
+
+        writeText(new File(folder, file), src.toString());
+        File xmlFile = new File(folder, "m" + index + ".xml");
+        writeText(xmlFile, xml.toString());
+        return xmlFile;
+    }
+
+    /**
+     * モジュール手続きを出力する.
+     * @param src		ソース出力バッファ
+     * @param xml		XcodeML出力バッファ
+     * @param file		ソースファイル名
+     * @param line		直前の行番号
+     * @param index		モジュール番号
+     * @param proc		手続き番号
+     * @return		最終行番号
+     */
+    private int writeProcedure(StringBuilder src, StringBuilder xml, String file, int line, int index, int proc) {
+        String name = "s" + index + "_" + proc;
+        src.append("  subroutine ").append(name).append("(a)\n"); line++;
+        int start = line;
+        src.append("    integer :: a, i, b0, b1, b2, b3, b4\n"); line++;
+        StringBuilder decls = new StringBuilder();
+        StringBuilder syms = new StringBuilder("<id type=\"Fint\" sclass=\"fparam\"><name>a</name></id>");
+        decls.append(String.format("<varDecl lineno=\"%d\" file=\"%s\"><name type=\"Fint\">a</name></varDecl>", line, file));
+        decls.append(String.format("<varDecl lineno=\"%d\" file=\"%s\"><name type=\"Fint\">i</name></varDecl>", line, file));
+        syms.append("<id type=\"Fint\" sclass=\"flocal\"><name>i</name></id>");
+        for (int v = 0; v < LOCAL_COUNT; v++) {
+            decls.append(String.format("<varDecl lineno=\"%d\" file=\"%s\"><name type=\"Fint\">b%d</name></varDecl>",
+                    line, file, v));
+            syms.append(String.format("<id type=\"Fint\" sclass=\"flocal\"><name>b%d</name></id>", v));
+        }
+
+        // 手続き呼出先
+        List<String> calls = new ArrayList<String>();
+        if (index > 0) {
+            for (int f = 0; f < this.fanout; f++) {
+                if (f == 1 && this.procedures > 1) {
+                    calls.add("g" + (index - 1));
+                } else {
+                    calls.add("s" + (index - 1) + "_" + ((proc + f) % this.procedures));
+                }
+            }
+        }
+
+        StringBuilder body = new StringBuilder();
+        int callIndex = 0;
+        int count = 0;
+        while (count < this.statements) {
+            if (count > 0 && count % LOOP_INTERVAL == 0 && count + LOOP_BODY < this.statements) {
+                // DO文
+                src.append("    do i = 1, 10\n"); line++;
+                body.append(String.format("<FdoStatement lineno=\"%d\" file=\"%s\">"
+                        + "<Var type=\"Fint\" scope=\"local\">i</Var><indexRange>"
+                        + "<lowerBound><FintConstant type=\"Fint\">1</FintConstant></lowerBound>"
+                        + "<upperBound><FintConstant type=\"Fint\">10</FintConstant></upperBound>"
+                        + "<step><FintConstant type=\"Fint\">1</FintConstant></step></indexRange><body>", line, file));
+                for (int k = 0; k < LOOP_BODY; k++) {
+                    line++;
+                    src.append("  ");
+                    body.append(assignment(src, file, line, count++));
+                }
+                src.append("    end do\n"); line++;
+                body.append("</body></FdoStatement>\n");
+                continue;
+            }
+            line++;
+            if (callIndex < calls.size() && count % 2 == 1) {
+                // 手続き呼出
+                String callName = calls.get(callIndex++);
+                src.append("    call ").append(callName).append("(a)\n");
+                body.append(String.format("<exprStatement lineno=\"%d\" file=\"%s\"><functionCall type=\"Fvoid\">"
+                        + "<name type=\"F1\">%s</name><arguments><Var type=\"Fint\" scope=\"local\">a</Var></arguments>"
+                        + "</functionCall></exprStatement>\n", line, file, callName));
+            } else {
+                body.append(assignment(src, file, line, count));
+            }
+            count++;
+        }
+        src.append("  end subroutine ").append(name).append("\n"); line++;
+
+        xml.append(String.format("<FfunctionDefinition lineno=\"%d\" file=\"%s\"><name type=\"F0\">%s</name>\n",
+                start, file, name));
+        xml.append("<symbols>").append(syms).append("</symbols>\n");
+        xml.append("<declarations>").append(decls).append("</declarations>\n");
+        xml.append("<body>").append(body).append("</body></FfunctionDefinition>\n");
+        return line;
+    }
+
+    /**
+     * 代入文を出力する.<br/>
+     * a = b(n) * b(n+1) + b(n+2) / 3 - gv
+     * @param src		ソース出力バッファ
+     * @param file		ソースファイル名
+     * @param line		行番号
+     * @param count		文番号
+     * @return		XcodeML文字列
+     */
+    private String assignment(StringBuilder src, String file, int line, int count) {
+        String v0 = "b" + (count % LOCAL_COUNT);
+        String v1 = "b" + ((count + 1) % LOCAL_COUNT);
+        String v2 = "b" + ((count + 2) % LOCAL_COUNT);
+        src.append(String.format("    a = %s * %s + %s / 3 - a\n", v0, v1, v2));
+        return String.format("<FassignStatement lineno=\"%d\" file=\"%s\"><Var type=\"Fint\" scope=\"local\">a</Var>"
+                + "<minusExpr type=\"Fint\"><plusExpr type=\"Fint\">"
+                + "<mulExpr type=\"Fint\"><Var type=\"Fint\" scope=\"local\">%s</Var><Var type=\"Fint\" scope=\"local\">%s</Var></mulExpr>"
+                + "<divExpr type=\"Fint\"><Var type=\"Fint\" scope=\"local\">%s</Var><FintConstant type=\"Fint\">3</FintConstant></divExpr>"
+                + "</plusExpr><Var type=\"Fint\" scope=\"local\">a</Var></minusExpr></FassignStatement>\n",
+                line, file, v0, v1, v2);
+    }
+
+    /**
+     * 主プログラムのソースファイルとXcodeMLファイルを出力する.
+     * @param folder		出力フォルダ
+     * @return		XcodeMLファイル
+     * @throws IOException		出力エラー
+     */
+    private File writeMain(File folder) throws IOException {
+        String file = "main.f90";
+        int last = this.modules - 1;
+        StringBuilder src = new StringBuilder();
+        StringBuilder body = new StringBuilder();
+        src.append("program mainp\n");
+        src.append("  use m").append(last).append("\n");
+        src.append("  integer :: a\n");
+        int line = 3;
+        for (int p = 0; p < this.procedures; p++) {
+            line++;
+            src.append("  call s").append(last).append("_").append(p).append("(a)\n");
+            body.append(String.format("<exprStatement lineno=\"%d\" file=\"%s\"><functionCall type=\"Fvoid\">"
+                    + "<name type=\"F1\">s%d_%d</name><arguments><Var type=\"Fint\" scope=\"local\">a</Var></arguments>"
+                    + "</functionCall></exprStatement>\n", line, file, last, p));
+        }
+        src.append("end program mainp\n");
+
+        StringBuilder xml = new StringBuilder();
+        xml.append(String.format(XML_HEADER, file));
+        xml.append(String.format("<FfunctionDefinition lineno=\"1\" file=\"%s\"><name type=\"F2\">mainp</name>\n", file));
+        xml.append("<symbols><id type=\"Fint\" sclass=\"flocal\"><name>a</name></id></symbols>\n");
+        xml.append(String.format("<declarations><FuseDecl name=\"m%d\" lineno=\"2\" file=\"%s\"/>"
+                + "<varDecl lineno=\"3\" file=\"%s\"><name type=\"Fint\">a</name></varDecl></declarations>\n",
+                last, file, file));
+        xml.append("<body>").append(body).append("</body></FfunctionDefinition>\n");
+        xml.append(XML_FOOTER);
+
+        writeText(new File(folder, file), src.toString());
+        File xmlFile = new File(folder, "main.xml");
+        writeText(xmlFile, xml.toString());
+        return xmlFile;
+    }
+
+    /**
+     * DProfファイル(ビッグエンディアン)を生成する.<br/>
+     * 手続き毎のコスト情報と、文毎のライン、DO文毎のループコスト情報を出力する.
+     * @param file		出力ファイル
+     * @param seed		乱数シード
+     * @throws IOException		出力エラー
+     */
+    public void generateDprof(File file, long seed) throws IOException {
+        Random random = new Random(seed);
+        List<String> files = new ArrayList<String>();
+        for (int i = 0; i < this.modules; i++) {
+            files.add("m" + i + ".f90");
+        }
+        int symbolCount = this.modules * this.procedures;
+        int lineCount = symbolCount * this.statements;
+        int loopCount = symbolCount * (this.statements / LOOP_INTERVAL);
+
+        ByteArrayData out = new ByteArrayData();
+        out.writeBytes("DPRF");
+        out.writeShort(0);
+        out.writeShort(0x412);
+        // プロセス数, 測定範囲, ..., スレッド数, 周期
+        out.writeInt(1);
+        out.writeInt(0);
+        out.writeShort(0);
+        out.writeShort(1);
+        out.writeInt(2000);
+        for (int i = 0; i < 32; i++) {
+            out.write('x');
+        }
+        out.writeInt(0);
+        out.writeFloat(0.01f);
+        for (int i = 0; i < 19; i++) {
+            out.writeInt(0);
+        }
+        // スレッド情報
+        out.writeInt(0);
+        for (int i = 0; i < 7; i++) {
+            out.writeFloat(1.0f);
+        }
+        int offsetPos = out.size();
+        for (int i = 0; i < 6; i++) {
+            out.writeInt(0);
+        }
+        // ファイル名
+        out.writeInt(files.size());
+        for (String name : files) {
+            out.writeString(name);
+        }
+        // 手続きコスト
+        out.writeInt(symbolCount);
+        for (int i = 0; i < this.modules; i++) {
+            for (int p = 0; p < this.procedures; p++) {
+                out.writeFloat(random.nextInt(1000));
+                out.writeFloat(0);
+                out.writeFloat(0);
+                out.writeInt(1);
+                out.writeInt(1 + this.statements);
+                out.writeInt(i);
+                out.writeString("s" + i + "_" + p);
+            }
+        }
+        // ラインコスト
+        int lineOffset = out.size();
+        out.writeInt(lineCount);
+        for (int n = 0; n < lineCount; n++) {
+            int symbol = n / this.statements;
+            out.writeFloat(random.nextInt(100));
+            out.writeInt(1 + n % this.statements);
+            out.writeInt(symbol);
+            out.writeInt(symbol / this.procedures);
+        }
+        // ループコスト
+        int loopOffset = out.size();
+        out.writeInt(loopCount);
+        for (int n = 0; n < loopCount; n++) {
+            int symbol = loopCount > 0 ? n * symbolCount / loopCount : 0;
+            out.writeFloat(1 + random.nextInt(100));
+            out.writeFloat(0);
+            out.writeFloat(0);
+            out.writeInt(1 + (n % 8) * LOOP_INTERVAL);
+            out.writeInt(1 + (n % 8) * LOOP_INTERVAL + LOOP_BODY);
+            out.writeInt(1);
+            out.writeShort(0);
+            out.writeShort(0);
+            out.writeInt(symbol);
+            out.writeInt(symbol / this.procedures);
+        }
+        int callgraphOffset = out.size();
+        out.setInt(offsetPos, lineOffset);
+        out.setInt(offsetPos + 4, loopOffset);
+        out.setInt(offsetPos + 8, callgraphOffset);
+
+        OutputStream stream = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            stream.write(out.toByteArray());
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * テキストファイルを出力する.
+     * @param file		出力ファイル
+     * @param text		出力テキスト
+     * @throws IOException		出力エラー
+     */
+    private static void writeText(File file, String text) throws IOException {
+        PrintWriter pw = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            pw.print(text);
+        } finally {
+            pw.close();
+        }
+    }
+
+    /**
+     * ビッグエンディアンのバイト列出力クラス.
+     */
+    private static class ByteArrayData extends DataOutputStream {
+        /** 設定待ちの整数値:{位置, 値} */
+        private List<int[]> pendings = new ArrayList<int[]>();
+
+        /**
+         * コンストラクタ
+         */
+        ByteArrayData() {
+            super(new ByteArrayOutputStream());
+        }
+
+        /**
+         * 長さ付き文字列を出力する.
+         * @param text		出力文字列
+         * @throws IOException		出力エラー
+         */
+        void writeString(String text) throws IOException {
+            byte[] bytes = text.getBytes("UTF-8");
+            writeInt(bytes.length);
+            write(bytes);
+        }
+
+        /**
+         * 出力済みの位置に整数値を設定する.
+         * @param pos		位置
+         * @param value		整数値
+         */
+        void setInt(int pos, int value) {
+            this.pendings.add(new int[] {pos, value});
+        }
+
+        /**
+         * バイト列を取得する.
+         * @return		バイト列
+         */
+        byte[] toByteArray() {
+            byte[] bytes = ((ByteArrayOutputStream) this.out).toByteArray();
+            for (int[] pending : this.pendings) {
+                int pos = pending[0];
+                int value = pending[1];
+                bytes[pos] = (byte) (value >>> 24);
+                bytes[pos + 1] = (byte) (value >>> 16);
+                bytes[pos + 2] = (byte) (value >>> 8);
+                bytes[pos + 3] = (byte) value;
+            }
+            return bytes;
+        }
+    }
+}
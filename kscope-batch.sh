@@ -0,0 +1,3 @@
+#!/bin/bash
+
+java -Xmx1024m -Djava.awt.headless=true -cp kscope.jar jp.riken.kscope.KscopeBatch "$@"
@@ -21,6 +21,8 @@ import java.util.Observer;
 
 import javax.swing.SwingUtilities;
 
+import jp.riken.kscope.service.TaskScheduler;
+
 /**
  * アプリケーションの進捗メッセージ、進捗状況等のグローバル設定クラス
  *
@@ -30,6 +32,8 @@ public class Application {
 
     /** 進捗情報 */
     public static StatusPrint status = new StatusPrint();
+    /** ヘッドレス(バッチ)実行 */
+    private static boolean headless = false;
 
     /**
      * コンストラクタ
@@ -47,6 +51,23 @@ public class Application {
         status.addObserver(o);
     }
 
+    /**
+     * ヘッドレス(バッチ)実行であるか取得する.<br/>
+     * ヘッドレス実行の場合は、モデルの変更通知をイベントディスパッチスレッドに登録しない.
+     * @return		true=ヘッドレス実行
+     */
+    public static boolean isHeadless() {
+        return headless;
+    }
+
+    /**
+     * ヘッドレス(バッチ)実行を設定する.
+     * @param value		true=ヘッドレス実行
+     */
+    public static void setHeadless(boolean value) {
+        headless = value;
+    }
+
     /**
      * 進捗情報クラス
      *
@@ -73,6 +94,8 @@ public class Application {
          * ステータスの変更を通知する
          */
         private void notifyStatus() {
+            // ヘッドレス実行では進捗情報を通知しない
+            if (Application.isHeadless()) return;
             SwingUtilities.invokeLater(new Runnable() {
                 @Override
                 public void run() {
@@ -126,6 +149,8 @@ public class Application {
             if (message != null) {
                 this.messageStatus.append(message);
             }
+            // 実行中のタスクの進捗メッセージ
+            TaskScheduler.setTaskMessage(message);
             notifyStatus();
         }
 
@@ -205,6 +230,8 @@ public class Application {
             this.progressMin = min;
             this.progressMax = max;
             this.progressStart = true;
+            // 実行中のタスクの進捗値
+            TaskScheduler.setTaskProgress(orient - min, max - min);
             notifyStatus();
         }
 
@@ -232,6 +259,10 @@ public class Application {
         public void setProgressValue(int value) {
             this.progressValue = value;
             this.progressStart = true;
+            // 実行中のタスクの進捗値
+            if (this.progressMin != null && this.progressMax != null) {
+                TaskScheduler.setTaskProgress(value - this.progressMin, this.progressMax - this.progressMin);
+            }
             notifyStatus();
         }
 
@@ -248,6 +279,8 @@ public class Application {
                 this.progressValue = null;
                 this.progressMin = null;
                 this.progressMax = null;
+                // 実行中のタスクの進捗値
+                TaskScheduler.setTaskProgress(-1, -1);
             }
             notifyStatus();
         }
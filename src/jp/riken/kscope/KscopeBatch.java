@@ -0,0 +1,165 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.riken.kscope;
+
+import java.io.File;
+import java.util.List;
+
+import jp.riken.kscope.data.ErrorInfo;
+import jp.riken.kscope.properties.KscopeProperties;
+import jp.riken.kscope.service.BatchService;
+import jp.riken.kscope.utils.Logger;
+import jp.riken.kscope.utils.ResourceUtils;
+
+/**
+ * バッチ解析メインクラス.<br/>
+ * GUIを表示せずに構造解析、要求Byte/FLOP算出、プロファイラデータの読込を行い、結果をJSON又はCSVファイルに出力する.
+ * AWTツールキット、イベントディスパッチスレッドは使用しない.
+ *
+ * @author RIKEN
+ */
+public class KscopeBatch {
+
+    /** 終了コード:正常終了 */
+    private static final int EXIT_SUCCESS = 0;
+    /** 終了コード:解析エラー */
+    private static final int EXIT_ERROR = 1;
+    /** 終了コード:起動引数エラー */
+    private static final int EXIT_USAGE = 2;
+
+    /**
+     * メインメソッド
+     *
+     * @param args 起動引数
+     */
+    public static void main(String args[]) {
+        // AWTクラスの読込前にヘッドレスモードとする
+        System.setProperty("java.awt.headless", "true");
+        Application.setHeadless(true);
+
+        System.exit(new KscopeBatch().run(args));
+    }
+
+    /**
+     * バッチ解析を実行する.
+     *
+     * @param args 起動引数
+     * @return 終了コード
+     */
+    private int run(String args[]) {
+        BatchService service = new BatchService();
+        boolean input = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if ("-build".equals(option)) {
+                    service.setBuild(true);
+                    continue;
+                }
+                if ("-help".equals(option) || "-h".equals(option)) {
+                    System.out.println(Message.getString("kscopebatch.usage"));
+                    return EXIT_SUCCESS;
+                }
+                if (i + 1 >= args.length) {
+                    return usage(option);
+                }
+                String value = args[++i];
+                if ("-project".equals(option)) {
+                    service.setProjectFolder(new File(value).getAbsoluteFile());
+                    input = true;
+                } else if ("-xml".equals(option)) {
+                    service.addXmlFile(new File(value).getAbsoluteFile());
+                    input = true;
+                } else if ("-profiler".equals(option)) {
+                    service.addProfilerFile(new File(value).getAbsoluteFile());
+                } else if ("-output".equals(option)) {
+                    service.setOutputFolder(new File(value).getAbsoluteFile());
+                } else if ("-format".equals(option)
+                        && (BatchService.FORMAT_JSON.equalsIgnoreCase(value)
+                            || BatchService.FORMAT_CSV.equalsIgnoreCase(value))) {
+                    service.setOutputFormat(value);
+                } else if ("-threads".equals(option)) {
+                    service.setThreadCount(Integer.parseInt(value));
+                } else {
+                    return usage(option + " " + value);
+                }
+            }
+        } catch (NumberFormatException ex) {
+            return usage(ex.getMessage());
+        }
+        if (!input) {
+            System.err.println(Message.getString("kscopebatch.error.noinput")); //プロジェクトフォルダ又はXcodeMLファイルを指定してください。
+            System.err.println(Message.getString("kscopebatch.usage"));
+            return EXIT_USAGE;
+        }
+
+        initApp();
+
+        boolean result = false;
+        try {
+            result = service.execute();
+        } catch (Exception ex) {
+            service.addErrorInfo(ex);
+        }
+
+        for (File file : service.getOutputFiles()) {
+            System.out.println(Message.getString("kscopebatch.output.file", file.getPath())); //出力: %s
+        }
+        List<ErrorInfo> errors = service.getErrorInfoModel().getErrorList();
+        if (errors != null && errors.size() > 0) {
+            for (ErrorInfo error : errors) {
+                if (error.getCodeLine() != null) {
+                    System.err.println(error.getCodeLine() + ": " + error.getMessage());
+                } else {
+                    System.err.println(error.getMessage());
+                }
+            }
+            System.err.println(Message.getString("kscopebatch.error.count", errors.size())); //%d件のエラーが発生しました。
+        }
+
+        return result ? EXIT_SUCCESS : EXIT_ERROR;
+    }
+
+    /**
+     * 起動引数エラーを出力する.
+     *
+     * @param option エラーオプション
+     * @return 終了コード
+     */
+    private int usage(String option) {
+        System.err.println(Message.getString("kscopebatch.error.option", option)); //オプションが不正です。
+        System.err.println(Message.getString("kscopebatch.usage"));
+        return EXIT_USAGE;
+    }
+
+    /**
+     * アプリケーションの初期設定を行う.<br/>
+     * GUI起動時のKscope.initAppから、アイコンリソースの設定を除いた設定を行う.
+     */
+    private void initApp() {
+        // ログの初期化を行う。
+        Logger.configure(Kscope.class.getResourceAsStream("logging.properties"), Kscope.class.getName());
+
+        KscopeProperties.PROPERTIES_FILE = KscopeProperties.PROPERTIES_FILE_DEFAULT;
+        // プロパティファイルの検索起点
+        ResourceUtils.setRootAppClass(Kscope.class);
+
+        // プロパティファイルの読込
+        KscopeProperties.loadXml();
+    }
+}
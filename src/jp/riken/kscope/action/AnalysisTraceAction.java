@@ -83,6 +83,7 @@ public class AnalysisTraceAction extends ActionBase {
         else if (tracedir == TRACE_DIR.UP || tracedir == TRACE_DIR.DOWN
                 || tracedir == TRACE_DIR.IN || tracedir == TRACE_DIR.OUT
                 || tracedir == TRACE_DIR.FORWARD
+                || tracedir == TRACE_DIR.IN_ALL || tracedir == TRACE_DIR.OUT_ALL
                 || tracedir == TRACE_DIR.END || tracedir == TRACE_DIR.REFRESH) {
             // トレース
             TraceResultModel[] models = this.controller.getMainframe().getPanelAnalysisView().getTraceResultModels();
@@ -133,21 +134,35 @@ public class AnalysisTraceAction extends ActionBase {
             Application.status.setMessageMain(message + Message.getString("analysistraceaction.trace-in.status"));//:イン
 
             // トレース:インを行う
-            traceIn();
+            traceIn(false);
+        }
+        else if (tracedir == TRACE_DIR.IN_ALL) {
+            // ステータスメッセージ
+            Application.status.setMessageMain(message + Message.getString("analysistraceaction.trace-inall.status"));//:イン(全階層)
+
+            // トレース:イン(全階層)を行う
+            traceIn(true);
         }
         else if (tracedir == TRACE_DIR.OUT) {
             // ステータスメッセージ
             Application.status.setMessageMain(message + Message.getString("analysistraceaction.trace-out.status"));//:アウト
 
             // トレース:アウトを行う
-            traceOut(false);
+            traceOut(false, false);
+        }
+        else if (tracedir == TRACE_DIR.OUT_ALL) {
+            // ステータスメッセージ
+            Application.status.setMessageMain(message + Message.getString("analysistraceaction.trace-outall.status"));//:アウト(全階層)
+
+            // トレース:アウト(全階層)を行う
+            traceOut(false, true);
         }
         else if (tracedir == TRACE_DIR.FORWARD) {
             // ステータスメッセージ
             Application.status.setMessageMain(message + Message.getString("analysistraceaction.trace-forword.status"));//:フォワード
 
             // トレース:フォワードを行う
-            traceOut(true);
+            traceOut(true, false);
         }
         else if (tracedir == TRACE_DIR.REFRESH) {
             // ステータスメッセージ
@@ -266,8 +281,9 @@ public class AnalysisTraceAction extends ActionBase {
 
     /**
      * トレース:インを行う
+     * @param  all		全階層のトレース先から選択する。
      */
-    private void traceIn() {
+    private void traceIn(boolean all) {
         // 選択トレースパネル
         TraceResultPanel panel = this.controller.getMainframe().getPanelAnalysisView().getSelectedTracePanel();
         if (panel == null) return;
@@ -291,7 +307,14 @@ public class AnalysisTraceAction extends ActionBase {
         service.setTraceWord(statement);
 
         // トレース:イン結果を取得する
-        TraceResultModel[] modelTraces = service.analysisTraceIn(selectedBlock);
+        TraceResultModel[] modelTraces = null;
+        if (all) {
+            // トレース:イン(全階層)
+            modelTraces = service.analysisTraceInAll(selectedBlock);
+        }
+        else {
+            modelTraces = service.analysisTraceIn(selectedBlock);
+        }
         if (modelTraces == null || modelTraces.length <= 0 || modelTraces[0] == null) {
             // ステータスメッセージ
             Application.status.setMessageMain(Message.getString("analysistraceaction.trace-in-no-target.status"));//トレース:イン[対象なし]
@@ -313,7 +336,13 @@ public class AnalysisTraceAction extends ActionBase {
             list.addAll(Arrays.asList(paths));
         }
         list.add(selectedBlock);
-        list.add(getRootBlock(selectTrace));
+        if (all && selectTrace.getTracePath() != null) {
+            // トレース:イン(全階層):途中の呼出先手続き、手続き呼出を追加する
+            list.addAll(Arrays.asList(selectTrace.getTracePath()));
+        }
+        else {
+            list.add(getRootBlock(selectTrace));
+        }
         selectTrace.setTracePath(list.toArray(new IBlock[0]));
 
         // トレース結果を表示する
@@ -325,8 +354,9 @@ public class AnalysisTraceAction extends ActionBase {
     /**
      * トレース:アウトを行う
      * @param  forward		フォワードを行う。
+     * @param  all		全階層のトレース先から選択する。
      */
-    private void traceOut(boolean forward) {
+    private void traceOut(boolean forward, boolean all) {
 
         // 選択トレースパネル
         TraceResultPanel panel = this.controller.getMainframe().getPanelAnalysisView().getSelectedTracePanel();
@@ -357,7 +387,14 @@ public class AnalysisTraceAction extends ActionBase {
         service.setTraceWord(statement);
 
         // トレース:アウト結果を取得する
-        TraceResultModel[] modelTraces = service.analysisTraceOut(rootBlock, tracePath);
+        TraceResultModel[] modelTraces = null;
+        if (all) {
+            // トレース:アウト(全階層)
+            modelTraces = service.analysisTraceOutAll(rootBlock);
+        }
+        else {
+            modelTraces = service.analysisTraceOut(rootBlock, tracePath);
+        }
         if (modelTraces == null || modelTraces.length <= 0 || modelTraces[0] == null) {
             // ステータスメッセージ
             Application.status.setMessageMain(Message.getString("analysistraceaction.trace-out-no-target.status"));//トレース:アウト[対象なし]
@@ -386,6 +423,17 @@ public class AnalysisTraceAction extends ActionBase {
                 }
             }
         }
+        else if (all && selectTrace.getTracePath() != null) {
+            // トレース:アウト(全階層):途中の手続き呼出、呼出元手続きを追加する
+            IBlock[] paths = model.getTracePath();
+            if (paths != null && paths.length > 0) {
+                list.addAll(Arrays.asList(paths));
+            }
+            if (list.size() <= 0 || list.get(list.size()-1) != rootBlock) {
+                list.add(rootBlock);
+            }
+            list.addAll(Arrays.asList(selectTrace.getTracePath()));
+        }
         else {
             list.add(getRootBlock(selectTrace));
         }
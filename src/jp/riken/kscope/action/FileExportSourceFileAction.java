@@ -25,6 +25,7 @@ import java.util.concurrent.Callable;
 import jp.riken.kscope.Application;
 import jp.riken.kscope.Message;
 import jp.riken.kscope.common.Constant;
+import jp.riken.kscope.common.TASK_PRIORITY;
 import jp.riken.kscope.data.SourceFile;
 import jp.riken.kscope.dialog.FileExportSourceFileDialog;
 import jp.riken.kscope.model.ProjectModel;
@@ -273,8 +274,8 @@ public class FileExportSourceFileAction extends ActionBase {
         WindowProgressAction progress = new WindowProgressAction(this.controller);
         progress.showProgressDialog();
 
-        // スレッド起動
-        new Thread(future).start();
+        // タスクスケジューラで実行する
+        this.controller.getTaskScheduler().execute(future, message, TASK_PRIORITY.BACKGROUND);
 
     }
 
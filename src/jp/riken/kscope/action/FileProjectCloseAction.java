@@ -56,7 +56,7 @@ public class FileProjectCloseAction extends ActionBase {
         if (model.getProjectFolder() == null || !model.getProjectFolder().exists()) return false;
 
         // スレッドタスクの実行状態をチェックする
-        return this.controller.isThreadTaskDone();
+        return this.controller.isThreadTaskDone() && !this.controller.getTaskScheduler().isRunning(null);
     }
 
     /**
@@ -32,6 +32,7 @@ import jp.riken.kscope.Message;
 import jp.riken.kscope.common.ANALYSIS_PANEL;
 import jp.riken.kscope.common.Constant;
 import jp.riken.kscope.common.EXPLORE_PANEL;
+import jp.riken.kscope.common.TASK_PRIORITY;
 import jp.riken.kscope.data.FILE_TYPE;
 import jp.riken.kscope.data.SourceFile;
 import jp.riken.kscope.dialog.FileProjectNewDialog;
@@ -42,14 +43,17 @@ import jp.riken.kscope.model.FileTreeModel;
 import jp.riken.kscope.model.LanguageTreeModel;
 import jp.riken.kscope.model.ModuleTreeModel;
 import jp.riken.kscope.model.ProjectModel;
+import jp.riken.kscope.properties.ApplicationProperties;
 import jp.riken.kscope.properties.KscopeProperties;
 import jp.riken.kscope.properties.ProjectProperties;
 import jp.riken.kscope.properties.RemoteBuildProperties;
 import jp.riken.kscope.service.AppController;
 import jp.riken.kscope.service.FutureService;
 import jp.riken.kscope.service.LanguageService;
+import jp.riken.kscope.service.ProjectMakePipeline;
 import jp.riken.kscope.service.ProjectMakeService;
 import jp.riken.kscope.service.ProjectService;
+import jp.riken.kscope.xcodeml.XcodeMLParseCache;
 import jp.riken.kscope.xcodeml.XcodeMLParserStax;
 
 /**
@@ -209,6 +213,13 @@ public class FileProjectNewAction extends ActionBase {
             languageService.setLanguageTreeModel(languageModel);
             // モジュールツリーモデルを設定する
             languageService.setModuleTreeModel(moduleModel);
+            // パースワーカースレッド数を設定する
+            languageService.setParseThreadCount(this.controller.getPropertiesApplication().getParseThreadCount());
+            // 概要パースの先行表示を設定する
+            languageService.setOutlineFirst(this.controller.getPropertiesApplication().isParseOutlineFirst());
+            // パース結果キャッシュを設定する
+            ApplicationProperties propertiesApplication = this.controller.getPropertiesApplication();
+            languageService.setParseCache(XcodeMLParseCache.open(propertiesApplication.getParseCacheFolder(), propertiesApplication.getParseCacheSize()));
             // エラー情報モデルを設定する。
             languageService.setErrorInfoModel(errorModel);
             // ソースツリーモデルを設定する。
@@ -346,6 +357,13 @@ public class FileProjectNewAction extends ActionBase {
 		console.clearConsole();
 		OutputStream out = console.getOutputStream();
     	makeService.setOutputStream(out);
+    	if (make && build && mode) {
+    		// make実行中に生成XMLファイルを先行パースする
+    		ProjectMakePipeline pipeline = ProjectMakePipeline.create(this.controller.getPropertiesApplication(),
+    				xmls, languageService.getProjectFolder());
+    		makeService.setMakePipeline(pipeline);
+    		languageService.setMakePipeline(pipeline);
+    	}
     	final boolean bMake = make;
     	final boolean bBuild = build;
     	final boolean bSave = save;
@@ -469,8 +487,8 @@ public class FileProjectNewAction extends ActionBase {
         progress.showProgressDialog();
         Application.status.setProgressStart(true);
 
-        // スレッド起動
-        new Thread(future).start();
+        // タスクスケジューラで実行する
+        this.controller.getTaskScheduler().execute(future, message, TASK_PRIORITY.BACKGROUND);
     }
 
 }
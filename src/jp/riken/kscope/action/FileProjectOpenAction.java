@@ -29,6 +29,7 @@ import jp.riken.kscope.Application;
 import jp.riken.kscope.Message;
 import jp.riken.kscope.common.Constant;
 import jp.riken.kscope.common.EXPLORE_PANEL;
+import jp.riken.kscope.common.TASK_PRIORITY;
 import jp.riken.kscope.data.FILE_TYPE;
 import jp.riken.kscope.data.SourceFile;
 import jp.riken.kscope.exception.LanguageException;
@@ -38,6 +39,7 @@ import jp.riken.kscope.model.FileTreeModel;
 import jp.riken.kscope.model.LanguageTreeModel;
 import jp.riken.kscope.model.ModuleTreeModel;
 import jp.riken.kscope.model.ProjectModel;
+import jp.riken.kscope.properties.ApplicationProperties;
 import jp.riken.kscope.properties.KscopeProperties;
 //import jp.riken.kscope.properties.VariableMemoryProperties;
 import jp.riken.kscope.service.AnalysisMemoryService;
@@ -46,6 +48,7 @@ import jp.riken.kscope.service.FutureService;
 import jp.riken.kscope.service.LanguageService;
 import jp.riken.kscope.service.ProjectService;
 import jp.riken.kscope.utils.SwingUtils;
+import jp.riken.kscope.xcodeml.XcodeMLParseCache;
 import jp.riken.kscope.xcodeml.XcodeMLParserStax;
 
 /**
@@ -258,6 +261,13 @@ public class FileProjectOpenAction extends ActionBase {
         serviceLanguage.setLanguageTreeModel(languageModel);
         // モジュールツリーモデルを設定する
         serviceLanguage.setModuleTreeModel(moduleModel);
+        // パースワーカースレッド数を設定する
+        serviceLanguage.setParseThreadCount(this.controller.getPropertiesApplication().getParseThreadCount());
+        // 概要パースの先行表示を設定する
+        serviceLanguage.setOutlineFirst(this.controller.getPropertiesApplication().isParseOutlineFirst());
+        // パース結果キャッシュを設定する
+        ApplicationProperties propertiesApplication = this.controller.getPropertiesApplication();
+        serviceLanguage.setParseCache(XcodeMLParseCache.open(propertiesApplication.getParseCacheFolder(), propertiesApplication.getParseCacheSize()));
 
         // 変数アクセス先メモリサービス
         serviceMemory = new AnalysisMemoryService();
@@ -345,8 +355,8 @@ public class FileProjectOpenAction extends ActionBase {
         progress.showProgressDialog();
         Application.status.setProgressStart(true);
 
-        // スレッド起動
-        new Thread(future).start();
+        // タスクスケジューラで実行する
+        this.controller.getTaskScheduler().execute(future, message, TASK_PRIORITY.BACKGROUND);
     }
 
 
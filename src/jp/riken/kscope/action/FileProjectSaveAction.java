@@ -27,6 +27,7 @@ import javax.swing.JOptionPane;
 import jp.riken.kscope.Application;
 import jp.riken.kscope.Message;
 import jp.riken.kscope.common.Constant;
+import jp.riken.kscope.common.TASK_PRIORITY;
 import jp.riken.kscope.language.Fortran;
 import jp.riken.kscope.model.ErrorInfoModel;
 import jp.riken.kscope.model.ProjectModel;
@@ -232,8 +233,8 @@ public class FileProjectSaveAction extends ActionBase {
         progress.showProgressDialog();
         Application.status.setProgressStart(true);
 
-        // スレッド起動
-        new Thread(future).start();
+        // タスクスケジューラで実行する
+        this.controller.getTaskScheduler().execute(future, message, TASK_PRIORITY.BACKGROUND);
     }
 
 }
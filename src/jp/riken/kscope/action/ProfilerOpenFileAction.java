@@ -27,6 +27,7 @@ import jp.riken.kscope.common.PROFILERINFO_TYPE;
 import jp.riken.kscope.data.SourceFile;
 import jp.riken.kscope.model.ProfilerTableBaseModel;
 import jp.riken.kscope.model.ProjectModel;
+import jp.riken.kscope.properties.ProfilerProperties;
 import jp.riken.kscope.service.AppController;
 import jp.riken.kscope.service.ProfilerService;
 import jp.riken.kscope.utils.SwingUtils;
@@ -98,8 +99,15 @@ public class ProfilerOpenFileAction extends ActionBase {
         service.setFortranLanguage(this.controller.getFortranLanguage());
         // プロファイラプロパティ
         service.setPropertiesProfiler(this.controller.getPropertiesProfiler());
-        // プロファイラファイルから読込
-        service.loadProfilerDataFile(selected[0]);
+        // プロファイラファイルから読込:複数のDProfファイルはプロセス間で集計する
+        service.loadProfilerDataFiles(selected);
+
+        // 構造ツリーを包括コストで並べ替え、色分けする
+        if (service.getCostTree() != null) {
+            ProfilerProperties properties = this.controller.getPropertiesProfiler();
+            this.controller.getLanguageTreeModel().setProfilerCostTree(service.getCostTree(),
+                    properties.getRulerColorMin(), properties.getRulerColorMax());
+        }
 
         // 読込データの分析タブをアクティブにする。
         String fileType = service.getFileType();
@@ -27,6 +27,7 @@ import jp.riken.kscope.Application;
 import jp.riken.kscope.Message;
 import jp.riken.kscope.common.Constant;
 import jp.riken.kscope.common.EXPLORE_PANEL;
+import jp.riken.kscope.common.TASK_PRIORITY;
 import jp.riken.kscope.data.FILE_TYPE;
 import jp.riken.kscope.data.SourceFile;
 import jp.riken.kscope.language.Fortran;
@@ -34,10 +35,12 @@ import jp.riken.kscope.model.ErrorInfoModel;
 import jp.riken.kscope.model.FileTreeModel;
 import jp.riken.kscope.model.LanguageTreeModel;
 import jp.riken.kscope.model.ModuleTreeModel;
+import jp.riken.kscope.properties.ApplicationProperties;
 //import jp.riken.kscope.model.ProjectModel;
 import jp.riken.kscope.service.AppController;
 import jp.riken.kscope.service.FutureService;
 import jp.riken.kscope.service.LanguageService;
+import jp.riken.kscope.xcodeml.XcodeMLParseCache;
 import jp.riken.kscope.xcodeml.XcodeMLParserStax;
 
 /**
@@ -162,6 +165,13 @@ public class ProjectBuildAction extends ActionBase {
         service.setXmlTreeModel(xmlModel);
         // プロジェクトフォルダを設定する
         service.setProjectFolder(this.controller.getProjectModel().getProjectFolder());
+        // パースワーカースレッド数を設定する
+        service.setParseThreadCount(this.controller.getPropertiesApplication().getParseThreadCount());
+        // 概要パースの先行表示を設定する
+        service.setOutlineFirst(this.controller.getPropertiesApplication().isParseOutlineFirst());
+        // パース結果キャッシュを設定する
+        ApplicationProperties propertiesApplication = this.controller.getPropertiesApplication();
+        service.setParseCache(XcodeMLParseCache.open(propertiesApplication.getParseCacheFolder(), propertiesApplication.getParseCacheSize()));
 
         // スレッドタスクサービスの生成を行う。
         FutureService<Integer> future = new FutureService<Integer>(
@@ -220,8 +230,8 @@ public class ProjectBuildAction extends ActionBase {
         WindowProgressAction progress = new WindowProgressAction(this.controller);
         progress.showProgressDialog();
 
-        // スレッド起動
-        new Thread(future).start();
+        // タスクスケジューラで実行する
+        this.controller.getTaskScheduler().execute(future, message, TASK_PRIORITY.BACKGROUND);
         // 構造ツリーをアクティブにする
         this.controller.getMainframe().getPanelExplorerView().setSelectedPanel(EXPLORE_PANEL.LANGUAGE);
     }
@@ -27,6 +27,7 @@ import jp.riken.kscope.Application;
 import jp.riken.kscope.Message;
 import jp.riken.kscope.common.ANALYSIS_PANEL;
 import jp.riken.kscope.common.Constant;
+import jp.riken.kscope.common.TASK_PRIORITY;
 import jp.riken.kscope.data.ProjectPropertyValue;
 import jp.riken.kscope.gui.ConsolePanel;
 import jp.riken.kscope.model.ErrorInfoModel;
@@ -36,6 +37,7 @@ import jp.riken.kscope.properties.ProjectProperties;
 import jp.riken.kscope.service.AppController;
 import jp.riken.kscope.service.FutureService;
 import jp.riken.kscope.service.LanguageService;
+import jp.riken.kscope.service.ProjectMakePipeline;
 import jp.riken.kscope.service.ProjectMakeService;
 import jp.riken.kscope.utils.StringUtils;
 
@@ -157,6 +159,9 @@ public class ProjectRebuildAction extends ActionBase {
 		serviceMake.setListSearchPath(this.controller.getProjectModel().getListSearchPath());
         // プロジェクトモデル
 		serviceMake.setProjectModel(this.controller.getProjectModel());
+        // make実行中の生成XMLファイルの先行パース
+		serviceMake.setMakePipeline(ProjectMakePipeline.create(this.controller.getPropertiesApplication(),
+				this.controller.getProjectModel().getListSearchPath(), projectModel.getProjectFolder()));
 
         // 構造解析サービス
         serviceLang = new LanguageService(this.controller.getFortranLanguage());
@@ -194,13 +199,14 @@ public class ProjectRebuildAction extends ActionBase {
                         	if (!result) {
                         		return Constant.CANCEL_RESULT;
                         	}
-                            // 分析ビューのクリアを行う。
-                            clearAnalysisView();
-                            // 解析実行
+                            // 解析実行:再構築中も分析は公開中のデータベースで行える
                         	if (serviceMake.rebuild()) {
+                                // 分析ビューのクリアを行う。
+                                clearAnalysisView();
                                 // エクスプローラビュー、ソースビューのクリアを行う。
                                 clearExplorerView();
-                            	// エクスプローラビューの更新
+                            	// エクスプローラビューの更新:公開された作成データベースで表示する
+                            	serviceLang.setFortranLanguage(controller.getFortranLanguage());
                             	serviceLang.setExplorerView();
                         	}
 
@@ -247,9 +253,8 @@ public class ProjectRebuildAction extends ActionBase {
         WindowProgressAction progress = new WindowProgressAction(this.controller);
         progress.showProgressDialog();
 
-        // スレッド起動
-        Thread thread =  new Thread(future);
-        thread.start();
+        // タスクスケジューラで実行する
+        this.controller.getTaskScheduler().execute(future, message, TASK_PRIORITY.BACKGROUND);
 
 	}
 
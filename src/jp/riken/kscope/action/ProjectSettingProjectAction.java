@@ -59,6 +59,7 @@ public class ProjectSettingProjectAction extends ActionBase {
         
 		SettingProjectDialog dialog = new SettingProjectDialog(frame, true, properties);
 		dialog.setLastAccessFolder(currentFolder);
+		dialog.setParseCacheFolder(this.controller.getPropertiesApplication().getParseCacheFolder());
 		int result = dialog.showDialog();
 		if (result != Constant.OK_DIALOG) {
         	Application.status.setMessageMain(message + 
@@ -0,0 +1,294 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.riken.kscope.action;
+
+import java.awt.event.ActionEvent;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import javax.swing.JCheckBoxMenuItem;
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+
+import jp.riken.kscope.Application;
+import jp.riken.kscope.Message;
+import jp.riken.kscope.common.Constant;
+import jp.riken.kscope.common.TASK_PRIORITY;
+import jp.riken.kscope.language.Fortran;
+import jp.riken.kscope.model.ErrorInfoModel;
+import jp.riken.kscope.model.ProjectModel;
+import jp.riken.kscope.service.AppController;
+import jp.riken.kscope.service.FutureService;
+import jp.riken.kscope.service.LanguageService;
+import jp.riken.kscope.service.ProjectMakeService;
+import jp.riken.kscope.service.ProjectWatchService;
+
+/**
+ * XMLファイル変更監視切替アクションクラス.<br/>
+ * 監視中はXMLファイル検索パスのXMLファイルの変更を監視して、変更XMLファイルのみ構造解析を再実行する.
+ * 再実行はタスクスケジューラのバックグラウンド処理として行い、作成データベースはイベントディスパッチスレッドで入れ替える.
+ * 再実行中、他のバックグラウンド処理の実行中に変更されたXMLファイルは保留して、次の再実行でまとめて構造解析する.
+ * makeコマンドは実行しない.
+ * @author RIKEN
+ */
+public class ProjectWatchAction extends ActionBase implements PropertyChangeListener {
+
+    /** XMLファイル変更監視サービス */
+    private volatile ProjectWatchService serviceWatch;
+    /** 監視プロジェクトフォルダ */
+    private File watchFolder;
+    /** 監視切替メニュー */
+    private JCheckBoxMenuItem menuItem;
+    /** 再実行待ちの変更XMLファイル */
+    private final Set<File> pendingFiles = new LinkedHashSet<File>();
+    /** 登録済みの再実行タスク */
+    private FutureService<Integer> rebuildTask;
+
+    /**
+     * コンストラクタ
+     * @param controller	アプリケーションコントローラ
+     */
+    public ProjectWatchAction(AppController controller) {
+        super(controller);
+    }
+
+    /**
+     * アクションが実行可能であるかチェックする.<br/>
+     * アクションの実行前チェック、メニューのイネーブルの切替を行う。<br/>
+     * @return		true=アクションが実行可能
+     */
+    @Override
+    public boolean validateAction() {
+        // 監視中は停止可能とする
+        if (this.serviceWatch != null && this.serviceWatch.isRunning()) return true;
+        // プロジェクトが開かれているか
+        FileProjectSaveAction save_action = new FileProjectSaveAction(this.controller);
+        if (!save_action.validateAction()) return false;
+        ProjectModel model = this.controller.getProjectModel();
+        if (model == null || model.getListSearchPath() == null) return false;
+        return model.getListSearchPath().size() > 0;
+    }
+
+    /**
+     * アクション発生イベント
+     * @param event		イベント情報
+     */
+    @Override
+    public void actionPerformed(ActionEvent event) {
+        if (!(event.getSource() instanceof JCheckBoxMenuItem)) return;
+        this.menuItem = (JCheckBoxMenuItem)event.getSource();
+        if (!this.menuItem.isSelected()) {
+            stopWatch();
+            return;
+        }
+
+        final String message = Message.getString("mainmenu.project.watch"); //XMLファイル変更監視
+        ProjectModel model = this.controller.getProjectModel();
+        long delay = this.controller.getPropertiesApplication().getProjectWatchDelay();
+        ProjectWatchService service = new ProjectWatchService(model.getListSearchPath(), delay);
+        service.addPropertyChangeListener(this);
+        try {
+            service.start();
+        } catch (IOException ex) {
+            this.menuItem.setSelected(false);
+            JOptionPane.showMessageDialog(getWindowAncestor(event),
+                    Message.getString("projectwatchaction.error.start", ex.getMessage()), //XMLファイルの変更を監視できません。
+                    message,
+                    JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        this.serviceWatch = service;
+        this.watchFolder = model.getProjectFolder();
+        Application.status.setMessageMain(message);
+    }
+
+    /**
+     * 監視を停止する.
+     */
+    private void stopWatch() {
+        if (this.serviceWatch != null) {
+            this.serviceWatch.stop();
+            this.serviceWatch = null;
+        }
+        this.watchFolder = null;
+        synchronized (this.pendingFiles) {
+            this.pendingFiles.clear();
+        }
+        if (this.menuItem != null) {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    menuItem.setSelected(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * XMLファイル変更通知イベント.<br/>
+     * 監視スレッドから呼び出される.
+     * @param event		変更通知イベント
+     */
+    @Override
+    public void propertyChange(PropertyChangeEvent event) {
+        if (!ProjectWatchService.PROPERTY_CHANGED_FILES.equals(event.getPropertyName())) return;
+        @SuppressWarnings("unchecked")
+        List<File> files = (List<File>)event.getNewValue();
+        if (files == null || files.size() <= 0) return;
+
+        // プロジェクトが閉じられた、変更された場合は監視を停止する
+        ProjectModel model = this.controller.getProjectModel();
+        if (model == null || this.watchFolder == null || !this.watchFolder.equals(model.getProjectFolder())) {
+            stopWatch();
+            return;
+        }
+        // 変更XMLファイルを保留して、再実行タスクを登録する
+        synchronized (this.pendingFiles) {
+            this.pendingFiles.addAll(files);
+        }
+        submitRebuild();
+    }
+
+    /**
+     * 再実行タスクをタスクスケジューラに登録する.<br/>
+     * 登録済みの再実行タスクが終了していない場合は、終了時に保留中の変更XMLファイルで再登録する.
+     * 構造解析等の他のバックグラウンド処理の実行中は、その終了後に実行される.
+     */
+    private void submitRebuild() {
+        final String message = Message.getString("mainmenu.project.watch"); //XMLファイル変更監視
+        FutureService<Integer> future;
+        synchronized (this.pendingFiles) {
+            if (this.serviceWatch == null || this.pendingFiles.size() <= 0) return;
+            if (this.rebuildTask != null && !this.rebuildTask.isDone()) return;
+
+            future = new FutureService<Integer>(
+                    new Callable<Integer>() {
+                        @Override
+                        public Integer call() {
+                            List<File> files = takePendingFiles();
+                            if (files.size() <= 0) return Constant.SUCCESS_RESULT;
+                            Fortran language = controller.getFortranLanguage();
+                            try {
+                                if (rebuild(files)) return Constant.SUCCESS_RESULT;
+                            } catch (Exception ex) {
+                                ex.printStackTrace();
+                            }
+                            // 再実行中にデータベースが入れ替えられた場合は、次の再実行で再度構造解析する
+                            if (language != controller.getFortranLanguage()) {
+                                restorePendingFiles(files);
+                            }
+                            return Constant.ERROR_RESULT;
+                        }
+                    }) {
+                        /**
+                         * スレッド実行完了.<br/>
+                         * 実行中に変更されたXMLファイルがあれば再実行タスクを登録する.
+                         */
+                        @Override
+                        protected void done() {
+                            super.done();
+                            if (this.isCancelled()) {
+                                Application.status.setMessageMain(message + Message.getString("action.common.cancel.status")); //:キャンセル
+                                return;
+                            }
+                            submitRebuild();
+                        }
+                    };
+            this.rebuildTask = future;
+        }
+        // タスクスケジューラで実行する
+        this.controller.getTaskScheduler().execute(future, message, TASK_PRIORITY.BACKGROUND);
+    }
+
+    /**
+     * 保留中の変更XMLファイルを取得して、保留リストをクリアする.
+     * @return		変更XMLファイルリスト
+     */
+    private List<File> takePendingFiles() {
+        synchronized (this.pendingFiles) {
+            List<File> files = new ArrayList<File>(this.pendingFiles);
+            this.pendingFiles.clear();
+            return files;
+        }
+    }
+
+    /**
+     * 構造解析できなかった変更XMLファイルを保留リストに戻す.
+     * @param files		変更XMLファイルリスト
+     */
+    private void restorePendingFiles(List<File> files) {
+        synchronized (this.pendingFiles) {
+            if (this.serviceWatch == null) return;
+            Set<File> merged = new LinkedHashSet<File>(files);
+            merged.addAll(this.pendingFiles);
+            this.pendingFiles.clear();
+            this.pendingFiles.addAll(merged);
+        }
+    }
+
+    /**
+     * 変更XMLファイルの構造解析再実行を行う.<br/>
+     * タスクスケジューラのワーカースレッドから呼び出される.
+     * @param files		変更XMLファイルリスト
+     * @return		true=再実行成功
+     */
+    private boolean rebuild(List<File> files) {
+        final String message = Message.getString("mainmenu.project.watch"); //XMLファイル変更監視
+        Application.status.setMessageMain(message +
+                Message.getString("projectwatchaction.status.rebuild", files.size())); //:変更XMLファイルの構造解析再実行
+        ProjectModel model = this.controller.getProjectModel();
+
+        // エラーモデル
+        ErrorInfoModel modelError = this.controller.getErrorInfoModel();
+        modelError.clearErrorList();
+
+        // 構造解析再実行サービス:変更XMLファイルのみ再構築する
+        ProjectMakeService serviceMake = new ProjectMakeService(model.getProjectFolder(), this.controller);
+        serviceMake.setOutputStream(this.controller.getMainframe().getPanelAnalysisView().getPanelConsole().getOutputStream());
+        serviceMake.setErrorInfoModel(modelError);
+        serviceMake.setFortranLanguage(this.controller.getFortranLanguage());
+        serviceMake.setListSearchPath(model.getListSearchPath());
+        serviceMake.setProjectModel(model);
+        serviceMake.setChangedFiles(files);
+        serviceMake.setSwapOnEventThread(true);
+        if (!serviceMake.rebuild()) {
+            Application.status.setMessageMain(message);
+            return false;
+        }
+
+        // エクスプローラビューの更新
+        LanguageService serviceLang = new LanguageService(this.controller.getFortranLanguage());
+        serviceLang.setLanguageTreeModel(this.controller.getLanguageTreeModel());
+        serviceLang.setModuleTreeModel(this.controller.getModuleTreeModel());
+        serviceLang.setErrorInfoModel(modelError);
+        serviceLang.setSourceTreeModel(this.controller.getSourceTreeModel());
+        serviceLang.setXmlTreeModel(this.controller.getXmlTreeModel());
+        serviceLang.setExplorerView();
+
+        Application.status.setMessageMain(message +
+                Message.getString("action.common.done.status")); //:完了
+        return true;
+    }
+}
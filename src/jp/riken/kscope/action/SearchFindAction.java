@@ -26,6 +26,7 @@ import jp.riken.kscope.Application;
 import jp.riken.kscope.Message;
 import jp.riken.kscope.common.ANALYSIS_PANEL;
 import jp.riken.kscope.common.Constant;
+import jp.riken.kscope.common.TASK_PRIORITY;
 import jp.riken.kscope.data.CodeLine;
 //import jp.riken.kscope.data.ErrorInfo;
 import jp.riken.kscope.data.FILE_TYPE;
@@ -204,8 +205,8 @@ public class SearchFindAction extends ActionBase {
         WindowProgressAction progress = new WindowProgressAction(this.controller);
         progress.showProgressDialog();
 
-        // スレッド起動
-        new Thread(future).start();
+        // タスクスケジューラで実行する
+        this.controller.getTaskScheduler().execute(future, message, TASK_PRIORITY.INTERACTIVE);
 
         // 検索結果タブをアクティブにする
         this.controller.setSelectedAnalysisPanel(ANALYSIS_PANEL.SEARCHRESULT);
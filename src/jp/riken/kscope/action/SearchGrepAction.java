@@ -32,6 +32,7 @@ import jp.riken.kscope.Message;
 import jp.riken.kscope.common.ANALYSIS_PANEL;
 import jp.riken.kscope.common.Constant;
 import jp.riken.kscope.common.EXPLORE_PANEL;
+import jp.riken.kscope.common.TASK_PRIORITY;
 import jp.riken.kscope.data.CodeLine;
 //import jp.riken.kscope.data.ErrorInfo;
 import jp.riken.kscope.data.FILE_TYPE;
@@ -39,10 +40,12 @@ import jp.riken.kscope.data.SourceFile;
 import jp.riken.kscope.dialog.SearchGrepDialog;
 import jp.riken.kscope.model.ErrorInfoModel;
 import jp.riken.kscope.model.SearchResultModel;
+import jp.riken.kscope.properties.KscopeProperties;
 import jp.riken.kscope.service.AnalysisSearchService;
 import jp.riken.kscope.service.AppController;
 import jp.riken.kscope.service.FutureService;
 import jp.riken.kscope.utils.FileUtils;
+import jp.riken.kscope.utils.SourceGrepIndex;
 import jp.riken.kscope.utils.StringUtils;
 
 /**
@@ -150,6 +153,8 @@ public class SearchGrepAction extends ActionBase {
         service.setExploreTreeNode((DefaultMutableTreeNode) modelTree.getRoot());
         // 検索ファイル
         service.setSearchFiles(files);
+        // ファイル検索索引
+        service.setGrepIndex(SourceGrepIndex.open(getSettingsFolder()));
 
         // スレッドタスクサービスの生成を行う。
         FutureService<Integer> future = new FutureService<Integer>(
@@ -215,8 +220,8 @@ public class SearchGrepAction extends ActionBase {
         WindowProgressAction progress = new WindowProgressAction(this.controller);
         progress.showProgressDialog();
 
-        // スレッド起動
-        new Thread(future).start();
+        // タスクスケジューラで実行する
+        this.controller.getTaskScheduler().execute(future, message, TASK_PRIORITY.INTERACTIVE);
 
         // 検索結果タブをアクティブにする
         this.controller.setSelectedAnalysisPanel(ANALYSIS_PANEL.SEARCHRESULT);
@@ -224,6 +229,16 @@ public class SearchGrepAction extends ActionBase {
         this.controller.setSearchKeywords();
     }
 
+    /**
+     * 設定フォルダを取得する
+     * @return		設定フォルダ(null=プロジェクト未設定)
+     */
+    private File getSettingsFolder() {
+        File projectFolder = this.controller.getProjectModel().getProjectFolder();
+        if (projectFolder == null) return null;
+        return new File(projectFolder.getAbsoluteFile(), KscopeProperties.SETTINGS_FOLDER);
+    }
+
     /**
      * 選択ノードから検索ソースファイル一覧を取得する
      * @param  root     ルートノード
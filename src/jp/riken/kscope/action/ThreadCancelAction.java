@@ -43,7 +43,7 @@ public class ThreadCancelAction extends ActionBase {
     @Override
     public boolean validateAction() {
         // スレッドタスクの実行状態をチェックする(true=スレッドが終了していない)
-        return !this.controller.isThreadTaskDone();
+        return !this.controller.isCurrentThreadTaskDone();
     }
 
     /**
@@ -43,7 +43,7 @@ public class WindowProgressAction extends ActionBase {
     @Override
     public boolean validateAction() {
         // スレッドタスクの実行状態をチェックする(true=スレッドが終了していない)
-        return !this.controller.isThreadTaskDone();
+        return !this.controller.isCurrentThreadTaskDone();
     }
 
     /**
@@ -53,7 +53,7 @@ public class WindowProgressAction extends ActionBase {
     @Override
     public void actionPerformed(ActionEvent event) {
         // メニューからのプログレスダイアログの表示の場合は、スレッド実行中のみ表示を行う。
-        if (this.controller.isThreadTaskDone()) {
+        if (this.controller.isCurrentThreadTaskDone()) {
             // スレッド実行なし
             return;
         }
@@ -0,0 +1,62 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.riken.kscope.common;
+
+import jp.riken.kscope.Message;
+
+/**
+ * スレッドタスクの優先度
+ * @author RIKEN
+ */
+public enum TASK_PRIORITY {
+    /** 対話処理:検索等、結果を待っている処理 */
+    INTERACTIVE(Message.getString("task_priority.enum.interactive"), Thread.NORM_PRIORITY), //対話
+    /** バックグラウンド処理:構造解析、保存等のプロジェクトを変更する処理 */
+    BACKGROUND(Message.getString("task_priority.enum.background"), Thread.MIN_PRIORITY + 1); //バックグラウンド
+
+    /** 表示名 */
+    private String name;
+    /** ワーカースレッドの優先度 */
+    private int threadPriority;
+
+    /**
+     * コンストラクタ
+     * @param name				表示名
+     * @param threadPriority	ワーカースレッドの優先度
+     */
+    private TASK_PRIORITY(String name, int threadPriority) {
+        this.name = name;
+        this.threadPriority = threadPriority;
+    }
+
+    /**
+     * 表示名を取得する
+     * @return		表示名
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * ワーカースレッドの優先度を取得する
+     * @return		ワーカースレッドの優先度
+     */
+    public int getThreadPriority() {
+        return this.threadPriority;
+    }
+}
@@ -34,6 +34,10 @@ public enum TRACE_DIR {
     OUT(Message.getString("trace_dir.enum.out")), //トレース：アウト
     /** トレース：フォワード */
     FORWARD(Message.getString("trace_dir.enum.forward")), //トレース：フォワード
+    /** トレース：イン(全階層) */
+    IN_ALL(Message.getString("trace_dir.enum.inall")), //トレース：イン(全階層)
+    /** トレース：アウト(全階層) */
+    OUT_ALL(Message.getString("trace_dir.enum.outall")), //トレース：アウト(全階層)
     /** トレース：開始 */
     START(Message.getString("trace_dir.enum.start")), //トレース：開始
     /** トレース：終了 */
@@ -16,7 +16,11 @@
  */
 package jp.riken.kscope.component;
 
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.swing.tree.DefaultTreeModel;
 
@@ -35,6 +39,11 @@ public class FilterTreeModel extends DefaultTreeModel {
 
     /** ノードフィルタのクラス */
     private List<FILTER_TYPE> listFilter;
+    /** 子ノードの並べ替え:null=追加順 */
+    private Comparator<FilterTreeNode> comparator;
+    /** 並べ替え済みの子ノード:{親ノード, 子ノード} */
+    private Map<FilterTreeNode, FilterTreeNode[]> sortedChildren
+                    = new IdentityHashMap<FilterTreeNode, FilterTreeNode[]>();
 
     /**
      * コンストラクタ
@@ -55,6 +64,7 @@ public class FilterTreeModel extends DefaultTreeModel {
 
             // ノード検索
             node.find();
+            this.sortedChildren.clear();
 
             // ツリー変更イベント
             Object[] path = { root };
@@ -84,11 +94,61 @@ public class FilterTreeModel extends DefaultTreeModel {
     @Override
     public Object getChild(Object parent, int index) {
         if (parent instanceof FilterTreeNode) {
+            if (this.comparator != null) {
+                return getSortedChildren((FilterTreeNode) parent)[index];
+            }
             return (((FilterTreeNode) parent).getChildAt(index));
         }
         return null;
     }
 
+    /**
+     * 親ノードの子ノードのインデックスを取得する
+     * @param   parent    親ノード
+     * @param   child     子ノード
+     * @return		子ノードインデックス(-1=子ノードではない)
+     */
+    @Override
+    public int getIndexOfChild(Object parent, Object child) {
+        if (this.comparator != null && parent instanceof FilterTreeNode) {
+            FilterTreeNode[] children = getSortedChildren((FilterTreeNode) parent);
+            for (int i = 0; i < children.length; i++) {
+                if (children[i] == child) return i;
+            }
+            return -1;
+        }
+        return super.getIndexOfChild(parent, child);
+    }
+
+    /**
+     * 並べ替え済みの子ノードを取得する.<br/>
+     * 子ノード数が変わった場合(未展開ノードの展開時)は並べ替え直す.
+     * @param   parent    親ノード
+     * @return		並べ替え済みの子ノード
+     */
+    private FilterTreeNode[] getSortedChildren(FilterTreeNode parent) {
+        int count = parent.getChildCount();
+        FilterTreeNode[] children = this.sortedChildren.get(parent);
+        if (children != null && children.length == count) return children;
+        children = new FilterTreeNode[count];
+        for (int i = 0; i < count; i++) {
+            children[i] = parent.getChildAt(i);
+        }
+        // 安定ソートであるので、同順の子ノードは追加順とする
+        Arrays.sort(children, this.comparator);
+        this.sortedChildren.put(parent, children);
+        return children;
+    }
+
+    /**
+     * 子ノードの並べ替えを設定する
+     * @param comparator		子ノードの並べ替え(null=追加順)
+     */
+    public void setComparator(Comparator<FilterTreeNode> comparator) {
+        this.comparator = comparator;
+        this.sortedChildren.clear();
+    }
+
 
     /**
      * ノードフィルタを取得する
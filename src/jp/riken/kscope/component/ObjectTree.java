@@ -53,8 +53,10 @@ import jp.riken.kscope.language.Program;
 import jp.riken.kscope.language.Repetition;
 import jp.riken.kscope.language.Return;
 import jp.riken.kscope.language.Selection;
+import jp.riken.kscope.profiler.ProfilerCostTree;
 import jp.riken.kscope.properties.SourceProperties;
 import jp.riken.kscope.utils.ResourceUtils;
+import jp.riken.kscope.utils.SwingUtils;
 
 /**
  * オブジェクトツリークラス.<br/>
@@ -76,6 +78,12 @@ public class ObjectTree extends JEntireRowTree {
     private boolean eventBlocked;
     /** ノード検索済みProcedureリスト */
     private Map<Procedure, List<Object>> parentLists;
+    /** プロファイラコスト集計 */
+    private ProfilerCostTree costTree;
+    /** コスト最小の文字色 */
+    private Color costColorMin;
+    /** コスト最大の文字色 */
+    private Color costColorMax;
 
     /**
      * コンストラクタ
@@ -232,6 +240,14 @@ public class ObjectTree extends JEntireRowTree {
             	if (code != null && (code.getSourceFile() == null || (code.getSourceFile() != null && code.getSourceFile().getFile() == null))) {
             		this.setForeground(fontColorBrokenLink);
             	}
+            	// プロファイラコストの存在するノードは包括コストの割合を表示し、割合に応じて文字色を変更する
+            	else if (costTree != null && costTree.contains(val)) {
+            		float ratio = costTree.getInclusiveRatio(val);
+            		setText(str + String.format(" [%.2f%%]", ratio * 100.0F));
+            		if (!selected && costColorMin != null && costColorMax != null) {
+            			this.setForeground(SwingUtils.getGradientHsbColor(ratio, costColorMin, costColorMax));
+            		}
+            	}
             }
 	        else {
 	            setIcon(null);
@@ -451,6 +467,19 @@ public class ObjectTree extends JEntireRowTree {
     }
 
 
+    /**
+     * プロファイラコスト集計を設定する.<br>
+     * コストの存在するノードは包括コストの割合を表示し、割合に応じた文字色とする.
+     * @param tree			プロファイラコスト集計(null=コスト表示なし)
+     * @param minColor		コスト最小の文字色
+     * @param maxColor		コスト最大の文字色
+     */
+    public void setProfilerCostTree(ProfilerCostTree tree, Color minColor, Color maxColor) {
+        this.costTree = tree;
+        this.costColorMin = minColor;
+        this.costColorMax = maxColor;
+    }
+
     /**
      * 付加情報ノードフォント色を設定する.<br>
      * @param color		付加情報ノードフォント色
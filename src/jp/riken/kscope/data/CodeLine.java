@@ -16,12 +16,19 @@
  */
 package jp.riken.kscope.data;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 
 import jp.riken.kscope.utils.StringUtils;
 
 /**
- * ソースコードクラス
+ * ソースコードクラス.<br/>
+ * ソースファイルとソースファイル名はソースファイル登録({@link SourceFileRegistry})のファイル番号で保持する.
+ * ソースファイルの行テキストから作成したコード行は、ソースコード文を保持せずに行テキストから取得する.
+ * データベースファイルにはソースファイル、ソースファイル名、ソースコード文を従来と同じフィールドで出力する.
  *
  * @author RIKEN
  *
@@ -41,18 +48,30 @@ public class CodeLine implements Comparable<CodeLine>, Serializable {
         /** 不明 */
         UNKNOWN
     };
-    /** ソースファイル */
-    private SourceFile m_sourceFile;
+    /** シリアライズフィールド:ファイル番号、コード文タイプは従来のフィールドで出力する */
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("m_sourceFile", SourceFile.class),
+        new ObjectStreamField("m_statement", String.class),
+        new ObjectStreamField("m_startline", int.class),
+        new ObjectStreamField("m_endline", int.class),
+        new ObjectStreamField("m_type", CODE_TYPE.class),
+        new ObjectStreamField("m_strSourceFile", String.class)
+    };
+    /** コード文タイプ:ソースファイルの行テキストから取得するコード行 */
+    private static final byte SOURCE_TEXT = 0x40;
+    /** コード文タイプ:コード文タイプの序数のマスク */
+    private static final byte TYPE_MASK = 0x0F;
+
+    /** ファイル番号:ソースファイル、ソースファイル名（存在しなくてもＸＭＬ情報から格納） */
+    private int m_fileId;
     /** ソースコード文 */
     private String m_statement;
     /** ファイル行番号（開始）:<=0の場合、行番号設定なし */
     private int m_startline;
     /** ファイル行番号（終了）:<=0の場合、行番号設定なし */
     private int m_endline;
-    /** コード文タイプ */
-    private CODE_TYPE m_type;
-    /** ソースファイル（存在しなくてもＸＭＬ情報から格納） */
-    private String m_strSourceFile;
+    /** コード文タイプ:序数 + SOURCE_TEXT */
+    private byte m_type;
 
     /**
      * コンストラクタ
@@ -69,12 +88,11 @@ public class CodeLine implements Comparable<CodeLine>, Serializable {
      *            ソースファイル（存在しなくてもＸＭＬ情報から格納）
      */
     public CodeLine(SourceFile sourceFile, String statement, int startline, int endline, String strSourceFile) {
-        m_sourceFile = sourceFile;
+        m_fileId = SourceFileRegistry.getInstance().getId(sourceFile, strSourceFile);
         m_statement = statement;
         m_startline = startline;
         m_endline = endline;
-        m_type = CODE_TYPE.STATEMENT;
-        m_strSourceFile = strSourceFile;
+        m_type = (byte) CODE_TYPE.STATEMENT.ordinal();
     }
 
     /**
@@ -104,7 +122,7 @@ public class CodeLine implements Comparable<CodeLine>, Serializable {
      */
     public CodeLine(SourceFile sourceFile, String statement, int line, CODE_TYPE type, String strSourceFile) {
         this(sourceFile, statement, line, strSourceFile);
-        m_type = type;
+        m_type = (byte) type.ordinal();
     }
 
     /**
@@ -142,12 +160,11 @@ public class CodeLine implements Comparable<CodeLine>, Serializable {
      * @param strSourceFile		ソースファイル（存在しなくてもＸＭＬ情報から格納）
      */
     public CodeLine(SourceFile sourceFile, int startline, int endline, String strSourceFile) {
-        m_sourceFile = sourceFile;
+        m_fileId = SourceFileRegistry.getInstance().getId(sourceFile, strSourceFile);
         m_statement = null;
         m_startline = startline;
         m_endline = endline;
-        m_type = CODE_TYPE.UNKNOWN;
-        m_strSourceFile = strSourceFile;
+        m_type = (byte) CODE_TYPE.UNKNOWN.ordinal();
     }
 
     /**
@@ -157,12 +174,7 @@ public class CodeLine implements Comparable<CodeLine>, Serializable {
      * @param strSourceFile		ソースファイル（存在しなくてもＸＭＬ情報から格納）
      */
     public CodeLine(SourceFile sourceFile, String strSourceFile) {
-        m_sourceFile = sourceFile;
-        m_statement = null;
-        m_startline = 0;
-        m_endline = 0;
-        m_type = CODE_TYPE.UNKNOWN;
-        m_strSourceFile = strSourceFile;
+        this(sourceFile, 0, 0, strSourceFile);
     }
 
 
@@ -171,12 +183,12 @@ public class CodeLine implements Comparable<CodeLine>, Serializable {
      * @param code        ソースコード
      */
     public CodeLine(CodeLine code) {
-        m_sourceFile = new SourceFile(code.m_sourceFile);
-        m_statement = code.m_statement;
+        SourceFileRegistry registry = SourceFileRegistry.getInstance();
+        m_fileId = registry.getId(new SourceFile(code.getSourceFile()), registry.getName(code.m_fileId));
+        m_statement = code.getStatement();
         m_startline = code.m_startline;
         m_endline = code.m_endline;
-        m_type = code.m_type;
-        m_strSourceFile = code.m_strSourceFile;
+        m_type = (byte) (code.m_type & TYPE_MASK);
     }
 
     /**
@@ -197,13 +209,31 @@ public class CodeLine implements Comparable<CodeLine>, Serializable {
     }
 
 
+    /**
+     * ソースファイルの行テキストから取得するコード行を生成する.<br/>
+     * ソースファイルの行テキストは{@link SourceFileRegistry#putLines(SourceFile, SourceLines)}で登録済みであること.
+     *
+     * @param sourceFile
+     *            ソースファイル
+     * @param line
+     *            ファイル行番号
+     * @param strSourceFile
+     *            ソースファイル（存在しなくてもＸＭＬ情報から格納）
+     * @return コード行
+     */
+    public static CodeLine createSourceLine(SourceFile sourceFile, int line, String strSourceFile) {
+        CodeLine code = new CodeLine(sourceFile, null, line, strSourceFile);
+        code.m_type |= SOURCE_TEXT;
+        return code;
+    }
+
     /**
      * ソースファイルを取得する。
      *
      * @return ソースファイル
      */
     public SourceFile getSourceFile() {
-        return m_sourceFile;
+        return SourceFileRegistry.getInstance().getFile(m_fileId);
     }
 
     /**
@@ -213,7 +243,9 @@ public class CodeLine implements Comparable<CodeLine>, Serializable {
      *            ソースファイル
      */
     public void setSourceFile(SourceFile sourceFile) {
-        m_sourceFile = sourceFile;
+        loadStatement();
+        SourceFileRegistry registry = SourceFileRegistry.getInstance();
+        m_fileId = registry.getId(sourceFile, registry.getName(m_fileId));
     }
 
     /**
@@ -222,6 +254,12 @@ public class CodeLine implements Comparable<CodeLine>, Serializable {
      * @return ソースコード行
      */
     public String getStatement() {
+        if (m_statement == null && (m_type & SOURCE_TEXT) != 0) {
+            SourceLines lines = SourceFileRegistry.getInstance().getLines(getSourceFile());
+            if (lines != null) {
+                return lines.getLine(m_startline);
+            }
+        }
         return m_statement;
     }
 
@@ -233,6 +271,32 @@ public class CodeLine implements Comparable<CodeLine>, Serializable {
      */
     public void setStatement(String statement) {
         m_statement = statement;
+        m_type &= TYPE_MASK;
+    }
+
+    /**
+     * ソースコード行をソースファイルの行テキストから取得するかチェックする.
+     * @return		true=ソースファイルの行テキストから取得する
+     */
+    public boolean isSourceText() {
+        return (m_type & SOURCE_TEXT) != 0;
+    }
+
+    /**
+     * ソースファイルの行テキストから取得するソースコード行を保持する.
+     */
+    private void loadStatement() {
+        if ((m_type & SOURCE_TEXT) == 0) return;
+        setStatement(getStatement());
+    }
+
+    /**
+     * コード文タイプを取得する.
+     *
+     * @return コード文タイプ
+     */
+    private CODE_TYPE getType() {
+        return CODE_TYPE.values()[m_type & TYPE_MASK];
     }
 
     /**
@@ -277,7 +341,7 @@ public class CodeLine implements Comparable<CodeLine>, Serializable {
      * 注釈・注釈文であるコードタイプを設定する。
      */
     public void setCommentType() {
-        m_type = CODE_TYPE.COMMENT;
+        m_type = (byte) ((m_type & ~TYPE_MASK) | CODE_TYPE.COMMENT.ordinal());
     }
 
     /**
@@ -286,7 +350,7 @@ public class CodeLine implements Comparable<CodeLine>, Serializable {
      * @return true:注釈・注釈文タイプ/false:注釈・注釈文タイプではない。
      */
     public boolean isCommentType() {
-        return (m_type == CODE_TYPE.COMMENT);
+        return (getType() == CODE_TYPE.COMMENT);
     }
 
     /**
@@ -295,7 +359,7 @@ public class CodeLine implements Comparable<CodeLine>, Serializable {
      * @return true:コード文タイプ/false:コード文タイプではない。
      */
     public boolean isStatementType() {
-        return (m_type == CODE_TYPE.STATEMENT);
+        return (getType() == CODE_TYPE.STATEMENT);
     }
 
     /**
@@ -312,6 +376,7 @@ public class CodeLine implements Comparable<CodeLine>, Serializable {
         if (code.trim().length() == 0)
             return;
 
+        loadStatement();
         m_statement += code;
         m_endline = lineno;
     }
@@ -331,12 +396,12 @@ public class CodeLine implements Comparable<CodeLine>, Serializable {
             return 1;
         }
 
-        if (this.m_type == CODE_TYPE.STATEMENT
-                && code.m_type == CODE_TYPE.COMMENT) {
+        if (this.getType() == CODE_TYPE.STATEMENT
+                && code.getType() == CODE_TYPE.COMMENT) {
             return -1;
         }
-        if (this.m_type == CODE_TYPE.COMMENT
-                && code.m_type == CODE_TYPE.STATEMENT) {
+        if (this.getType() == CODE_TYPE.COMMENT
+                && code.getType() == CODE_TYPE.STATEMENT) {
             return 1;
         }
 
@@ -379,18 +444,19 @@ public class CodeLine implements Comparable<CodeLine>, Serializable {
             buf.append("[code] ");
         }
         // ソースコード文
-        buf.append(m_statement);
+        buf.append(getStatement());
 
         // ソースファイル
-        if (m_sourceFile != null) {
+        SourceFile sourceFile = getSourceFile();
+        if (sourceFile != null) {
             buf.append("\n");
             buf.append("[file] ");
-            buf.append(m_sourceFile.toString());
+            buf.append(sourceFile.toString());
         }
         else {
         	buf.append("\n");
             buf.append("[file(not exist)] ");
-            buf.append(m_strSourceFile);
+            buf.append(SourceFileRegistry.getInstance().getName(m_fileId));
         }
 
         return buf.toString();
@@ -406,14 +472,15 @@ public class CodeLine implements Comparable<CodeLine>, Serializable {
 
         buf.append("[");
         // ソースファイル
-        if (m_sourceFile != null) {
-            String file = m_sourceFile.toString();
+        SourceFile sourceFile = getSourceFile();
+        if (sourceFile != null) {
+            String file = sourceFile.toString();
             file = String.format("%-16s", file);
             buf.append(file);
             buf.append(":");
         }
         else {
-        	String file = m_strSourceFile;
+        	String file = SourceFileRegistry.getInstance().getName(m_fileId);
             file = String.format("%-16s", file);
             file += "(not exist)";
             buf.append(file);
@@ -427,7 +494,7 @@ public class CodeLine implements Comparable<CodeLine>, Serializable {
         buf.append("] ");
 
         // ソースコード文
-        buf.append(m_statement);
+        buf.append(getStatement());
 
         return buf.toString();
     }
@@ -459,8 +526,9 @@ public class CodeLine implements Comparable<CodeLine>, Serializable {
     @Override
     public boolean equals(Object code) {
         if (!(code instanceof CodeLine)) return false;
-        if (this.m_sourceFile != null) {
-            if (!this.m_sourceFile.equals(((CodeLine)code).m_sourceFile)) {
+        SourceFile sourceFile = this.getSourceFile();
+        if (sourceFile != null) {
+            if (!sourceFile.equals(((CodeLine)code).getSourceFile())) {
                 return false;
             }
         }
@@ -470,8 +538,9 @@ public class CodeLine implements Comparable<CodeLine>, Serializable {
         if (this.m_endline != ((CodeLine)code).m_endline) {
             return false;
         }
-        if (this.m_statement != null) {
-            if (!this.m_statement.equalsIgnoreCase(((CodeLine)code).m_statement)) {
+        String statement = this.getStatement();
+        if (statement != null) {
+            if (!statement.equalsIgnoreCase(((CodeLine)code).getStatement())) {
                 return false;
             }
         }
@@ -484,16 +553,18 @@ public class CodeLine implements Comparable<CodeLine>, Serializable {
      * @return			ソースファイル名（存在しないファイルでも設定があればかえす）
      */
     public String getStrSourceFile() {
-    	if (m_statement != null) {
-			if (m_statement.startsWith("COMMON")){
-    			String [] array = m_statement.split("/", 0);
+    	String statement = getStatement();
+    	if (statement != null) {
+			if (statement.startsWith("COMMON")){
+    			String [] array = statement.split("/", 0);
     			return StringUtils.join(array, "/", array.length - 1);
 			}
     	}
-    	if (m_sourceFile != null && m_sourceFile.getPath() != null) {
-    		return m_sourceFile.getPath();
+    	SourceFile sourceFile = getSourceFile();
+    	if (sourceFile != null && sourceFile.getPath() != null) {
+    		return sourceFile.getPath();
     	}
-    	return m_strSourceFile;
+    	return SourceFileRegistry.getInstance().getName(m_fileId);
     }
 
     /**
@@ -501,7 +572,7 @@ public class CodeLine implements Comparable<CodeLine>, Serializable {
      * @param			ソースファイル名（ヘッダーなどの存在しないファイルでも設定があれば設定する）
      */
     public void setStrSourceFile(String strSourceFile) {
-    	m_strSourceFile = strSourceFile;
+    	m_fileId = SourceFileRegistry.getInstance().getId(getSourceFile(), strSourceFile);
     }
 
     @Override
@@ -537,4 +608,41 @@ public class CodeLine implements Comparable<CodeLine>, Serializable {
 		}
 		return false;
     }
+
+    /**
+     * シリアライズを行う.<br/>
+     * ファイル番号はソースファイル、ソースファイル名として出力する.
+     * @param out		出力ストリーム
+     * @throws IOException		出力エラー
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        SourceFileRegistry registry = SourceFileRegistry.getInstance();
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("m_sourceFile", registry.getFile(m_fileId));
+        fields.put("m_statement", getStatement());
+        fields.put("m_startline", m_startline);
+        fields.put("m_endline", m_endline);
+        fields.put("m_type", getType());
+        fields.put("m_strSourceFile", registry.getName(m_fileId));
+        out.writeFields();
+    }
+
+    /**
+     * デシリアライズを行う.<br/>
+     * ソースファイル、ソースファイル名をファイル番号に登録する.
+     * @param in		入力ストリーム
+     * @throws IOException		入力エラー
+     * @throws ClassNotFoundException		クラス不明エラー
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        SourceFileRegistry registry = SourceFileRegistry.getInstance();
+        ObjectInputStream.GetField fields = in.readFields();
+        SourceFile sourceFile = registry.intern((SourceFile) fields.get("m_sourceFile", null));
+        m_fileId = registry.getId(sourceFile, (String) fields.get("m_strSourceFile", null));
+        m_statement = (String) fields.get("m_statement", null);
+        m_startline = fields.get("m_startline", 0);
+        m_endline = fields.get("m_endline", 0);
+        CODE_TYPE type = (CODE_TYPE) fields.get("m_type", null);
+        m_type = (byte) (type != null ? type : CODE_TYPE.UNKNOWN).ordinal();
+    }
 }
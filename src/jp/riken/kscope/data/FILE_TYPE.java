@@ -24,6 +24,7 @@ import javax.swing.filechooser.FileFilter;
 
 import jp.riken.kscope.Message;
 import jp.riken.kscope.properties.KscopeProperties;
+import jp.riken.kscope.utils.CompressUtils;
 
 /**
  * ソースファイルの形式列挙クラス。 ソースファイルの形式のタイプリストである。 また、拡張子フィルタ、拡張子によるソースファイル形式の判断、取得を行う。
@@ -383,7 +384,8 @@ public enum FILE_TYPE {
 			public boolean accept(File file) {
                 if (file.isDirectory())
                     return true;
-                String file_name = file.getName();
+                // 圧縮ファイル(*.xml.gz, *.xml.zst)は圧縮拡張子を除いて判定する
+                String file_name = CompressUtils.getUncompressedName(file.getName());
                 file_name = file_name.toLowerCase();
                 for (int i = 0; EXT_XCODEML != null && i < EXT_XCODEML.length; i++) {
                     if (file_name.endsWith("." + EXT_XCODEML[i].toLowerCase()))
@@ -397,6 +399,9 @@ public enum FILE_TYPE {
                 String dest = Message.getString("file_type.enum.xcodeml.p"); //"XcodeML(";
                 for (int i = 0; i < EXT_XCODEML.length; i++) {
                     dest += "*." + EXT_XCODEML[i];
+                    for (String ext : CompressUtils.EXT_COMPRESS) {
+                        dest += ";*." + EXT_XCODEML[i] + "." + ext;
+                    }
                     if (i < EXT_XCODEML.length - 1)
                         dest += ";";
                 }
@@ -0,0 +1,310 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.riken.kscope.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ソースファイル登録クラス.<br/>
+ * コード行はソースファイルとソースファイル名(XML情報のファイル名)の組を、
+ * このクラスで採番したファイル番号で保持する.
+ * 同一パスのソースファイルは1つのインスタンスを共有する.<br/>
+ * ファイル番号はメモリ上でのみ有効であり、データベースファイルには出力しない.
+ * 登録はプロジェクトを閉じる時に{@link #clear()}で削除する.
+ * @author RIKEN
+ */
+public class SourceFileRegistry {
+
+    /** ファイル番号:ソースファイルなし */
+    public static final int NO_FILE = 0;
+
+    /** 唯一のインスタンス */
+    private static final SourceFileRegistry instance = new SourceFileRegistry();
+
+    /** ソースファイル:ファイル番号順 */
+    private volatile SourceFile[] files = new SourceFile[256];
+    /** ソースファイル名:ファイル番号順 */
+    private volatile String[] names = new String[256];
+    /** 次のファイル番号(ファイル番号0はソースファイルなし) */
+    private int size = 1;
+    /** ファイル番号と配列インデックスの差:削除済みのファイル番号は0以下のインデックスとなる */
+    private volatile int offset = 0;
+    /** ファイル番号索引:{ソースファイルとソースファイル名, ファイル番号} */
+    private Map<Key, Integer> ids = new ConcurrentHashMap<Key, Integer>();
+    /** パス毎のソースファイル:{パス, ソースファイル} */
+    private Map<String, SourceFile> paths = new ConcurrentHashMap<String, SourceFile>();
+    /** ソースファイル名:{ソースファイル名, 共有ソースファイル名} */
+    private Map<String, String> strings = new HashMap<String, String>();
+    /** ソースファイルの行テキスト */
+    private Map<SourceFile, LinesEntry> lines = new IdentityHashMap<SourceFile, LinesEntry>();
+
+    /**
+     * インスタンスを取得する.
+     * @return		ソースファイル登録
+     */
+    public static SourceFileRegistry getInstance() {
+        return instance;
+    }
+
+    /**
+     * コンストラクタ
+     */
+    private SourceFileRegistry() {
+    }
+
+    /**
+     * パスのソースファイルを取得する.<br/>
+     * 同一パスのソースファイルは同一インスタンスを返す.
+     * @param path		ファイルパス
+     * @return		ソースファイル
+     */
+    public SourceFile getSourceFile(String path) {
+        if (path == null) return null;
+        SourceFile file = this.paths.get(path);
+        if (file != null) return file;
+        synchronized (this) {
+            file = this.paths.get(path);
+            if (file == null) {
+                file = new SourceFile(path);
+                this.paths.put(path, file);
+            }
+            return file;
+        }
+    }
+
+    /**
+     * ファイルのソースファイルを取得する.<br/>
+     * 同一パスのソースファイルは同一インスタンスを返す.
+     * @param file		ファイル
+     * @return		ソースファイル
+     */
+    public SourceFile getSourceFile(File file) {
+        if (file == null) return null;
+        return getSourceFile(file.getPath());
+    }
+
+    /**
+     * 同一パスのソースファイルを共有する.<br/>
+     * 関連ファイルが設定されていないソースファイルは、登録済みの同一パス、同一ファイルタイプのソースファイルに置き換える.
+     * @param file		ソースファイル
+     * @return		共有ソースファイル
+     */
+    public synchronized SourceFile intern(SourceFile file) {
+        if (file == null || file.getFile() == null) return file;
+        if (file.getRelationFile() != null) return file;
+        String path = file.getPath();
+        SourceFile shared = this.paths.get(path);
+        if (shared == null) {
+            this.paths.put(path, file);
+            return file;
+        }
+        if (shared.getFileType() != file.getFileType()) return file;
+        return shared;
+    }
+
+    /**
+     * ソースファイルとソースファイル名のファイル番号を取得する.<br/>
+     * 未登録の場合は登録する.
+     * @param file		ソースファイル
+     * @param name		ソースファイル名
+     * @return		ファイル番号
+     */
+    public int getId(SourceFile file, String name) {
+        if (file == null && name == null) return NO_FILE;
+        Key key = new Key(file, name);
+        Integer id = this.ids.get(key);
+        if (id != null) return id.intValue();
+        return register(key);
+    }
+
+    /**
+     * ソースファイルとソースファイル名を登録する.
+     * @param key		ソースファイルとソースファイル名
+     * @return		ファイル番号
+     */
+    private synchronized int register(Key key) {
+        Integer id = this.ids.get(key);
+        if (id != null) return id.intValue();
+
+        SourceFile file = key.file;
+        String name = key.name;
+
+        if (name != null) {
+            String shared = this.strings.get(name);
+            if (shared == null) {
+                this.strings.put(name, name);
+            }
+            else {
+                name = shared;
+            }
+            key = new Key(file, name);
+        }
+        int index = this.size - this.offset;
+        if (index >= this.files.length) {
+            // 参照側は配列を読み込んでからインデックスを参照するため、要素を設定した配列に置き換える
+            SourceFile[] newFiles = Arrays.copyOf(this.files, index * 2);
+            String[] newNames = Arrays.copyOf(this.names, index * 2);
+            newFiles[index] = file;
+            newNames[index] = name;
+            this.names = newNames;
+            this.files = newFiles;
+        }
+        else {
+            this.files[index] = file;
+            this.names[index] = name;
+        }
+        this.ids.put(key, this.size);
+        return this.size++;
+    }
+
+    /**
+     * ファイル番号のソースファイルを取得する.
+     * @param id		ファイル番号
+     * @return		ソースファイル:削除済みの場合はnull
+     */
+    public SourceFile getFile(int id) {
+        if (id == NO_FILE) return null;
+        SourceFile[] array = this.files;
+        int index = id - this.offset;
+        if (index <= 0 || index >= array.length) return null;
+        return array[index];
+    }
+
+    /**
+     * ファイル番号のソースファイル名を取得する.
+     * @param id		ファイル番号
+     * @return		ソースファイル名:削除済みの場合はnull
+     */
+    public String getName(int id) {
+        if (id == NO_FILE) return null;
+        String[] array = this.names;
+        int index = id - this.offset;
+        if (index <= 0 || index >= array.length) return null;
+        return array[index];
+    }
+
+    /**
+     * 全ての登録を削除する.<br/>
+     * プロジェクトを閉じる時に、前のプロジェクトのソースファイル、行テキストを解放する.
+     * 前のプロジェクトのコード行が他のソースファイルを参照しないように、ファイル番号は再利用しない.
+     */
+    public synchronized void clear() {
+        this.ids.clear();
+        this.paths.clear();
+        this.strings.clear();
+        this.lines.clear();
+        this.offset = this.size - 1;
+        this.names = new String[256];
+        this.files = new SourceFile[256];
+    }
+
+    /**
+     * ソースファイルの行テキストを登録する.
+     * @param file		ソースファイル
+     * @param text		行テキスト
+     */
+    public synchronized void putLines(SourceFile file, SourceLines text) {
+        if (file == null || text == null) return;
+        this.lines.put(file, new LinesEntry(text));
+    }
+
+    /**
+     * ソースファイルの行テキストを取得する.<br/>
+     * 行テキストが解放されている場合は、登録時のファイル、文字セットで再度読み込む.
+     * @param file		ソースファイル
+     * @return		行テキスト:未登録、又は読込エラーの場合はnull
+     */
+    public synchronized SourceLines getLines(SourceFile file) {
+        LinesEntry entry = this.lines.get(file);
+        if (entry == null) return null;
+        SourceLines text = entry.text.get();
+        if (text == null) {
+            try {
+                text = new SourceLines(entry.file, entry.charset);
+            } catch (IOException ex) {
+                return null;
+            }
+            entry.text = new SoftReference<SourceLines>(text);
+        }
+        return text;
+    }
+
+    /**
+     * ソースファイルの行テキストの登録.<br/>
+     * 行テキストはメモリ不足時に解放し、再度読み込む.
+     */
+    private static class LinesEntry {
+        /** 読込ファイル */
+        private final File file;
+        /** ファイルの文字セット */
+        private final Charset charset;
+        /** 行テキスト */
+        private SoftReference<SourceLines> text;
+
+        /**
+         * コンストラクタ
+         * @param text		行テキスト
+         */
+        private LinesEntry(SourceLines text) {
+            this.file = text.getFile();
+            this.charset = text.getCharset();
+            this.text = new SoftReference<SourceLines>(text);
+        }
+    }
+
+    /**
+     * ファイル番号索引のキー.<br/>
+     * ソースファイルはインスタンス、ソースファイル名は文字列で比較する.
+     */
+    private static class Key {
+        /** ソースファイル */
+        private final SourceFile file;
+        /** ソースファイル名 */
+        private final String name;
+
+        /**
+         * コンストラクタ
+         * @param file		ソースファイル
+         * @param name		ソースファイル名
+         */
+        private Key(SourceFile file, String name) {
+            this.file = file;
+            this.name = name;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this.file) * 31 + (this.name != null ? this.name.hashCode() : 0);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) return false;
+            Key key = (Key) obj;
+            if (this.file != key.file) return false;
+            return this.name != null ? this.name.equals(key.name) : key.name == null;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.riken.kscope.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import jp.riken.kscope.utils.TextFileReader;
+
+/**
+ * ソースファイルの行テキストクラス.<br/>
+ * ファイルのテキストを1つの文字列と行の開始オフセットで保持し、
+ * コード行のソースコード文を行毎の文字列を保持せずに取得する.
+ * @author RIKEN
+ */
+public class SourceLines {
+
+    /** 読込ファイル */
+    private File file;
+    /** ファイルの文字セット */
+    private Charset charset;
+    /** ファイルテキスト(改行を除く) */
+    private String text;
+    /** 行の開始オフセット:行数+1個 */
+    private int[] offsets;
+
+    /**
+     * コンストラクタ.<br/>
+     * ファイルを読み込む.
+     * @param file			読込ファイル
+     * @param charset		ファイルの文字セット(null=文字コードを判別する)
+     * @throws IOException		読込エラー
+     */
+    public SourceLines(File file, Charset charset) throws IOException {
+        this.file = file;
+        TextFileReader reader = new TextFileReader(file, charset);
+        StringBuilder buf = new StringBuilder();
+        int[] starts = new int[1024];
+        int count = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (count + 1 >= starts.length) {
+                starts = Arrays.copyOf(starts, starts.length * 2);
+            }
+            starts[count++] = buf.length();
+            buf.append(line);
+        }
+        starts[count] = buf.length();
+        this.text = buf.toString();
+        this.offsets = Arrays.copyOf(starts, count + 1);
+        this.charset = reader.getCharset();
+    }
+
+    /**
+     * 読込ファイルを取得する.
+     * @return		読込ファイル
+     */
+    public File getFile() {
+        return this.file;
+    }
+
+    /**
+     * ファイルの文字セットを取得する.
+     * @return		ファイルの文字セット
+     */
+    public Charset getCharset() {
+        return this.charset;
+    }
+
+    /**
+     * 行数を取得する.
+     * @return		行数
+     */
+    public int getLineCount() {
+        return this.offsets.length - 1;
+    }
+
+    /**
+     * 行のテキストを取得する.
+     * @param lineno		行番号(1〜)
+     * @return		行のテキスト:行番号が範囲外の場合はnull
+     */
+    public String getLine(int lineno) {
+        if (lineno <= 0 || lineno >= this.offsets.length) return null;
+        return this.text.substring(this.offsets[lineno - 1], this.offsets[lineno]);
+    }
+}
@@ -38,6 +38,7 @@ import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JComponent;
 import javax.swing.JLabel;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
@@ -64,6 +65,7 @@ import jp.riken.kscope.data.ProjectPropertyValue;
 import jp.riken.kscope.properties.ProjectProperties;
 import jp.riken.kscope.properties.RemoteBuildProperties;
 import jp.riken.kscope.utils.SwingUtils;
+import jp.riken.kscope.xcodeml.XcodeMLParseCache;
 
 /**
  * プロジェクト設定ダイアログ
@@ -127,6 +129,11 @@ public class SettingProjectDialog extends javax.swing.JDialog implements ActionL
     /** 選択プロパティ */
     private ProjectPropertyValue selectedvalue;
 
+    /** パースキャッシュ削除ボタン */
+    private JButton btnClearCache;
+    /** パース結果キャッシュフォルダ */
+    private File parseCacheFolder;
+
 	/**
      * コンストラクタ
      * @param owner		親フレーム
@@ -230,6 +237,14 @@ public class SettingProjectDialog extends javax.swing.JDialog implements ActionL
 
                 // メインボタンサイズ
                 java.awt.Dimension buttonSize = new java.awt.Dimension(96, 22);
+                {
+                    btnClearCache = new JButton();
+                    btnClearCache.setText(Message.getString("settingprojectdialog.button.clearparsecache")); //パースキャッシュ削除
+                    btnClearCache.setMargin(new Insets(5, 5, 5, 5));
+                    btnClearCache.addActionListener(this);
+                    btnClearCache.setEnabled(false);
+                    panelButtons.add(btnClearCache);
+                }
                 {
                     btnApply = new JButton();
                     btnApply.setText(Message.getString("dialog.common.button.apply")); //適用
@@ -447,6 +462,22 @@ public class SettingProjectDialog extends javax.swing.JDialog implements ActionL
 
             return;
         }
+        // パースキャッシュ削除
+        else if (event.getSource() == this.btnClearCache) {
+            if (this.parseCacheFolder == null) return;
+            int option = JOptionPane.showConfirmDialog(this,
+                    Message.getString("settingprojectdialog.confirmdialog.clearparsecache.message",
+                            this.parseCacheFolder.getAbsolutePath()), //パース結果キャッシュをすべて削除してもよろしいですか？
+                    Message.getString("settingprojectdialog.confirmdialog.clearparsecache.title"), //パースキャッシュ削除
+                    JOptionPane.OK_CANCEL_OPTION);
+            if (option != JOptionPane.OK_OPTION) return;
+            int count = XcodeMLParseCache.clear(this.parseCacheFolder);
+            JOptionPane.showMessageDialog(this,
+                    Message.getString("settingprojectdialog.messagedialog.clearparsecache.message", count), //パース結果キャッシュを削除しました。
+                    Message.getString("settingprojectdialog.confirmdialog.clearparsecache.title"),
+                    JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
         // 閉じる
         else if (event.getSource() == this.btnCancel) {
             this.result = Constant.CANCEL_DIALOG;
@@ -570,6 +601,16 @@ public class SettingProjectDialog extends javax.swing.JDialog implements ActionL
         this.lastAccessFolder = folder;
     }
 
+    /**
+     * パース結果キャッシュフォルダを設定する.<br/>
+     * パースキャッシュ削除ボタンを有効にする.
+     * @param folder		パース結果キャッシュフォルダ
+     */
+    public void setParseCacheFolder(File folder) {
+        this.parseCacheFolder = folder;
+        this.btnClearCache.setEnabled(folder != null);
+    }
+
     /**
      * ダイアログを表示する。
      * @return    ダイアログの閉じた時のボタン種別
@@ -233,6 +233,9 @@ public class LanguageTreePanel extends javax.swing.JPanel implements ITabCompone
 
         // データベースをセットする.
         this.treeExplore.setLanguageDb(this.model.getLanguageDb());
+        // プロファイラコストをセットする.
+        this.treeExplore.setProfilerCostTree(this.model.getProfilerCostTree(),
+                this.model.getCostColorMin(), this.model.getCostColorMax());
         // ツリーモデル
         FilterTreeModel treeModel = this.model.getTreeModel();
         // フィルタ実行
@@ -126,6 +126,8 @@ public class MainFrame extends javax.swing.JFrame implements ITabComponent {
             panelStatusBar = new StatusBarPanel();
             this.getContentPane().add(panelStatusBar, BorderLayout.SOUTH);
             panelStatusBar.setBorder(BorderFactory.createBevelBorder(BevelBorder.LOWERED));
+            // タスクマネージャ
+            panelStatusBar.setTaskScheduler(controller.getTaskScheduler());
         }
         {
             JSplitPane splitHorizontal = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT);
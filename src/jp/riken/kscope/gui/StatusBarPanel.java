@@ -32,6 +32,7 @@ import javax.swing.UIManager;
 import javax.swing.border.BevelBorder;
 
 import jp.riken.kscope.Application;
+import jp.riken.kscope.service.TaskScheduler;
 
 /**
  * ステータスバーパネル
@@ -50,6 +51,8 @@ public class StatusBarPanel extends javax.swing.JPanel implements Observer {
     private JLabel lblMessageStatus;
     /** プログレスバー */
     private JProgressBar progressBar;
+    /** タスクマネージャ */
+    private TaskManagerPanel panelTaskManager;
 
     /**
      * プログレスバー不確定：インターバル時間(ms).<br/>
@@ -76,8 +79,8 @@ public class StatusBarPanel extends javax.swing.JPanel implements Observer {
             GridBagLayout thisLayout = new GridBagLayout();
             thisLayout.rowWeights = new double[] {0.1};
             thisLayout.rowHeights = new int[] {7};
-            thisLayout.columnWeights = new double[] {0.1, 0, 0, 0, 0.1, 0};
-            thisLayout.columnWidths = new int[] {240, 10, 240, 10, 160, 120};
+            thisLayout.columnWeights = new double[] {0.1, 0, 0, 0, 0.1, 0, 0};
+            thisLayout.columnWidths = new int[] {240, 10, 240, 10, 160, 120, 90};
             this.setLayout(thisLayout);
             this.setPreferredSize(new java.awt.Dimension(626, 34));
             {
@@ -114,6 +117,10 @@ public class StatusBarPanel extends javax.swing.JPanel implements Observer {
                 progressBar.setMaximumSize(new Dimension(120, 22));
                 this.add(progressBar, new GridBagConstraints(5, 0, 1, 1, 0.0, 0.0, GridBagConstraints.CENTER, GridBagConstraints.HORIZONTAL, new Insets(5, 5, 5, 5), 0, 0));
             }
+            {
+                panelTaskManager = new TaskManagerPanel();
+                this.add(panelTaskManager, new GridBagConstraints(6, 0, 1, 1, 0.0, 0.0, GridBagConstraints.CENTER, GridBagConstraints.NONE, new Insets(5, 0, 5, 5), 0, 0));
+            }
             {
                 lblMessageStatus = new JLabel();
                 this.add(lblMessageStatus, new GridBagConstraints(4, 0, 1, 1, 0.0, 0.0, GridBagConstraints.EAST, GridBagConstraints.HORIZONTAL, new Insets(0, 5, 0, 5), 0, 0));
@@ -123,6 +130,14 @@ public class StatusBarPanel extends javax.swing.JPanel implements Observer {
         }
     }
 
+    /**
+     * タスクマネージャに表示するタスクスケジューラを設定する
+     * @param scheduler		タスクスケジューラ
+     */
+    public void setTaskScheduler(TaskScheduler scheduler) {
+        this.panelTaskManager.setTaskScheduler(scheduler);
+    }
+
     /**
      * メインメッセージを設定する
      * @param message		メインメッセージ
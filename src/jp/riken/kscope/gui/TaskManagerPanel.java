@@ -0,0 +1,214 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.riken.kscope.gui;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.List;
+
+import javax.swing.JButton;
+import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
+import javax.swing.JPopupMenu;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+import jp.riken.kscope.Message;
+import jp.riken.kscope.service.FutureService;
+import jp.riken.kscope.service.TaskScheduler;
+
+/**
+ * タスクマネージャパネル.<br/>
+ * ステータスバーに実行中のタスク数を表示して、クリックでタスク一覧を表示する.
+ * タスク一覧から選択したタスクをキャンセルする.
+ * @author RIKEN
+ */
+public class TaskManagerPanel extends javax.swing.JPanel implements ActionListener, PropertyChangeListener {
+
+    /** シリアル番号 */
+    private static final long serialVersionUID = 1L;
+    /** 進捗表示の更新間隔(ms) */
+    private final int REFRESH_INTERVAL = 500;
+
+    /** タスクスケジューラ */
+    private TaskScheduler scheduler;
+    /** タスク数ボタン */
+    private JButton btnTasks;
+    /** 進捗表示の更新タイマ:タスク実行中のみ動作する */
+    private Timer timerRefresh;
+
+    /**
+     * コンストラクタ
+     */
+    public TaskManagerPanel() {
+        super();
+        initGUI();
+    }
+
+    /**
+     * GUI初期化を行う
+     */
+    private void initGUI() {
+        this.setLayout(new BorderLayout());
+        btnTasks = new JButton();
+        btnTasks.setPreferredSize(new Dimension(90, 22));
+        btnTasks.setMargin(new java.awt.Insets(0, 2, 0, 2));
+        btnTasks.setFocusable(false);
+        btnTasks.setToolTipText(Message.getString("taskmanagerpanel.tooltip.tasks")); //実行中のタスク
+        btnTasks.addActionListener(this);
+        this.add(btnTasks, BorderLayout.CENTER);
+
+        timerRefresh = new Timer(REFRESH_INTERVAL, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                updateTasks();
+            }
+        });
+        updateTasks();
+    }
+
+    /**
+     * タスクスケジューラを設定する
+     * @param scheduler		タスクスケジューラ
+     */
+    public void setTaskScheduler(TaskScheduler scheduler) {
+        if (this.scheduler != null) {
+            this.scheduler.removePropertyChangeListener(this);
+        }
+        this.scheduler = scheduler;
+        if (this.scheduler != null) {
+            this.scheduler.addPropertyChangeListener(this);
+        }
+        updateTasks();
+    }
+
+    /**
+     * タスク一覧変更通知.<br/>
+     * タスクの登録、終了時にワーカースレッドから呼び出される.
+     * @param event		イベント情報
+     */
+    @Override
+    public void propertyChange(PropertyChangeEvent event) {
+        if (!TaskScheduler.PROPERTY_TASKS.equals(event.getPropertyName())) return;
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                updateTasks();
+            }
+        });
+    }
+
+    /**
+     * タスク数を更新する.<br/>
+     * タスク実行中は進捗表示の更新タイマを開始する.
+     */
+    private void updateTasks() {
+        int count = 0;
+        if (this.scheduler != null) {
+            count = this.scheduler.getTasks().size();
+        }
+        btnTasks.setText(Message.getString("taskmanagerpanel.button.tasks", count)); //タスク: %d
+        btnTasks.setEnabled(count > 0);
+        if (count > 0 && !timerRefresh.isRunning()) {
+            timerRefresh.start();
+        }
+        else if (count <= 0 && timerRefresh.isRunning()) {
+            timerRefresh.stop();
+        }
+    }
+
+    /**
+     * タスク数ボタンのクリックイベント.<br/>
+     * タスク一覧をポップアップメニューで表示する.
+     * @param event		イベント情報
+     */
+    @Override
+    public void actionPerformed(ActionEvent event) {
+        if (this.scheduler == null) return;
+        JPopupMenu menu = new JPopupMenu();
+        List<FutureService<Integer>> tasks = this.scheduler.getTasks();
+        if (tasks.size() <= 0) {
+            JMenuItem item = new JMenuItem(Message.getString("taskmanagerpanel.menu.empty")); //実行中のタスクはありません
+            item.setEnabled(false);
+            menu.add(item);
+        }
+        for (final FutureService<Integer> task : tasks) {
+            JMenuItem item = new JMenuItem(getTaskText(task));
+            item.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    cancelTask(task);
+                }
+            });
+            menu.add(item);
+        }
+        menu.show(btnTasks, 0, -menu.getPreferredSize().height);
+    }
+
+    /**
+     * タスクの表示文字列を取得する.<br/>
+     * タスク名 [優先度] 状態 進捗 進捗メッセージ
+     * @param task		タスク
+     * @return		表示文字列
+     */
+    private String getTaskText(FutureService<Integer> task) {
+        StringBuilder buf = new StringBuilder();
+        buf.append(task.getTaskName());
+        buf.append(" [");
+        buf.append(task.getPriority().getName());
+        buf.append("] ");
+        if (!task.isStarted()) {
+            buf.append(Message.getString("taskmanagerpanel.status.waiting")); //実行待ち
+            return buf.toString();
+        }
+        buf.append(Message.getString("taskmanagerpanel.status.running")); //実行中
+        if (task.getProgressMax() > 0 && task.getProgressValue() >= 0) {
+            buf.append(" ");
+            buf.append(task.getProgressValue());
+            buf.append("/");
+            buf.append(task.getProgressMax());
+        }
+        if (task.getProgressMessage() != null && !task.getProgressMessage().isEmpty()) {
+            buf.append(" ");
+            buf.append(task.getProgressMessage());
+        }
+        return buf.toString();
+    }
+
+    /**
+     * タスクをキャンセルする.
+     * @param task		タスク
+     */
+    private void cancelTask(FutureService<Integer> task) {
+        if (task.isDone()) return;
+        // 確認メッセージを表示する。
+        int option = JOptionPane.showConfirmDialog(this,
+                Message.getString("taskmanagerpanel.confirmdialog.cancel.message", task.getTaskName()), //タスクをキャンセルしますか？
+                Message.getString("taskmanagerpanel.confirmdialog.cancel.title"), //タスクのキャンセル
+                JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.WARNING_MESSAGE);
+        if (option != JOptionPane.OK_OPTION) {
+            return;
+        }
+        task.cancel(true);
+    }
+}
@@ -0,0 +1,516 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.riken.kscope.language;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 引数結合グラフクラス.<br/>
+ * 手続き呼出の実引数と、呼出先手続きの仮引数の結合(キーワード引数を含む)を辺として保持する.
+ * 呼出元から呼出先(トレース:イン)、呼出先から呼出元(トレース:アウト)への結合を、
+ * 引数位置の照合を行わずに取得し、複数階層のトレースを一度に展開する.
+ * 再帰呼出による循環は、到達済みの手続きと変数名の組を再度展開しないことで検出する.<br/>
+ * 手続き呼出は、呼出元手続きの手続呼出しリスト(Procedure#getCalls)内の順番で識別し、
+ * 処理ブロックを読み込んでいない手続きは、手続き呼出の取得時に読み込む.
+ * データベースの解析後に作成し、データベースが変更された場合は破棄して再作成すること.
+ * @author RIKEN
+ */
+public class ArgumentBindingGraph {
+
+    /** 呼出元の結合:{呼出元手続き, 引数結合} */
+    private Map<Procedure, Binding[]> outgoing = new IdentityHashMap<Procedure, Binding[]>();
+    /** 呼出先の結合:{呼出先手続き, 引数結合} */
+    private Map<Procedure, Binding[]> incoming = new IdentityHashMap<Procedure, Binding[]>();
+    /** 空の引数結合配列 */
+    private static final Binding[] EMPTY_BINDINGS = new Binding[0];
+
+    /**
+     * 引数結合クラス.<br/>
+     * 1つの手続き呼出の1つの実引数と、呼出先手続きの仮引数の結合.
+     */
+    public static class Binding {
+        /** 呼出元手続き */
+        private Procedure caller;
+        /** 呼出元手続き内の手続き呼出の順番 */
+        private int callIndex;
+        /** 実引数の順番 */
+        private int argIndex;
+        /** 実引数に含まれる変数名 */
+        private String[] actuals;
+        /** 呼出先手続き */
+        private Procedure callee;
+        /** 仮引数名 */
+        private String dummy;
+        /** 手続き呼出:未取得の場合はnull */
+        private transient ProcedureUsage call;
+
+        /**
+         * コンストラクタ
+         * @param caller		呼出元手続き
+         * @param callIndex		呼出元手続き内の手続き呼出の順番
+         * @param argIndex		実引数の順番
+         * @param actuals		実引数に含まれる変数名
+         * @param callee		呼出先手続き
+         * @param dummy		仮引数名
+         */
+        public Binding(Procedure caller, int callIndex, int argIndex, String[] actuals, Procedure callee, String dummy) {
+            this.caller = caller;
+            this.callIndex = callIndex;
+            this.argIndex = argIndex;
+            this.actuals = actuals;
+            this.callee = callee;
+            this.dummy = dummy;
+        }
+
+        /**
+         * 呼出元手続きを取得する.
+         * @return		呼出元手続き
+         */
+        public Procedure getCaller() {
+            return this.caller;
+        }
+
+        /**
+         * 呼出元手続き内の手続き呼出の順番を取得する.
+         * @return		手続き呼出の順番
+         */
+        public int getCallIndex() {
+            return this.callIndex;
+        }
+
+        /**
+         * 実引数の順番を取得する.
+         * @return		実引数の順番
+         */
+        public int getArgIndex() {
+            return this.argIndex;
+        }
+
+        /**
+         * 実引数に含まれる変数名を取得する.
+         * @return		変数名
+         */
+        public String[] getActuals() {
+            return this.actuals;
+        }
+
+        /**
+         * 呼出先手続きを取得する.
+         * @return		呼出先手続き
+         */
+        public Procedure getCallee() {
+            return this.callee;
+        }
+
+        /**
+         * 仮引数名を取得する.
+         * @return		仮引数名
+         */
+        public String getDummy() {
+            return this.dummy;
+        }
+
+        /**
+         * 手続き呼出を取得する.<br/>
+         * 呼出元手続きの処理ブロックを読み込んでいない場合は読み込む.
+         * @return		手続き呼出:見つからない場合はnull
+         */
+        public ProcedureUsage getCall() {
+            if (this.call == null) {
+                List<ProcedureUsage> calls = getCalls(this.caller);
+                if (this.callIndex < calls.size()) {
+                    this.call = calls.get(this.callIndex);
+                }
+            }
+            return this.call;
+        }
+
+        /**
+         * 実引数に変数が含まれるかチェックする.
+         * @param name		変数名
+         * @return		true=含まれる
+         */
+        public boolean hasActual(String name) {
+            for (String actual : this.actuals) {
+                if (actual.equalsIgnoreCase(name)) return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * トレースクラス.<br/>
+     * トレース開始の結合から到達した結合の経路と、各結合でのトレース対象変数名.
+     */
+    public static class Trace {
+        /** 結合の経路 */
+        private Binding[] bindings;
+        /** 各結合でのトレース対象変数名 */
+        private String[] names;
+
+        /**
+         * コンストラクタ
+         * @param bindings		結合の経路
+         * @param names		各結合でのトレース対象変数名
+         */
+        private Trace(Binding[] bindings, String[] names) {
+            this.bindings = bindings;
+            this.names = names;
+        }
+
+        /**
+         * 経路を延長したトレースを作成する.
+         * @param binding		追加結合
+         * @param name		追加結合でのトレース対象変数名
+         * @return		延長したトレース
+         */
+        private Trace append(Binding binding, String name) {
+            Binding[] path = Arrays.copyOf(this.bindings, this.bindings.length + 1);
+            String[] list = Arrays.copyOf(this.names, this.names.length + 1);
+            path[path.length - 1] = binding;
+            list[list.length - 1] = name;
+            return new Trace(path, list);
+        }
+
+        /**
+         * 結合の経路を取得する.
+         * @return		結合の経路
+         */
+        public Binding[] getBindings() {
+            return this.bindings;
+        }
+
+        /**
+         * 各結合でのトレース対象変数名を取得する.
+         * @return		トレース対象変数名
+         */
+        public String[] getNames() {
+            return this.names;
+        }
+
+        /**
+         * 階層数を取得する.
+         * @return		階層数
+         */
+        public int getDepth() {
+            return this.bindings.length;
+        }
+
+        /**
+         * 到達した結合を取得する.
+         * @return		到達した結合
+         */
+        public Binding getLast() {
+            return this.bindings[this.bindings.length - 1];
+        }
+
+        /**
+         * 到達した結合でのトレース対象変数名を取得する.
+         * @return		トレース対象変数名
+         */
+        public String getName() {
+            return this.names[this.names.length - 1];
+        }
+    }
+
+    /**
+     * コンストラクタ.<br/>
+     * 空のグラフを作成する.データベースファイルからグラフを読み込む場合に使用する.
+     */
+    public ArgumentBindingGraph() {
+    }
+
+    /**
+     * コンストラクタ.<br/>
+     * 解析済みのデータベースからグラフを作成する.
+     * @param program		データベース
+     */
+    public ArgumentBindingGraph(Program program) {
+        Map<String, Module> modules = program.getModules();
+        if (modules == null) return;
+        for (Module module : modules.values()) {
+            for (Procedure child : module.getChildren()) {
+                addProcedure(child);
+            }
+        }
+    }
+
+    /**
+     * 手続きと内部副プログラムの手続き呼出の結合をグラフに追加する.
+     * @param proc		手続き
+     */
+    private void addProcedure(Procedure proc) {
+        List<ProcedureUsage> calls = getCalls(proc);
+        List<Binding> list = new ArrayList<Binding>();
+        for (int i = 0; i < calls.size(); i++) {
+            addCall(list, proc, i, calls.get(i));
+        }
+        putBindings(proc, list);
+        for (Procedure child : proc.getChildren()) {
+            addProcedure(child);
+        }
+    }
+
+    /**
+     * 手続き呼出の実引数と仮引数の結合を作成する.<br/>
+     * キーワード引数はキーワードの仮引数、位置引数は同じ順番の仮引数と結合する.
+     * 変数を含まない実引数は結合しない.
+     * @param list		結合の追加先
+     * @param caller		呼出元手続き
+     * @param index		手続き呼出の順番
+     * @param call		手続き呼出
+     */
+    private void addCall(List<Binding> list, Procedure caller, int index, ProcedureUsage call) {
+        Procedure callee = call.getCallDefinition();
+        if (callee == null || call.isIntrinsic()) return;
+        List<Expression> args = call.getArguments();
+        for (int i = 0; i < args.size(); i++) {
+            Expression arg = args.get(i);
+            Variable var = callee.getArgument(i);
+            if (var == null) continue;
+            String dummy = var.getName();
+            if (arg instanceof KeywordArgument) {
+                dummy = ((KeywordArgument) arg).getKeyword();
+            }
+            Set<String> actuals = new LinkedHashSet<String>();
+            collectActuals(arg, actuals);
+            if (dummy == null || actuals.isEmpty()) continue;
+            Binding binding = new Binding(caller, index, i,
+                    actuals.toArray(new String[actuals.size()]), callee, dummy);
+            binding.call = call;
+            list.add(binding);
+        }
+    }
+
+    /**
+     * 実引数に含まれる変数名を取得する.<br/>
+     * 実引数の変数と、実引数内の関数呼出の実引数の変数を対象とし、変数の添字は対象としない.
+     * @param arg		実引数
+     * @param actuals		変数名の追加先
+     */
+    private void collectActuals(Expression arg, Set<String> actuals) {
+        for (Variable var : arg.getVariables()) {
+            if (var.getName() != null) {
+                actuals.add(var.getName());
+            }
+        }
+        for (ProcedureUsage func : arg.getFuncCalls()) {
+            for (Expression funcArg : func.getArguments()) {
+                collectActuals(funcArg, actuals);
+            }
+        }
+    }
+
+    /**
+     * 手続きの手続呼出しリストを取得する.
+     * @param proc		手続き
+     * @return		手続呼出しリスト
+     */
+    private static List<ProcedureUsage> getCalls(Procedure proc) {
+        if (proc.getBody() == null) return Collections.emptyList();
+        return proc.getCalls();
+    }
+
+    /**
+     * 呼出元手続きの結合を設定する.<br/>
+     * データベースファイルから読み込んだ結合を設定する.
+     * 呼出先手続きの結合にも追加する.
+     * @param caller		呼出元手続き
+     * @param list		結合
+     */
+    public void putBindings(Procedure caller, List<Binding> list) {
+        if (caller == null || list == null || list.isEmpty()) return;
+        this.outgoing.put(caller, list.toArray(new Binding[list.size()]));
+        for (Binding binding : list) {
+            Binding[] bindings = this.incoming.get(binding.callee);
+            if (bindings == null) {
+                bindings = new Binding[] {binding};
+            } else {
+                bindings = Arrays.copyOf(bindings, bindings.length + 1);
+                bindings[bindings.length - 1] = binding;
+            }
+            this.incoming.put(binding.callee, bindings);
+        }
+    }
+
+    /**
+     * 結合を持つ呼出元手続きを取得する.
+     * @return		呼出元手続き
+     */
+    public Set<Procedure> getCallers() {
+        return Collections.unmodifiableSet(this.outgoing.keySet());
+    }
+
+    /**
+     * 呼出元手続きの結合を取得する.
+     * @param caller		呼出元手続き
+     * @return		結合
+     */
+    public List<Binding> getBindings(Procedure caller) {
+        Binding[] bindings = this.outgoing.get(caller);
+        if (bindings == null) return Collections.emptyList();
+        return Collections.unmodifiableList(Arrays.asList(bindings));
+    }
+
+    /**
+     * 手続き呼出の結合を取得する.
+     * @param caller		呼出元手続き
+     * @param call		手続き呼出
+     * @return		結合
+     */
+    public List<Binding> getBindings(Procedure caller, ProcedureUsage call) {
+        List<Binding> list = new ArrayList<Binding>();
+        if (caller == null || call == null) return list;
+        Binding[] bindings = this.outgoing.get(caller);
+        if (bindings == null) return list;
+        for (Binding binding : bindings) {
+            if (binding.getCall() == call) {
+                list.add(binding);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 呼出元手続きで変数を実引数とする結合を取得する.
+     * @param caller		呼出元手続き
+     * @param actual		実引数の変数名
+     * @return		結合
+     */
+    public List<Binding> getCalleeBindings(Procedure caller, String actual) {
+        List<Binding> list = new ArrayList<Binding>();
+        Binding[] bindings = this.outgoing.get(caller);
+        if (bindings == null) return list;
+        for (Binding binding : bindings) {
+            if (binding.hasActual(actual)) {
+                list.add(binding);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 呼出先手続きの仮引数に結合する結合を取得する.<br/>
+     * 仮引数ではない変数名の場合は空のリストを返す.
+     * @param callee		呼出先手続き
+     * @param dummy		仮引数名
+     * @return		結合
+     */
+    public List<Binding> getCallerBindings(Procedure callee, String dummy) {
+        List<Binding> list = new ArrayList<Binding>();
+        if (callee == null || callee.getNumOfDummyArgument(dummy) < 0) return list;
+        Binding[] bindings = this.incoming.get(callee);
+        if (bindings == null) return list;
+        for (Binding binding : bindings) {
+            if (binding.dummy.equalsIgnoreCase(dummy)) {
+                list.add(binding);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 呼出先方向(トレース:イン)の全階層のトレースを取得する.<br/>
+     * 開始の結合の仮引数から、呼出先手続きでその仮引数を実引数とする結合を順に辿る.
+     * トレースは階層の浅い順とし、到達済みの手続きと仮引数の組は再度展開しない.
+     * @param starts		開始の結合
+     * @return		トレースリスト
+     */
+    public List<Trace> traceIn(List<Binding> starts) {
+        List<Trace> traces = new ArrayList<Trace>();
+        Map<Procedure, Set<String>> visited = new IdentityHashMap<Procedure, Set<String>>();
+        LinkedList<Trace> queue = new LinkedList<Trace>();
+        Trace root = new Trace(EMPTY_BINDINGS, new String[0]);
+        for (Binding binding : starts) {
+            if (visit(visited, binding.callee, binding.dummy)) {
+                queue.add(root.append(binding, binding.dummy));
+            }
+        }
+        while (!queue.isEmpty()) {
+            Trace trace = queue.removeFirst();
+            traces.add(trace);
+            Binding last = trace.getLast();
+            for (Binding next : getCalleeBindings(last.callee, last.dummy)) {
+                if (visit(visited, next.callee, next.dummy)) {
+                    queue.add(trace.append(next, next.dummy));
+                }
+            }
+        }
+        return traces;
+    }
+
+    /**
+     * 呼出元方向(トレース:アウト)の全階層のトレースを取得する.<br/>
+     * 手続きの仮引数から、その仮引数に結合する呼出元の実引数の変数を順に辿る.
+     * トレースは階層の浅い順とし、到達済みの手続きと変数名の組は再度展開しない.
+     * @param callee		手続き
+     * @param dummy		仮引数名
+     * @return		トレースリスト
+     */
+    public List<Trace> traceOut(Procedure callee, String dummy) {
+        List<Trace> traces = new ArrayList<Trace>();
+        Map<Procedure, Set<String>> visited = new IdentityHashMap<Procedure, Set<String>>();
+        visit(visited, callee, dummy);
+        LinkedList<Trace> queue = new LinkedList<Trace>();
+        queue.add(new Trace(EMPTY_BINDINGS, new String[0]));
+        while (!queue.isEmpty()) {
+            Trace trace = queue.removeFirst();
+            Procedure proc = callee;
+            String name = dummy;
+            if (trace.getDepth() > 0) {
+                traces.add(trace);
+                proc = trace.getLast().caller;
+                name = trace.getName();
+            }
+            for (Binding next : getCallerBindings(proc, name)) {
+                for (String actual : next.actuals) {
+                    if (visit(visited, next.caller, actual)) {
+                        queue.add(trace.append(next, actual));
+                    }
+                }
+            }
+        }
+        return traces;
+    }
+
+    /**
+     * 手続きと変数名の組を到達済みとする.<br/>
+     * 再帰呼出による循環を検出する.
+     * @param visited		到達済みの組:{手続き, 変数名(小文字)}
+     * @param proc		手続き
+     * @param name		変数名
+     * @return		true=未到達であった
+     */
+    private static boolean visit(Map<Procedure, Set<String>> visited, Procedure proc, String name) {
+        Set<String> names = visited.get(proc);
+        if (names == null) {
+            names = new HashSet<String>();
+            visited.put(proc, names);
+        }
+        return names.add(name.toLowerCase());
+    }
+}
@@ -50,6 +50,10 @@ public abstract class Block implements Serializable, IInformation, IBlock {
     /** 付加情報 */
     // TODO 常にnullで初期化するのはやめるべきか要検討
     private TextInfo information = null;
+    /** 全ての変数のキャッシュ:未作成はnull */
+    private transient volatile Variable[] allVariables;
+    /** キャッシュ世代 */
+    private transient volatile int cacheGeneration;
 
     /**
      * コンストラクタ。
@@ -179,6 +183,7 @@ public abstract class Block implements Serializable, IInformation, IBlock {
     protected void add_child(Block child) {
         child.set_mother(this);
         children.add(child);
+        this.allVariables = null;
     }
 
     // ++++++++++++++++++++++++++++++++++++++++++++
@@ -714,10 +719,28 @@ public abstract class Block implements Serializable, IInformation, IBlock {
 	}
 
 	/**
-	 * 変数リストを取得する.
+	 * 変数リストを取得する.<br/>
+	 * 解析後の変数リストはキャッシュし、変更不可のセットとして返す.
 	 */
 	@Override
 	public Set<Variable> getAllVariables() {
+		int generation = FlattenedSetCache.getGeneration();
+		Variable[] cache = this.allVariables;
+		if (cache == null || this.cacheGeneration != generation) {
+			Set<Variable> list = collectAllVariables();
+			cache = (list == null) ? FlattenedSetCache.EMPTY_VARIABLES : list.toArray(new Variable[list.size()]);
+			this.cacheGeneration = generation;
+			this.allVariables = cache;
+		}
+		if (cache.length <= 0) return null;
+		return FlattenedSetCache.asSet(cache);
+	}
+
+	/**
+	 * 子ブロックの変数リストを作成する.
+	 * @return		変数リスト:無い場合はnull
+	 */
+	private Set<Variable> collectAllVariables() {
 		Set<Variable> list = new HashSet<Variable>();
         ArrayList<Block> blocks = this.getChildren();
         for (Block block : blocks) {
@@ -730,5 +753,17 @@ public abstract class Block implements Serializable, IInformation, IBlock {
 		return list;
 	}
 
+	/**
+	 * ブロックの文字列、子ブロックリストを圧縮する.
+	 * @param compactor		データベース圧縮
+	 */
+	void compact(LanguageCompactor compactor) {
+		compactor.compact(this.start);
+		compactor.compact(this.end);
+		compactor.trim(this.children);
+		for (Block child : this.children) {
+			child.compact(compactor);
+		}
+	}
 
 }
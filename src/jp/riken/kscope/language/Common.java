@@ -230,4 +230,20 @@ public class Common extends jp.riken.kscope.language.Block {
 	public Set<Variable> getAllVariables() {
 		return null;
 	}
+
+    /**
+     * COMMON文の共通ブロック名、変数リストを圧縮する.
+     * @param compactor		データベース圧縮
+     */
+    @Override
+    void compact(LanguageCompactor compactor) {
+        super.compact(compactor);
+        this.name = compactor.intern(this.name);
+        if (this.variables != null) {
+            this.variables = compactor.compactList(this.variables);
+            for (Variable var : this.variables) {
+                var.compact(compactor);
+            }
+        }
+    }
 }
@@ -98,4 +98,16 @@ public class Condition extends Block {
 
 		return true;
     }
+
+    /**
+     * 条件式を圧縮する.
+     * @param compactor		データベース圧縮
+     */
+    @Override
+    void compact(LanguageCompactor compactor) {
+        super.compact(compactor);
+        if (this.expression != null) {
+            this.expression.compact(compactor);
+        }
+    }
 }
@@ -254,4 +254,25 @@ public class Data extends jp.riken.kscope.language.Block {
  	public Set<Variable> getAllVariables() {
  		return null;
  	}
+
+    /**
+     * DATA文の変数リスト、値リストを圧縮する.
+     * @param compactor		データベース圧縮
+     */
+    @Override
+    void compact(LanguageCompactor compactor) {
+        super.compact(compactor);
+        if (this.variables != null) {
+            this.variables = compactor.compactList(this.variables);
+            for (Variable var : this.variables) {
+                var.compact(compactor);
+            }
+        }
+        if (this.values != null) {
+            this.values = compactor.compactList(this.values);
+            for (Expression value : this.values) {
+                value.compact(compactor);
+            }
+        }
+    }
 }
@@ -225,4 +225,21 @@ public class DynamicAllocation extends jp.riken.kscope.language.Block {
     	 }
     	 return list.toArray(new IInformation[0]);
      }
+
+    /**
+     * ALLOCATE文の対象変数、エラー変数を圧縮する.
+     * @param compactor		データベース圧縮
+     */
+    @Override
+    void compact(LanguageCompactor compactor) {
+        super.compact(compactor);
+        if (this.targets != null) {
+            for (Variable target : this.targets.keySet()) {
+                target.compact(compactor);
+            }
+        }
+        if (this.error != null) {
+            this.error.compact(compactor);
+        }
+    }
 }
@@ -235,6 +235,22 @@ public class DynamicDeallocation extends jp.riken.kscope.language.Block {
     	 }
     	 return list.toArray(new IInformation[0]);
      }
-}
-
 
+    /**
+     * DEALLOCATE文の対象変数、エラー変数を圧縮する.
+     * @param compactor		データベース圧縮
+     */
+    @Override
+    void compact(LanguageCompactor compactor) {
+        super.compact(compactor);
+        if (this.targets != null) {
+            this.targets = compactor.compactList(this.targets);
+            for (Variable target : this.targets) {
+                target.compact(compactor);
+            }
+        }
+        if (this.error != null) {
+            this.error.compact(compactor);
+        }
+    }
+}
@@ -185,4 +185,19 @@ public class Equivalence extends jp.riken.kscope.language.Block {
  	public Set<Variable> getAllVariables() {
  		return null;
  	}
+
+    /**
+     * EQUIVALENCE文の変数リストを圧縮する.
+     * @param compactor		データベース圧縮
+     */
+    @Override
+    void compact(LanguageCompactor compactor) {
+        super.compact(compactor);
+        if (this.variables != null) {
+            this.variables = compactor.compactList(this.variables);
+            for (Variable var : this.variables) {
+                var.compact(compactor);
+            }
+        }
+    }
 }
@@ -20,6 +20,7 @@ package jp.riken.kscope.language;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -56,6 +57,12 @@ public class Expression implements Serializable {
     private int powCount = 0;
     /** 変数の親ブロック : 変数が属する代入文(Substitution),構文 */
     private IBlock parentStatement;
+    /** 全ての変数のキャッシュ:未作成はnull */
+    private transient volatile Variable[] allVariables;
+    /** 全ての手続呼出のキャッシュ:未作成はnull */
+    private transient volatile ProcedureUsage[] allFunctions;
+    /** キャッシュ世代 */
+    private transient volatile int cacheGeneration;
 
     /**
      * コンストラクタ.
@@ -99,13 +106,19 @@ public class Expression implements Serializable {
      */
     public void setVariables(List<Variable> vars) {
         this.variables = vars;
+        clearCache();
     }
     /**
      * 式に現れる変数を追加する。
      * @param var 変数
      */
     public void addVariable(Variable var) {
+        if (variables == Collections.<Variable>emptyList()) {
+            // 圧縮により共有の空リストに置き換えられている
+            variables = new ArrayList<Variable>();
+        }
         variables.add(var);
+        clearCache();
     }
 
     /**
@@ -118,11 +131,31 @@ public class Expression implements Serializable {
     }
 
     /**
-     * 式に含まれる全ての変数のセットを返す。変数の添字・手続呼出の添字も対象とする。 再帰呼出。
+     * 式に含まれる全ての変数のセットを返す。変数の添字・手続呼出の添字も対象とする。 再帰呼出。<br/>
+     * 解析後のセットはキャッシュし、変更不可のセットとして返す。
      *
      * @return 変数のセット。無ければ空のセットを返す。
      */
     public Set<Variable> getAllVariables() {
+        int generation = FlattenedSetCache.getGeneration();
+        Variable[] cache = this.allVariables;
+        if (cache == null || this.cacheGeneration != generation) {
+            Set<Variable> vars = collectAllVariables();
+            cache = vars.isEmpty() ? FlattenedSetCache.EMPTY_VARIABLES : vars.toArray(new Variable[vars.size()]);
+            if (this.cacheGeneration != generation) {
+                this.allFunctions = null;
+                this.cacheGeneration = generation;
+            }
+            this.allVariables = cache;
+        }
+        return FlattenedSetCache.asSet(cache);
+    }
+
+    /**
+     * 式に含まれる全ての変数のセットを作成する.
+     * @return 変数のセット。無ければ空のセットを返す。
+     */
+    private Set<Variable> collectAllVariables() {
         Set<Variable> vars = new HashSet<Variable>(this.variables);
         for (Variable var: this.variables) {
             vars.addAll(var.getAllVariables());
@@ -139,11 +172,31 @@ public class Expression implements Serializable {
         return vars;
     }
     /**
-     * 式に含まれる全ての手続呼出のセットを返す。変数および手続呼出の添字も対象とする。 再帰呼び出し。
+     * 式に含まれる全ての手続呼出のセットを返す。変数および手続呼出の添字も対象とする。 再帰呼び出し。<br/>
+     * 解析後のセットはキャッシュし、変更不可のセットとして返す。
      *
      * @return 手続呼出のセット。無ければ空のセットを返す。
      */
     public Set<ProcedureUsage> getAllFunctions() {
+        int generation = FlattenedSetCache.getGeneration();
+        ProcedureUsage[] cache = this.allFunctions;
+        if (cache == null || this.cacheGeneration != generation) {
+            Set<ProcedureUsage> pus = collectAllFunctions();
+            cache = pus.isEmpty() ? FlattenedSetCache.EMPTY_FUNCTIONS : pus.toArray(new ProcedureUsage[pus.size()]);
+            if (this.cacheGeneration != generation) {
+                this.allVariables = null;
+                this.cacheGeneration = generation;
+            }
+            this.allFunctions = cache;
+        }
+        return FlattenedSetCache.asSet(cache);
+    }
+
+    /**
+     * 式に含まれる全ての手続呼出のセットを作成する.
+     * @return 手続呼出のセット。無ければ空のセットを返す。
+     */
+    private Set<ProcedureUsage> collectAllFunctions() {
         Set<ProcedureUsage> pus = new HashSet<ProcedureUsage>();
         for (Variable var: this.variables) {
         	Set<ProcedureUsage> list = var.getAllFunctions();
@@ -167,13 +220,28 @@ public class Expression implements Serializable {
      */
     public void setFuncCalls(List<ProcedureUsage> fCalls) {
         this.funcCalls = fCalls;
+        clearCache();
     }
     /**
      * 式に現れる関数呼び出しを追加する。
      * @param call 関数呼び出し
      */
     public void addFuncCall(ProcedureUsage call) {
+        if (funcCalls == Collections.<ProcedureUsage>emptyList()) {
+            // 圧縮により共有の空リストに置き換えられている
+            funcCalls = new ArrayList<ProcedureUsage>();
+        }
         funcCalls.add(call);
+        clearCache();
+    }
+
+    /**
+     * 全ての変数、手続呼出のキャッシュをクリアする.<br/>
+     * 変数、手続呼出の添字の変更はクリアしない為、データベースの解析時に全てのキャッシュを無効とする.
+     */
+    private void clearCache() {
+        this.allVariables = null;
+        this.allFunctions = null;
     }
 
     /**
@@ -569,4 +637,23 @@ public class Expression implements Serializable {
         return count;
     }
 
+    /**
+     * 式の文字列表現、変数リスト、関数呼出リストを圧縮する.
+     * @param compactor		データベース圧縮
+     */
+    void compact(LanguageCompactor compactor) {
+        this.line = compactor.intern(this.line);
+        if (this.variables != null) {
+            this.variables = compactor.compactList(this.variables);
+            for (Variable var : this.variables) {
+                var.compact(compactor);
+            }
+        }
+        if (this.funcCalls != null) {
+            this.funcCalls = compactor.compactList(this.funcCalls);
+            for (ProcedureUsage call : this.funcCalls) {
+                call.compact(compactor);
+            }
+        }
+    }
 }
@@ -0,0 +1,125 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.riken.kscope.language;
+
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 展開セットキャッシュクラス.<br/>
+ * 式、ブロック、手続きが再帰的に収集する変数、手続呼出のセットを、配列として各要素に保持する為の世代を管理する.
+ * キャッシュは取得時の世代でのみ有効とする.
+ * データベースの解析、再解析の開始時に世代を更新し、パース中に作成したキャッシュを無効とする.
+ * 解析後のデータベースは変更しない(再構築はコピーしたデータベースで行う)為、解析後のキャッシュは再解析まで有効である.
+ * キャッシュはtransientであり、データベースファイル、スナップショットには出力しない.
+ * @author RIKEN
+ */
+public final class FlattenedSetCache {
+
+    /** 空の変数配列 */
+    static final Variable[] EMPTY_VARIABLES = new Variable[0];
+    /** 空の手続呼出配列 */
+    static final ProcedureUsage[] EMPTY_FUNCTIONS = new ProcedureUsage[0];
+
+    /** キャッシュ世代 */
+    private static final AtomicInteger generation = new AtomicInteger(1);
+
+    /**
+     * コンストラクタ
+     */
+    private FlattenedSetCache() {
+    }
+
+    /**
+     * 現在のキャッシュ世代を取得する.
+     * @return		キャッシュ世代
+     */
+    static int getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * 全てのキャッシュを無効にする.<br/>
+     * データベースの解析、再解析の開始時に呼び出す.
+     * 無効にしたキャッシュは、次の取得時に再作成する.
+     */
+    public static void invalidate() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * 配列を変更不可のセットとして取得する.<br/>
+     * 配列は重複要素を含まないこと.
+     * @param items		要素配列
+     * @return		変更不可のセット
+     */
+    static <T> Set<T> asSet(T[] items) {
+        if (items.length == 0) return Collections.emptySet();
+        return new ArraySet<T>(items);
+    }
+
+    /**
+     * 配列による変更不可のセット.<br/>
+     * 呼出元は要素の列挙のみを行う為、包含判定は配列の線形探索とする.
+     */
+    private static class ArraySet<T> extends AbstractSet<T> {
+        /** 要素配列 */
+        private final T[] items;
+
+        /**
+         * コンストラクタ
+         * @param items		要素配列
+         */
+        private ArraySet(T[] items) {
+            this.items = items;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new Iterator<T>() {
+                private int index = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return this.index < items.length;
+                }
+
+                @Override
+                public T next() {
+                    if (this.index >= items.length) {
+                        throw new NoSuchElementException();
+                    }
+                    return items[this.index++];
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return this.items.length;
+        }
+    }
+}
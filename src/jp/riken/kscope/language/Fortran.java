@@ -47,8 +47,12 @@ public final class Fortran extends Program {
     private ArrayList<SourceFile> sourceFileList = new ArrayList<SourceFile>();
     /** 宣言探索のための作業用変数 */
     private transient Map<String, Procedure> knownProcedure = new HashMap<String, Procedure>();
+    /** 宣言探索のための作業用変数:総称名に一致したINTERFACE文の数 */
+    private transient int genericCount = 0;
     /** キャンセルフラグ */
     private transient boolean cancel = false;
+    /** 構造解析再実行で公開中のデータベースと共有するプログラム単位の対応付け:null=共有しない */
+    private transient ISnapshotLinker snapshotLinker;
 
 
     /**
@@ -179,6 +183,13 @@ public final class Fortran extends Program {
      *            GUI制御用クラス
      */
     public void analyseDB(IAnalyseParser parser) {
+        // シンボル索引、行番号索引を作成し直す
+        this.clearSymbolIndex();
+        this.clearLineIndex();
+        this.clearReferenceIndex();
+        this.clearArgumentBindingGraph();
+        // パース中に作成した変数、手続呼出のセットのキャッシュを無効にする
+        FlattenedSetCache.invalidate();
         moduleName = get_module_name();
         parser.firePropertyChange("status_message", null, "Analyse calls");
         parser.firePropertyChange("status_sub_message", null, "parsing...");
@@ -191,6 +202,12 @@ public final class Fortran extends Program {
                     String.valueOf(i));
             parser.firePropertyChange("prograss_value", null, i);
         }
+        // 行番号索引を作成する
+        this.getLineIndex();
+        // 変数の参照・定義索引を作成する
+        this.getReferenceIndex();
+        // 引数結合グラフを作成する
+        this.getArgumentBindingGraph();
         parser.firePropertyChange("status_sub_message", null, "done");
         parser.firePropertyChange("prograss_clear", null, null);
     }
@@ -200,6 +217,13 @@ public final class Fortran extends Program {
      */
     public void analyseDB() {
         Application.status.setMessageStatus("analysys database...");
+        // シンボル索引、行番号索引を作成し直す
+        this.clearSymbolIndex();
+        this.clearLineIndex();
+        this.clearReferenceIndex();
+        this.clearArgumentBindingGraph();
+        // パース中に作成した変数、手続呼出のセットのキャッシュを無効にする
+        FlattenedSetCache.invalidate();
         moduleName = this.get_module_name();
         for (int i = 0; i < moduleName.length; i++) {
         	// キャンセルチェック
@@ -209,6 +233,12 @@ public final class Fortran extends Program {
             Collection<Procedure> subs = current_module.getChildren();
             analyseDBInUnit(subs);
         }
+        // 行番号索引を作成する
+        this.getLineIndex();
+        // 変数の参照・定義索引を作成する
+        this.getReferenceIndex();
+        // 引数結合グラフを作成する
+        this.getArgumentBindingGraph();
         Application.status.setMessageStatus("analysys database...done");
     }
 
@@ -219,42 +249,172 @@ public final class Fortran extends Program {
      *            手続きの配列
      */
     private void analyseDBInUnit(Collection<Procedure> subs) {
-        if (this.knownProcedure == null) {
-            this.knownProcedure = new HashMap<String, Procedure>();
-        }
         for (Procedure sub : subs) {
         	// キャンセルチェック
         	if (isCancel()) break;
-            List<ProcedureUsage> calls = sub.getCalls();
-            this.knownProcedure.clear();
-            for (ProcedureUsage call:calls) {
-                if (call.isIntrinsic()) {
-                    // TODO INTRINSIC関数に対する処理。現状では不要だが何らかの扱いも可能だと思われる
-                } else {
-                    this.searchCallDeclaration(sub, call);
-                }
-            }
-            Set<String> defSet = sub.getVariables().keySet();
-            Set<String> newSet = new HashSet<String>(sub.getVariableMap().keySet());
-            newSet.addAll(defSet);
-            for (String varName : newSet) {
-                searchVariableDefinition(sub, varName);
-            }
+            analyseProcedure(sub);
             if (sub.getChildren().size() > 0) {
                 analyseDBInUnit(sub.getChildren());
             }
+        }
+    }
+
+    /**
+     * 手続きについて、宣言と呼び出しを対応付ける。<br/>
+     * 内部副プログラムは対象としない。
+     * 処理ブロックを遅延読込した手続きは、読込時に本メソッドにより対応付けを行う。
+     * 遅延読込は任意のスレッドから行われる為、作業用変数、呼出元、参照元の更新を本インスタンスで排他する。
+     *
+     * @param sub
+     *            手続き
+     */
+    public synchronized void analyseProcedure(Procedure sub) {
+        if (this.knownProcedure == null) {
+            this.knownProcedure = new HashMap<String, Procedure>();
+        }
+        List<ProcedureUsage> calls = sub.getCalls();
+        this.knownProcedure.clear();
+        for (ProcedureUsage call:calls) {
+            if (call.isIntrinsic()) {
+                // TODO INTRINSIC関数に対する処理。現状では不要だが何らかの扱いも可能だと思われる
+            } else {
+                this.searchCallDeclaration(sub, call);
+            }
+        }
+        Set<String> defSet = sub.getVariables().keySet();
+        Set<String> newSet = new HashSet<String>(sub.getVariableMap().keySet());
+        newSet.addAll(defSet);
+        for (String varName : newSet) {
+            searchVariableDefinition(sub, varName);
+        }
+
+        // add at 2013/03/01 by @hira
+        // 変数に変数定義をセットする
+		Set<Variable> vars = sub.getAllVariables();
+		if (vars != null) {
+            for (Variable var : vars) {
+            	String varname = var.getName();
+                searchVariableDefinition(sub, varname);
+            }
+		}
+     	sub.setVariableDefinitions();
+    }
+
+    /**
+     * 指定された手続きについて、宣言と呼び出しを対応付け直す。<br/>
+     * 更新、削除されたファイルの影響を受ける手続きのみを再解析する場合に使用する。
+     * 削除されたプログラム単位と再解析する手続きの対応付けを解除してから、手続きを解析する。
+     *
+     * @param removes
+     *            削除されたプログラム単位
+     * @param subs
+     *            再解析する手続き(内部副プログラムを含む)
+     */
+    public void reanalyseProcedures(Collection<ProgramUnit> removes, Collection<Procedure> subs) {
+        // シンボル索引、行番号索引を作成し直す
+        this.clearSymbolIndex();
+        this.clearLineIndex();
+        this.clearReferenceIndex();
+        this.clearArgumentBindingGraph();
+        // パース中に作成した変数、手続呼出のセットのキャッシュを無効にする
+        FlattenedSetCache.invalidate();
+
+        // 削除されたプログラム単位の対応付けを解除する
+        Set<ProgramUnit> removeProcs = new HashSet<ProgramUnit>();
+        if (removes != null) {
+            for (ProgramUnit unit : removes) {
+                clearDefinitionsInUnit(unit, removeProcs);
+            }
+        }
+        for (Procedure sub : subs) {
+            clearDefinitions(sub);
+            // 削除された手続きを指すmodule procedure文の対応付けを解除する
+            clearInterfaceDeclarations(sub, removeProcs);
+            clearInterfaceDeclarations(sub.get_mother(), removeProcs);
+        }
+
+        for (Procedure sub : subs) {
+            // キャンセルチェック
+            if (isCancel()) break;
+            analyseProcedure(sub);
+        }
+        // 行番号索引を作成する
+        this.getLineIndex();
+        // 構造解析再実行では入替後に作成する
+        if (this.snapshotLinker != null) return;
+        // 変数の参照・定義索引を作成する
+        this.getReferenceIndex();
+        // 引数結合グラフを作成する
+        this.getArgumentBindingGraph();
+    }
+
+    /**
+     * プログラム単位と内部副プログラムの宣言と呼び出しの対応付けを解除する。
+     *
+     * @param unit
+     *            プログラム単位
+     * @param procs
+     *            解除した手続きの追加先
+     */
+    private void clearDefinitionsInUnit(ProgramUnit unit, Set<ProgramUnit> procs) {
+        if (unit instanceof Procedure) {
+            clearDefinitions((Procedure) unit);
+            procs.add(unit);
+        }
+        for (Procedure child : unit.getChildren()) {
+            clearDefinitionsInUnit(child, procs);
+        }
+    }
 
-            // add at 2013/03/01 by @hira
-            // 変数に変数定義をセットする
-    		Set<Variable> vars = sub.getAllVariables();
-    		if (vars != null) {
-	            for (Variable var : vars) {
-	            	String varname = var.getName();
-	                searchVariableDefinition(sub, varname);
-	            }
-    		}
-         	sub.setVariableDefinitions();
+    /**
+     * 手続きの宣言と呼び出しの対応付けを解除する。<br/>
+     * 呼出先の手続き、USE文の参照先の変数宣言から手続きへの参照も削除する。
+     * 公開中のデータベースと共有する手続き(削除されたプログラム単位)は、呼出先、参照先からの参照のみを削除する。
+     *
+     * @param sub
+     *            手続き
+     */
+    private void clearDefinitions(Procedure sub) {
+        boolean shared = (this.snapshotLinker != null && this.snapshotLinker.isShared(sub));
+        // 未読込の手続きは対応付けられていない
+        if (shared && !sub.isBodyLoaded()) return;
+        for (ProcedureUsage call : sub.getCalls()) {
+            Procedure callDefinition = call.getCallDefinition();
+            if (callDefinition != null) {
+                this.removeCallMember(callDefinition, call);
+                if (!shared) {
+                    call.setCallDefinition(null);
+                }
+            }
+        }
+        for (Map.Entry<String, VariableDefinition> entry : sub.getVariableMap().entrySet()) {
+            if (entry.getValue() != null) {
+                this.removeReferMember(entry.getValue(), sub);
+                if (!shared) {
+                    entry.setValue(null);
+                }
+            }
+        }
+    }
 
+    /**
+     * 削除された手続きを指すmodule procedure文の対応付けを解除する。
+     *
+     * @param unit
+     *            interface文を持つプログラム単位
+     * @param removes
+     *            削除された手続き
+     */
+    private void clearInterfaceDeclarations(ProgramUnit unit, Set<ProgramUnit> removes) {
+        if (unit == null || removes.isEmpty()) return;
+        for (Procedures generic : unit.getInterfaceList()) {
+            for (IProcedureItem item : generic.getProcedures()) {
+                if (!(item instanceof ProcedureWithNameOnly)) continue;
+                ProcedureWithNameOnly modProc = (ProcedureWithNameOnly) item;
+                if (removes.contains(modProc.getDeclaration())) {
+                    this.setDeclaration(modProc, unit, null);
+                }
+            }
         }
     }
 
@@ -277,9 +437,10 @@ public final class Fortran extends Program {
 
         // 定義先が既知かチェック
         if (this.knownProcedure.containsKey(callName)) {
-            call.setCallDefinition(this.knownProcedure.get(callName));
+            this.setCallDefinition(call, this.knownProcedure.get(callName));
             return;
         }
+        SymbolIndex index = this.getSymbolIndex();
 
         // 親プログラム単位に対象を移しながら探索する
         String changeName = callName;
@@ -293,15 +454,11 @@ public final class Fortran extends Program {
                 current = me; // interface文が見つかったので、新たな名前で手続きを探索し直す
             }
             // currentの内部副プログラムを探す
-            if (current.getChildren().size() > 0) {
-                Collection<Procedure> children = current.getChildren();
-                for (Procedure child: children) {
-                    if (child.get_name().equalsIgnoreCase(callName)) {
-                        knownProcedure.put(callName, child);
-                        call.setCallDefinition(child);
-                        return;
-                    }
-                }
+            Procedure child = index.getChild(current, callName);
+            if (child != null) {
+                knownProcedure.put(callName, child);
+                this.setCallDefinition(call, child);
+                return;
             }
 
             // currentに対してUse文の探索を実行する。
@@ -318,13 +475,10 @@ public final class Fortran extends Program {
         }
 
         // NO_MODULEにあるサブルーチンを探索
-        Procedure[] subs = module("NO_MODULE").get_procedures();
-        for (int i = 0; i < subs.length; i++) {
-            if (subs[i].get_name().equalsIgnoreCase(callName)) {
-                knownProcedure.put(callName, subs[i]);
-                call.setCallDefinition(subs[i]);
-                return;
-            }
+        Procedure external = index.getChild(module("NO_MODULE"), callName);
+        if (external != null) {
+            knownProcedure.put(callName, external);
+            this.setCallDefinition(call, external);
         }
     }
 
@@ -338,46 +492,49 @@ public final class Fortran extends Program {
             ProcedureUsage call) {
         String callName = call.getCallName();
         List<Procedures> interfaceList = pu.getInterfaceList();
-        for (Procedures generic: interfaceList) {
-            // 無名interfaceのスキップ
-            if (generic.getName() != null) {
-                if (generic.getName().equalsIgnoreCase(callName)) {
-                    Set<IProcedureItem> items = generic.getProcedures();
-                    // module procedure文の宣言対応を探索する
-                    Procedure declaration = null;
-                    for (IProcedureItem item: items) {
-                        if (item instanceof ProcedureWithNameOnly) {
-                            // add at 2013/02/01 by @hira
-                            ProcedureWithNameOnly modProc = (ProcedureWithNameOnly) item;
-                            if (modProc.getDeclaration() == null) {
-                                String modProcName = modProc.getName();
-                                modProc.setDeclaration(this.searchModuleProcedureDeclaration(modProcName, pu));
-                                // 対応した手続の仮引数だけ宣言を探索する
-                                Variable[] args = modProc.getDeclaration().get_args();
-                                for (int i = 0; i < args.length; i++) {
-                                    this.searchVariableDefinition(modProc.getDeclaration(), args[i].getName());
-                                }
-                            }
-                            // add at 2013/02/01 by @hira
-                            if (items.size() == 1) {
-                            	declaration = modProc.getDeclaration();
-                            }
-                            else {
-                            	if (declaration == null) {
-                            		declaration = modProc.getDeclaration();
-                            	}
-                            }
+        SymbolIndex index = this.getSymbolIndex();
+        // 総称名が一致するinterfaceを索引から順に取得する(無名interfaceは索引に含まない)
+        int pos = index.getGenericIndex(pu, callName, 0);
+        while (pos >= 0) {
+            Procedures generic = interfaceList.get(pos);
+            this.genericCount++;
+            Set<IProcedureItem> items = generic.getProcedures();
+            // module procedure文の宣言対応を探索する
+            Procedure declaration = null;
+            for (IProcedureItem item: items) {
+                if (item instanceof ProcedureWithNameOnly) {
+                    // add at 2013/02/01 by @hira
+                    ProcedureWithNameOnly modProc = (ProcedureWithNameOnly) item;
+                    Procedure decl = modProc.getDeclaration();
+                    if (decl == null) {
+                        String modProcName = modProc.getName();
+                        decl = this.searchModuleProcedureDeclaration(modProcName, pu);
+                        this.setDeclaration(modProc, pu, decl);
+                        // 対応した手続の仮引数だけ宣言を探索する
+                        Variable[] args = decl.get_args();
+                        for (int i = 0; i < args.length; i++) {
+                            this.searchVariableDefinition(decl, args[i].getName());
                         }
                     }
-
                     // add at 2013/02/01 by @hira
-                    if (declaration != null) {
-                    	call.setCallDefinition(declaration);
-                        return callName;
+                    if (items.size() == 1) {
+                    	declaration = decl;
+                    }
+                    else {
+                    	if (declaration == null) {
+                    		declaration = decl;
+                    	}
                     }
-                    callName = generic.getActualCallName(call.getArguments());
                 }
             }
+
+            // add at 2013/02/01 by @hira
+            if (declaration != null) {
+            	this.setCallDefinition(call, declaration);
+                return callName;
+            }
+            callName = generic.getActualCallName(call.getArguments());
+            pos = index.getGenericIndex(pu, callName, pos + 1);
         }
         return callName;
     }
@@ -399,6 +556,7 @@ public final class Fortran extends Program {
 
     /**
      * 指定されたプログラム単位のuse文,interface文に対して手続き宣言を探索する。
+     * 総称名の変換が無い探索結果は、シンボル索引に登録して再利用する。
      * @param pu 宣言保持候補のプログラム単位
      * @param call 宣言を探索中の手続き呼び出し
      * @param callName 探索している手続きの名前
@@ -406,6 +564,40 @@ public final class Fortran extends Program {
      */
     private String searchCallDeclarationForUse(ProgramUnit pu,
             ProcedureUsage call, String callName) {
+        // interface文も探索する場合のみ探索結果を再利用できる
+        boolean reuse = (call.getCallDefinition() == null
+                        && call.getCallName().equalsIgnoreCase(callName));
+        if (!reuse) {
+            return this.searchCallDeclarationForUseInUnit(pu, call, callName);
+        }
+        SymbolIndex index = this.getSymbolIndex();
+        if (index.containsUseProcedure(pu, callName)) {
+            Procedure proc = index.getUseProcedure(pu, callName);
+            if (proc != null) {
+                this.setCallDefinition(call, proc);
+                knownProcedure.put(callName, proc);
+            }
+            return callName;
+        }
+        int count = this.genericCount;
+        String changeName = this.searchCallDeclarationForUseInUnit(pu, call, callName);
+        // 総称名に一致したinterface文が無い場合のみ登録する
+        if (count == this.genericCount && callName.equals(changeName)) {
+            index.putUseProcedure(pu, callName, call.getCallDefinition());
+        }
+        return changeName;
+    }
+
+    /**
+     * 指定されたプログラム単位のuse文,interface文に対して手続き宣言を探索する。
+     * @param pu 宣言保持候補のプログラム単位
+     * @param call 宣言を探索中の手続き呼び出し
+     * @param callName 探索している手続きの名前
+     * @return 総称名から変換された固有手続き名。無ければ元の名前を返す。
+     */
+    private String searchCallDeclarationForUseInUnit(ProgramUnit pu,
+            ProcedureUsage call, String callName) {
+        SymbolIndex index = this.getSymbolIndex();
         String changeName = callName;
         // callの名前とcallNameが一致している場合はpuのinterface文を探す
         if (call.getCallName().equalsIgnoreCase(callName)) {
@@ -426,16 +618,11 @@ public final class Fortran extends Program {
                     Module useModule = module(useEle.getModuleName());
                     if (useModule != null) {
                         // 手続きのチェック
-                        Procedure[] procs = useModule.get_procedures();
-                        if (procs != null) {
-                            for (int i = 0; i < procs.length; i++) {
-                                if (procs[i].get_name().equalsIgnoreCase(
-                                        changeName)) {
-                                    call.setCallDefinition(procs[i]);
-                                    knownProcedure.put(changeName, procs[i]);
-                                    return changeName;
-                                }
-                            }
+                        Procedure proc = index.getChild(useModule, changeName);
+                        if (proc != null) {
+                            this.setCallDefinition(call, proc);
+                            knownProcedure.put(changeName, proc);
+                            return changeName;
                         }
                     }
                 }
@@ -443,16 +630,11 @@ public final class Fortran extends Program {
                 Module useModule = module(useEle.getModuleName());
                 if (useModule != null) {
                     // 手続きのチェック
-                    Procedure[] procs = useModule.get_procedures();
-                    if (procs != null) {
-                        for (int i = 0; i < procs.length; i++) {
-                            if (procs[i].get_name()
-                                    .equalsIgnoreCase(changeName)) {
-                                call.setCallDefinition(procs[i]);
-                                knownProcedure.put(changeName, procs[i]);
-                                return changeName;
-                            }
-                        }
+                    Procedure proc = index.getChild(useModule, changeName);
+                    if (proc != null) {
+                        this.setCallDefinition(call, proc);
+                        knownProcedure.put(changeName, proc);
+                        return changeName;
                     }
                     changeName = searchCallDeclarationForUse(useModule, call, changeName);
                     if (!(changeName.equalsIgnoreCase(call.getCallName()))
@@ -483,7 +665,7 @@ public final class Fortran extends Program {
             // currentの宣言文を探す
             VariableDefinition varDef = current.get_variable(varName);
             if (varDef != null) {
-                proc.putVariableMap(varName, varDef);
+                this.putVariableMap(proc, varName, varDef);
                 return;
             }
 
@@ -511,38 +693,168 @@ public final class Fortran extends Program {
      */
     private boolean searchVariableDefinitionForUse(ProgramUnit pu,
             String varName, Procedure me) {
+        SymbolIndex.UseVariable result = this.findVariableDefinitionForUse(pu, varName);
+        if (result == null) {
+            return false;
+        }
+        this.putVariableMap(me, result.getName(), result.getDefinition());
+        this.addReferMember(result.getDefinition(), me);
+        return true;
+    }
+
+    /**
+     * 変数の宣言を、プログラム単位内のUSE文に対して検索する。 USE先にさらにUSE文がある場合は再帰的に探索する。
+     * 探索結果はシンボル索引に登録して再利用する。
+     *
+     * @param pu
+     *            プログラム単位
+     * @param varName
+     *            変数名
+     * @return 探索結果。宣言が見つからなければnullを返す。
+     */
+    private SymbolIndex.UseVariable findVariableDefinitionForUse(ProgramUnit pu,
+            String varName) {
+        SymbolIndex index = this.getSymbolIndex();
+        if (index.containsUseVariable(pu, varName)) {
+            return index.getUseVariable(pu, varName);
+        }
+        SymbolIndex.UseVariable result = null;
+        String name = varName;
         for (UseState useEle : pu.getUseList()) {
             Module useModule = module(useEle.getModuleName());
             if (useModule != null) {
                 if (useEle.hasOnlyMember()) {
-                    String transName = useEle.translationReverse(varName);
+                    String transName = useEle.translationReverse(name);
                     VariableDefinition vd = useModule.get_variable(transName);
                     if (vd != null) {
-                        me.putVariableMap(varName, vd);
-                        vd.addReferMember(me);
-                        return true;
+                        result = new SymbolIndex.UseVariable(name, vd);
+                        break;
                     }
                 } else {
-                    String nm = useEle.getTranslationName(varName);
+                    String nm = useEle.getTranslationName(name);
                     if (nm != null) {
-                        varName = nm;
+                        name = nm;
                     }
-                    VariableDefinition vd = useModule.get_variable(varName);
+                    VariableDefinition vd = useModule.get_variable(name);
                     if (vd != null) {
-                        me.putVariableMap(varName, vd);
-                        vd.addReferMember(me);
-                        return true;
+                        result = new SymbolIndex.UseVariable(name, vd);
+                        break;
                     }
                     if (useModule.getUseList() != null) {
-                        if (searchVariableDefinitionForUse(useModule, varName,
-                                me)) {
-                            return true;
+                        result = this.findVariableDefinitionForUse(useModule, name);
+                        if (result != null) {
+                            break;
                         }
                     }
                 }
             }
         }
-        return false;
+        index.putUseVariable(pu, varName, result);
+        return result;
+    }
+
+    /**
+     * 手続き呼び出しに宣言を対応付ける。<br/>
+     * 構造解析再実行中は呼出先手続きの複製に呼出元を追加する。
+     *
+     * @param call
+     *            手続き呼び出し
+     * @param proc
+     *            手続きの宣言
+     */
+    private void setCallDefinition(ProcedureUsage call, Procedure proc) {
+        if (this.snapshotLinker == null) {
+            call.setCallDefinition(proc);
+            return;
+        }
+        call.setCallDefinition(proc, false);
+        if (proc != null) {
+            this.snapshotLinker.addCallMember(proc, call);
+        }
+    }
+
+    /**
+     * 手続きの呼出元を削除する。
+     *
+     * @param proc
+     *            呼出先手続き
+     * @param call
+     *            手続き呼び出し
+     */
+    private void removeCallMember(Procedure proc, ProcedureUsage call) {
+        if (this.snapshotLinker == null) {
+            proc.removeCallMember(call);
+            return;
+        }
+        this.snapshotLinker.removeCallMember(proc, call);
+    }
+
+    /**
+     * 変数宣言に参照元を追加する。
+     *
+     * @param def
+     *            変数宣言
+     * @param unit
+     *            参照元プログラム単位
+     */
+    private void addReferMember(VariableDefinition def, ProgramUnit unit) {
+        if (this.snapshotLinker == null) {
+            def.addReferMember(unit);
+            return;
+        }
+        this.snapshotLinker.addReferMember(def, unit);
+    }
+
+    /**
+     * 変数宣言の参照元を削除する。
+     *
+     * @param def
+     *            変数宣言
+     * @param unit
+     *            参照元プログラム単位
+     */
+    private void removeReferMember(VariableDefinition def, ProgramUnit unit) {
+        if (this.snapshotLinker == null) {
+            def.removeReferMember(unit);
+            return;
+        }
+        this.snapshotLinker.removeReferMember(def, unit);
+    }
+
+    /**
+     * プログラム単位の変数名マップに変数宣言を追加する。
+     *
+     * @param unit
+     *            プログラム単位
+     * @param varName
+     *            変数名
+     * @param def
+     *            変数宣言
+     */
+    private void putVariableMap(ProgramUnit unit, String varName, VariableDefinition def) {
+        if (this.snapshotLinker == null) {
+            unit.putVariableMap(varName, def);
+            return;
+        }
+        this.snapshotLinker.putVariableMap(unit, varName, def);
+    }
+
+    /**
+     * module procedure文に手続宣言を設定する。
+     *
+     * @param item
+     *            module procedure文
+     * @param owner
+     *            interface文を持つプログラム単位
+     * @param proc
+     *            手続宣言
+     */
+    private void setDeclaration(ProcedureWithNameOnly item, ProgramUnit owner, Procedure proc) {
+        if (this.snapshotLinker == null) {
+            item.setDeclaration(proc);
+            return;
+        }
+        this.snapshotLinker.setDeclaration(item, owner, proc);
     }
 
     // ++++++++++++++++++++++++++++++++++++++++++++
@@ -560,37 +872,7 @@ public final class Fortran extends Program {
             return null;
         }
 
-        for (Module md : this.getModules().values()) {
-            Procedure proc = search_sub_rec(md, name);
-            if (proc != null) {
-                return proc;
-            }
-        }
-        return null;
-    }
-
-    /**
-     * プログラム、モジュールから副プログラムを取得する.
-     * @param proc		モジュール
-     * @param name		副プログラム名
-     * @return			副プログラム
-     */
-    private Procedure search_sub_rec(ProgramUnit proc, String name) {
-        if (proc.is_my_procedure(name)) {
-            return (Procedure) (proc.get_child(name));
-        } else {
-            if (proc.getChildren().size() > 0) {
-                Procedure[] proc_child = proc.get_children();
-                for (int i = 0; i < proc_child.length; i++) {
-                    // return search_sub_rec(proc_child[i], name) ;
-                    Procedure sub_proc = search_sub_rec(proc_child[i], name);
-                    if (sub_proc != null) {
-                        return sub_proc;
-                    }
-                }
-            }
-        }
-        return null;
+        return this.getSymbolIndex().getProcedure(name);
     }
 
     /**
@@ -692,6 +974,15 @@ public final class Fortran extends Program {
     	super.copyShallow((Program)fortran);
     }
 
+    /**
+     * 構造解析再実行で公開中のデータベースと共有するプログラム単位の対応付けを設定する。<br/>
+     * 設定中は公開中のデータベースのプログラム単位を変更せず、複製したプログラム単位の呼出元、参照元を変更する。
+     * @param linker		共有するプログラム単位の対応付け:null=共有しない
+     */
+    public void setSnapshotLinker(ISnapshotLinker linker) {
+        this.snapshotLinker = linker;
+    }
+
     /**
      * スレッドの実行がキャンセルであるかチェックする
      * @return    true=キャンセル
@@ -0,0 +1,52 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.riken.kscope.language;
+
+import java.io.Closeable;
+
+/**
+ * 手続きの処理ブロックの遅延読込を行うインターフェース。<br/>
+ * データベースファイルから読み込んだプログラム単位は処理ブロック(ExecutableBody)を持たず、
+ * 最初にアクセスされた時に本インターフェイスにより読み込まれる。
+ * @author RIKEN
+ */
+public interface IProcedureLoader extends Closeable {
+
+    /**
+     * 手続きの処理ブロックを読み込み、宣言と呼び出しを対応付ける。
+     * @param proc		手続き
+     */
+    void loadBody(Procedure proc);
+
+    /**
+     * 手続きを呼び出している手続きの処理ブロックを読み込む。
+     * @param proc		呼出先手続き
+     */
+    void loadCallMembers(Procedure proc);
+
+    /**
+     * 変数宣言を参照している手続きの処理ブロックを読み込む。
+     * @param definition		変数宣言
+     */
+    void loadReferMembers(VariableDefinition definition);
+
+    /**
+     * 未読込の全ての処理ブロックを読み込む。
+     */
+    void loadAll();
+}
@@ -0,0 +1,79 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.riken.kscope.language;
+
+import jp.riken.kscope.language.generic.ProcedureWithNameOnly;
+
+/**
+ * 構造解析再実行で宣言と呼び出しの対応付けを行うインターフェース。<br/>
+ * 再実行中のデータベースは再解析の影響を受けないプログラム単位を公開中のデータベースと共有する。
+ * 公開中のデータベースのプログラム単位は変更せず、呼出元、参照元、変数名マップの変更は本インターフェイスにより複製したプログラム単位に行う。
+ * @author RIKEN
+ */
+public interface ISnapshotLinker {
+
+    /**
+     * 公開中のデータベースのオブジェクトであるかチェックする。
+     * @param block		プログラム単位、変数宣言
+     * @return		true=共有するオブジェクト
+     */
+    boolean isShared(IBlock block);
+
+    /**
+     * 手続きに呼出元を追加する。
+     * @param proc		呼出先手続き
+     * @param call		手続呼出
+     */
+    void addCallMember(Procedure proc, ProcedureUsage call);
+
+    /**
+     * 手続きから呼出元を削除する。
+     * @param proc		呼出先手続き
+     * @param call		手続呼出
+     */
+    void removeCallMember(Procedure proc, ProcedureUsage call);
+
+    /**
+     * 変数宣言に参照元を追加する。
+     * @param def		変数宣言
+     * @param unit		参照元プログラム単位
+     */
+    void addReferMember(VariableDefinition def, ProgramUnit unit);
+
+    /**
+     * 変数宣言から参照元を削除する。
+     * @param def		変数宣言
+     * @param unit		参照元プログラム単位
+     */
+    void removeReferMember(VariableDefinition def, ProgramUnit unit);
+
+    /**
+     * プログラム単位の変数名マップに変数宣言を追加する。
+     * @param unit		プログラム単位
+     * @param name		変数名
+     * @param def		変数宣言
+     */
+    void putVariableMap(ProgramUnit unit, String name, VariableDefinition def);
+
+    /**
+     * module procedure文に手続宣言を設定する。
+     * @param item		module procedure文
+     * @param owner		interface文を持つプログラム単位
+     * @param proc		手続宣言
+     */
+    void setDeclaration(ProcedureWithNameOnly item, ProgramUnit owner, Procedure proc);
+}
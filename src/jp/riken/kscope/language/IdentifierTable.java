@@ -0,0 +1,55 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.riken.kscope.language;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 識別子テーブルクラス.<br/>
+ * 変数名、手続き名、式、コード行の文字列を、プロジェクトで1つのインスタンスに共有する.
+ * 並列パースのワーカースレッドから同時に使用できる.
+ * 登録した文字列はデータベースが参照し続けるため、削除しない.
+ * @author RIKEN
+ */
+public class IdentifierTable {
+
+    /** 共有文字列:{文字列, 共有文字列} */
+    private ConcurrentMap<String, String> strings = new ConcurrentHashMap<String, String>();
+
+    /**
+     * 共有文字列を取得する.<br/>
+     * 未登録の場合は、指定文字列を登録して返す.
+     * @param value		文字列
+     * @return		共有文字列
+     */
+    public String intern(String value) {
+        if (value == null) return null;
+        String shared = this.strings.get(value);
+        if (shared != null) return shared;
+        shared = this.strings.putIfAbsent(value, value);
+        return (shared != null) ? shared : value;
+    }
+
+    /**
+     * 登録文字列数を取得する.
+     * @return		登録文字列数
+     */
+    public int size() {
+        return this.strings.size();
+    }
+}
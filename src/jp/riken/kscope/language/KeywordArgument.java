@@ -69,4 +69,14 @@ public class KeywordArgument extends Expression {
         this.setDivCount(expr.getDivCount());
         this.setPowCount(expr.getPowCount());
     }
+
+    /**
+     * キーワード、式を圧縮する.
+     * @param compactor		データベース圧縮
+     */
+    @Override
+    void compact(LanguageCompactor compactor) {
+        super.compact(compactor);
+        this.keyword = compactor.intern(this.keyword);
+    }
 }
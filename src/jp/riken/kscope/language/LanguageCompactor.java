@@ -0,0 +1,298 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.riken.kscope.language;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jp.riken.kscope.data.CodeLine;
+
+/**
+ * データベース圧縮クラス.<br/>
+ * 識別子、式、コード行の文字列を識別子テーブルの共有文字列に置き換え、
+ * 空のリスト、マップを共有の空コレクションに置き換え、リストの余剰容量を解放する.
+ * 削減量はオブジェクトサイズ(64bit、圧縮参照)からの推定値とする.
+ * 未読込の処理ブロックは読み込まない.
+ * @author RIKEN
+ */
+public class LanguageCompactor {
+
+    /** Stringオブジェクトサイズ */
+    private static final int STRING_SIZE = 24;
+    /** 配列ヘッダサイズ */
+    private static final int ARRAY_HEADER_SIZE = 16;
+    /** 参照サイズ */
+    private static final int REFERENCE_SIZE = 4;
+    /** ArrayListオブジェクトサイズ */
+    private static final int ARRAYLIST_SIZE = 24;
+    /** HashMapオブジェクトサイズ */
+    private static final int HASHMAP_SIZE = 48;
+    /** HashSetオブジェクトサイズ(内部のHashMapを含む) */
+    private static final int HASHSET_SIZE = 16 + HASHMAP_SIZE;
+    /** ArrayListの初期容量 */
+    private static final int DEFAULT_CAPACITY = 10;
+
+    /** フェーズ名 */
+    private String phase;
+    /** 識別子テーブル */
+    private IdentifierTable table;
+    /** 空コレクションを共有コレクションに置き換える */
+    private boolean shareEmpty = true;
+    /** リストの余剰容量を解放する */
+    private boolean trimLists = true;
+    /** 共有文字列に置き換えた文字列数 */
+    private long strings;
+    /** 共有文字列による削減量 */
+    private long stringBytes;
+    /** 共有コレクションに置き換えた空コレクション数 */
+    private long empties;
+    /** 共有コレクションによる削減量 */
+    private long emptyBytes;
+    /** 余剰容量を解放したリスト数 */
+    private long trims;
+    /** 余剰容量の解放による削減量 */
+    private long trimBytes;
+
+    /**
+     * コンストラクタ
+     * @param phase		フェーズ名
+     * @param table		識別子テーブル
+     */
+    public LanguageCompactor(String phase, IdentifierTable table) {
+        this.phase = phase;
+        this.table = table;
+    }
+
+    /**
+     * 空コレクションを共有コレクションに置き換えるか設定する.
+     * @param share		true=置き換える
+     */
+    public void setShareEmpty(boolean share) {
+        this.shareEmpty = share;
+    }
+
+    /**
+     * リストの余剰容量を解放するか設定する.<br/>
+     * データベースファイルから読み込んだリストは余剰容量を持たない為、解放しない.
+     * @param trim		true=解放する
+     */
+    public void setTrimLists(boolean trim) {
+        this.trimLists = trim;
+    }
+
+    /**
+     * データベース全体を圧縮する.
+     * @param program		データベース
+     */
+    public void compact(Program program) {
+        if (program == null) return;
+        Map<String, Module> modules = program.getModules();
+        if (modules == null) return;
+        for (Module module : modules.values()) {
+            compact(module);
+        }
+    }
+
+    /**
+     * プログラム単位を圧縮する.<br/>
+     * 内部副プログラム、モジュール副プログラムを含む.
+     * @param unit		プログラム単位
+     */
+    public void compact(ProgramUnit unit) {
+        if (unit == null) return;
+        unit.compact(this);
+    }
+
+    /**
+     * 他の圧縮結果を加算する.<br/>
+     * 部分データベースのマージ時に、部分データベースの圧縮結果を加算する.
+     * @param other		圧縮結果
+     */
+    public void add(LanguageCompactor other) {
+        if (other == null) return;
+        this.strings += other.strings;
+        this.stringBytes += other.stringBytes;
+        this.empties += other.empties;
+        this.emptyBytes += other.emptyBytes;
+        this.trims += other.trims;
+        this.trimBytes += other.trimBytes;
+    }
+
+    /**
+     * 推定削減量を取得する.
+     * @return		推定削減量(byte)
+     */
+    public long getSavedBytes() {
+        return this.stringBytes + this.emptyBytes + this.trimBytes;
+    }
+
+    /**
+     * 圧縮結果の文字列表現を取得する.
+     * @return		圧縮結果
+     */
+    public String getReport() {
+        return String.format("%s: strings %d (%.1f MB), empty collections %d (%.1f MB), trimmed lists %d (%.1f MB), saved %.1f MB",
+                this.phase,
+                this.strings, toMegaBytes(this.stringBytes),
+                this.empties, toMegaBytes(this.emptyBytes),
+                this.trims, toMegaBytes(this.trimBytes),
+                toMegaBytes(getSavedBytes()));
+    }
+
+    /**
+     * 共有文字列を取得する.
+     * @param value		文字列
+     * @return		共有文字列
+     */
+    String intern(String value) {
+        if (value == null) return null;
+        String shared = this.table.intern(value);
+        if (shared != value) {
+            this.strings++;
+            this.stringBytes += sizeOf(value);
+        }
+        return shared;
+    }
+
+    /**
+     * マップのキー文字列を共有文字列に置き換える.<br/>
+     * マップのインスタンスと挿入順は変更しない.
+     * @param map		文字列キーのマップ
+     */
+    <V> void internKeys(Map<String, V> map) {
+        if (map == null || map.isEmpty()) return;
+        boolean shared = true;
+        for (String key : map.keySet()) {
+            if (key != null && this.table.intern(key) != key) {
+                shared = false;
+                break;
+            }
+        }
+        if (shared) return;
+        Map<String, V> entries = new LinkedHashMap<String, V>(map);
+        map.clear();
+        for (Map.Entry<String, V> entry : entries.entrySet()) {
+            map.put(intern(entry.getKey()), entry.getValue());
+        }
+    }
+
+    /**
+     * 行情報のコード行文字列を共有文字列に置き換える.
+     * @param statement		行情報
+     */
+    void compact(Statement statement) {
+        if (statement == null) return;
+        statement.set_label(intern(statement.get_label()));
+        CodeLine line = statement.lineInfo;
+        // ソースファイルの行テキストから取得するコード行は文字列を保持しない
+        if (line == null || line.isSourceText()) return;
+        String value = line.getStatement();
+        String shared = intern(value);
+        if (shared != value) {
+            line.setStatement(shared);
+        }
+    }
+
+    /**
+     * 空のリストを共有の空リストに置き換え、リストの余剰容量を解放する.
+     * @param list		リスト
+     * @return		圧縮リスト
+     */
+    <T> List<T> compactList(List<T> list) {
+        if (list == null) return null;
+        if (list.isEmpty()) {
+            if (!this.shareEmpty || list == Collections.<T>emptyList()) return list;
+            this.empties++;
+            this.emptyBytes += ARRAYLIST_SIZE;
+            return Collections.<T>emptyList();
+        }
+        trim(list);
+        return list;
+    }
+
+    /**
+     * 空のマップを共有の空マップに置き換える.
+     * @param map		マップ
+     * @return		圧縮マップ
+     */
+    <K, V> Map<K, V> compactMap(Map<K, V> map) {
+        if (map == null || !map.isEmpty()) return map;
+        if (!this.shareEmpty || map == Collections.<K, V>emptyMap()) return map;
+        this.empties++;
+        this.emptyBytes += (map instanceof HashMap) ? HASHMAP_SIZE : 0;
+        return Collections.<K, V>emptyMap();
+    }
+
+    /**
+     * 空のセットを共有の空セットに置き換える.
+     * @param set		セット
+     * @return		圧縮セット
+     */
+    <T> Set<T> compactSet(Set<T> set) {
+        if (set == null || !set.isEmpty()) return set;
+        if (!this.shareEmpty || set == Collections.<T>emptySet()) return set;
+        this.empties++;
+        this.emptyBytes += HASHSET_SIZE;
+        return Collections.<T>emptySet();
+    }
+
+    /**
+     * リストの余剰容量を解放する.<br/>
+     * 宣言型がArrayListのリスト、要素の追加時にのみ作成するリストは、共有の空リストに置き換えず、余剰容量のみ解放する.
+     * 余剰容量は、初期容量から要素の追加により拡張された容量として推定する.
+     * @param list		リスト
+     */
+    <T> void trim(List<T> list) {
+        if (!(list instanceof ArrayList) || !this.trimLists) return;
+        int size = list.size();
+        // 要素を追加していない空リストは共有の空配列を保持している
+        if (size <= 0) return;
+        ((ArrayList<T>) list).trimToSize();
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity < size) {
+            capacity += (capacity >> 1);
+        }
+        if (capacity > size) {
+            this.trims++;
+            this.trimBytes += (long)(capacity - size) * REFERENCE_SIZE;
+        }
+    }
+
+    /**
+     * 文字列の推定サイズを取得する.
+     * @param value		文字列
+     * @return		推定サイズ(byte)
+     */
+    private static long sizeOf(String value) {
+        long array = ARRAY_HEADER_SIZE + 2L * value.length();
+        return STRING_SIZE + ((array + 7) & ~7L);
+    }
+
+    /**
+     * バイト数をMB単位に変換する.
+     * @param bytes		バイト数
+     * @return		MB
+     */
+    private static double toMegaBytes(long bytes) {
+        return bytes / (1024.0 * 1024.0);
+    }
+}
@@ -0,0 +1,518 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.riken.kscope.language;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import jp.riken.kscope.data.CodeLine;
+import jp.riken.kscope.data.SourceFile;
+
+/**
+ * 行番号索引クラス.<br/>
+ * ソースファイルの行番号からプログラム単位、処理ブロックを二分探索で取得する.
+ * プログラム単位の索引はソースファイル毎に作成する.
+ * 処理ブロックの索引は手続き毎に作成する.処理ブロックは遅延読込されるため、手続きの最初の検索時に作成する.
+ * 行番号区間はFortranの構文と同じく入れ子であること.
+ * データベースの構造が変更された場合は破棄して再作成すること.
+ * @author RIKEN
+ */
+public class LineIndex {
+
+    /** プログラム単位索引:{ソースファイル, 行番号区間} */
+    private Map<SourceFile, Intervals> units = new HashMap<SourceFile, Intervals>();
+    /** 処理ブロック索引:{手続き, 手続き内のブロック} */
+    private Map<Procedure, BlockTree> blocks
+                = Collections.synchronizedMap(new IdentityHashMap<Procedure, BlockTree>());
+
+    /**
+     * コンストラクタ.<br/>
+     * プログラム単位索引を作成する.
+     * @param program		データベース
+     */
+    public LineIndex(Program program) {
+        Map<SourceFile, List<ProgramUnit>> files = new HashMap<SourceFile, List<ProgramUnit>>();
+        for (Module module : program.getModules().values()) {
+            addUnit(module, files);
+        }
+        for (SourceFile file : files.keySet()) {
+            List<ProgramUnit> list = files.get(file);
+            int[] starts = new int[list.size()];
+            int[] ends = new int[list.size()];
+            for (int i = 0; i < list.size(); i++) {
+                // 開始コード行から終了コード行までの範囲とする
+                CodeLine start = list.get(i).getStartCodeLine();
+                CodeLine end = list.get(i).getEndCodeLine();
+                starts[i] = start.getStartLine();
+                ends[i] = start.getEndLine();
+                if (end != null && start.getSourceFile().equals(end.getSourceFile())) {
+                    ends[i] = Math.max(ends[i], end.getEndLine());
+                }
+            }
+            this.units.put(file, new Intervals(list.toArray(new IBlock[0]), starts, ends));
+        }
+    }
+
+    /**
+     * プログラム単位と副プログラムを索引リストに追加する.<br/>
+     * 追加順はモジュール、副プログラムの探索順(LanguageSearcherの探索順)とする.
+     * @param unit		プログラム単位
+     * @param files		索引リスト:{ソースファイル, プログラム単位リスト}
+     */
+    private void addUnit(ProgramUnit unit, Map<SourceFile, List<ProgramUnit>> files) {
+        CodeLine start = unit.getStartCodeLine();
+        if (start != null && start.getSourceFile() != null) {
+            List<ProgramUnit> list = files.get(start.getSourceFile());
+            if (list == null) {
+                list = new ArrayList<ProgramUnit>();
+                files.put(start.getSourceFile(), list);
+            }
+            list.add(unit);
+        }
+        for (Procedure child : unit.getChildren()) {
+            addUnit(child, files);
+        }
+    }
+
+    /**
+     * 行番号を含む最も内側の手続きを取得する.
+     * @param line		コード行
+     * @return		手続き:存在しない場合はnull
+     */
+    public Procedure getProcedure(CodeLine line) {
+        if (line == null || line.getSourceFile() == null) return null;
+        Intervals intervals = this.units.get(line.getSourceFile());
+        if (intervals == null) return null;
+        for (int node : intervals.stab(line.getStartLine())) {
+            if (intervals.nodes[node] instanceof Procedure) {
+                return (Procedure) intervals.nodes[node];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 開始行番号が一致するプログラム単位を取得する.<br/>
+     * 複数存在する場合は、モジュール、副プログラムの探索順で最初のプログラム単位とする.
+     * @param line		コード行
+     * @return		プログラム単位:存在しない場合はnull
+     */
+    public ProgramUnit getStartUnit(CodeLine line) {
+        if (line == null || line.getSourceFile() == null) return null;
+        Intervals intervals = this.units.get(line.getSourceFile());
+        if (intervals == null) return null;
+        int[] nodes = intervals.range(line.getStartLine(), line.getStartLine());
+        if (nodes.length <= 0) return null;
+        Arrays.sort(nodes);
+        return (ProgramUnit) intervals.nodes[nodes[0]];
+    }
+
+    /**
+     * 手続き内のコード行のブロックを取得する.<br/>
+     * Procedure.searchCodeLineと同じく、コード行と重なるブロックの内で最も内側のブロックを探索順に返す.
+     * @param procedure		手続き
+     * @param line			コード行
+     * @return		コード行のブロック:存在しない場合はnull
+     */
+    public IBlock[] getBlocks(Procedure procedure, CodeLine line) {
+        if (procedure == null || line == null || line.getSourceFile() == null) return null;
+        BlockTree tree = getBlockTree(procedure);
+        Intervals intervals = tree.files.get(line.getSourceFile());
+        if (intervals == null) return null;
+
+        // コード行と重なる可能性のあるブロック:開始行を含むブロックと、範囲内で開始するブロック
+        List<Integer> overlaps = new ArrayList<Integer>();
+        for (int node : intervals.stab(line.getStartLine())) {
+            if (tree.isOverlap(node, line)) overlaps.add(node);
+        }
+        if (line.getEndLine() > line.getStartLine()) {
+            for (int node : intervals.range(line.getStartLine() + 1, line.getEndLine())) {
+                if (tree.isOverlap(node, line)) overlaps.add(node);
+            }
+        }
+
+        // 子孫に重なるブロックがあるブロックは除く
+        boolean[] covered = new boolean[tree.nodes.length];
+        List<Integer> leafs = new ArrayList<Integer>();
+        for (int node : overlaps) {
+            if (!tree.isReachable(node, line)) continue;
+            leafs.add(node);
+            for (int parent = tree.parents[node]; parent >= 0 && !covered[parent]; parent = tree.parents[parent]) {
+                covered[parent] = true;
+            }
+        }
+        List<Integer> result = new ArrayList<Integer>();
+        for (int node : leafs) {
+            if (!covered[node]) {
+                result.add(node);
+            }
+        }
+        if (result.size() <= 0) return null;
+        Collections.sort(result);
+
+        IBlock[] list = new IBlock[result.size()];
+        for (int i = 0; i < list.length; i++) {
+            list[i] = tree.nodes[result.get(i)];
+        }
+        return list;
+    }
+
+    /**
+     * 手続き内の開始行番号が一致する処理ブロックを取得する.<br/>
+     * 複数存在する場合は、処理ブロックの探索順で最初のブロックとする.変数宣言文は対象としない.
+     * @param procedure		手続き
+     * @param line			コード行
+     * @return		処理ブロック:存在しない場合はnull
+     */
+    public IBlock getStartBlock(Procedure procedure, CodeLine line) {
+        if (procedure == null || line == null || line.getSourceFile() == null) return null;
+        BlockTree tree = getBlockTree(procedure);
+        Intervals intervals = tree.files.get(line.getSourceFile());
+        if (intervals == null) return null;
+        int[] nodes = intervals.range(line.getStartLine(), line.getStartLine());
+        Arrays.sort(nodes);
+        for (int node : nodes) {
+            IBlock block = tree.nodes[node];
+            if (block instanceof Block && !(block instanceof ExecutableBody)) {
+                return block;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 手続きの処理ブロック索引を取得する.<br/>
+     * 未作成の場合は、処理ブロックを読み込んで作成する.
+     * @param procedure		手続き
+     * @return		処理ブロック索引
+     */
+    private BlockTree getBlockTree(Procedure procedure) {
+        BlockTree tree = this.blocks.get(procedure);
+        if (tree == null) {
+            tree = new BlockTree(procedure);
+            this.blocks.put(procedure, tree);
+        }
+        return tree;
+    }
+
+    /**
+     * 手続き内のブロックの木構造クラス.<br/>
+     * ブロックはProcedure.searchCodeLineの探索順(手続き、変数宣言文、内部副プログラム、処理ブロック)に並べる.
+     */
+    private static class BlockTree {
+        /** ブロック:探索順 */
+        private IBlock[] nodes;
+        /** 親ブロックのインデックス(-1=手続き) */
+        private int[] parents;
+        /** 親の手続きの変数宣言文、内部副プログラムであるか */
+        private boolean[] declarations;
+        /** ソースファイル毎の行番号区間 */
+        private Map<SourceFile, Intervals> files = new HashMap<SourceFile, Intervals>();
+
+        /**
+         * コンストラクタ
+         * @param procedure		手続き
+         */
+        private BlockTree(Procedure procedure) {
+            List<IBlock> list = new ArrayList<IBlock>();
+            List<Integer> parentList = new ArrayList<Integer>();
+            List<Boolean> declarationList = new ArrayList<Boolean>();
+            addProcedure(procedure, -1, false, list, parentList, declarationList);
+
+            this.nodes = list.toArray(new IBlock[0]);
+            this.parents = new int[this.nodes.length];
+            this.declarations = new boolean[this.nodes.length];
+            Map<SourceFile, List<Integer>> fileNodes = new HashMap<SourceFile, List<Integer>>();
+            for (int i = 0; i < this.nodes.length; i++) {
+                this.parents[i] = parentList.get(i);
+                this.declarations[i] = declarationList.get(i);
+                SourceFile file = getSourceFile(this.nodes[i]);
+                if (file == null) continue;
+                if (!fileNodes.containsKey(file)) {
+                    fileNodes.put(file, new ArrayList<Integer>());
+                }
+                fileNodes.get(file).add(i);
+            }
+            for (SourceFile file : fileNodes.keySet()) {
+                List<Integer> indexes = fileNodes.get(file);
+                int[] starts = new int[indexes.size()];
+                int[] ends = new int[indexes.size()];
+                int[] ids = new int[indexes.size()];
+                for (int i = 0; i < indexes.size(); i++) {
+                    IBlock block = this.nodes[indexes.get(i)];
+                    ids[i] = indexes.get(i);
+                    starts[i] = block.getStartCodeLine().getStartLine();
+                    ends[i] = Math.max(block.getStartCodeLine().getEndLine(), block.getEndCodeLine().getEndLine());
+                }
+                this.files.put(file, new Intervals(this.nodes, ids, starts, ends));
+            }
+        }
+
+        /**
+         * 手続きを追加する.
+         * @param procedure			手続き
+         * @param parent			親ブロックのインデックス
+         * @param declaration		親の手続きの内部副プログラムであるか
+         * @param list				ブロックリスト
+         * @param parentList		親ブロックのインデックスリスト
+         * @param declarationList	変数宣言文、内部副プログラムであるかのリスト
+         */
+        private void addProcedure(Procedure procedure, int parent, boolean declaration,
+                List<IBlock> list, List<Integer> parentList, List<Boolean> declarationList) {
+            int index = add(procedure, parent, declaration, list, parentList, declarationList);
+            if (procedure.getVariables() != null) {
+                for (VariableDefinition definition : procedure.getVariables().values()) {
+                    add(definition, index, true, list, parentList, declarationList);
+                }
+            }
+            for (Procedure child : procedure.getChildren()) {
+                addProcedure(child, index, true, list, parentList, declarationList);
+            }
+            if (procedure.getBody() != null) {
+                addBlock(procedure.getBody(), index, list, parentList, declarationList);
+            }
+        }
+
+        /**
+         * 処理ブロックを追加する.
+         * @param block				処理ブロック
+         * @param parent			親ブロックのインデックス
+         * @param list				ブロックリスト
+         * @param parentList		親ブロックのインデックスリスト
+         * @param declarationList	変数宣言文、内部副プログラムであるかのリスト
+         */
+        private void addBlock(Block block, int parent,
+                List<IBlock> list, List<Integer> parentList, List<Boolean> declarationList) {
+            int index = add(block, parent, false, list, parentList, declarationList);
+            if (block.getChildren() == null) return;
+            for (Block child : block.getChildren()) {
+                addBlock(child, index, list, parentList, declarationList);
+            }
+        }
+
+        /**
+         * ブロックを追加する.
+         * @param block				ブロック
+         * @param parent			親ブロックのインデックス
+         * @param declaration		親の手続きの変数宣言文、内部副プログラムであるか
+         * @param list				ブロックリスト
+         * @param parentList		親ブロックのインデックスリスト
+         * @param declarationList	変数宣言文、内部副プログラムであるかのリスト
+         * @return		追加ブロックのインデックス
+         */
+        private int add(IBlock block, int parent, boolean declaration,
+                List<IBlock> list, List<Integer> parentList, List<Boolean> declarationList) {
+            list.add(block);
+            parentList.add(parent);
+            declarationList.add(declaration);
+            return list.size() - 1;
+        }
+
+        /**
+         * 行番号区間を作成するブロックのソースファイルを取得する.<br/>
+         * 開始、終了コード行のソースファイルが異なるブロックはコード行と重ならないため対象としない.
+         * @param block		ブロック
+         * @return		ソースファイル:対象外のブロックはnull
+         */
+        private SourceFile getSourceFile(IBlock block) {
+            CodeLine start = block.getStartCodeLine();
+            CodeLine end = block.getEndCodeLine();
+            if (start == null || end == null) return null;
+            if (start.getSourceFile() == null) return null;
+            if (!start.getSourceFile().equals(end.getSourceFile())) return null;
+            return start.getSourceFile();
+        }
+
+        /**
+         * ブロックがコード行と重なるかチェックする.
+         * @param node		ブロックのインデックス
+         * @param line		コード行
+         * @return		true=重なる
+         */
+        private boolean isOverlap(int node, CodeLine line) {
+            IBlock block = this.nodes[node];
+            return line.isOverlap(block.getStartCodeLine(), block.getEndCodeLine());
+        }
+
+        /**
+         * ブロックがProcedure.searchCodeLineの探索対象であるかチェックする.<br/>
+         * 変数宣言文、内部副プログラムは、親の手続きがコード行と重なる場合のみ探索される.
+         * @param node		ブロックのインデックス
+         * @param line		コード行
+         * @return		true=探索対象
+         */
+        private boolean isReachable(int node, CodeLine line) {
+            for (int i = node; this.parents[i] >= 0; i = this.parents[i]) {
+                if (this.declarations[i] && !isOverlap(this.parents[i], line)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 行番号区間クラス.<br/>
+     * 区間を開始行の昇順(同じ開始行は終了行の降順、探索順)に並べて、
+     * 各区間に直前の区間を含む最も内側の区間を設定する.
+     */
+    private static class Intervals {
+        /** ブロック:インデックスは探索順 */
+        private IBlock[] nodes;
+        /** ブロックのインデックス:開始行順 */
+        private int[] ids;
+        /** 開始行:開始行順 */
+        private int[] starts;
+        /** 終了行:開始行順 */
+        private int[] ends;
+        /** 区間を含む最も内側の区間の位置(-1=なし):開始行順 */
+        private int[] outers;
+
+        /**
+         * コンストラクタ
+         * @param nodes		ブロック:探索順
+         * @param starts	開始行
+         * @param ends		終了行
+         */
+        private Intervals(IBlock[] nodes, int[] starts, int[] ends) {
+            this(nodes, sequence(nodes.length), starts, ends);
+        }
+
+        /**
+         * コンストラクタ
+         * @param nodes		ブロック:探索順
+         * @param ids		区間のブロックのインデックス
+         * @param starts	開始行
+         * @param ends		終了行
+         */
+        private Intervals(IBlock[] nodes, final int[] ids, final int[] starts, final int[] ends) {
+            this.nodes = nodes;
+            Integer[] order = new Integer[ids.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer o1, Integer o2) {
+                    if (starts[o1] != starts[o2]) return starts[o1] < starts[o2] ? -1 : 1;
+                    if (ends[o1] != ends[o2]) return ends[o1] > ends[o2] ? -1 : 1;
+                    return ids[o1] - ids[o2];
+                }
+            });
+            this.ids = new int[ids.length];
+            this.starts = new int[ids.length];
+            this.ends = new int[ids.length];
+            this.outers = new int[ids.length];
+            int[] stack = new int[ids.length];
+            int top = -1;
+            for (int i = 0; i < order.length; i++) {
+                this.ids[i] = ids[order[i]];
+                this.starts[i] = starts[order[i]];
+                this.ends[i] = ends[order[i]];
+                while (top >= 0 && this.ends[stack[top]] < this.ends[i]) {
+                    top--;
+                }
+                this.outers[i] = top >= 0 ? stack[top] : -1;
+                stack[++top] = i;
+            }
+        }
+
+        /**
+         * 0から始まる連番を作成する.
+         * @param count		個数
+         * @return		連番
+         */
+        private static int[] sequence(int count) {
+            int[] values = new int[count];
+            for (int i = 0; i < count; i++) {
+                values[i] = i;
+            }
+            return values;
+        }
+
+        /**
+         * 行番号を含む区間を取得する.
+         * @param line		行番号
+         * @return		区間のブロックのインデックス:内側の区間から順
+         */
+        private int[] stab(int line) {
+            List<Integer> list = new ArrayList<Integer>();
+            for (int i = lastStart(line); i >= 0; i = this.outers[i]) {
+                if (this.ends[i] >= line) {
+                    list.add(this.ids[i]);
+                }
+            }
+            return toArray(list);
+        }
+
+        /**
+         * 開始行が範囲内の区間を取得する.
+         * @param from		範囲の開始行
+         * @param to		範囲の終了行
+         * @return		区間のブロックのインデックス:開始行順
+         */
+        private int[] range(int from, int to) {
+            List<Integer> list = new ArrayList<Integer>();
+            for (int i = lastStart(from - 1) + 1; i < this.starts.length && this.starts[i] <= to; i++) {
+                list.add(this.ids[i]);
+            }
+            return toArray(list);
+        }
+
+        /**
+         * 開始行が行番号以下の最後の区間の位置を取得する.
+         * @param line		行番号
+         * @return		区間の位置(-1=なし)
+         */
+        private int lastStart(int line) {
+            int low = 0;
+            int high = this.starts.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (this.starts[mid] <= line) {
+                    low = mid + 1;
+                }
+                else {
+                    high = mid - 1;
+                }
+            }
+            return high;
+        }
+
+        /**
+         * インデックスリストを配列に変換する.
+         * @param list		インデックスリスト
+         * @return		インデックス配列
+         */
+        private static int[] toArray(Collection<Integer> list) {
+            int[] values = new int[list.size()];
+            int i = 0;
+            for (Integer value : list) {
+                values[i++] = value;
+            }
+            return values;
+        }
+    }
+}
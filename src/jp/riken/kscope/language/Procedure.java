@@ -22,6 +22,7 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import jp.riken.kscope.data.CodeLine;
@@ -60,8 +61,13 @@ public class Procedure extends ProgramUnit {
     private String result;
     /**
      * 手続きの実行文を表現するメンバー変数。
+     * データベースファイルから読み込んだ場合は、最初にアクセスされるまでnullとする。
      */
-    private ExecutableBody body = new ExecutableBody(this);
+    private volatile ExecutableBody body = new ExecutableBody(this);
+    /** 全ての変数のキャッシュ:未作成はnull */
+    private transient volatile Variable[] allVariables;
+    /** キャッシュ世代 */
+    private transient volatile int cacheGeneration;
     /** scope属性：private, public */
     private ScopeAttribute scope = ScopeAttribute.NONE;
 
@@ -106,9 +112,32 @@ public class Procedure extends ProgramUnit {
      * @return 処理ブロック
      */
     public ExecutableBody getBody() {
+        if (this.body == null) {
+            IProcedureLoader loader = this.getProcedureLoader();
+            if (loader != null) {
+                loader.loadBody(this);
+            }
+        }
         return this.body;
     }
 
+    /**
+     * 処理ブロックを設定する。
+     * @param blk 処理ブロック
+     */
+    public void setBody(ExecutableBody blk) {
+        this.body = blk;
+        this.allVariables = null;
+    }
+
+    /**
+     * 処理ブロックが読込済みであるかチェックする。
+     * @return		true=読込済み
+     */
+    public boolean isBodyLoaded() {
+        return (this.body != null);
+    }
+
 
     /**
      * Public属性をセットする。
@@ -210,7 +239,7 @@ public class Procedure extends ProgramUnit {
     // ++++++++++++++++++++++++++++++++++++++++++++
 
     protected ExecutableBody get_body() {
-        return (body);
+        return getBody();
     }
 
     /**
@@ -287,7 +316,7 @@ public class Procedure extends ProgramUnit {
      * @return 手続呼出しのリスト。無ければ空のリストを返す。
      */
     public List<ProcedureUsage> getCalls() {
-        return body.getCalls();
+        return this.getBody().getCalls();
     }
 
     // ++++++++++++++++++++++++++++++++++++++++++//
@@ -514,7 +543,7 @@ public class Procedure extends ProgramUnit {
           = super.findInformationBlockBy(id);
 
         if (infoBlock == null) {
-            infoBlock = body.findInformationBlockBy(id);
+            infoBlock = this.getBody().findInformationBlockBy(id);
         }
 
         return infoBlock;
@@ -610,6 +639,10 @@ public class Procedure extends ProgramUnit {
      * @return ProcedureUsageのリスト。無ければ空のリストを返す。
      */
     public Set<ProcedureUsage> getCallMember() {
+        IProcedureLoader loader = this.getProcedureLoader();
+        if (loader != null) {
+            loader.loadCallMembers(this);
+        }
         if (this.calls == null) {
             return new LinkedHashSet<ProcedureUsage>();
         }
@@ -627,6 +660,15 @@ public class Procedure extends ProgramUnit {
         this.calls.add(pu);
     }
 
+    /**
+     * この手続を呼び出しているProcedureUsageクラスを削除する。
+     * @param pu ProcedureUsageクラス
+     */
+    public void removeCallMember(ProcedureUsage pu) {
+        if (this.calls == null) return;
+        this.calls.remove(pu);
+    }
+
     /**
      * この手続を呼び出しているProcedureUsageクラスリストを設定する。
      * @param list   ProcedureUsageリスト
@@ -635,6 +677,28 @@ public class Procedure extends ProgramUnit {
         this.calls = list;
     }
 
+    /**
+     * プログラム単位内で参照されている変数名とブロックリストのマップを返す。<br/>
+     * 処理ブロックが未読込の場合は読み込む。
+     * @return 変数名とブロックリストのマップ
+     */
+    @Override
+    public Map<String, Set<IBlock>> getRefVariableNames() {
+        this.getBody();
+        return super.getRefVariableNames();
+    }
+
+    /**
+     * プログラム単位内で定義されている変数名の集合を取得する。<br/>
+     * 処理ブロックが未読込の場合は読み込む。
+     * @return 変数名の集合
+     */
+    @Override
+    public Map<String, Set<IBlock>> getDefVariableNames() {
+        this.getBody();
+        return super.getDefVariableNames();
+    }
+
     /**
      * 付加情報ブロックコレクションを生成する。
      *
@@ -644,7 +708,7 @@ public class Procedure extends ProgramUnit {
     public InformationBlocks createInformationBlocks() {
         InformationBlocks informationBlocks = new InformationBlocks();
         informationBlocks.addAll(super.createInformationBlocks());
-        informationBlocks.addAll(this.body.createInformationBlocks());
+        informationBlocks.addAll(this.getBody().createInformationBlocks());
         return informationBlocks;
     }
 
@@ -691,8 +755,8 @@ public class Procedure extends ProgramUnit {
 	        	list.addAll(Arrays.asList(infos));
 	        }
 		}
-        if (this.body != null) {
-        	IInformation[] infos = body.searchInformationBlocks(block);
+        if (this.getBody() != null) {
+        	IInformation[] infos = this.getBody().searchInformationBlocks(block);
 	        if (infos != null) {
 	        	list.addAll(Arrays.asList(infos));
 	        }
@@ -743,7 +807,7 @@ public class Procedure extends ProgramUnit {
     	if (id == null || id.isEmpty()) return null;
         IInformation infoBlock = super.findInformationLayoutID(id);
         if (infoBlock == null) {
-            infoBlock = body.findInformationLayoutID(id);
+            infoBlock = this.getBody().findInformationLayoutID(id);
         }
 
         return infoBlock;
@@ -772,8 +836,8 @@ public class Procedure extends ProgramUnit {
 	        	list.addAll(Arrays.asList(blocks));
 	        }
 		}
-        if (this.body != null) {
-        	IBlock[] blocks = body.searchCodeLine(line);
+        if (this.getBody() != null) {
+        	IBlock[] blocks = this.getBody().searchCodeLine(line);
 	        if (blocks != null) {
 	        	list.addAll(Arrays.asList(blocks));
 	        }
@@ -791,10 +855,28 @@ public class Procedure extends ProgramUnit {
 	}
 
  	/**
- 	 * 変数リストを取得する.
+ 	 * 変数リストを取得する.<br/>
+ 	 * 解析後の変数リストはキャッシュし、変更不可のセットとして返す.
  	 */
  	@Override
  	public Set<Variable> getAllVariables() {
+ 		int generation = FlattenedSetCache.getGeneration();
+ 		Variable[] cache = this.allVariables;
+ 		if (cache == null || this.cacheGeneration != generation) {
+ 			Set<Variable> list = collectAllVariables();
+ 			cache = (list == null) ? FlattenedSetCache.EMPTY_VARIABLES : list.toArray(new Variable[list.size()]);
+ 			this.cacheGeneration = generation;
+ 			this.allVariables = cache;
+ 		}
+ 		if (cache.length <= 0) return null;
+ 		return FlattenedSetCache.asSet(cache);
+ 	}
+
+ 	/**
+ 	 * 副プログラム、処理ブロックの変数リストを作成する.
+ 	 * @return		変数リスト:無い場合はnull
+ 	 */
+ 	private Set<Variable> collectAllVariables() {
  		Set<Variable> list = new HashSet<Variable>();
 		// 変数宣言文、副プログラム
 		{
@@ -803,8 +885,8 @@ public class Procedure extends ProgramUnit {
 	        	list.addAll(vars);
 	        }
 		}
-        if (this.body != null) {
-        	Set<Variable> vars = body.getAllVariables();
+        if (this.getBody() != null) {
+        	Set<Variable> vars = this.getBody().getAllVariables();
 	        if (vars != null) {
 	        	list.addAll(vars);
 	        }
@@ -842,4 +924,28 @@ public class Procedure extends ProgramUnit {
  		if (this.get_type().equalsIgnoreCase("function")) return true;
  		return false;
  	}
+
+    /**
+     * 仮引数、戻り値の名前、読込済みの処理ブロックを圧縮する.
+     * @param compactor		データベース圧縮
+     */
+    @Override
+    @SuppressWarnings("deprecation")
+    void compact(LanguageCompactor compactor) {
+        super.compact(compactor);
+        this.result = compactor.intern(this.result);
+        compactor.trim(this.parents);
+        if (this.arguments != null) {
+            for (Variable argument : this.arguments) {
+                if (argument != null) {
+                    argument.compact(compactor);
+                }
+            }
+        }
+        // 未読込の処理ブロックは読み込まない
+        ExecutableBody body = this.body;
+        if (body != null) {
+            body.compact(compactor);
+        }
+    }
 }
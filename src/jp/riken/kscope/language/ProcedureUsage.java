@@ -132,8 +132,18 @@ public class ProcedureUsage extends Block {
      * @param proc 手続きの宣言
      */
     public void setCallDefinition(Procedure proc) {
+        setCallDefinition(proc, true);
+    }
+
+    /**
+     * 呼び出している手続きの宣言をセットする。<br/>
+     * スナップショットの複製、構造解析再実行では、呼出先の呼出元リストを別途更新する為、追加しない場合がある。
+     * @param proc 手続きの宣言
+     * @param member true=呼出先の呼出元リストに追加する
+     */
+    public void setCallDefinition(Procedure proc, boolean member) {
         callDefinition = proc;
-        if (proc != null) {
+        if (proc != null && member) {
         	proc.addCallMember(this);
         }
     }
@@ -491,4 +501,20 @@ public class ProcedureUsage extends Block {
 
 		return list.toArray(new IInformation[0]);
 	}
+
+    /**
+     * 呼出名、引数リストを圧縮する.
+     * @param compactor		データベース圧縮
+     */
+    @Override
+    void compact(LanguageCompactor compactor) {
+        super.compact(compactor);
+        this.callName = compactor.intern(this.callName);
+        if (this.arguments != null) {
+            this.arguments = compactor.compactList(this.arguments);
+            for (Expression argument : this.arguments) {
+                argument.compact(compactor);
+            }
+        }
+    }
 }
@@ -58,6 +58,20 @@ public abstract class Program implements Serializable {
     private InformationBlocks informationBlocks = new InformationBlocks();
     /** データベース挿入カレントプロシージャ */
     private transient ProgramUnit currentUnit;
+    /** 処理ブロックの遅延読込:データベースファイルから読み込んだ場合に設定される */
+    private transient IProcedureLoader procedureLoader;
+    /** 宣言探索用のシンボル索引:プログラム単位を追加、変更した場合は破棄する */
+    private transient volatile SymbolIndex symbolIndex;
+    /** 行番号索引:プログラム単位を追加、変更した場合は破棄する */
+    private transient volatile LineIndex lineIndex;
+    /** 変数の参照・定義索引:プログラム単位を追加、変更した場合は破棄する */
+    private transient volatile ReferenceIndex referenceIndex;
+    /** 引数結合グラフ:プログラム単位を追加、変更した場合は破棄する */
+    private transient volatile ArgumentBindingGraph argumentBindingGraph;
+    /** 識別子テーブル:並列パースの部分データベースはプロジェクトのテーブルを共有する */
+    private transient volatile IdentifierTable identifierTable;
+    /** パース時の識別子の共有結果 */
+    private transient LanguageCompactor ingestCompactor;
 
     /**
      * コンストラクタ。
@@ -80,6 +94,10 @@ public abstract class Program implements Serializable {
      */
     public void setModules(Map<String, Module> modules) {
 		this.modules = modules;
+		this.clearSymbolIndex();
+		this.clearLineIndex();
+		this.clearReferenceIndex();
+		this.clearArgumentBindingGraph();
 	}
 
 	/**
@@ -106,7 +124,9 @@ public abstract class Program implements Serializable {
      * mainブロックを終了する。
      */
     public void end_main() {
+        ProgramUnit unit = currentUnit;
         currentUnit = currentUnit.get_mother();
+        compactUnit(unit);
     }
 
     /**
@@ -117,13 +137,21 @@ public abstract class Program implements Serializable {
         Module module = new Module(module_name);
         modules.put(module_name, module);
         currentUnit = module;
+        this.clearSymbolIndex();
+        this.clearLineIndex();
+        this.clearReferenceIndex();
+        this.clearArgumentBindingGraph();
     }
 
     /**
      * モジュールブロックを終了する。
      */
     public void end_module() {
+        ProgramUnit unit = currentUnit;
         currentUnit = module(NO_MODULE);
+        if (unit instanceof Module) {
+            compactUnit(unit);
+        }
     }
 
     /**
@@ -154,6 +182,10 @@ public abstract class Program implements Serializable {
         currentUnit.put_child(sub);
         currentUnit = currentUnit.get_child(sub_name);
         currentUnit.set_mother(mama);
+        this.clearSymbolIndex();
+        this.clearLineIndex();
+        this.clearReferenceIndex();
+        this.clearArgumentBindingGraph();
     }
 
     /**
@@ -175,7 +207,37 @@ public abstract class Program implements Serializable {
      * プロシージャブロックを終了する。
      */
     protected void end_procedure() {
+        ProgramUnit unit = currentUnit;
         currentUnit = currentUnit.get_mother();
+        // モジュール副プログラム、内部副プログラムはモジュール、親プログラム単位の終了時に共有する
+        if (currentUnit == module(NO_MODULE)) {
+            compactUnit(unit);
+        }
+    }
+
+    /**
+     * パースを終了したプログラム単位の識別子、式、コード行の文字列を識別子テーブルの共有文字列に置き換える.<br/>
+     * パース中の文字列は出現毎に作成される為、プログラム単位毎に置き換えて解放する.
+     * コレクションは解析時に追加される為、解析後に圧縮する.
+     * @param unit		プログラム単位
+     */
+    private void compactUnit(ProgramUnit unit) {
+        if (unit == null) return;
+        prepareIngestCompactor().compact(unit);
+    }
+
+    /**
+     * パース時の識別子の共有を取得する.<br/>
+     * 未作成の場合は、文字列のみを置き換える圧縮を作成する.
+     * @return		パース時の識別子の共有
+     */
+    private LanguageCompactor prepareIngestCompactor() {
+        if (this.ingestCompactor == null) {
+            this.ingestCompactor = new LanguageCompactor("parse", this.getIdentifierTable());
+            this.ingestCompactor.setShareEmpty(false);
+            this.ingestCompactor.setTrimLists(false);
+        }
+        return this.ingestCompactor;
     }
 
     /**
@@ -1092,6 +1154,261 @@ public abstract class Program implements Serializable {
 	    this.modules = program.modules;
 	    this.commonMap = program.commonMap;
 	    this.informationBlocks = program.informationBlocks;
+	    this.procedureLoader = program.procedureLoader;
+	    this.symbolIndex = null;
+	    this.lineIndex = null;
+	    this.referenceIndex = null;
+	    this.argumentBindingGraph = null;
+	    this.identifierTable = program.identifierTable;
+	}
+
+	/**
+	 * 識別子テーブルを取得する.<br/>
+	 * 未作成の場合は作成する.
+	 * @return		識別子テーブル
+	 */
+	public IdentifierTable getIdentifierTable() {
+		IdentifierTable table = this.identifierTable;
+		if (table == null) {
+			synchronized (this) {
+				table = this.identifierTable;
+				if (table == null) {
+					table = new IdentifierTable();
+					this.identifierTable = table;
+				}
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * 識別子テーブルを設定する.<br/>
+	 * 並列パースの部分データベースにプロジェクトの識別子テーブルを設定する.
+	 * @param table		識別子テーブル
+	 */
+	public void setIdentifierTable(IdentifierTable table) {
+		this.identifierTable = table;
+	}
+
+	/**
+	 * パース時の識別子の共有結果を取得する.
+	 * @return		パース時の識別子の共有結果:パースしていない場合はnull
+	 */
+	public LanguageCompactor getIngestCompactor() {
+		return this.ingestCompactor;
+	}
+
+	/**
+	 * 宣言探索用のシンボル索引を取得する.<br/>
+	 * 索引が未作成、又はプログラム単位が変更されている場合は作成する.
+	 * @return		シンボル索引
+	 */
+	public SymbolIndex getSymbolIndex() {
+		SymbolIndex index = this.symbolIndex;
+		if (index == null) {
+			index = new SymbolIndex(this);
+			this.symbolIndex = index;
+		}
+		return index;
+	}
+
+	/**
+	 * 宣言探索用のシンボル索引を破棄する.<br/>
+	 * モジュール、プロシージャを追加、削除した場合に呼び出す.
+	 */
+	public void clearSymbolIndex() {
+		this.symbolIndex = null;
+	}
+
+	/**
+	 * 行番号索引を取得する.<br/>
+	 * 索引が未作成、又はプログラム単位が変更されている場合は作成する.
+	 * @return		行番号索引
+	 */
+	public LineIndex getLineIndex() {
+		LineIndex index = this.lineIndex;
+		if (index == null) {
+			index = new LineIndex(this);
+			this.lineIndex = index;
+		}
+		return index;
+	}
+
+	/**
+	 * 行番号索引を破棄する.<br/>
+	 * モジュール、プロシージャを追加、削除した場合に呼び出す.
+	 */
+	public void clearLineIndex() {
+		this.lineIndex = null;
+	}
+
+	/**
+	 * 変数の参照・定義索引を取得する.<br/>
+	 * 索引が未作成、又はプログラム単位が変更されている場合は作成する.
+	 * 解析済みのデータベースで使用すること.
+	 * @return		変数の参照・定義索引
+	 */
+	public ReferenceIndex getReferenceIndex() {
+		ReferenceIndex index = this.referenceIndex;
+		if (index == null) {
+			index = new ReferenceIndex(this);
+			this.referenceIndex = index;
+		}
+		return index;
+	}
+
+	/**
+	 * 変数の参照・定義索引を設定する.<br/>
+	 * データベースファイルから読み込んだ索引を設定する.
+	 * @param index		変数の参照・定義索引
+	 */
+	public void setReferenceIndex(ReferenceIndex index) {
+		this.referenceIndex = index;
+	}
+
+	/**
+	 * 変数の参照・定義索引を破棄する.<br/>
+	 * モジュール、プロシージャを追加、削除した場合に呼び出す.
+	 */
+	public void clearReferenceIndex() {
+		this.referenceIndex = null;
+	}
+
+	/**
+	 * 引数結合グラフを取得する.<br/>
+	 * グラフが未作成、又はプログラム単位が変更されている場合は作成する.
+	 * 解析済みのデータベースで使用すること.
+	 * @return		引数結合グラフ
+	 */
+	public ArgumentBindingGraph getArgumentBindingGraph() {
+		ArgumentBindingGraph graph = this.argumentBindingGraph;
+		if (graph == null) {
+			graph = new ArgumentBindingGraph(this);
+			this.argumentBindingGraph = graph;
+		}
+		return graph;
+	}
+
+	/**
+	 * 引数結合グラフを設定する.<br/>
+	 * データベースファイルから読み込んだグラフを設定する.
+	 * @param graph		引数結合グラフ
+	 */
+	public void setArgumentBindingGraph(ArgumentBindingGraph graph) {
+		this.argumentBindingGraph = graph;
+	}
+
+	/**
+	 * 引数結合グラフを破棄する.<br/>
+	 * モジュール、プロシージャを追加、削除した場合に呼び出す.
+	 */
+	public void clearArgumentBindingGraph() {
+		this.argumentBindingGraph = null;
+	}
+
+	/**
+	 * 処理ブロックの遅延読込を取得する.
+	 * @return		処理ブロックの遅延読込:データベースファイルから読み込んでいない場合はnull
+	 */
+	public IProcedureLoader getProcedureLoader() {
+		return this.procedureLoader;
+	}
+
+	/**
+	 * 処理ブロックの遅延読込を設定する.
+	 * @param loader		処理ブロックの遅延読込
+	 */
+	public void setProcedureLoader(IProcedureLoader loader) {
+		this.procedureLoader = loader;
+	}
+
+	/**
+	 * 未読込の全ての処理ブロックを読み込む.<br/>
+	 * データベース全体を更新、出力する前に呼び出す.
+	 */
+	public void loadProcedures() {
+		if (this.procedureLoader != null) {
+			this.procedureLoader.loadAll();
+		}
+	}
+
+	/**
+	 * 処理ブロックの遅延読込を終了し、データベースファイルを閉じる.<br/>
+	 * 以降、未読込の処理ブロックは読み込めない.
+	 */
+	public void closeProcedureLoader() {
+		if (this.procedureLoader == null) return;
+		try {
+			this.procedureLoader.close();
+		} catch (IOException ex) {
+			ex.printStackTrace();
+		}
+		this.procedureLoader = null;
+	}
+
+	/**
+	 * 部分データベースをマージする.<br/>
+	 * ファイル毎に構築した部分データベースのモジュール、プロシージャを追加する.<br/>
+	 * 逐次構築と同じく、同名のモジュール、プロシージャは後からマージしたものが優先される.
+	 * @param part		部分データベース
+	 * @return		重複プログラム単位リスト {上書きプログラム単位, 重複プログラム単位}
+	 */
+	public List<ProgramUnit[]> mergeProgram(Program part) {
+		List<ProgramUnit[]> duplicates = new ArrayList<ProgramUnit[]>();
+		if (part == null) return duplicates;
+
+		this.clearSymbolIndex();
+
+		this.clearLineIndex();
+
+		this.clearReferenceIndex();
+		this.clearArgumentBindingGraph();
+		Module noModule = this.module(NO_MODULE);
+		for (Module partModule : part.modules.values()) {
+			if (NO_MODULE.equals(partModule.get_name())) {
+				// モジュールに含まれないプロシージャを付け替える
+				for (Procedure proc : partModule.getChildren()) {
+					ProgramUnit duplicate = null;
+					if (part.mainName != null && part.mainName.equals(proc.get_name())) {
+						duplicate = this.getMainProgram();
+					}
+					else {
+						duplicate = noModule.get_child(proc.get_name());
+					}
+					if (duplicate != null) {
+						duplicates.add(new ProgramUnit[] {proc, duplicate});
+					}
+					noModule.put_child(proc);
+					proc.set_mother(noModule);
+				}
+			}
+			else {
+				Module duplicate = this.module(partModule.get_name());
+				if (duplicate != null && duplicate.get_start() != null
+						&& duplicate.get_start().getLineInfo() != null) {
+					duplicates.add(new ProgramUnit[] {partModule, duplicate});
+				}
+				this.modules.put(partModule.get_name(), partModule);
+			}
+		}
+		if (part.mainName != null) {
+			this.mainName = part.mainName;
+		}
+		if (part.commonMap != null) {
+			for (String key : part.commonMap.keySet()) {
+				for (ProgramUnit unit : part.commonMap.get(key)) {
+					this.addCommonMap(key, unit);
+				}
+			}
+		}
+		if (part.informationBlocks != null) {
+			this.informationBlocks.addAll(part.informationBlocks);
+		}
+		if (part.ingestCompactor != null) {
+			prepareIngestCompactor().add(part.ingestCompactor);
+		}
+
+		return duplicates;
 	}
 
 	/**
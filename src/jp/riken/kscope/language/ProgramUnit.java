@@ -21,6 +21,7 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -102,6 +103,8 @@ public abstract class ProgramUnit implements Serializable, IInformation, IBlock
      * 本プログラム単位内で使用されている変数の名前と宣言(他のプログラム単位含む)のマップ。 分析機能のためのメンバー変数。
      */
     private transient HashMap<String, VariableDefinition> variableMap = new HashMap<String, VariableDefinition>();
+    /** 処理ブロックの遅延読込:データベースファイルから読み込んだ場合に設定される */
+    private transient IProcedureLoader procedureLoader;
 
     /**
      * コンストラクタ。
@@ -253,7 +256,7 @@ public abstract class ProgramUnit implements Serializable, IInformation, IBlock
      * 親プログラムを設定する.
      * @param mam		親プログラム
      */
-    protected void set_mother(ProgramUnit mam) {
+    public void set_mother(ProgramUnit mam) {
         mother = mam;
     }
 
@@ -262,7 +265,7 @@ public abstract class ProgramUnit implements Serializable, IInformation, IBlock
      * @param attribute_name		属性名
      */
     protected void put_attribute(String attribute_name) {
-        attributes.put(attribute_name, "");
+        put_attribute(attribute_name, "");
     }
 
     /**
@@ -271,6 +274,10 @@ public abstract class ProgramUnit implements Serializable, IInformation, IBlock
      * @param attribute_value		属性値
      */
     protected void put_attribute(String attribute_name, Object attribute_value) {
+        if (attributes == Collections.<String, Object>emptyMap()) {
+            // 圧縮により共有の空マップに置き換えられている
+            attributes = new HashMap<String, Object>();
+        }
         attributes.put(attribute_name, attribute_value);
     }
 
@@ -544,6 +551,10 @@ public abstract class ProgramUnit implements Serializable, IInformation, IBlock
      * @param tp
      */
     protected void addTypeDefinition(Type tp) {
+        if (this.typeDefinitions == Collections.<Type>emptyList()) {
+            // 圧縮により共有の空リストに置き換えられている
+            this.typeDefinitions = new ArrayList<Type>();
+        }
         this.typeDefinitions.add(tp);
         tp.setMotherBlock(this);
     }
@@ -829,6 +840,15 @@ public abstract class ProgramUnit implements Serializable, IInformation, IBlock
         return refVariableNames;
     }
 
+    /**
+     * プログラム単位内で参照されている変数名とブロックリストのマップを設定する。
+     *
+     * @param names 変数名とブロックリストのマップ
+     */
+    public void setRefVariableNames(Map<String, Set<IBlock>> names) {
+        this.refVariableNames = names;
+    }
+
     /**
      * プログラム単位内で参照されている変数名と現れるブロックを追加する。
      *
@@ -858,6 +878,15 @@ public abstract class ProgramUnit implements Serializable, IInformation, IBlock
         return defVariableNames;
     }
 
+    /**
+     * プログラム単位内で定義されている変数名とブロックリストのマップを設定する。
+     *
+     * @param names 変数名とブロックリストのマップ
+     */
+    public void setDefVariableNames(Map<String, Set<IBlock>> names) {
+        this.defVariableNames = names;
+    }
+
     /**
      * プログラム単位内で定義されている変数名と現れるブロックを追加する。
      *
@@ -975,6 +1004,22 @@ public abstract class ProgramUnit implements Serializable, IInformation, IBlock
     }
 
 
+    /**
+     * 処理ブロックの遅延読込を取得する。
+     * @return		処理ブロックの遅延読込:データベースファイルから読み込んでいない場合はnull
+     */
+    public IProcedureLoader getProcedureLoader() {
+        return this.procedureLoader;
+    }
+
+    /**
+     * 処理ブロックの遅延読込を設定する。
+     * @param loader		処理ブロックの遅延読込
+     */
+    public void setProcedureLoader(IProcedureLoader loader) {
+        this.procedureLoader = loader;
+    }
+
     /**
      * 親ブロックを取得する
      * @return        親ブロック
@@ -1310,5 +1355,56 @@ public abstract class ProgramUnit implements Serializable, IInformation, IBlock
 			}
 		}
 	}
-}
 
+    /**
+     * プログラム単位の識別子、宣言、処理ブロックを圧縮する.<br/>
+     * 内部副プログラム、モジュール副プログラムを含む.
+     * 変数参照、定義マップは遅延読込、データベースファイルへの出力でインスタンスを参照する為、キーのみ置き換える.
+     * @param compactor		データベース圧縮
+     */
+    void compact(LanguageCompactor compactor) {
+        this.name = compactor.intern(this.name);
+        this.type = compactor.intern(this.type);
+        compactor.compact(this.start);
+        compactor.compact(this.end);
+        this.attributes = compactor.compactMap(this.attributes);
+        this.typeDefinitions = compactor.compactList(this.typeDefinitions);
+
+        compactor.internKeys(this.variables);
+        for (VariableDefinition def : this.variables.values()) {
+            def.compact(compactor);
+        }
+        compactor.internKeys(this.variableMap);
+        compactor.internKeys(this.refVariableNames);
+        compactor.internKeys(this.defVariableNames);
+        compactor.internKeys(this.externalFunctionList);
+
+        // 宣言文のリストは要素の追加時にのみ作成する
+        compactBlocks(compactor, this.interfaceList);
+        compactBlocks(compactor, this.useList);
+        compactBlocks(compactor, this.equivalenceList);
+        compactBlocks(compactor, this.commonList);
+        compactBlocks(compactor, this.dataList);
+        compactBlocks(compactor, this.directiveList);
+
+        if (this.children != null) {
+            compactor.internKeys(this.children);
+            for (Procedure child : this.children.values()) {
+                child.compact(compactor);
+            }
+        }
+    }
+
+    /**
+     * 宣言文のリストを圧縮する.
+     * @param compactor		データベース圧縮
+     * @param blocks		宣言文のリスト
+     */
+    private void compactBlocks(LanguageCompactor compactor, List<? extends Block> blocks) {
+        if (blocks == null) return;
+        compactor.trim(blocks);
+        for (Block block : blocks) {
+            block.compact(compactor);
+        }
+    }
+}
@@ -0,0 +1,399 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.riken.kscope.language;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 変数の参照・定義索引クラス.<br/>
+ * 変数宣言毎に、変数を参照・定義し得るプログラム単位と、プログラム単位内での変数名を保持する.
+ * 宣言のプログラム単位と副プログラム(ホスト結合)、USE文による参照(名前の変換を含む)、
+ * COMMON文、EQUIVALENCE文による別名を解決済みとし、参照・定義ブロックは各プログラム単位の
+ * 変数参照、定義マップから取得する.<br/>
+ * 宣言のプログラム単位のみで参照・定義される変数は索引に保持しない.
+ * データベースの解析後に作成し、データベースが変更された場合は破棄して再作成すること.
+ * @author RIKEN
+ */
+public class ReferenceIndex {
+
+    /** 索引:{変数宣言, 参照・定義エントリ} */
+    private Map<VariableDefinition, Entry[]> entries = new IdentityHashMap<VariableDefinition, Entry[]>();
+
+    /**
+     * 参照・定義エントリクラス.<br/>
+     * 変数を参照・定義し得るプログラム単位と、プログラム単位内での変数名.
+     */
+    public static class Entry {
+        /** プログラム単位 */
+        private ProgramUnit unit;
+        /** プログラム単位内での変数名 */
+        private String name;
+        /** 別名の変数宣言:COMMON文、EQUIVALENCE文による別名以外はnull */
+        private VariableDefinition alias;
+
+        /**
+         * コンストラクタ
+         * @param unit		プログラム単位
+         * @param name		プログラム単位内での変数名
+         * @param alias		別名の変数宣言(null=別名ではない)
+         */
+        public Entry(ProgramUnit unit, String name, VariableDefinition alias) {
+            this.unit = unit;
+            this.name = name;
+            this.alias = alias;
+        }
+
+        /**
+         * プログラム単位を取得する.
+         * @return		プログラム単位
+         */
+        public ProgramUnit getUnit() {
+            return this.unit;
+        }
+
+        /**
+         * プログラム単位内での変数名を取得する.
+         * @return		変数名
+         */
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * 別名の変数宣言を取得する.
+         * @return		別名の変数宣言:別名ではない場合はnull
+         */
+        public VariableDefinition getAlias() {
+            return this.alias;
+        }
+
+        /**
+         * プログラム単位内の参照ブロックを取得する.
+         * @return		参照ブロック:参照が無い場合はnull
+         */
+        public Set<IBlock> getReferences() {
+            Map<String, Set<IBlock>> refs = this.unit.getRefVariableNames();
+            if (refs == null) return null;
+            return refs.get(this.name);
+        }
+
+        /**
+         * プログラム単位内の定義ブロックを取得する.
+         * @return		定義ブロック:定義が無い場合はnull
+         */
+        public Set<IBlock> getDefinitions() {
+            Map<String, Set<IBlock>> defs = this.unit.getDefVariableNames();
+            if (defs == null) return null;
+            return defs.get(this.name);
+        }
+    }
+
+    /**
+     * コンストラクタ.<br/>
+     * 空の索引を作成する.データベースファイルから索引を読み込む場合に使用する.
+     */
+    public ReferenceIndex() {
+    }
+
+    /**
+     * コンストラクタ.<br/>
+     * 解析済みのデータベースから索引を作成する.
+     * @param program		データベース
+     */
+    public ReferenceIndex(Program program) {
+        Map<String, Module> modules = program.getModules();
+        if (modules == null) return;
+        for (Module module : modules.values()) {
+            addUnit(program, module);
+        }
+    }
+
+    /**
+     * プログラム単位と副プログラムの変数宣言を索引に追加する.
+     * @param program		データベース
+     * @param unit		プログラム単位
+     */
+    private void addUnit(Program program, ProgramUnit unit) {
+        for (VariableDefinition def : unit.getVariables().values()) {
+            List<Entry> list = createEntries(program, def);
+            if (!isDefaultEntries(def, list)) {
+                this.entries.put(def, list.toArray(new Entry[list.size()]));
+            }
+        }
+        for (Procedure child : unit.getChildren()) {
+            addUnit(program, child);
+        }
+    }
+
+    /**
+     * 変数宣言の参照・定義エントリを作成する.
+     * @param program		データベース
+     * @param def		変数宣言
+     * @return		参照・定義エントリ
+     */
+    private List<Entry> createEntries(Program program, VariableDefinition def) {
+        List<Entry> list = new ArrayList<Entry>();
+        ProgramUnit mother = def.getMother();
+        if (mother == null) return list;
+
+        // 宣言が属するプログラム単位、および副プログラム単位
+        Set<ProgramUnit> units = new LinkedHashSet<ProgramUnit>();
+        units.add(mother);
+        for (Procedure child : mother.getChildren()) {
+            // 副プログラムに同一の名前の宣言が無ければ追加
+            if (child.get_variable(def.get_name()) == null) {
+                units.add(child);
+            }
+            for (Procedure grnd : child.getChildren()) {
+                if (grnd.get_variable(def.get_name()) == null) {
+                    units.add(grnd);
+                }
+            }
+        }
+        // USE文による参照
+        units.addAll(def.getReferMember());
+
+        for (ProgramUnit pu : units) {
+            String name = def.get_name();
+            // USE文による名前の変換が無いかチェック
+            List<UseState> uses = pu.getUseList();
+            if (uses != null) {
+                for (UseState use : uses) {
+                    name = use.translation(def);
+                    if (!(name.equalsIgnoreCase(def.get_name()))) {
+                        break;
+                    }
+                }
+            }
+            putEntry(list, new Entry(pu, name, null));
+        }
+
+        // COMMON文による別名
+        if (program.getCommonMap() != null) {
+            addCommonEntries(program, def, units, list);
+        }
+
+        // EQUIVALENCE文による別名
+        addEquivalenceEntries(def, list);
+
+        return list;
+    }
+
+    /**
+     * COMMON文による別名を参照・定義エントリに追加する.<br/>
+     * 宣言のプログラム単位のCOMMONブロックと同名のCOMMONブロックの同じ位置の変数を別名とする.
+     * @param program		データベース
+     * @param def		変数宣言
+     * @param units		参照・定義プログラム単位
+     * @param list		参照・定義エントリ
+     */
+    private void addCommonEntries(Program program, VariableDefinition def, Set<ProgramUnit> units, List<Entry> list) {
+        List<Common> comList = def.getMother().getCommonList();
+        if (comList == null) return;
+        List<ProgramUnit> comUnits = null;
+        String comName = null;
+        int varidx = 0;
+        searchCom:
+            for (Common com : comList) {
+                if (com.getVariables() == null) continue;
+                varidx = 0;
+                for (Variable var : com.getVariables()) {
+                    if (var.getName().equalsIgnoreCase(def.get_name())) {
+                        comName = com.getName();
+                        comUnits = program.getCommonUnit(comName);
+                        break searchCom;
+                    }
+                    varidx++;
+                }
+            }
+        if (comUnits == null) return;
+        for (ProgramUnit pu : comUnits) {
+            if (units.contains(pu)) continue;
+            List<Common> puComs = pu.getCommonList();
+            if (puComs == null) continue;
+            String localName = null;
+            for (Common cm : puComs) {
+                if (cm.getVariables() == null || cm.getVariables().size() <= varidx) continue;
+                if (cm.getName().equalsIgnoreCase(comName)) {
+                    localName = cm.getVariables().get(varidx).getName();
+                    break;
+                }
+            }
+            VariableDefinition alias = pu.getVariableMap(localName);
+            if (alias == null && localName != null) {
+                // 処理ブロックを読み込んでいない手続きは変数マップが未作成の為、宣言から探索する
+                alias = pu.get_variable(localName);
+            }
+            if (alias != null) {
+                putEntry(list, new Entry(pu, localName, alias));
+            }
+        }
+    }
+
+    /**
+     * EQUIVALENCE文による別名を参照・定義エントリに追加する.<br/>
+     * EQUIVALENCE文は文単位で変数リストを保持する為、同じ文の他の変数を別名とする.
+     * @param def		変数宣言
+     * @param list		参照・定義エントリ
+     */
+    private void addEquivalenceEntries(VariableDefinition def, List<Entry> list) {
+        ProgramUnit mother = def.getMother();
+        List<Equivalence> equivs = mother.getEquivalenceList();
+        if (equivs == null) return;
+        for (Equivalence equiv : equivs) {
+            List<Variable> vars = equiv.getVariables();
+            if (vars == null || !containsVariable(vars, def.get_name())) continue;
+            for (Variable var : vars) {
+                String name = var.getName();
+                if (name == null || name.equalsIgnoreCase(def.get_name())) continue;
+                VariableDefinition alias = mother.get_variable(name);
+                if (alias != null && alias != def) {
+                    putEntry(list, new Entry(mother, name, alias));
+                }
+            }
+        }
+    }
+
+    /**
+     * 変数リストに変数名が含まれるかチェックする.
+     * @param vars		変数リスト
+     * @param name		変数名
+     * @return		true=含まれる
+     */
+    private boolean containsVariable(List<Variable> vars, String name) {
+        for (Variable var : vars) {
+            if (name.equalsIgnoreCase(var.getName())) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 参照・定義エントリを追加する.<br/>
+     * 同一プログラム単位、同一変数名のエントリは最初のエントリとする.
+     * @param list		参照・定義エントリ
+     * @param entry		追加エントリ
+     */
+    private void putEntry(List<Entry> list, Entry entry) {
+        for (Entry other : list) {
+            if (other.unit == entry.unit && other.name.equals(entry.name)) return;
+        }
+        list.add(entry);
+    }
+
+    /**
+     * 宣言のプログラム単位のみのエントリであるかチェックする.
+     * @param def		変数宣言
+     * @param list		参照・定義エントリ
+     * @return		true=宣言のプログラム単位のみ
+     */
+    private boolean isDefaultEntries(VariableDefinition def, List<Entry> list) {
+        if (list.size() != 1) return list.isEmpty();
+        Entry entry = list.get(0);
+        return entry.unit == def.getMother() && entry.alias == null
+                && entry.name.equals(def.get_name());
+    }
+
+    /**
+     * 変数宣言の参照・定義エントリを設定する.<br/>
+     * データベースファイルから読み込んだ索引を設定する.
+     * @param def		変数宣言
+     * @param list		参照・定義エントリ
+     */
+    public void putEntries(VariableDefinition def, List<Entry> list) {
+        if (def == null || list == null) return;
+        if (isDefaultEntries(def, list)) return;
+        this.entries.put(def, list.toArray(new Entry[list.size()]));
+    }
+
+    /**
+     * 索引に保持している変数宣言を取得する.<br/>
+     * 宣言のプログラム単位のみで参照・定義される変数宣言は含まない.
+     * @return		変数宣言
+     */
+    public Set<VariableDefinition> getIndexedVariables() {
+        return Collections.unmodifiableSet(this.entries.keySet());
+    }
+
+    /**
+     * 変数宣言の参照・定義エントリを取得する.<br/>
+     * 最初のエントリは宣言のプログラム単位とする.
+     * @param def		変数宣言
+     * @return		参照・定義エントリ
+     */
+    public List<Entry> getEntries(VariableDefinition def) {
+        if (def == null) return Collections.emptyList();
+        Entry[] list = this.entries.get(def);
+        if (list == null) {
+            if (def.getMother() == null) return Collections.emptyList();
+            return Collections.singletonList(new Entry(def.getMother(), def.get_name(), null));
+        }
+        return Collections.unmodifiableList(Arrays.asList(list));
+    }
+
+    /**
+     * 変数をプログラム全体で参照しているブロックを取得する.<br/>
+     * 別名による参照を含む.
+     * @param def		変数宣言
+     * @return		参照ブロック:{プログラム単位, 参照ブロック}
+     */
+    public Map<ProgramUnit, Set<IBlock>> getReferences(VariableDefinition def) {
+        Map<ProgramUnit, Set<IBlock>> blocks = new LinkedHashMap<ProgramUnit, Set<IBlock>>();
+        for (Entry entry : getEntries(def)) {
+            addBlocks(blocks, entry.unit, entry.getReferences());
+        }
+        return blocks;
+    }
+
+    /**
+     * 変数をプログラム全体で定義しているブロックを取得する.<br/>
+     * 別名による定義を含む.
+     * @param def		変数宣言
+     * @return		定義ブロック:{プログラム単位, 定義ブロック}
+     */
+    public Map<ProgramUnit, Set<IBlock>> getDefinitions(VariableDefinition def) {
+        Map<ProgramUnit, Set<IBlock>> blocks = new LinkedHashMap<ProgramUnit, Set<IBlock>>();
+        for (Entry entry : getEntries(def)) {
+            addBlocks(blocks, entry.unit, entry.getDefinitions());
+        }
+        return blocks;
+    }
+
+    /**
+     * プログラム単位のブロックを追加する.
+     * @param blocks		{プログラム単位, ブロック}
+     * @param unit		プログラム単位
+     * @param list		追加ブロック
+     */
+    private void addBlocks(Map<ProgramUnit, Set<IBlock>> blocks, ProgramUnit unit, Set<IBlock> list) {
+        if (list == null || list.isEmpty()) return;
+        Set<IBlock> set = blocks.get(unit);
+        if (set == null) {
+            set = new LinkedHashSet<IBlock>();
+            blocks.put(unit, set);
+        }
+        set.addAll(list);
+    }
+}
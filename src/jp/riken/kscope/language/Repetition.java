@@ -181,4 +181,25 @@ public class Repetition extends Block {
 			step.setParentStatement(this);
 		}
 	}
+
+    /**
+     * DO文の制御変数、初期値、最大値、ステップを圧縮する.
+     * @param compactor		データベース圧縮
+     */
+    @Override
+    void compact(LanguageCompactor compactor) {
+        super.compact(compactor);
+        if (this.iterator != null) {
+            this.iterator.compact(compactor);
+        }
+        if (this.initIterator != null) {
+            this.initIterator.compact(compactor);
+        }
+        if (this.endCondition != null) {
+            this.endCondition.compact(compactor);
+        }
+        if (this.step != null) {
+            this.step.compact(compactor);
+        }
+    }
 }
@@ -385,4 +385,21 @@ public class Selection extends Block {
     protected int indexOfLayout(Block block) {
     	return indexOfChildren(block);
 	}
+
+    /**
+     * 分岐条件、CASE文の条件式を圧縮する.
+     * @param compactor		データベース圧縮
+     */
+    @Override
+    void compact(LanguageCompactor compactor) {
+        super.compact(compactor);
+        if (this.conditions != null) {
+            for (Condition condition : this.conditions) {
+                condition.compact(compactor);
+            }
+        }
+        if (this.caseCondition != null) {
+            this.caseCondition.compact(compactor);
+        }
+    }
 }
@@ -276,4 +276,19 @@ public class Substitution extends Block {
         if (list.size() <= 0) return null;
 		return list;
 	}
+
+    /**
+     * 代入文の左辺、右辺を圧縮する.
+     * @param compactor		データベース圧縮
+     */
+    @Override
+    void compact(LanguageCompactor compactor) {
+        super.compact(compactor);
+        if (this.leftVar != null) {
+            this.leftVar.compact(compactor);
+        }
+        if (this.rightVar != null) {
+            this.rightVar.compact(compactor);
+        }
+    }
 }
@@ -0,0 +1,289 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.riken.kscope.language;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import jp.riken.kscope.language.generic.Procedures;
+
+/**
+ * 宣言探索用のシンボル索引クラス.<br/>
+ * プログラム単位毎の副プログラム名(小文字)、総称名(小文字)の索引と、
+ * USE文の探索結果を保持する.
+ * データベースの構造が変更された場合は破棄して再作成すること.
+ * @author RIKEN
+ */
+public class SymbolIndex {
+
+    /** 副プログラム索引:{プログラム単位, {副プログラム名(小文字), 副プログラム}} */
+    private Map<ProgramUnit, Map<String, Procedure>> children
+                = new IdentityHashMap<ProgramUnit, Map<String, Procedure>>();
+    /** 総称名索引:{プログラム単位, {総称名(小文字), INTERFACE文リストのインデックス}} */
+    private Map<ProgramUnit, Map<String, int[]>> generics
+                = new IdentityHashMap<ProgramUnit, Map<String, int[]>>();
+    /** 副プログラム名索引:{副プログラム名, 副プログラム} search_subroutineの探索順で最初の副プログラム */
+    private Map<String, Procedure> procedures = new HashMap<String, Procedure>();
+    /** USE文による手続き探索結果:{プログラム単位, {手続き名, 手続き(未定義はnull)}} */
+    private Map<ProgramUnit, Map<String, Procedure>> useProcedures
+                = new IdentityHashMap<ProgramUnit, Map<String, Procedure>>();
+    /** USE文による変数宣言探索結果:{プログラム単位, {変数名, 探索結果(未定義はnull)}} */
+    private Map<ProgramUnit, Map<String, UseVariable>> useVariables
+                = new IdentityHashMap<ProgramUnit, Map<String, UseVariable>>();
+
+    /**
+     * USE文による変数宣言の探索結果クラス.
+     */
+    public static class UseVariable {
+        /** 変数名:USE文の変換後の名前 */
+        private String name;
+        /** 変数宣言 */
+        private VariableDefinition definition;
+
+        /**
+         * コンストラクタ
+         * @param name			変数名
+         * @param definition	変数宣言
+         */
+        public UseVariable(String name, VariableDefinition definition) {
+            this.name = name;
+            this.definition = definition;
+        }
+
+        /**
+         * 変数名を取得する.
+         * @return		変数名
+         */
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * 変数宣言を取得する.
+         * @return		変数宣言
+         */
+        public VariableDefinition getDefinition() {
+            return this.definition;
+        }
+    }
+
+    /**
+     * コンストラクタ
+     * @param program		データベース
+     */
+    public SymbolIndex(Program program) {
+        for (Module module : program.getModules().values()) {
+            addUnit(module);
+        }
+    }
+
+    /**
+     * プログラム単位と副プログラムを索引に追加する.<br/>
+     * 副プログラム名索引は、Fortran.search_subroutineと同じく
+     * 直下の副プログラムを優先し、次に副プログラム毎に再帰的に探索した順とする.
+     * @param unit		プログラム単位
+     */
+    private void addUnit(ProgramUnit unit) {
+        Map<String, Procedure> names = new HashMap<String, Procedure>();
+        for (Procedure child : unit.getChildren()) {
+            String name = child.get_name();
+            if (name == null) continue;
+            if (!this.procedures.containsKey(name)) {
+                this.procedures.put(name, child);
+            }
+            String key = name.toLowerCase();
+            if (!names.containsKey(key)) {
+                names.put(key, child);
+            }
+        }
+        this.children.put(unit, names);
+
+        List<Procedures> interfaceList = unit.getInterfaceList();
+        if (interfaceList != null && interfaceList.size() > 0) {
+            Map<String, List<Integer>> positions = new HashMap<String, List<Integer>>();
+            for (int i = 0; i < interfaceList.size(); i++) {
+                String name = interfaceList.get(i).getName();
+                // 無名interfaceのスキップ
+                if (name == null) continue;
+                String key = name.toLowerCase();
+                if (!positions.containsKey(key)) {
+                    positions.put(key, new ArrayList<Integer>());
+                }
+                positions.get(key).add(i);
+            }
+            Map<String, int[]> genericNames = new HashMap<String, int[]>();
+            for (String key : positions.keySet()) {
+                List<Integer> list = positions.get(key);
+                int[] values = new int[list.size()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = list.get(i);
+                }
+                genericNames.put(key, values);
+            }
+            this.generics.put(unit, genericNames);
+        }
+
+        for (Procedure child : unit.getChildren()) {
+            addUnit(child);
+        }
+    }
+
+    /**
+     * 大文字小文字を区別せずに副プログラムを取得する.
+     * @param unit		親プログラム単位
+     * @param name		副プログラム名
+     * @return		副プログラム:存在しない場合はnull
+     */
+    public Procedure getChild(ProgramUnit unit, String name) {
+        if (unit == null || name == null) return null;
+        Map<String, Procedure> names = this.children.get(unit);
+        if (names == null) {
+            // 索引作成後に追加されたプログラム単位
+            for (Procedure child : unit.getChildren()) {
+                if (child.get_name().equalsIgnoreCase(name)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+        return names.get(name.toLowerCase());
+    }
+
+    /**
+     * 総称名に一致するINTERFACE文のインデックスを取得する.<br/>
+     * 大文字小文字を区別しない.
+     * @param unit		プログラム単位
+     * @param name		総称名
+     * @param from		探索開始インデックス
+     * @return		INTERFACE文リストのインデックス:存在しない場合は-1
+     */
+    public int getGenericIndex(ProgramUnit unit, String name, int from) {
+        if (unit == null || name == null) return -1;
+        Map<String, int[]> genericNames = this.generics.get(unit);
+        if (genericNames == null) {
+            if (this.children.containsKey(unit)) return -1;
+            // 索引作成後に追加されたプログラム単位
+            List<Procedures> interfaceList = unit.getInterfaceList();
+            for (int i = from; i < interfaceList.size(); i++) {
+                String genericName = interfaceList.get(i).getName();
+                if (genericName != null && genericName.equalsIgnoreCase(name)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        int[] values = genericNames.get(name.toLowerCase());
+        if (values == null) return -1;
+        for (int value : values) {
+            if (value >= from) return value;
+        }
+        return -1;
+    }
+
+    /**
+     * 副プログラムを取得する.<br/>
+     * 全モジュールから名前が一致する副プログラムを取得する.大文字小文字を区別する.
+     * @param name		副プログラム名
+     * @return		副プログラム:存在しない場合はnull
+     */
+    public Procedure getProcedure(String name) {
+        if (name == null) return null;
+        return this.procedures.get(name);
+    }
+
+    /**
+     * USE文による手続き探索結果が登録済みであるかチェックする.
+     * @param unit		USE文を持つプログラム単位
+     * @param name		手続き名
+     * @return		true=登録済み
+     */
+    public boolean containsUseProcedure(ProgramUnit unit, String name) {
+        Map<String, Procedure> results = this.useProcedures.get(unit);
+        if (results == null) return false;
+        return results.containsKey(name);
+    }
+
+    /**
+     * USE文による手続き探索結果を取得する.
+     * @param unit		USE文を持つプログラム単位
+     * @param name		手続き名
+     * @return		手続き:未定義の場合はnull
+     */
+    public Procedure getUseProcedure(ProgramUnit unit, String name) {
+        Map<String, Procedure> results = this.useProcedures.get(unit);
+        if (results == null) return null;
+        return results.get(name);
+    }
+
+    /**
+     * USE文による手続き探索結果を登録する.
+     * @param unit		USE文を持つプログラム単位
+     * @param name		手続き名
+     * @param proc		手続き:未定義の場合はnull
+     */
+    public void putUseProcedure(ProgramUnit unit, String name, Procedure proc) {
+        Map<String, Procedure> results = this.useProcedures.get(unit);
+        if (results == null) {
+            results = new HashMap<String, Procedure>();
+            this.useProcedures.put(unit, results);
+        }
+        results.put(name, proc);
+    }
+
+    /**
+     * USE文による変数宣言探索結果が登録済みであるかチェックする.
+     * @param unit		USE文を持つプログラム単位
+     * @param name		変数名
+     * @return		true=登録済み
+     */
+    public boolean containsUseVariable(ProgramUnit unit, String name) {
+        Map<String, UseVariable> results = this.useVariables.get(unit);
+        if (results == null) return false;
+        return results.containsKey(name);
+    }
+
+    /**
+     * USE文による変数宣言探索結果を取得する.
+     * @param unit		USE文を持つプログラム単位
+     * @param name		変数名
+     * @return		探索結果:未定義の場合はnull
+     */
+    public UseVariable getUseVariable(ProgramUnit unit, String name) {
+        Map<String, UseVariable> results = this.useVariables.get(unit);
+        if (results == null) return null;
+        return results.get(name);
+    }
+
+    /**
+     * USE文による変数宣言探索結果を登録する.
+     * @param unit		USE文を持つプログラム単位
+     * @param name		変数名
+     * @param result		探索結果:未定義の場合はnull
+     */
+    public void putUseVariable(ProgramUnit unit, String name, UseVariable result) {
+        Map<String, UseVariable> results = this.useVariables.get(unit);
+        if (results == null) {
+            results = new HashMap<String, UseVariable>();
+            this.useVariables.put(unit, results);
+        }
+        results.put(name, result);
+    }
+}
@@ -488,5 +488,19 @@ public class Variable implements Serializable {
 	public void setTemporaryMemoryType(ACCESSMEMORY_TYPE memory) {
 		this.temporaryMemoryType = memory;
 	}
-}
 
+    /**
+     * 変数名、値、配列添字を圧縮する.
+     * @param compactor		データベース圧縮
+     */
+    void compact(LanguageCompactor compactor) {
+        this.name = compactor.intern(this.name);
+        this.value = compactor.intern(this.value);
+        if (this.indexValues != null) {
+            this.indexValues = compactor.compactList(this.indexValues);
+            for (Expression index : this.indexValues) {
+                index.compact(compactor);
+            }
+        }
+    }
+}
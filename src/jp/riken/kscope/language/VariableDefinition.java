@@ -20,6 +20,7 @@ package jp.riken.kscope.language;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -197,7 +198,22 @@ public class VariableDefinition implements Serializable, IInformation, IBlock {
         if (proc == null) {
             return;
         }
-        this.getReferMember().add(proc);
+        if (this.referMembers == null || this.referMembers == Collections.<ProgramUnit>emptySet()) {
+            // 圧縮により共有の空セットに置き換えられている
+            this.referMembers = new HashSet<ProgramUnit>();
+        }
+        this.referMembers.add(proc);
+    }
+
+    /**
+     * 自身を参照しているプログラム単位を削除する.<br>
+     *
+     * @param proc
+     *            手続き
+     */
+    public void removeReferMember(ProgramUnit proc) {
+        if (this.referMembers == null) return;
+        this.referMembers.remove(proc);
     }
 
     /**
@@ -206,6 +222,9 @@ public class VariableDefinition implements Serializable, IInformation, IBlock {
      * @return 手続きの集合。存在しない場合は空の集合を返す。
      */
     public Set<ProgramUnit> getReferMember() {
+        if (this.mother != null && this.mother.getProcedureLoader() != null) {
+            this.mother.getProcedureLoader().loadReferMembers(this);
+        }
         if (this.referMembers == null) {
             return new HashSet<ProgramUnit>();
         }
@@ -704,4 +723,16 @@ public class VariableDefinition implements Serializable, IInformation, IBlock {
  	public Set<Variable> getAllVariables() {
  		return null;
  	}
+
+    /**
+     * 変数名、初期値、宣言文の行情報、参照プログラム単位の集合を圧縮する.
+     * @param compactor		データベース圧縮
+     */
+    void compact(LanguageCompactor compactor) {
+        this.name = compactor.intern(this.name);
+        this.initValue = compactor.intern(this.initValue);
+        compactor.compact(this.start);
+        compactor.compact(this.end);
+        this.referMembers = compactor.compactSet(this.referMembers);
+    }
 }
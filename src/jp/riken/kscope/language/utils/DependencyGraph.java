@@ -0,0 +1,293 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.riken.kscope.language.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jp.riken.kscope.language.Common;
+import jp.riken.kscope.language.Module;
+import jp.riken.kscope.language.Procedure;
+import jp.riken.kscope.language.ProcedureUsage;
+import jp.riken.kscope.language.Program;
+import jp.riken.kscope.language.ProgramUnit;
+import jp.riken.kscope.language.UseState;
+import jp.riken.kscope.language.generic.Procedures;
+
+/**
+ * データベースの依存関係グラフクラス.<br/>
+ * USE文によるモジュールの依存、手続き呼出、COMMONブロックの共有から、
+ * 更新されたプログラム単位の影響を受けるプログラム単位を取得する.<br/>
+ * プログラム単位はモジュールと、NO_MODULEの外部手続きを単位とする.
+ * @author RIKEN
+ */
+public class DependencyGraph {
+    /** モジュールに含まれないProcedureを格納するModuleオブジェクトの名前 */
+    private static final String NO_MODULE = "NO_MODULE";
+
+    /** プログラム単位リスト */
+    private List<ProgramUnit> units = new ArrayList<ProgramUnit>();
+    /** USE文の依存:{モジュール名(小文字), USE文を持つプログラム単位} */
+    private Map<String, Set<ProgramUnit>> useEdges = new HashMap<String, Set<ProgramUnit>>();
+    /** 手続き呼出の依存:{手続き名(小文字), 呼出元手続き} */
+    private Map<String, Set<Procedure>> callEdges = new HashMap<String, Set<Procedure>>();
+    /** COMMONブロックの共有:{COMMONブロック名(小文字), COMMON文を持つプログラム単位} */
+    private Map<String, Set<ProgramUnit>> commonEdges = new HashMap<String, Set<ProgramUnit>>();
+    /** 手続きのプログラム単位:{手続き, プログラム単位} */
+    private Map<ProgramUnit, ProgramUnit> owners = new IdentityHashMap<ProgramUnit, ProgramUnit>();
+
+    /**
+     * コンストラクタ
+     * @param program		データベース
+     */
+    public DependencyGraph(Program program) {
+        for (ProgramUnit unit : getUnits(program)) {
+            this.units.add(unit);
+            addEdges(unit, unit);
+        }
+    }
+
+    /**
+     * データベースのプログラム単位リストを取得する.<br/>
+     * NO_MODULE以外のモジュールと、NO_MODULEの外部手続きをプログラム単位とする.
+     * @param program		データベース
+     * @return		プログラム単位リスト
+     */
+    public static List<ProgramUnit> getUnits(Program program) {
+        List<ProgramUnit> list = new ArrayList<ProgramUnit>();
+        if (program == null || program.getModules() == null) return list;
+        for (Module module : program.getModules().values()) {
+            if (NO_MODULE.equals(module.get_name())) {
+                list.addAll(module.getChildren());
+            }
+            else {
+                list.add(module);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * プログラム単位の依存関係を追加する.
+     * @param unit		プログラム単位、副プログラム
+     * @param owner		依存関係の単位となるプログラム単位
+     */
+    private void addEdges(ProgramUnit unit, ProgramUnit owner) {
+        this.owners.put(unit, owner);
+        List<UseState> uses = unit.getUseList();
+        if (uses != null) {
+            for (UseState use : uses) {
+                if (use.getModuleName() == null) continue;
+                addEdge(this.useEdges, use.getModuleName(), owner);
+            }
+        }
+        List<Common> commons = unit.getCommonList();
+        if (commons != null) {
+            for (Common common : commons) {
+                if (common.getName() == null) continue;
+                addEdge(this.commonEdges, common.getName(), owner);
+            }
+        }
+        if (unit instanceof Procedure) {
+            List<ProcedureUsage> calls = ((Procedure) unit).getCalls();
+            if (calls != null) {
+                for (ProcedureUsage call : calls) {
+                    if (call.getCallName() == null) continue;
+                    addEdge(this.callEdges, call.getCallName(), (Procedure) unit);
+                }
+            }
+        }
+        for (Procedure child : unit.getChildren()) {
+            addEdges(child, owner);
+        }
+    }
+
+    /**
+     * 依存関係を追加する.
+     * @param edges		依存関係マップ
+     * @param name		依存先名
+     * @param unit		依存元
+     */
+    private static <T> void addEdge(Map<String, Set<T>> edges, String name, T unit) {
+        String key = name.toLowerCase();
+        Set<T> list = edges.get(key);
+        if (list == null) {
+            list = new LinkedHashSet<T>();
+            edges.put(key, list);
+        }
+        list.add(unit);
+    }
+
+    /**
+     * プログラム単位リストを取得する.
+     * @return		プログラム単位リスト
+     */
+    public List<ProgramUnit> getUnits() {
+        return this.units;
+    }
+
+    /**
+     * 手続きが属するプログラム単位を取得する.
+     * @param unit		手続き
+     * @return		プログラム単位:グラフに含まれない場合はnull
+     */
+    public ProgramUnit getOwner(ProgramUnit unit) {
+        return this.owners.get(unit);
+    }
+
+    /**
+     * 更新、削除されたプログラム単位の影響を受ける手続きを取得する.<br/>
+     * 以下の手続きを影響を受ける手続きとする.
+     * <ul>
+     * <li>更新、削除されたモジュールをUSE文で参照するプログラム単位の全ての手続き.
+     * 参照するプログラム単位がモジュールの場合は、そのモジュールを参照するプログラム単位も推移的に含める.</li>
+     * <li>更新、削除されたプログラム単位とCOMMONブロックを共有するプログラム単位の全ての手続き.</li>
+     * <li>更新、削除されたプログラム単位の手続き名、総称名を呼び出している手続き.</li>
+     * </ul>
+     * 更新されたプログラム単位自体は含めない.
+     * @param changes		更新されたプログラム単位リスト
+     * @param removes		削除されたプログラム単位リスト
+     * @return		{プログラム単位, 影響を受ける手続き}
+     */
+    public Map<ProgramUnit, Set<Procedure>> getAffectedProcedures(
+                    Collection<ProgramUnit> changes, Collection<ProgramUnit> removes) {
+        Set<ProgramUnit> changeSet = Collections.newSetFromMap(new IdentityHashMap<ProgramUnit, Boolean>());
+        changeSet.addAll(changes);
+
+        List<ProgramUnit> sources = new ArrayList<ProgramUnit>(changes);
+        if (removes != null) {
+            sources.addAll(removes);
+        }
+        Set<String> moduleNames = new LinkedHashSet<String>();
+        Set<String> procedureNames = new LinkedHashSet<String>();
+        Set<String> commonNames = new LinkedHashSet<String>();
+        for (ProgramUnit unit : sources) {
+            if (unit instanceof Module) {
+                moduleNames.add(unit.get_name().toLowerCase());
+                for (Procedure child : unit.getChildren()) {
+                    procedureNames.add(child.get_name().toLowerCase());
+                }
+                List<Procedures> interfaces = unit.getInterfaceList();
+                if (interfaces != null) {
+                    for (Procedures generic : interfaces) {
+                        if (generic.getName() == null) continue;
+                        procedureNames.add(generic.getName().toLowerCase());
+                    }
+                }
+            }
+            else {
+                procedureNames.add(unit.get_name().toLowerCase());
+            }
+            collectCommonNames(unit, commonNames);
+        }
+
+        // USE文、COMMONブロックにより影響を受けるプログラム単位
+        Set<ProgramUnit> affectedUnits = Collections.newSetFromMap(new IdentityHashMap<ProgramUnit, Boolean>());
+        List<String> queue = new ArrayList<String>(moduleNames);
+        for (int i = 0; i < queue.size(); i++) {
+            Set<ProgramUnit> users = this.useEdges.get(queue.get(i));
+            if (users == null) continue;
+            for (ProgramUnit user : users) {
+                if (changeSet.contains(user)) continue;
+                if (!affectedUnits.add(user)) continue;
+                // モジュールを参照するプログラム単位も影響を受ける
+                if (user instanceof Module) {
+                    String name = user.get_name().toLowerCase();
+                    if (moduleNames.add(name)) {
+                        queue.add(name);
+                    }
+                }
+            }
+        }
+        for (String name : commonNames) {
+            Set<ProgramUnit> members = this.commonEdges.get(name);
+            if (members == null) continue;
+            for (ProgramUnit member : members) {
+                if (changeSet.contains(member)) continue;
+                affectedUnits.add(member);
+            }
+        }
+
+        Map<ProgramUnit, Set<Procedure>> affected = new IdentityHashMap<ProgramUnit, Set<Procedure>>();
+        for (ProgramUnit unit : this.units) {
+            if (!affectedUnits.contains(unit)) continue;
+            Set<Procedure> list = new LinkedHashSet<Procedure>();
+            collectProcedures(unit, list);
+            affected.put(unit, list);
+        }
+
+        // 手続き呼出により影響を受ける手続き
+        for (String name : procedureNames) {
+            Set<Procedure> callers = this.callEdges.get(name);
+            if (callers == null) continue;
+            for (Procedure caller : callers) {
+                ProgramUnit owner = this.owners.get(caller);
+                if (owner == null) continue;
+                if (changeSet.contains(owner)) continue;
+                if (affectedUnits.contains(owner)) continue;
+                Set<Procedure> list = affected.get(owner);
+                if (list == null) {
+                    list = new LinkedHashSet<Procedure>();
+                    affected.put(owner, list);
+                }
+                list.add(caller);
+            }
+        }
+
+        return affected;
+    }
+
+    /**
+     * プログラム単位と副プログラムの手続きを取得する.
+     * @param unit		プログラム単位
+     * @param list		手続きリスト
+     */
+    public static void collectProcedures(ProgramUnit unit, Collection<Procedure> list) {
+        if (unit instanceof Procedure) {
+            list.add((Procedure) unit);
+        }
+        for (Procedure child : unit.getChildren()) {
+            collectProcedures(child, list);
+        }
+    }
+
+    /**
+     * プログラム単位と副プログラムのCOMMONブロック名を取得する.
+     * @param unit		プログラム単位
+     * @param names		COMMONブロック名(小文字)リスト
+     */
+    private static void collectCommonNames(ProgramUnit unit, Set<String> names) {
+        List<Common> commons = unit.getCommonList();
+        if (commons != null) {
+            for (Common common : commons) {
+                if (common.getName() == null) continue;
+                names.add(common.getName().toLowerCase());
+            }
+        }
+        for (Procedure child : unit.getChildren()) {
+            collectCommonNames(child, names);
+        }
+    }
+}
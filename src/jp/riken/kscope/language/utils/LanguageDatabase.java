@@ -0,0 +1,183 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.riken.kscope.language.utils;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import jp.riken.kscope.language.ExecutableBody;
+import jp.riken.kscope.language.IBlock;
+import jp.riken.kscope.language.Module;
+import jp.riken.kscope.language.Procedure;
+import jp.riken.kscope.language.ProgramUnit;
+import jp.riken.kscope.language.VariableDefinition;
+
+/**
+ * データベースファイル(db.ksx)のバイナリフォーマット定義クラス.<br/>
+ * ファイルは以下の構成とする.
+ * <pre>
+ * [MAGIC][VERSION]
+ * [セクション]...
+ * [セクションテーブル:セクション数, {セクション名, オフセット, 長さ}...]
+ * [セクションテーブルオフセット][MAGIC]
+ * </pre>
+ * セクションはDeflate圧縮したオブジェクトストリームであり、モジュール単位に分割する.
+ * 手続きの処理ブロック(ExecutableBody)はモジュールとは別の手続き単位のセクションとし、
+ * プロジェクトを開く時にはモジュールセクションと索引セクションのみを読み込む.
+ * 処理ブロックはセクションテーブルから、最初にアクセスされた時に読み込む.
+ * @author RIKEN
+ */
+public class LanguageDatabase {
+    /** フォーマット識別子:"KSDB" */
+    public static final int MAGIC = 0x4B534442;
+    /** フォーマットバージョン:2=処理ブロックセクション、索引セクションを追加, 3=module procedure項目の参照を追加 */
+    public static final int VERSION = 3;
+    /** プログラムセクション名:メインプログラム名、ソースファイルリスト */
+    public static final String SECTION_PROGRAM = "program";
+    /** COMMONセクション名 */
+    public static final String SECTION_COMMON = "common";
+    /** モジュールセクション名の接頭辞 */
+    public static final String SECTION_MODULE = "module:";
+    /** 処理ブロックセクション名の接頭辞 */
+    public static final String SECTION_BODY = "body:";
+    /** 索引セクション名:呼出先、参照先から呼出元、参照元の手続きへの索引 */
+    public static final String SECTION_INDEX = "index";
+    /**
+     * 参照・定義索引セクション名:変数宣言から参照・定義プログラム単位への索引.<br/>
+     * 索引セクションを持たないデータベースファイルは、索引を最初に使用する時に作成する.
+     */
+    public static final String SECTION_REFERENCE = "reference";
+    /**
+     * 引数結合グラフセクション名:手続き呼出の実引数から呼出先の仮引数への結合.<br/>
+     * グラフセクションを持たないデータベースファイルは、グラフを最初に使用する時に作成する.
+     */
+    public static final String SECTION_BINDING = "binding";
+    /**
+     * 圧縮辞書セクション名:非圧縮.<br/>
+     * 処理ブロックセクションは小さく、クラス記述子等の共通部分の比率が高いため、
+     * 最初の処理ブロックの非圧縮データを圧縮辞書として共有する.
+     */
+    public static final String SECTION_DICTIONARY = "dictionary";
+    /** 圧縮辞書の最大サイズ:Deflateのウィンドウサイズ */
+    public static final int DICTIONARY_SIZE = 32 * 1024;
+
+    /**
+     * コンストラクタ
+     */
+    private LanguageDatabase() {
+    }
+
+    /**
+     * バイナリフォーマットのデータベースファイルであるかチェックする.<br/>
+     * ObjectOutputStreamで出力した旧形式のデータベースファイルはfalseとなる.
+     * @param file		データベースファイル
+     * @return		true=バイナリフォーマット
+     */
+    public static boolean isDatabaseFile(File file) {
+        if (file == null || !file.exists()) return false;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(file));
+            return (in.readInt() == MAGIC);
+        } catch (IOException ex) {
+            return false;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ex) {
+                }
+            }
+        }
+    }
+
+    /**
+     * モジュールセクション名を取得する.
+     * @param moduleName		モジュール名
+     * @return		モジュールセクション名
+     */
+    public static String getModuleSectionName(String moduleName) {
+        return SECTION_MODULE + moduleName;
+    }
+
+    /**
+     * 処理ブロックセクション名を取得する.
+     * @param key		手続きの参照キー文字列
+     * @return		処理ブロックセクション名
+     * @see LanguageReference#getKey()
+     */
+    public static String getBodySectionName(String key) {
+        return SECTION_BODY + key;
+    }
+
+    /**
+     * ブロックが属する処理ブロックの手続きを取得する.
+     * @param block		ブロック
+     * @return		手続き:処理ブロック内のブロックでない場合はnull
+     */
+    public static Procedure getOwnerProcedure(Object block) {
+        Object current = block;
+        while (current != null) {
+            if (current instanceof ExecutableBody) {
+                return ((ExecutableBody) current).getParent();
+            }
+            else if (current instanceof ProgramUnit) {
+                return null;
+            }
+            else if (current instanceof IBlock) {
+                current = ((IBlock) current).getMotherBlock();
+            }
+            else {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * ブロックが属するモジュールを取得する.
+     * @param block		ブロック
+     * @return		モジュール:取得できない場合はnull
+     */
+    public static Module getOwnerModule(Object block) {
+        Object current = block;
+        while (current != null) {
+            if (current instanceof Module) {
+                return (Module) current;
+            }
+            else if (current instanceof ProgramUnit) {
+                current = ((ProgramUnit) current).get_mother();
+            }
+            else if (current instanceof VariableDefinition) {
+                current = ((VariableDefinition) current).getMother();
+            }
+            else if (current instanceof ExecutableBody) {
+                current = ((ExecutableBody) current).getParent();
+            }
+            else if (current instanceof IBlock) {
+                current = ((IBlock) current).getMotherBlock();
+            }
+            else {
+                return null;
+            }
+        }
+        return null;
+    }
+}
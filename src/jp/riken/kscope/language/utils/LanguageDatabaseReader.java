@@ -0,0 +1,635 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.riken.kscope.language.utils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import jp.riken.kscope.Message;
+import jp.riken.kscope.data.SourceFile;
+import jp.riken.kscope.exception.LanguageException;
+import jp.riken.kscope.information.InformationBlocks;
+import jp.riken.kscope.language.ArgumentBindingGraph;
+import jp.riken.kscope.language.ExecutableBody;
+import jp.riken.kscope.language.Fortran;
+import jp.riken.kscope.language.IBlock;
+import jp.riken.kscope.language.IProcedureLoader;
+import jp.riken.kscope.language.IdentifierTable;
+import jp.riken.kscope.language.LanguageCompactor;
+import jp.riken.kscope.language.Module;
+import jp.riken.kscope.language.Procedure;
+import jp.riken.kscope.language.ProgramUnit;
+import jp.riken.kscope.language.ReferenceIndex;
+import jp.riken.kscope.language.VariableDefinition;
+import jp.riken.kscope.language.generic.ProcedureWithNameOnly;
+
+/**
+ * データベースファイル読込クラス.<br/>
+ * セクションテーブルからモジュール単位にデータベースを読み込む.
+ * 手続きの処理ブロックは、最初にアクセスされた時に処理ブロックセクションから読み込み、
+ * 宣言と呼び出しを対応付ける.全ての処理ブロックを読み込んだ時点でデータベースファイルを閉じる.
+ * @see LanguageDatabase
+ * @author RIKEN
+ */
+public class LanguageDatabaseReader implements IProcedureLoader {
+    /** データベースファイル */
+    private RandomAccessFile file;
+    /** セクションテーブル <セクション名, {オフセット, 長さ}> */
+    private Map<String, long[]> sections = new LinkedHashMap<String, long[]>();
+    /** 読込先フォートランデータベース:処理ブロックの読込と宣言の対応付けはこのインスタンスで排他する */
+    private final Fortran fortran;
+    /** 索引 <呼出先、参照先の参照キー, 呼出元、参照元の参照キーリスト> */
+    private Map<String, List<String>> dependents;
+    /** 未読込の処理ブロック数 */
+    private int remainBodies;
+    /** 呼出元、参照元を読込済みの呼出先、参照先 */
+    private Set<Object> loadedDependents = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+    /** 処理ブロックを含むモジュールセクションの手続き:データベースを開いた後はnull */
+    private List<Procedure> loadedProcedures = new ArrayList<Procedure>();
+    /** ファイルクローズフラグ */
+    private boolean closed = false;
+    /** 処理ブロックセクションの圧縮辞書:圧縮辞書セクションが存在しない場合はnull */
+    private byte[] dictionary;
+    /** 手続宣言が未設定のmodule procedure項目 <項目, 参照>:モジュールセクションの読込中以外はnull */
+    private Map<ProcedureWithNameOnly, ProcedureItemReference> itemReferences;
+
+    /**
+     * コンストラクタ.<br/>
+     * データベースファイルを開き、セクションテーブルを読み込む.
+     * @param path		データベースファイル
+     * @throws IOException		読込エラー
+     */
+    public LanguageDatabaseReader(File path) throws IOException {
+        this.file = new RandomAccessFile(path, "r");
+        try {
+            readSectionTable();
+        } catch (IOException ex) {
+            this.file.close();
+            throw ex;
+        }
+        this.fortran = new Fortran();
+    }
+
+    /**
+     * セクションテーブルを読み込む.
+     * @throws IOException		読込エラー
+     */
+    private void readSectionTable() throws IOException {
+        long length = this.file.length();
+        if (length < 20) {
+            throw new IOException(Message.getString("languagedatabase.error.format"));
+        }
+        this.file.seek(0);
+        if (this.file.readInt() != LanguageDatabase.MAGIC) {
+            throw new IOException(Message.getString("languagedatabase.error.format"));
+        }
+        int version = this.file.readInt();
+        if (version < 1 || version > LanguageDatabase.VERSION) {
+            throw new IOException(Message.getString("languagedatabase.error.version", version));
+        }
+        this.file.seek(length - 12);
+        long tableOffset = this.file.readLong();
+        if (this.file.readInt() != LanguageDatabase.MAGIC) {
+            throw new IOException(Message.getString("languagedatabase.error.format"));
+        }
+        this.file.seek(tableOffset);
+        int count = this.file.readInt();
+        for (int i=0; i<count; i++) {
+            String name = this.file.readUTF();
+            long offset = this.file.readLong();
+            long size = this.file.readLong();
+            this.sections.put(name, new long[] {offset, size});
+            if (name.startsWith(LanguageDatabase.SECTION_BODY)) {
+                this.remainBodies++;
+            }
+        }
+    }
+
+    /**
+     * データベース全体を読み込む.<br/>
+     * 全ての処理ブロックを読み込み、宣言と呼び出しを対応付ける.
+     * @return		フォートランデータベース
+     * @throws IOException		読込エラー
+     * @throws ClassNotFoundException		読込エラー
+     */
+    public Fortran readLanguage() throws IOException, ClassNotFoundException {
+        openLanguage();
+        loadAll();
+        return this.fortran;
+    }
+
+    /**
+     * 処理ブロックを除くデータベースを読み込む.<br/>
+     * 処理ブロックは最初にアクセスされた時に読み込む.
+     * 処理ブロックの読込の為、全ての処理ブロックを読み込むまでデータベースファイルを開いたままとする.
+     * @return		フォートランデータベース
+     * @throws IOException		読込エラー
+     * @throws ClassNotFoundException		読込エラー
+     */
+    public Fortran openLanguage() throws IOException, ClassNotFoundException {
+        readProgram();
+        // 手続宣言が後のセクションとなるmodule procedure項目は全てのモジュールセクションの読込後に設定する
+        this.itemReferences = new IdentityHashMap<ProcedureWithNameOnly, ProcedureItemReference>();
+        try {
+            for (String name : getModuleNames()) {
+                readModule(name);
+            }
+            for (Map.Entry<ProcedureWithNameOnly, ProcedureItemReference> entry : this.itemReferences.entrySet()) {
+                entry.getKey().setDeclaration(entry.getValue().resolveDeclaration(this.fortran));
+            }
+        } finally {
+            this.itemReferences = null;
+        }
+        readCommon();
+        readIndex();
+        if (this.sections.containsKey(LanguageDatabase.SECTION_DICTIONARY)) {
+            this.dictionary = readSectionData(LanguageDatabase.SECTION_DICTIONARY);
+        }
+        this.fortran.setProcedureLoader(this);
+
+        // モジュールセクションに処理ブロックを含む手続きの宣言と呼び出しを対応付ける
+        List<Procedure> procs = this.loadedProcedures;
+        this.loadedProcedures = null;
+        for (Procedure proc : procs) {
+            this.fortran.analyseProcedure(proc);
+        }
+        readReferenceIndex();
+        readArgumentBindingGraph();
+        if (this.remainBodies <= 0) {
+            close();
+        }
+        return this.fortran;
+    }
+
+    /**
+     * プログラムセクションを読み込む.
+     * @return		フォートランデータベース
+     * @throws IOException		読込エラー
+     * @throws ClassNotFoundException		読込エラー
+     */
+    @SuppressWarnings("unchecked")
+    public Fortran readProgram() throws IOException, ClassNotFoundException {
+        ObjectInputStream in = openSection(LanguageDatabase.SECTION_PROGRAM);
+        try {
+            this.fortran.setMainName((String) in.readObject());
+            this.fortran.setSourceFileList((ArrayList<SourceFile>) in.readObject());
+        } finally {
+            in.close();
+        }
+        return this.fortran;
+    }
+
+    /**
+     * モジュールセクションを読み込み、フォートランデータベースに追加する.<br/>
+     * 読込済みでないモジュールへの参照はnullとなる.
+     * 但し、{@link #openLanguage()}からの読込では、module procedure項目の手続宣言は
+     * 全てのモジュールセクションの読込後に設定する.
+     * @param name		モジュール名
+     * @return		モジュール
+     * @throws IOException		読込エラー
+     * @throws ClassNotFoundException		読込エラー
+     */
+    public Module readModule(String name) throws IOException, ClassNotFoundException {
+        ObjectInputStream in = openSection(LanguageDatabase.getModuleSectionName(name));
+        try {
+            Module module = (Module) in.readObject();
+            InformationBlocks infos = (InformationBlocks) in.readObject();
+            this.fortran.addModule(module);
+            if (infos != null && infos.size() > 0) {
+                this.fortran.getInformationBlocks().addAll(infos);
+            }
+            return module;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * COMMONセクションを読み込む.
+     * @throws IOException		読込エラー
+     * @throws ClassNotFoundException		読込エラー
+     */
+    @SuppressWarnings("unchecked")
+    public void readCommon() throws IOException, ClassNotFoundException {
+        ObjectInputStream in = openSection(LanguageDatabase.SECTION_COMMON);
+        try {
+            Map<String, List<ProgramUnit>> commons = (Map<String, List<ProgramUnit>>) in.readObject();
+            if (commons == null) return;
+            for (String key : commons.keySet()) {
+                for (ProgramUnit unit : commons.get(key)) {
+                    if (unit != null) {
+                        this.fortran.addCommonMap(key, unit);
+                    }
+                }
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * 索引セクションを読み込む.
+     * @throws IOException		読込エラー
+     * @throws ClassNotFoundException		読込エラー
+     */
+    @SuppressWarnings("unchecked")
+    private void readIndex() throws IOException, ClassNotFoundException {
+        if (!this.sections.containsKey(LanguageDatabase.SECTION_INDEX)) {
+            this.dependents = new HashMap<String, List<String>>();
+            return;
+        }
+        ObjectInputStream in = openSection(LanguageDatabase.SECTION_INDEX);
+        try {
+            this.dependents = (Map<String, List<String>>) in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * 参照・定義索引セクションを読み込む.<br/>
+     * 索引セクションが無い場合は、索引を最初に使用する時に作成する.
+     * @throws IOException		読込エラー
+     * @throws ClassNotFoundException		読込エラー
+     */
+    @SuppressWarnings("unchecked")
+    private void readReferenceIndex() throws IOException, ClassNotFoundException {
+        if (!this.sections.containsKey(LanguageDatabase.SECTION_REFERENCE)) return;
+        Map<String, List<String[]>> keys;
+        ObjectInputStream in = openSection(LanguageDatabase.SECTION_REFERENCE);
+        try {
+            keys = (Map<String, List<String[]>>) in.readObject();
+        } finally {
+            in.close();
+        }
+        ReferenceIndex index = new ReferenceIndex();
+        for (Map.Entry<String, List<String[]>> key : keys.entrySet()) {
+            Object def = LanguageReference.parse(key.getKey()).resolve(this.fortran);
+            if (!(def instanceof VariableDefinition)) continue;
+            List<ReferenceIndex.Entry> list = new ArrayList<ReferenceIndex.Entry>();
+            for (String[] entry : key.getValue()) {
+                Object unit = LanguageReference.parse(entry[0]).resolve(this.fortran);
+                if (!(unit instanceof ProgramUnit)) continue;
+                VariableDefinition alias = null;
+                if (entry[2] != null) {
+                    Object obj = LanguageReference.parse(entry[2]).resolve(this.fortran);
+                    if (!(obj instanceof VariableDefinition)) continue;
+                    alias = (VariableDefinition) obj;
+                }
+                list.add(new ReferenceIndex.Entry((ProgramUnit) unit, entry[1], alias));
+            }
+            index.putEntries((VariableDefinition) def, list);
+        }
+        this.fortran.setReferenceIndex(index);
+    }
+
+    /**
+     * 引数結合グラフセクションを読み込む.<br/>
+     * グラフセクションが無い場合は、グラフを最初に使用する時に作成する.
+     * @throws IOException		読込エラー
+     * @throws ClassNotFoundException		読込エラー
+     */
+    @SuppressWarnings("unchecked")
+    private void readArgumentBindingGraph() throws IOException, ClassNotFoundException {
+        if (!this.sections.containsKey(LanguageDatabase.SECTION_BINDING)) return;
+        Map<String, List<String[]>> keys;
+        ObjectInputStream in = openSection(LanguageDatabase.SECTION_BINDING);
+        try {
+            keys = (Map<String, List<String[]>>) in.readObject();
+        } finally {
+            in.close();
+        }
+        IdentifierTable table = this.fortran.getIdentifierTable();
+        ArgumentBindingGraph graph = new ArgumentBindingGraph();
+        for (Map.Entry<String, List<String[]>> key : keys.entrySet()) {
+            Object caller = LanguageReference.parse(key.getKey()).resolve(this.fortran);
+            if (!(caller instanceof Procedure)) continue;
+            List<ArgumentBindingGraph.Binding> list = new ArrayList<ArgumentBindingGraph.Binding>();
+            for (String[] entry : key.getValue()) {
+                Object callee = LanguageReference.parse(entry[2]).resolve(this.fortran);
+                if (!(callee instanceof Procedure)) continue;
+                String[] actuals = new String[entry.length - 4];
+                for (int i=0; i<actuals.length; i++) {
+                    actuals[i] = table.intern(entry[4 + i]);
+                }
+                list.add(new ArgumentBindingGraph.Binding((Procedure) caller,
+                        Integer.parseInt(entry[0]), Integer.parseInt(entry[1]),
+                        actuals, (Procedure) callee, table.intern(entry[3])));
+            }
+            graph.putBindings((Procedure) caller, list);
+        }
+        this.fortran.setArgumentBindingGraph(graph);
+    }
+
+    /**
+     * 手続きの処理ブロックを読み込み、宣言と呼び出しを対応付ける.
+     * @param proc		手続き
+     */
+    @Override
+    public void loadBody(Procedure proc) {
+        synchronized (this.fortran) {
+            if (proc.isBodyLoaded()) return;
+            LanguageReference ref = LanguageReference.create(proc);
+            String name = LanguageDatabase.getBodySectionName(ref != null ? ref.getKey() : proc.get_name());
+            try {
+                if (this.closed) {
+                    throw new IOException(Message.getString("languagedatabase.error.closed"));
+                }
+                ObjectInputStream in = openSection(name);
+                try {
+                    ExecutableBody body = (ExecutableBody) in.readObject();
+                    proc.setRefVariableNames(readVariableNames(in));
+                    proc.setDefVariableNames(readVariableNames(in));
+                    proc.setBody(body);
+                } finally {
+                    in.close();
+                }
+            } catch (IOException ex) {
+                throw new LanguageException(ex, proc.getStartCodeLine());
+            } catch (ClassNotFoundException ex) {
+                throw new LanguageException(ex, proc.getStartCodeLine());
+            }
+            this.remainBodies--;
+            this.fortran.analyseProcedure(proc);
+            // 読み込んだ処理ブロックの空のコレクションを解放する
+            LanguageCompactor compactor = new LanguageCompactor("open", this.fortran.getIdentifierTable());
+            compactor.setTrimLists(false);
+            compactor.compact(proc);
+            if (this.remainBodies <= 0) {
+                try {
+                    close();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * 変数参照、定義マップを読み込む.
+     * @param in		セクションストリーム
+     * @return		変数参照、定義マップ
+     * @throws IOException		読込エラー
+     * @throws ClassNotFoundException		読込エラー
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Set<IBlock>> readVariableNames(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        Map<String, Set<IBlock>> names = (Map<String, Set<IBlock>>) in.readObject();
+        if (names == null) {
+            names = new HashMap<String, Set<IBlock>>();
+        }
+        return names;
+    }
+
+    /**
+     * 手続きを呼び出している手続きの処理ブロックを読み込む.
+     * @param proc		呼出先手続き
+     */
+    @Override
+    public void loadCallMembers(Procedure proc) {
+        loadDependents(proc, LanguageReference.create(proc));
+    }
+
+    /**
+     * 変数宣言を参照している手続きの処理ブロックを読み込む.
+     * @param definition		変数宣言
+     */
+    @Override
+    public void loadReferMembers(VariableDefinition definition) {
+        loadDependents(definition, LanguageReference.create(definition));
+    }
+
+    /**
+     * 索引から呼出元、参照元の手続きの処理ブロックを読み込む.<br/>
+     * データベースファイルを閉じた後は読み込まない.
+     * @param target		呼出先、参照先
+     * @param ref			呼出先、参照先の参照
+     */
+    private void loadDependents(Object target, LanguageReference ref) {
+        synchronized (this.fortran) {
+            if (this.remainBodies <= 0 || this.closed) return;
+            if (ref == null || this.dependents == null) return;
+            if (this.loadedDependents.contains(target)) return;
+            this.loadedDependents.add(target);
+            List<String> list = this.dependents.get(ref.getKey());
+            if (list == null) return;
+            for (String key : list) {
+                Object source = LanguageReference.parse(key).resolve(this.fortran);
+                if (source instanceof Procedure) {
+                    ((Procedure) source).getBody();
+                }
+            }
+        }
+    }
+
+    /**
+     * 未読込の全ての処理ブロックを読み込む.
+     */
+    @Override
+    public void loadAll() {
+        synchronized (this.fortran) {
+            if (this.remainBodies <= 0) return;
+            for (String name : new ArrayList<String>(this.sections.keySet())) {
+                if (!name.startsWith(LanguageDatabase.SECTION_BODY)) continue;
+                String key = name.substring(LanguageDatabase.SECTION_BODY.length());
+                Object proc = LanguageReference.parse(key).resolve(this.fortran);
+                if (proc instanceof Procedure) {
+                    ((Procedure) proc).getBody();
+                }
+                if (this.remainBodies <= 0) break;
+            }
+            // 手続きに対応しない処理ブロックセクションは読み込まない
+            if (this.remainBodies > 0) {
+                this.remainBodies = 0;
+                try {
+                    close();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * 未読込の処理ブロック数を取得する.
+     * @return		未読込の処理ブロック数
+     */
+    public int getRemainBodies() {
+        return this.remainBodies;
+    }
+
+    /**
+     * セクションテーブルのモジュール名リストを取得する.<br/>
+     * USE先のモジュールが先となる出力順とする.
+     * @return		モジュール名リスト
+     */
+    public List<String> getModuleNames() {
+        List<String> list = new ArrayList<String>();
+        for (String name : this.sections.keySet()) {
+            if (name.startsWith(LanguageDatabase.SECTION_MODULE)) {
+                list.add(name.substring(LanguageDatabase.SECTION_MODULE.length()));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * セクションのストリームを開く.
+     * @param name		セクション名
+     * @return		セクションストリーム
+     * @throws IOException		読込エラー
+     */
+    private ObjectInputStream openSection(String name) throws IOException {
+        byte[] data = readSectionData(name);
+        Inflater inflater = new Inflater();
+        if (this.dictionary != null && name.startsWith(LanguageDatabase.SECTION_BODY)) {
+            // 圧縮辞書を設定する:入力データを全て設定済みとする
+            inflater.setInput(data);
+            try {
+                inflater.inflate(new byte[1]);
+            } catch (DataFormatException ex) {
+                inflater.end();
+                throw new IOException(ex);
+            }
+            if (inflater.needsDictionary()) {
+                inflater.setDictionary(this.dictionary);
+            }
+            return new SectionStream(new ByteArrayInputStream(new byte[0]), inflater);
+        }
+        return new SectionStream(new ByteArrayInputStream(data), inflater);
+    }
+
+    /**
+     * セクションデータを読み込む.
+     * @param name		セクション名
+     * @return		セクションデータ
+     * @throws IOException		読込エラー
+     */
+    private byte[] readSectionData(String name) throws IOException {
+        long[] entry = this.sections.get(name);
+        if (entry == null) {
+            throw new IOException(Message.getString("languagedatabase.error.section", name));
+        }
+        byte[] data = new byte[(int) entry[1]];
+        synchronized (this.file) {
+            this.file.seek(entry[0]);
+            this.file.readFully(data);
+        }
+        return data;
+    }
+
+    /**
+     * データベースファイルを閉じる.<br/>
+     * 読込中のスレッドはIOExceptionとなる.
+     * @throws IOException		クローズエラー
+     */
+    @Override
+    public void close() throws IOException {
+        this.closed = true;
+        this.file.close();
+    }
+
+    /**
+     * 読込先フォートランデータベースを取得する.
+     * @return		フォートランデータベース
+     */
+    public Fortran getFortranLanguage() {
+        return this.fortran;
+    }
+
+    /**
+     * セクションオブジェクトストリームクラス.<br/>
+     * 文字列を共有し、セクション間参照を読込済みオブジェクトに解決する.
+     * @author RIKEN
+     */
+    private class SectionStream extends ObjectInputStream {
+        /** 伸張器 */
+        private Inflater inflater;
+
+        /**
+         * コンストラクタ
+         * @param stream		セクションデータ
+         * @param inflater		伸張器
+         * @throws IOException		読込エラー
+         */
+        public SectionStream(InputStream stream, Inflater inflater) throws IOException {
+            super(new BufferedInputStream(new InflaterInputStream(stream, inflater, 1 << 16), 1 << 16));
+            this.inflater = inflater;
+            this.enableResolveObject(true);
+        }
+
+        /**
+         * 読込オブジェクトを置き換える.
+         * @param obj		読込オブジェクト
+         * @return		置換オブジェクト
+         */
+        @Override
+        protected Object resolveObject(Object obj) throws IOException {
+            if (obj instanceof String) {
+                return fortran.getIdentifierTable().intern((String) obj);
+            }
+            if (obj instanceof LanguageReference) {
+                return ((LanguageReference) obj).resolve(fortran);
+            }
+            if (obj instanceof ProcedureItemReference) {
+                ProcedureItemReference ref = (ProcedureItemReference) obj;
+                ProcedureWithNameOnly item = ref.createItem();
+                Procedure declaration = ref.resolveDeclaration(fortran);
+                if (declaration != null) {
+                    item.setDeclaration(declaration);
+                }
+                else if (itemReferences != null) {
+                    itemReferences.put(item, ref);
+                }
+                return item;
+            }
+            if (obj instanceof ProgramUnit) {
+                ((ProgramUnit) obj).setProcedureLoader(LanguageDatabaseReader.this);
+                if (loadedProcedures != null && obj instanceof Procedure && ((Procedure) obj).isBodyLoaded()) {
+                    loadedProcedures.add((Procedure) obj);
+                }
+            }
+            return obj;
+        }
+
+        /**
+         * ストリームを閉じる.
+         */
+        @Override
+        public void close() throws IOException {
+            super.close();
+            this.inflater.end();
+        }
+    }
+}
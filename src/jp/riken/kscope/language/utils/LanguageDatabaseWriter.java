@@ -0,0 +1,682 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.riken.kscope.language.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import jp.riken.kscope.information.InformationBlock;
+import jp.riken.kscope.information.InformationBlocks;
+import jp.riken.kscope.language.ArgumentBindingGraph;
+import jp.riken.kscope.language.ExecutableBody;
+import jp.riken.kscope.language.Fortran;
+import jp.riken.kscope.language.Module;
+import jp.riken.kscope.language.Procedure;
+import jp.riken.kscope.language.ProcedureUsage;
+import jp.riken.kscope.language.ProgramUnit;
+import jp.riken.kscope.language.ReferenceIndex;
+import jp.riken.kscope.language.UseState;
+import jp.riken.kscope.language.Variable;
+import jp.riken.kscope.language.VariableDefinition;
+import jp.riken.kscope.language.fortran.Type;
+import jp.riken.kscope.language.generic.ProcedureWithNameOnly;
+
+/**
+ * データベースファイル出力クラス.<br/>
+ * フォートランデータベースをモジュール単位のセクションに分割して出力する.
+ * 手続きの処理ブロックは手続き単位のセクションとし、モジュールセクションには含めない.
+ * 他セクションのプログラム単位、変数宣言、構造体定義はLanguageReferenceに置き換えて出力する.
+ * @see LanguageDatabase
+ * @author RIKEN
+ */
+public class LanguageDatabaseWriter {
+    /** フォートランデータベース */
+    private Fortran fortran;
+    /** 出力ストリーム */
+    private DataOutputStream out;
+    /** 出力済みバイト数 */
+    private long position;
+    /** セクションテーブル <セクション名, {オフセット, 長さ}> */
+    private Map<String, long[]> sections = new LinkedHashMap<String, long[]>();
+    /** 構造体定義の宣言プログラム単位 */
+    private Map<Type, ProgramUnit> typeOwners = new IdentityHashMap<Type, ProgramUnit>();
+    /** 処理ブロックを別セクションとした手続き */
+    private Set<Procedure> deferredProcedures = Collections.newSetFromMap(new IdentityHashMap<Procedure, Boolean>());
+    /** 処理ブロックセクションに出力した変数参照、定義マップ */
+    private Set<Object> deferredMaps = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+    /** 処理ブロックセクションの圧縮辞書 */
+    private byte[] dictionary;
+
+    /**
+     * コンストラクタ
+     * @param fortran		フォートランデータベース
+     */
+    public LanguageDatabaseWriter(Fortran fortran) {
+        this.fortran = fortran;
+    }
+
+    /**
+     * データベースファイルを出力する.
+     * @param file		データベースファイル
+     * @throws IOException		出力エラー
+     */
+    public void write(File file) throws IOException {
+        // 未読込の処理ブロックを全て読み込む:出力先が読込中のデータベースファイルの場合があるため
+        this.fortran.loadProcedures();
+
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        this.position = 0;
+        this.sections.clear();
+        this.typeOwners.clear();
+        this.deferredProcedures.clear();
+        this.deferredMaps.clear();
+        this.dictionary = null;
+        for (Module module : this.fortran.getModules().values()) {
+            collectTypeOwners(module);
+        }
+        try {
+            this.out.writeInt(LanguageDatabase.MAGIC);
+            this.out.writeInt(LanguageDatabase.VERSION);
+            this.position += 8;
+
+            // プログラムセクション
+            {
+                SectionStream stream = new SectionStream(null, null);
+                stream.writeObject(this.fortran.getMainName());
+                stream.writeObject(this.fortran.getSourceFileList());
+                writeSection(LanguageDatabase.SECTION_PROGRAM, stream);
+            }
+
+            // モジュールセクション:USE先のモジュールを先に出力する
+            Map<Module, InformationBlocks> infos = getModuleInformationBlocks();
+            Set<Procedure> inlines = getInformationProcedures();
+            for (Module module : getModuleOrder()) {
+                // 処理ブロックセクション
+                List<Procedure> procs = new ArrayList<Procedure>();
+                collectProcedures(module, procs);
+                for (Procedure proc : procs) {
+                    if (inlines.contains(proc)) continue;
+                    writeBody(module, proc);
+                }
+
+                SectionStream stream = new SectionStream(module, null);
+                stream.writeObject(module);
+                InformationBlocks blocks = infos.get(module);
+                stream.writeObject(blocks != null ? blocks : new InformationBlocks());
+                writeSection(LanguageDatabase.getModuleSectionName(module.get_name()), stream);
+            }
+
+            // 索引セクション
+            {
+                SectionStream stream = new SectionStream(null, null);
+                stream.writeObject(getDependentIndex());
+                writeSection(LanguageDatabase.SECTION_INDEX, stream);
+            }
+
+            // 参照・定義索引セクション
+            {
+                SectionStream stream = new SectionStream(null, null);
+                stream.writeObject(getReferenceIndex());
+                writeSection(LanguageDatabase.SECTION_REFERENCE, stream);
+            }
+
+            // 引数結合グラフセクション
+            {
+                SectionStream stream = new SectionStream(null, null);
+                stream.writeObject(getArgumentBindingGraph());
+                writeSection(LanguageDatabase.SECTION_BINDING, stream);
+            }
+
+            // COMMONセクション
+            {
+                SectionStream stream = new SectionStream(null, null);
+                stream.writeObject(this.fortran.getCommonMap());
+                writeSection(LanguageDatabase.SECTION_COMMON, stream);
+            }
+
+            // セクションテーブル
+            long tableOffset = this.position;
+            this.out.writeInt(this.sections.size());
+            for (String name : this.sections.keySet()) {
+                long[] entry = this.sections.get(name);
+                this.out.writeUTF(name);
+                this.out.writeLong(entry[0]);
+                this.out.writeLong(entry[1]);
+            }
+            this.out.writeLong(tableOffset);
+            this.out.writeInt(LanguageDatabase.MAGIC);
+        } finally {
+            this.out.close();
+            this.out = null;
+        }
+    }
+
+    /**
+     * セクションを出力する.
+     * @param name		セクション名
+     * @param stream	セクションストリーム
+     * @throws IOException		出力エラー
+     */
+    private void writeSection(String name, SectionStream stream) throws IOException {
+        writeSection(name, stream.toByteArray());
+    }
+
+    /**
+     * セクションを出力する.
+     * @param name		セクション名
+     * @param data		圧縮済みセクションデータ
+     * @throws IOException		出力エラー
+     */
+    private void writeSection(String name, byte[] data) throws IOException {
+        this.out.write(data);
+        this.sections.put(name, new long[] {this.position, data.length});
+        this.position += data.length;
+    }
+
+    /**
+     * 手続きの処理ブロックセクションを出力する.<br/>
+     * アクセス先メモリを設定した変数を含む処理ブロックは、プロジェクトを開く時に必要となるため
+     * 別セクションとせずにモジュールセクションに含める.
+     * @param module		モジュール
+     * @param proc			手続き
+     * @throws IOException		出力エラー
+     */
+    private void writeBody(Module module, Procedure proc) throws IOException {
+        LanguageReference ref = LanguageReference.create(proc);
+        if (ref == null) return;
+        if (this.dictionary == null) {
+            // 最初の処理ブロックの非圧縮データを圧縮辞書とする
+            SectionStream sample = new SectionStream(new ByteArrayOutputStream(), null, module, proc);
+            writeBody(sample, proc);
+            byte[] data = sample.toByteArray();
+            this.dictionary = Arrays.copyOf(data, Math.min(data.length, LanguageDatabase.DICTIONARY_SIZE));
+            writeSection(LanguageDatabase.SECTION_DICTIONARY, this.dictionary);
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setDictionary(this.dictionary);
+        SectionStream stream = new SectionStream(new ByteArrayOutputStream(), deflater, module, proc);
+        writeBody(stream, proc);
+        byte[] data = stream.toByteArray();
+        if (stream.hasMemoryVariable()) {
+            return;
+        }
+        writeSection(LanguageDatabase.getBodySectionName(ref.getKey()), data);
+        this.deferredProcedures.add(proc);
+        this.deferredMaps.add(proc.getRefVariableNames());
+        this.deferredMaps.add(proc.getDefVariableNames());
+    }
+
+    /**
+     * 処理ブロックセクションのデータを出力する.
+     * @param stream		セクションストリーム
+     * @param proc			手続き
+     * @throws IOException		出力エラー
+     */
+    private void writeBody(SectionStream stream, Procedure proc) throws IOException {
+        stream.writeObject(proc.getBody());
+        stream.writeObject(proc.getRefVariableNames());
+        stream.writeObject(proc.getDefVariableNames());
+    }
+
+    /**
+     * 呼出先手続き、参照先変数宣言から処理ブロックセクションの呼出元、参照元手続きへの索引を作成する.<br/>
+     * 処理ブロックの読込時に呼出元、参照元が設定されるため、
+     * 呼出元、参照元を取得する前に索引の手続きを読み込む.
+     * @return		索引 <呼出先、参照先の参照キー, 呼出元、参照元の参照キーリスト>
+     */
+    private Map<String, List<String>> getDependentIndex() {
+        Map<String, Set<String>> index = new TreeMap<String, Set<String>>();
+        for (Module module : this.fortran.getModules().values()) {
+            List<ProgramUnit> units = new ArrayList<ProgramUnit>();
+            units.add(module);
+            List<Procedure> procs = new ArrayList<Procedure>();
+            collectProcedures(module, procs);
+            units.addAll(procs);
+            for (Procedure proc : procs) {
+                for (ProcedureUsage call : proc.getCallMember()) {
+                    addDependentIndex(index, LanguageReference.create(proc),
+                                    LanguageDatabase.getOwnerProcedure(call));
+                }
+            }
+            for (ProgramUnit unit : units) {
+                for (VariableDefinition def : unit.getVariables().values()) {
+                    for (ProgramUnit refer : def.getReferMember()) {
+                        addDependentIndex(index, LanguageReference.create(def), refer);
+                    }
+                }
+            }
+        }
+        Map<String, List<String>> list = new LinkedHashMap<String, List<String>>();
+        for (String key : index.keySet()) {
+            list.put(key, new ArrayList<String>(index.get(key)));
+        }
+        return list;
+    }
+
+    /**
+     * 変数の参照・定義索引を参照キーで作成する.<br/>
+     * 参照・定義エントリは{プログラム単位の参照キー, 変数名, 別名の変数宣言の参照キー(別名以外はnull)}とする.
+     * @return		参照・定義索引 <変数宣言の参照キー, 参照・定義エントリリスト>
+     */
+    private Map<String, List<String[]>> getReferenceIndex() {
+        Map<String, List<String[]>> index = new TreeMap<String, List<String[]>>();
+        ReferenceIndex references = this.fortran.getReferenceIndex();
+        for (VariableDefinition def : references.getIndexedVariables()) {
+            LanguageReference key = LanguageReference.create(def);
+            if (key == null) continue;
+            List<String[]> list = new ArrayList<String[]>();
+            for (ReferenceIndex.Entry entry : references.getEntries(def)) {
+                LanguageReference unit = LanguageReference.create(entry.getUnit());
+                if (unit == null) continue;
+                LanguageReference alias = null;
+                if (entry.getAlias() != null) {
+                    alias = LanguageReference.create(entry.getAlias());
+                    if (alias == null) continue;
+                }
+                list.add(new String[] {unit.getKey(), entry.getName(), alias != null ? alias.getKey() : null});
+            }
+            index.put(key.getKey(), list);
+        }
+        return new LinkedHashMap<String, List<String[]>>(index);
+    }
+
+    /**
+     * 引数結合グラフを参照キーで作成する.<br/>
+     * 結合は{手続き呼出の順番, 実引数の順番, 呼出先手続きの参照キー, 仮引数名, 実引数の変数名...}とする.
+     * @return		引数結合グラフ <呼出元手続きの参照キー, 結合リスト>
+     */
+    private Map<String, List<String[]>> getArgumentBindingGraph() {
+        Map<String, List<String[]>> index = new TreeMap<String, List<String[]>>();
+        ArgumentBindingGraph graph = this.fortran.getArgumentBindingGraph();
+        for (Procedure caller : graph.getCallers()) {
+            LanguageReference key = LanguageReference.create(caller);
+            if (key == null) continue;
+            List<String[]> list = new ArrayList<String[]>();
+            for (ArgumentBindingGraph.Binding binding : graph.getBindings(caller)) {
+                LanguageReference callee = LanguageReference.create(binding.getCallee());
+                if (callee == null) continue;
+                String[] actuals = binding.getActuals();
+                String[] entry = new String[4 + actuals.length];
+                entry[0] = String.valueOf(binding.getCallIndex());
+                entry[1] = String.valueOf(binding.getArgIndex());
+                entry[2] = callee.getKey();
+                entry[3] = binding.getDummy();
+                System.arraycopy(actuals, 0, entry, 4, actuals.length);
+                list.add(entry);
+            }
+            index.put(key.getKey(), list);
+        }
+        return new LinkedHashMap<String, List<String[]>>(index);
+    }
+
+    /**
+     * 索引に呼出元、参照元手続きを追加する.<br/>
+     * 処理ブロックセクションを出力していない手続きは追加しない.
+     * @param index		索引
+     * @param target	呼出先、参照先の参照
+     * @param source	呼出元、参照元手続き
+     */
+    private void addDependentIndex(Map<String, Set<String>> index, LanguageReference target, ProgramUnit source) {
+        if (target == null || source == null) return;
+        if (!this.deferredProcedures.contains(source)) return;
+        LanguageReference ref = LanguageReference.create(source);
+        if (ref == null) return;
+        String key = target.getKey();
+        Set<String> list = index.get(key);
+        if (list == null) {
+            list = new TreeSet<String>();
+            index.put(key, list);
+        }
+        list.add(ref.getKey());
+    }
+
+    /**
+     * プログラム単位の副プログラムを内部副プログラムを含めて取得する.
+     * @param unit		プログラム単位
+     * @param procs		副プログラムリスト
+     */
+    private void collectProcedures(ProgramUnit unit, List<Procedure> procs) {
+        for (Procedure child : new TreeMap<String, Procedure>(getChildMap(unit)).values()) {
+            procs.add(child);
+            collectProcedures(child, procs);
+        }
+    }
+
+    /**
+     * 副プログラムの名前マップを取得する.
+     * @param unit		プログラム単位
+     * @return		副プログラムの名前マップ
+     */
+    private Map<String, Procedure> getChildMap(ProgramUnit unit) {
+        Map<String, Procedure> children = new HashMap<String, Procedure>();
+        for (Procedure child : unit.getChildren()) {
+            if (child.get_name() != null) {
+                children.put(child.get_name(), child);
+            }
+        }
+        return children;
+    }
+
+    /**
+     * 構造体定義の宣言プログラム単位を取得する.
+     * @param unit		プログラム単位
+     */
+    private void collectTypeOwners(ProgramUnit unit) {
+        List<Type> types = unit.getTypeList();
+        if (types != null) {
+            for (Type type : types) {
+                this.typeOwners.put(type, unit);
+            }
+        }
+        for (Procedure child : unit.getChildren()) {
+            collectTypeOwners(child);
+        }
+    }
+
+    /**
+     * 付加情報ブロックの開始、終了ブロックを処理ブロックに持つ手続きを取得する.<br/>
+     * 付加情報ブロックはモジュールセクションに出力するため、これらの手続きの処理ブロックは
+     * 別セクションとしない.
+     * @return		付加情報ブロックを持つ手続き
+     */
+    private Set<Procedure> getInformationProcedures() {
+        Set<Procedure> procs = Collections.newSetFromMap(new IdentityHashMap<Procedure, Boolean>());
+        InformationBlocks blocks = this.fortran.getInformationBlocks();
+        if (blocks == null) return procs;
+        for (InformationBlock block : blocks) {
+            Procedure start = LanguageDatabase.getOwnerProcedure(block.getStartBlock());
+            if (start != null) procs.add(start);
+            Procedure end = LanguageDatabase.getOwnerProcedure(block.getEndBlock());
+            if (end != null) procs.add(end);
+        }
+        return procs;
+    }
+
+    /**
+     * モジュールの出力順を取得する.<br/>
+     * 読込時に後のセクションへの参照が少なくなるように、USE先のモジュールを先にする.
+     * モジュールに含まれないプロシージャ(NO_MODULE)は最後とする.
+     * 手続宣言が後のセクションとなるmodule procedure項目は{@link ProcedureItemReference}として出力し、
+     * 読込時に全てのモジュールセクションを読み込んだ後に手続宣言を設定する.
+     * @return		モジュール出力順リスト
+     */
+    private List<Module> getModuleOrder() {
+        // モジュール名順として出力を一意にする
+        Map<String, Module> modules = new TreeMap<String, Module>(this.fortran.getModules());
+        Set<Module> order = new LinkedHashSet<Module>();
+        Set<Module> visiting = new LinkedHashSet<Module>();
+        Module noModule = null;
+        for (Module module : modules.values()) {
+            if (module.get_mother() == null && "NO_MODULE".equals(module.get_name())) {
+                noModule = module;
+                continue;
+            }
+            addModuleOrder(module, order, visiting);
+        }
+        if (noModule != null) {
+            order.add(noModule);
+        }
+        return new ArrayList<Module>(order);
+    }
+
+    /**
+     * USE先モジュールを先に出力順リストに追加する.
+     * @param module		追加モジュール
+     * @param order			出力順リスト
+     * @param visiting		探索中モジュール:循環参照チェック
+     */
+    private void addModuleOrder(Module module, Set<Module> order, Set<Module> visiting) {
+        if (module == null) return;
+        if (order.contains(module) || visiting.contains(module)) return;
+        visiting.add(module);
+        Set<String> uses = new LinkedHashSet<String>();
+        collectUseModules(module, uses);
+        for (String name : uses) {
+            addModuleOrder(this.fortran.module(name), order, visiting);
+        }
+        visiting.remove(module);
+        order.add(module);
+    }
+
+    /**
+     * プログラム単位と副プログラムのUSE先モジュール名を取得する.
+     * @param unit		プログラム単位
+     * @param uses		USE先モジュール名リスト
+     */
+    private void collectUseModules(ProgramUnit unit, Set<String> uses) {
+        if (unit.getUseList() != null) {
+            for (UseState use : unit.getUseList()) {
+                if (use.getModuleName() != null) {
+                    uses.add(use.getModuleName());
+                }
+            }
+        }
+        Collection<Procedure> children = unit.getChildren();
+        for (Procedure child : children) {
+            collectUseModules(child, uses);
+        }
+    }
+
+    /**
+     * 付加情報ブロックを開始ブロックのモジュール毎に振り分ける.
+     * @return		モジュール毎の付加情報ブロック
+     */
+    private Map<Module, InformationBlocks> getModuleInformationBlocks() {
+        Map<Module, InformationBlocks> infos = new HashMap<Module, InformationBlocks>();
+        InformationBlocks blocks = this.fortran.getInformationBlocks();
+        if (blocks == null) return infos;
+        Module noModule = this.fortran.module("NO_MODULE");
+        for (InformationBlock block : blocks) {
+            Module owner = LanguageDatabase.getOwnerModule(block.getStartBlock());
+            if (owner == null) {
+                owner = noModule;
+            }
+            InformationBlocks list = infos.get(owner);
+            if (list == null) {
+                list = new InformationBlocks();
+                infos.put(owner, list);
+            }
+            list.add(block);
+        }
+        return infos;
+    }
+
+    /**
+     * セクションオブジェクトストリームクラス.<br/>
+     * 文字列を共有して出力し、他セクションのプログラム単位、変数宣言、構造体定義を参照に置き換える.
+     * @author RIKEN
+     */
+    private class SectionStream extends ObjectOutputStream {
+        /** 出力バッファ */
+        private ByteArrayOutputStream buffer;
+        /** 圧縮器 */
+        private Deflater deflater;
+        /** セクションのモジュール:nullの場合は全てのプログラム単位を参照とする */
+        private Module module;
+        /** 処理ブロックセクションの手続き:モジュールセクションの場合はnull */
+        private Procedure procedure;
+        /** アクセス先メモリを設定した変数の有無 */
+        private boolean memoryVariable = false;
+        /** 共有文字列テーブル */
+        private Map<String, String> strings = new HashMap<String, String>();
+
+        /**
+         * コンストラクタ
+         * @param module		セクションのモジュール
+         * @param procedure		処理ブロックセクションの手続き
+         * @throws IOException		出力エラー
+         */
+        public SectionStream(Module module, Procedure procedure) throws IOException {
+            this(new ByteArrayOutputStream(), new Deflater(Deflater.BEST_SPEED), module, procedure);
+        }
+
+        /**
+         * コンストラクタ
+         * @param buffer		出力バッファ
+         * @param deflater		圧縮器:nullの場合は圧縮しない
+         * @param module		セクションのモジュール
+         * @param procedure		処理ブロックセクションの手続き
+         * @throws IOException		出力エラー
+         */
+        public SectionStream(ByteArrayOutputStream buffer, Deflater deflater, Module module, Procedure procedure) throws IOException {
+            super(deflater != null
+                    ? new BufferedOutputStream(new DeflaterOutputStream(buffer, deflater, 1 << 16), 1 << 16)
+                    : buffer);
+            this.buffer = buffer;
+            this.deflater = deflater;
+            this.module = module;
+            this.procedure = procedure;
+            this.enableReplaceObject(true);
+        }
+
+        /**
+         * 出力オブジェクトを置き換える.
+         * @param obj		出力オブジェクト
+         * @return		置換オブジェクト
+         */
+        @Override
+        protected Object replaceObject(Object obj) throws IOException {
+            if (obj instanceof String) {
+                String str = (String) obj;
+                String shared = this.strings.get(str);
+                if (shared == null) {
+                    this.strings.put(str, str);
+                    return str;
+                }
+                return shared;
+            }
+            if (obj == this.module) {
+                return obj;
+            }
+            if (this.procedure != null) {
+                // 処理ブロックセクション:プログラム単位、変数宣言はモジュールセクションに出力済み
+                if (obj instanceof Variable) {
+                    if (((Variable) obj).getMemoryType() != null) {
+                        this.memoryVariable = true;
+                    }
+                }
+                else if (obj instanceof ProgramUnit) {
+                    LanguageReference ref = LanguageReference.create((ProgramUnit) obj);
+                    if (ref != null) return ref;
+                }
+                else if (obj instanceof VariableDefinition) {
+                    if (LanguageDatabase.getOwnerModule(obj) != null) {
+                        LanguageReference ref = LanguageReference.create((VariableDefinition) obj);
+                        if (ref != null) return ref;
+                    }
+                }
+                else if (obj instanceof Type) {
+                    return replaceType((Type) obj, true);
+                }
+                return obj;
+            }
+            if (obj instanceof ExecutableBody) {
+                if (deferredProcedures.contains(((ExecutableBody) obj).getParent())) {
+                    return null;
+                }
+            }
+            else if (obj instanceof Map) {
+                if (deferredMaps.contains(obj)) {
+                    return null;
+                }
+            }
+            else if (obj instanceof ProcedureWithNameOnly) {
+                Procedure declaration = ((ProcedureWithNameOnly) obj).getDeclaration();
+                if (declaration != null && LanguageDatabase.getOwnerModule(declaration) != this.module) {
+                    ProcedureItemReference ref = ProcedureItemReference.create((ProcedureWithNameOnly) obj);
+                    if (ref != null) return ref;
+                }
+            }
+            else if (obj instanceof ProgramUnit) {
+                if (LanguageDatabase.getOwnerModule(obj) != this.module) {
+                    LanguageReference ref = LanguageReference.create((ProgramUnit) obj);
+                    if (ref != null) return ref;
+                }
+            }
+            else if (obj instanceof VariableDefinition) {
+                Module owner = LanguageDatabase.getOwnerModule(obj);
+                if (owner != null && owner != this.module) {
+                    LanguageReference ref = LanguageReference.create((VariableDefinition) obj);
+                    if (ref != null) return ref;
+                }
+            }
+            else if (obj instanceof Type) {
+                return replaceType((Type) obj, false);
+            }
+            return obj;
+        }
+
+        /**
+         * 構造体定義を参照に置き換える.
+         * @param type		構造体定義
+         * @param always	true=常に参照とする
+         * @return		置換オブジェクト
+         */
+        private Object replaceType(Type type, boolean always) {
+            ProgramUnit owner = typeOwners.get(type);
+            if (owner == null) return type;
+            if (!always && LanguageDatabase.getOwnerModule(owner) == this.module) {
+                return type;
+            }
+            LanguageReference ref = LanguageReference.create(owner, type);
+            if (ref != null) return ref;
+            return type;
+        }
+
+        /**
+         * アクセス先メモリを設定した変数を出力したかチェックする.
+         * @return		true=アクセス先メモリを設定した変数を出力した
+         */
+        public boolean hasMemoryVariable() {
+            return this.memoryVariable;
+        }
+
+        /**
+         * 圧縮済みセクションデータを取得する.
+         * @return		セクションデータ
+         * @throws IOException		出力エラー
+         */
+        public byte[] toByteArray() throws IOException {
+            this.close();
+            if (this.deflater != null) {
+                this.deflater.end();
+            }
+            return this.buffer.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.riken.kscope.language.utils;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import jp.riken.kscope.language.Fortran;
+import jp.riken.kscope.language.Module;
+import jp.riken.kscope.language.ProgramUnit;
+import jp.riken.kscope.language.VariableDefinition;
+import jp.riken.kscope.language.fortran.Type;
+
+/**
+ * データベースファイルのセクション間参照クラス.<br/>
+ * 他のセクションに属するプログラム単位、変数宣言、構造体定義を
+ * オブジェクトではなく、モジュールからの名前パスで参照する.
+ * @author RIKEN
+ */
+public class LanguageReference implements Serializable {
+    /** シリアル番号 */
+    private static final long serialVersionUID = 2851647409167359021L;
+    /** 参照キーのプログラム単位名区切り文字 */
+    private static final String PATH_SEPARATOR = "/";
+    /** 参照キーの変数名区切り文字 */
+    private static final String VARIABLE_SEPARATOR = "#";
+    /** プログラム単位名パス:モジュール名, 副プログラム名,... */
+    private String[] unitPath;
+    /** 変数名:プログラム単位参照の場合はnull */
+    private String variableName;
+    /** 構造体名:構造体定義参照以外の場合はnull */
+    private String typeName;
+
+    /**
+     * コンストラクタ
+     * @param unitPath			プログラム単位名パス
+     * @param variableName		変数名
+     */
+    private LanguageReference(String[] unitPath, String variableName) {
+        this.unitPath = unitPath;
+        this.variableName = variableName;
+    }
+
+    /**
+     * プログラム単位の参照を作成する.
+     * @param unit		プログラム単位
+     * @return		参照:作成できない場合はnull
+     */
+    public static LanguageReference create(ProgramUnit unit) {
+        String[] path = getUnitPath(unit);
+        if (path == null) return null;
+        return new LanguageReference(path, null);
+    }
+
+    /**
+     * 変数宣言の参照を作成する.
+     * @param definition		変数宣言
+     * @return		参照:作成できない場合はnull
+     */
+    public static LanguageReference create(VariableDefinition definition) {
+        if (definition.get_name() == null) return null;
+        String[] path = getUnitPath(definition.getMother());
+        if (path == null) return null;
+        return new LanguageReference(path, definition.get_name());
+    }
+
+    /**
+     * 構造体定義の参照を作成する.
+     * @param unit		構造体定義を持つプログラム単位
+     * @param type		構造体定義
+     * @return		参照:作成できない場合はnull
+     */
+    public static LanguageReference create(ProgramUnit unit, Type type) {
+        if (type.getName() == null) return null;
+        if (unit.getType(type.getName()) != type) return null;
+        String[] path = getUnitPath(unit);
+        if (path == null) return null;
+        LanguageReference ref = new LanguageReference(path, null);
+        ref.typeName = type.getName();
+        return ref;
+    }
+
+    /**
+     * 参照キー文字列から参照を作成する.
+     * @param key		参照キー文字列
+     * @return		参照
+     * @see #getKey()
+     */
+    public static LanguageReference parse(String key) {
+        String variable = null;
+        int pos = key.indexOf(VARIABLE_SEPARATOR);
+        if (pos >= 0) {
+            variable = key.substring(pos + 1);
+            key = key.substring(0, pos);
+        }
+        return new LanguageReference(key.split(PATH_SEPARATOR), variable);
+    }
+
+    /**
+     * モジュールからのプログラム単位名パスを取得する.
+     * @param unit		プログラム単位
+     * @return		プログラム単位名パス
+     */
+    private static String[] getUnitPath(ProgramUnit unit) {
+        if (unit == null) return null;
+        List<String> path = new ArrayList<String>();
+        ProgramUnit current = unit;
+        while (current != null) {
+            if (current.get_name() == null) return null;
+            path.add(current.get_name());
+            if (current instanceof Module) break;
+            current = current.get_mother();
+        }
+        if (!(current instanceof Module)) return null;
+        Collections.reverse(path);
+        return path.toArray(new String[0]);
+    }
+
+    /**
+     * データベースから参照先オブジェクトを取得する.
+     * @param fortran		フォートランデータベース
+     * @return		参照先オブジェクト:読込済みでない場合はnull
+     */
+    public Object resolve(Fortran fortran) {
+        ProgramUnit unit = fortran.module(this.unitPath[0]);
+        for (int i=1; i<this.unitPath.length && unit != null; i++) {
+            unit = fortran.getProcedure(unit, this.unitPath[i]);
+        }
+        if (unit == null) return null;
+        if (this.typeName != null) {
+            return unit.getType(this.typeName);
+        }
+        if (this.variableName == null) {
+            return unit;
+        }
+        return unit.get_variable(this.variableName);
+    }
+
+    /**
+     * 参照キー文字列を取得する.<br/>
+     * プログラム単位名パスを"/"で連結し、変数宣言の場合は"#変数名"を付加する.
+     * データベースファイルのセクション名、索引のキーとする.
+     * @return		参照キー文字列
+     */
+    public String getKey() {
+        StringBuilder buf = new StringBuilder();
+        for (int i=0; i<this.unitPath.length; i++) {
+            if (i > 0) buf.append(PATH_SEPARATOR);
+            buf.append(this.unitPath[i]);
+        }
+        if (this.variableName != null) {
+            buf.append(VARIABLE_SEPARATOR);
+            buf.append(this.variableName);
+        }
+        return buf.toString();
+    }
+
+    /**
+     * 参照先のモジュール名を取得する.
+     * @return		モジュール名
+     */
+    public String getModuleName() {
+        return this.unitPath[0];
+    }
+}
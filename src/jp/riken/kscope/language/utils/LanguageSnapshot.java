@@ -0,0 +1,683 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.riken.kscope.language.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jp.riken.kscope.data.SourceFile;
+import jp.riken.kscope.language.Block;
+import jp.riken.kscope.language.Fortran;
+import jp.riken.kscope.language.IBlock;
+import jp.riken.kscope.language.ISnapshotLinker;
+import jp.riken.kscope.language.Module;
+import jp.riken.kscope.language.Procedure;
+import jp.riken.kscope.language.ProcedureUsage;
+import jp.riken.kscope.language.ProgramUnit;
+import jp.riken.kscope.language.UseState;
+import jp.riken.kscope.language.Variable;
+import jp.riken.kscope.language.VariableDefinition;
+import jp.riken.kscope.language.generic.IProcedureItem;
+import jp.riken.kscope.language.generic.ProcedureWithNameOnly;
+import jp.riken.kscope.language.generic.Procedures;
+
+/**
+ * フォートランデータベースのスナップショット作成クラス.<br/>
+ * 構造解析再実行で影響を受けるプログラム単位と、それらを参照するプログラム単位を推移的に複製し、
+ * その他のプログラム単位は公開中のデータベースと共有する.
+ * 構造解析再実行は複製したプログラム単位に対して行い、公開中のデータベースのプログラム単位は入替後も変更しない.<br/>
+ * 複製はオブジェクトストリームで行い、共有するプログラム単位、変数宣言、構造体、ソースファイルは書き込まずに元のオブジェクトを参照する.
+ * 直列化されない呼出先、呼出元、参照元、変数名マップは、複製元オブジェクトの配列を同じストリームに続けて書き込み、
+ * 読み込んだ配列との対応から複製先のオブジェクトに関連付け直す.<br/>
+ * 共有するプログラム単位は複製したプログラム単位を参照しないため、入替時に関連付け直す必要は無い.
+ * @author RIKEN
+ */
+public class LanguageSnapshot implements ISnapshotLinker {
+
+    /** モジュールに含まれないProcedureを格納するModuleオブジェクトの名前 */
+    private static final String NO_MODULE = "NO_MODULE";
+    /** 複製スレッドのスタックサイズ:オブジェクトストリームは再帰的に直列化する */
+    private static final long STACK_SIZE = 256L * 1024 * 1024;
+
+    /** 複製元データベースのプログラム単位:NO_MODULEモジュールを含む */
+    private final Set<ProgramUnit> units = Collections.newSetFromMap(new IdentityHashMap<ProgramUnit, Boolean>());
+    /** 削除されたプログラム単位 */
+    private final Set<ProgramUnit> removes = Collections.newSetFromMap(new IdentityHashMap<ProgramUnit, Boolean>());
+    /** 複製するプログラム単位:NO_MODULEの外部手続きを複製する場合はNO_MODULEモジュールと全ての外部手続きを含む */
+    private final Set<ProgramUnit> copyUnits = Collections.newSetFromMap(new IdentityHashMap<ProgramUnit, Boolean>());
+    /** 共有オブジェクトリスト:書込み順 */
+    private final List<Object> shared = new ArrayList<Object>();
+    /** 共有オブジェクトの置換オブジェクト */
+    private final Map<Object, SharedObject> sharedObjects = new IdentityHashMap<Object, SharedObject>();
+    /** 関連付けを設定し直す書込みオブジェクトリスト:書込み順 */
+    private final List<Object> written = new ArrayList<Object>();
+    /** 書込みオブジェクトの記録フラグ */
+    private boolean recording = true;
+    /** 複製元オブジェクトと複製オブジェクトのマップ */
+    private Map<Object, Object> copies;
+
+    /**
+     * コンストラクタ
+     * @param source		複製元フォートランデータベース
+     * @param removes		削除されたプログラム単位
+     */
+    private LanguageSnapshot(Fortran source, Collection<ProgramUnit> removes) {
+        this.units.addAll(DependencyGraph.getUnits(source));
+        Module noModule = source.module(NO_MODULE);
+        if (noModule != null) {
+            this.units.add(noModule);
+        }
+        if (removes != null) {
+            this.removes.addAll(removes);
+        }
+    }
+
+    /**
+     * フォートランデータベースのプログラム単位を複製する.<br/>
+     * 複製前に複製元データベースの未読込の処理ブロックを全て読み込み、以降の遅延読込で共有するプログラム単位が変更されないようにする.
+     * 処理ブロックを全て読み込んだ遅延読込はデータベースファイルを閉じて終了する.
+     * @param source		複製元フォートランデータベース
+     * @param affected		構造解析再実行で影響を受けるプログラム単位
+     * @param changes		更新されたプログラム単位(作成データベースのプログラム単位)
+     * @param removes		削除されたプログラム単位
+     * @return		スナップショット
+     * @throws IOException		複製エラー
+     * @throws InterruptedException		割り込み例外
+     */
+    public static LanguageSnapshot copy(final Fortran source, final Collection<ProgramUnit> affected,
+                    final Collection<ProgramUnit> changes, Collection<ProgramUnit> removes)
+                    throws IOException, InterruptedException {
+        if (source == null) return null;
+
+        source.loadProcedures();
+        final LanguageSnapshot snapshot = new LanguageSnapshot(source, removes);
+        final Throwable[] result = new Throwable[1];
+        Thread thread = new Thread(null, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    snapshot.collectCopyUnits(source, affected, changes);
+                    snapshot.copyUnits();
+                } catch (Throwable ex) {
+                    result[0] = ex;
+                }
+            }
+        }, "kscope-snapshot", STACK_SIZE);
+        thread.start();
+        thread.join();
+
+        if (result[0] == null) {
+            return snapshot;
+        }
+        if (result[0] instanceof IOException) {
+            throw (IOException) result[0];
+        }
+        if (result[0] instanceof Error) {
+            throw (Error) result[0];
+        }
+        throw new IOException(result[0]);
+    }
+
+    /**
+     * 複製するプログラム単位を取得する.<br/>
+     * 以下のプログラム単位と、それらのプログラム単位のオブジェクトを参照するプログラム単位を推移的に複製する.
+     * <ul>
+     * <li>構造解析再実行で影響を受けるプログラム単位.</li>
+     * <li>再解析で呼出元、参照元が追加される可能性のあるプログラム単位.
+     * 再解析するプログラム単位の手続呼出名の手続き、総称名、USE文のモジュールを持つプログラム単位とする.</li>
+     * <li>削除されたプログラム単位を参照するプログラム単位.削除されたプログラム単位自体は複製しない.</li>
+     * </ul>
+     * @param source		複製元フォートランデータベース
+     * @param affected		構造解析再実行で影響を受けるプログラム単位
+     * @param changes		更新されたプログラム単位
+     */
+    private void collectCopyUnits(Fortran source, Collection<ProgramUnit> affected,
+                    Collection<ProgramUnit> changes) {
+        Map<String, Module> modules = new HashMap<String, Module>();
+        for (Module module : source.getModules().values()) {
+            modules.put(module.get_name().toLowerCase(), module);
+        }
+        // 参照先プログラム単位と参照元プログラム単位のマップ
+        Map<ProgramUnit, Set<ProgramUnit>> referrers = new IdentityHashMap<ProgramUnit, Set<ProgramUnit>>();
+        for (ProgramUnit unit : this.units) {
+            Set<ProgramUnit> links = Collections.newSetFromMap(new IdentityHashMap<ProgramUnit, Boolean>());
+            if (isNoModule(unit)) {
+                links.addAll(unit.getChildren());
+            }
+            else {
+                if (unit.get_mother() != null) {
+                    links.add(unit.get_mother());
+                }
+                collectLinks(unit, modules, links);
+            }
+            for (ProgramUnit target : links) {
+                if (target == unit) continue;
+                Set<ProgramUnit> list = referrers.get(target);
+                if (list == null) {
+                    list = Collections.newSetFromMap(new IdentityHashMap<ProgramUnit, Boolean>());
+                    referrers.put(target, list);
+                }
+                list.add(unit);
+            }
+        }
+
+        List<ProgramUnit> queue = new ArrayList<ProgramUnit>(affected);
+        queue.addAll(this.removes);
+        Set<String> names = new HashSet<String>();
+        for (ProgramUnit unit : affected) {
+            collectLinkNames(unit, names);
+        }
+        if (changes != null) {
+            for (ProgramUnit unit : changes) {
+                collectLinkNames(unit, names);
+            }
+        }
+        for (ProgramUnit unit : this.units) {
+            if (!isNoModule(unit) && hasName(unit, names)) {
+                queue.add(unit);
+            }
+        }
+
+        Set<ProgramUnit> visited = Collections.newSetFromMap(new IdentityHashMap<ProgramUnit, Boolean>());
+        for (int i=0; i<queue.size(); i++) {
+            ProgramUnit unit = queue.get(i);
+            if (!visited.add(unit)) continue;
+            Set<ProgramUnit> list = referrers.get(unit);
+            if (list != null) {
+                queue.addAll(list);
+            }
+            if (this.units.contains(unit) && !this.removes.contains(unit)) {
+                this.copyUnits.add(unit);
+            }
+        }
+    }
+
+    /**
+     * プログラム単位と副プログラムが参照するプログラム単位を取得する.<br/>
+     * 呼出先、呼出元、変数宣言、参照元、USE文のモジュール、module procedure文の手続宣言を参照先とする.
+     * @param unit		プログラム単位
+     * @param modules		{モジュール名(小文字), モジュール}
+     * @param links		参照先プログラム単位の追加先
+     */
+    private static void collectLinks(ProgramUnit unit, Map<String, Module> modules, Set<ProgramUnit> links) {
+        if (unit instanceof Procedure) {
+            for (ProcedureUsage call : ((Procedure) unit).getCalls()) {
+                addLink(call.getCallDefinition(), links);
+            }
+            for (ProcedureUsage call : ((Procedure) unit).getCallMember()) {
+                addLink(call, links);
+            }
+        }
+        for (VariableDefinition def : unit.getVariableMap().values()) {
+            addLink(def, links);
+        }
+        Set<Variable> vars = unit.getAllVariables();
+        if (vars != null) {
+            for (Variable var : vars) {
+                addLink(var.getDefinition(), links);
+            }
+        }
+        if (unit.getVariables() != null) {
+            for (VariableDefinition def : unit.getVariables().values()) {
+                for (ProgramUnit member : def.getReferMember()) {
+                    addLink(member, links);
+                }
+            }
+        }
+        for (UseState use : unit.getUseList()) {
+            if (use.getModuleName() == null) continue;
+            addLink(modules.get(use.getModuleName().toLowerCase()), links);
+        }
+        for (Procedures generic : unit.getInterfaceList()) {
+            if (generic.getProcedures() == null) continue;
+            for (IProcedureItem item : generic.getProcedures()) {
+                if (item instanceof ProcedureWithNameOnly) {
+                    addLink(((ProcedureWithNameOnly) item).getDeclaration(), links);
+                }
+            }
+        }
+        for (Procedure child : unit.getChildren()) {
+            collectLinks(child, modules, links);
+        }
+    }
+
+    /**
+     * オブジェクトが属するプログラム単位を参照先に追加する.
+     * @param block		プログラム単位、変数宣言、手続呼出
+     * @param links		参照先プログラム単位の追加先
+     */
+    private static void addLink(IBlock block, Set<ProgramUnit> links) {
+        ProgramUnit unit = getUnit(block);
+        if (unit != null) {
+            links.add(unit);
+        }
+    }
+
+    /**
+     * 再解析で対応付ける手続呼出名、USE文のモジュール名を取得する.
+     * @param unit		プログラム単位
+     * @param names		手続呼出名、モジュール名(小文字)の追加先
+     */
+    private static void collectLinkNames(ProgramUnit unit, Set<String> names) {
+        if (unit instanceof Procedure) {
+            for (ProcedureUsage call : ((Procedure) unit).getCalls()) {
+                if (call.getCallName() == null) continue;
+                names.add(call.getCallName().toLowerCase());
+            }
+        }
+        for (UseState use : unit.getUseList()) {
+            if (use.getModuleName() == null) continue;
+            names.add(use.getModuleName().toLowerCase());
+        }
+        for (Procedure child : unit.getChildren()) {
+            collectLinkNames(child, names);
+        }
+    }
+
+    /**
+     * プログラム単位、副プログラム、総称名が名前リストに含まれるかチェックする.
+     * @param unit		プログラム単位
+     * @param names		名前(小文字)リスト
+     * @return		true=名前リストに含まれる
+     */
+    private static boolean hasName(ProgramUnit unit, Set<String> names) {
+        if (unit.get_name() != null && names.contains(unit.get_name().toLowerCase())) {
+            return true;
+        }
+        for (Procedures generic : unit.getInterfaceList()) {
+            if (generic.getName() != null && names.contains(generic.getName().toLowerCase())) {
+                return true;
+            }
+        }
+        for (Procedure child : unit.getChildren()) {
+            if (hasName(child, names)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * プログラム単位をオブジェクトストリームで複製する.
+     * @throws IOException		複製エラー
+     * @throws ClassNotFoundException		複製エラー
+     */
+    private void copyUnits() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        ObjectOutputStream out = new RecordOutputStream(buffer);
+        out.writeObject(this.copyUnits.toArray(new ProgramUnit[0]));
+        // 書込み済みのオブジェクトは参照として書き込まれる
+        this.recording = false;
+        Object[] sources = this.written.toArray();
+        out.writeObject(sources);
+        out.close();
+
+        ObjectInputStream in = new SharedInputStream(new ByteArrayInputStream(buffer.toByteArray()));
+        buffer = null;
+        in.readObject();
+        Object[] targets = (Object[]) in.readObject();
+        in.close();
+
+        if (sources.length != targets.length) {
+            throw new IOException("snapshot object count mismatch: written="
+                    + sources.length + ", read=" + targets.length);
+        }
+        this.copies = new IdentityHashMap<Object, Object>(sources.length);
+        for (int i=0; i<sources.length; i++) {
+            this.copies.put(sources[i], targets[i]);
+        }
+
+        restoreTransients();
+    }
+
+    /**
+     * 直列化されない関連付けを複製オブジェクトに設定する.<br/>
+     * 呼出先、参照先が複製されていない場合は、削除されたプログラム単位の元のオブジェクトを参照する.
+     */
+    private void restoreTransients() {
+        for (Object src : this.written) {
+            if (src instanceof ProcedureUsage) {
+                ProcedureUsage call = (ProcedureUsage) src;
+                Procedure proc = resolve(call.getCallDefinition());
+                if (proc == null) continue;
+                // 呼出元リストは複製元の順序で設定する
+                getCopy(call).setCallDefinition(proc, false);
+            }
+            else if (src instanceof ProgramUnit) {
+                ProgramUnit unit = (ProgramUnit) src;
+                ProgramUnit copy = getCopy(unit);
+                for (Map.Entry<String, VariableDefinition> entry : unit.getVariableMap().entrySet()) {
+                    copy.putVariableMap(entry.getKey(), resolve(entry.getValue()));
+                }
+                if (src instanceof Procedure) {
+                    Set<ProcedureUsage> calls = new LinkedHashSet<ProcedureUsage>();
+                    for (ProcedureUsage call : ((Procedure) src).getCallMember()) {
+                        calls.add(resolve(call));
+                    }
+                    ((Procedure) copy).setCallMember(calls);
+                }
+            }
+            else if (src instanceof VariableDefinition) {
+                VariableDefinition def = getCopy((VariableDefinition) src);
+                for (ProgramUnit member : ((VariableDefinition) src).getReferMember()) {
+                    def.addReferMember(resolve(member));
+                }
+            }
+            else if (src instanceof Variable) {
+                ((Variable) getCopy(src)).setTemporaryMemoryType(((Variable) src).getTemporaryMemoryType());
+            }
+        }
+    }
+
+    /**
+     * 作成データベースのプログラム単位を複製したプログラム単位に置き換える.
+     * @param db		作成フォートランデータベース
+     */
+    public void replaceUnits(Fortran db) {
+        for (Map.Entry<String, Module> entry : db.getModules().entrySet()) {
+            Module copy = getCopy(entry.getValue());
+            if (copy != null) {
+                entry.setValue(copy);
+            }
+        }
+        Map<String, List<ProgramUnit>> commons = db.getCommonMap();
+        if (commons != null) {
+            for (List<ProgramUnit> list : commons.values()) {
+                for (int i=0; i<list.size(); i++) {
+                    list.set(i, resolve(list.get(i)));
+                }
+            }
+        }
+    }
+
+    /**
+     * 複製オブジェクトを取得する.<br/>
+     * 複製されていないオブジェクトは、そのまま返す.
+     * @param obj		複製元オブジェクト
+     * @return		複製オブジェクト
+     */
+    public <T> T resolve(T obj) {
+        T copy = getCopy(obj);
+        return (copy != null) ? copy : obj;
+    }
+
+    /**
+     * 公開中のデータベースのオブジェクトであるかチェックする.<br/>
+     * 複製元のオブジェクトは複製の有無に関わらず共有するオブジェクトとし、変更しない.
+     * @param block		プログラム単位、変数宣言
+     * @return		true=共有するオブジェクト
+     */
+    @Override
+    public boolean isShared(IBlock block) {
+        ProgramUnit unit = getUnit(block);
+        return unit != null && this.units.contains(unit);
+    }
+
+    /**
+     * 手続きに呼出元を追加する.
+     * @param proc		呼出先手続き
+     * @param call		手続呼出
+     */
+    @Override
+    public void addCallMember(Procedure proc, ProcedureUsage call) {
+        Procedure target = getTarget(proc);
+        if (target == null) return;
+        target.addCallMember(call);
+    }
+
+    /**
+     * 手続きから呼出元を削除する.
+     * @param proc		呼出先手続き
+     * @param call		手続呼出
+     */
+    @Override
+    public void removeCallMember(Procedure proc, ProcedureUsage call) {
+        Procedure target = getTarget(proc);
+        if (target == null) return;
+        target.removeCallMember(resolve(call));
+    }
+
+    /**
+     * 変数宣言に参照元を追加する.
+     * @param def		変数宣言
+     * @param unit		参照元プログラム単位
+     */
+    @Override
+    public void addReferMember(VariableDefinition def, ProgramUnit unit) {
+        VariableDefinition target = getTarget(def);
+        if (target == null) return;
+        target.addReferMember(unit);
+    }
+
+    /**
+     * 変数宣言から参照元を削除する.
+     * @param def		変数宣言
+     * @param unit		参照元プログラム単位
+     */
+    @Override
+    public void removeReferMember(VariableDefinition def, ProgramUnit unit) {
+        VariableDefinition target = getTarget(def);
+        if (target == null) return;
+        target.removeReferMember(resolve(unit));
+    }
+
+    /**
+     * プログラム単位の変数名マップに変数宣言を追加する.
+     * @param unit		プログラム単位
+     * @param name		変数名
+     * @param def		変数宣言
+     */
+    @Override
+    public void putVariableMap(ProgramUnit unit, String name, VariableDefinition def) {
+        ProgramUnit target = getTarget(unit);
+        if (target == null) return;
+        target.putVariableMap(name, def);
+    }
+
+    /**
+     * module procedure文に手続宣言を設定する.
+     * @param item		module procedure文
+     * @param owner		interface文を持つプログラム単位
+     * @param proc		手続宣言
+     */
+    @Override
+    public void setDeclaration(ProcedureWithNameOnly item, ProgramUnit owner, Procedure proc) {
+        if (getTarget(owner) == null) return;
+        resolve(item).setDeclaration(proc);
+    }
+
+    /**
+     * 作成データベースで変更するオブジェクトを取得する.<br/>
+     * 複製元のオブジェクトは複製オブジェクトに置き換える.
+     * @param block		変更するオブジェクト
+     * @return		変更するオブジェクト:削除されたプログラム単位のオブジェクトの場合はnull
+     * @throws IllegalStateException		複製されていない公開中のデータベースのオブジェクト
+     */
+    private <T extends IBlock> T getTarget(T block) {
+        T copy = getCopy(block);
+        if (copy != null) return copy;
+        ProgramUnit unit = getUnit(block);
+        if (unit == null || !this.units.contains(unit)) return block;
+        // 削除されたプログラム単位は作成データベースに含まれない
+        if (this.removes.contains(unit)) return null;
+        throw new IllegalStateException("shared program unit is not copied: " + unit.get_name());
+    }
+
+    /**
+     * 複製オブジェクトを取得する.
+     * @param src		複製元オブジェクト
+     * @return		複製オブジェクト:複製されていない場合はnull
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T getCopy(T src) {
+        if (src == null || this.copies == null) return null;
+        return (T) this.copies.get(src);
+    }
+
+    /**
+     * オブジェクトが属するプログラム単位を取得する.<br/>
+     * モジュールと、NO_MODULEの外部手続きをプログラム単位とする.
+     * @param block		プログラム単位、変数宣言、構造体
+     * @return		プログラム単位:取得できない場合はnull
+     */
+    private static ProgramUnit getUnit(IBlock block) {
+        while (block != null && !(block instanceof ProgramUnit)) {
+            block = block.getMotherBlock();
+        }
+        if (block == null) return null;
+        ProgramUnit unit = (ProgramUnit) block;
+        while (unit.get_mother() != null && !isNoModule(unit.get_mother())) {
+            unit = unit.get_mother();
+        }
+        return unit;
+    }
+
+    /**
+     * NO_MODULEモジュールであるかチェックする.
+     * @param unit		プログラム単位
+     * @return		true=NO_MODULEモジュール
+     */
+    private static boolean isNoModule(ProgramUnit unit) {
+        return unit instanceof Module && NO_MODULE.equals(unit.get_name());
+    }
+
+    /**
+     * 書込みオブジェクトを共有するかチェックする.<br/>
+     * ソースファイルと、複製しないプログラム単位に属するプログラム単位、変数宣言、構造体を共有する.
+     * 処理ブロックの文は属するプログラム単位と共に書き込まれる為、チェックしない.
+     * @param obj		書込みオブジェクト
+     * @return		true=共有するオブジェクト
+     */
+    private boolean isSharedObject(Object obj) {
+        if (obj instanceof SourceFile) return true;
+        if (!(obj instanceof IBlock) || obj instanceof Block) return false;
+        ProgramUnit unit = getUnit((IBlock) obj);
+        return unit != null && !this.copyUnits.contains(unit);
+    }
+
+    /**
+     * 関連付けを設定し直すオブジェクトであるかチェックする.
+     * @param obj		書込みオブジェクト
+     * @return		true=関連付けを設定し直すオブジェクト
+     */
+    private static boolean isRestoreTarget(Object obj) {
+        return obj instanceof ProgramUnit
+            || obj instanceof ProcedureUsage
+            || obj instanceof VariableDefinition
+            || obj instanceof Variable
+            || obj instanceof ProcedureWithNameOnly;
+    }
+
+    /**
+     * 共有オブジェクトの置換オブジェクト.<br/>
+     * 共有オブジェクトリストのインデックスのみを書き込む.
+     */
+    private static class SharedObject implements Serializable {
+        /** シリアル番号 */
+        private static final long serialVersionUID = 1L;
+        /** 共有オブジェクトリストのインデックス */
+        private final int index;
+
+        /**
+         * コンストラクタ
+         * @param index		共有オブジェクトリストのインデックス
+         */
+        SharedObject(int index) {
+            this.index = index;
+        }
+    }
+
+    /**
+     * 書込みオブジェクトを記録し、共有オブジェクトを置換するオブジェクト出力ストリーム.
+     */
+    private class RecordOutputStream extends ObjectOutputStream {
+        /**
+         * コンストラクタ
+         * @param out		出力ストリーム
+         * @throws IOException		出力エラー
+         */
+        public RecordOutputStream(OutputStream out) throws IOException {
+            super(out);
+            enableReplaceObject(true);
+        }
+
+        /**
+         * 共有オブジェクトを置換して、書込みオブジェクトを記録する.
+         * @param obj		書込みオブジェクト
+         * @return		書込みオブジェクト、共有オブジェクトの置換オブジェクト
+         */
+        @Override
+        protected Object replaceObject(Object obj) {
+            if (isSharedObject(obj)) {
+                SharedObject replace = sharedObjects.get(obj);
+                if (replace == null) {
+                    replace = new SharedObject(shared.size());
+                    shared.add(obj);
+                    sharedObjects.put(obj, replace);
+                }
+                return replace;
+            }
+            if (recording && isRestoreTarget(obj)) {
+                written.add(obj);
+            }
+            return obj;
+        }
+    }
+
+    /**
+     * 共有オブジェクトの置換オブジェクトを元のオブジェクトに戻すオブジェクト入力ストリーム.
+     */
+    private class SharedInputStream extends ObjectInputStream {
+        /**
+         * コンストラクタ
+         * @param in		入力ストリーム
+         * @throws IOException		入力エラー
+         */
+        public SharedInputStream(InputStream in) throws IOException {
+            super(in);
+            enableResolveObject(true);
+        }
+
+        /**
+         * 共有オブジェクトの置換オブジェクトを元のオブジェクトに戻す.
+         * @param obj		読込みオブジェクト
+         * @return		読込みオブジェクト、共有オブジェクト
+         */
+        @Override
+        protected Object resolveObject(Object obj) {
+            if (obj instanceof SharedObject) {
+                return shared.get(((SharedObject) obj).index);
+            }
+            return obj;
+        }
+    }
+}
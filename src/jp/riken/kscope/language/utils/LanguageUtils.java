@@ -19,15 +19,14 @@ package jp.riken.kscope.language.utils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
 import jp.riken.kscope.data.CodeLine;
-import jp.riken.kscope.data.SourceFile;
 import jp.riken.kscope.language.ExecutableBody;
 import jp.riken.kscope.language.Fortran;
 import jp.riken.kscope.language.IBlock;
+import jp.riken.kscope.language.LineIndex;
 import jp.riken.kscope.language.Procedure;
 import jp.riken.kscope.language.ProcedureUsage;
 import jp.riken.kscope.language.ProgramUnit;
@@ -67,37 +66,8 @@ public class LanguageUtils {
     	if (line == null) return null;
     	if (this.fortranDb == null) return null;
 
-        SourceFile file = line.getSourceFile();
-        int lineNo = line.getStartLine();
-        // fileにあるプログラム単位のリストを取得
-        List<ProgramUnit> pus = this.fortranDb.getProgramUnits(file);
-        if (pus == null) return null;
-        // lineNoを含むプログラム単位を習得
-        ProgramUnit punit = null;
-        for (ProgramUnit pu : pus) {
-            int sPos = pu.getStartPos();
-            int ePos = pu.getEndPos();
-            if (sPos <= lineNo && lineNo <= ePos) {
-                punit = pu;
-                Collection<Procedure> children = pu.getChildren();
-                for (Procedure child : children) {
-                    sPos = child.getStartPos();
-                    ePos = child.getEndPos();
-                    if (sPos <= lineNo && lineNo <= ePos) {
-                        punit = child;
-                        Collection<Procedure> children2 = child.getChildren();
-                        for (Procedure child2 : children2) {
-                            sPos = child.getStartPos();
-                            ePos = child.getEndPos();
-                            if (sPos <= lineNo && lineNo <= ePos) {
-                                punit = child2;
-                            }
-                        }
-                    }
-                }
-            }
-        }
-        return punit;
+        // 行番号索引からlineを含む最も内側の手続きを取得
+        return this.fortranDb.getLineIndex().getProcedure(line);
     }
 
 	/**
@@ -119,12 +89,14 @@ public class LanguageUtils {
 	 */
     public IBlock[] getCodeLineBlocks(CodeLine[] lines) {
     	if (lines == null) return null;
+    	if (this.fortranDb == null) return null;
 
+    	LineIndex index = this.fortranDb.getLineIndex();
     	List<IBlock> list = new ArrayList<IBlock>();
     	for (CodeLine line : lines) {
-    		ProgramUnit unit = getCurrentProgramUnit(line);
+    		Procedure unit = index.getProcedure(line);
     		if (unit == null) continue;
-    		IBlock[] blocks = unit.searchCodeLine(line);
+    		IBlock[] blocks = index.getBlocks(unit, line);
     		if (blocks != null) {
     			list.addAll(Arrays.asList(blocks));
     		}
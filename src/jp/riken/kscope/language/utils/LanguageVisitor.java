@@ -42,6 +42,8 @@ public class LanguageVisitor implements ILanguageEntry {
 	private List<Object> listVisit;
     /** 循環を判定するための作業用セット */
     private ArrayList<Procedure> recursiveProcedures;
+    /** 読込済みの処理ブロックのみ探索する:未読込の処理ブロックを読み込まない */
+    private boolean loadedOnly = false;
 
 	/**
 	 * コンストラクタ
@@ -74,6 +76,31 @@ public class LanguageVisitor implements ILanguageEntry {
         return;
 	}
 
+    /**
+     * 指定プログラム単位のみ探索する.<br/>
+     * モジュールはモジュール全体を探索し、手続きはモジュールに含まれない外部手続きとして探索する.
+     * @param units		プログラム単位リスト
+     */
+	public void entryUnits(Collection<ProgramUnit> units) {
+        if (units == null || units.size() <= 0) return;
+
+        for (ProgramUnit unit : units) {
+            if (unit instanceof Module) {
+                Application.status.setMessageStatus("validate database..." + unit.get_name());
+                entry((Module)unit);
+            }
+            else if (unit instanceof Procedure) {
+                ProgramUnit mother = unit.get_mother();
+                if (mother != null) addVisitList(mother);
+                clearProcedure();
+                entry((Procedure)unit);
+                clearProcedure();
+                if (mother != null) removeVisitList(mother);
+            }
+        }
+        Application.status.setMessageStatus("validate database...done");
+	}
+
 	@Override
 	public void entry(Module module) {
 		addVisitList(module);
@@ -163,14 +190,16 @@ public class LanguageVisitor implements ILanguageEntry {
         
         entryProgramUnit(procedure);
 
-        ExecutableBody body = procedure.getBody();
-        if (body != null) {
-        	entry(body);
-        }
-        
-        List<ProcedureUsage> calls = procedure.getCalls();
-        if (calls != null && calls.size() > 0) {
-        	entry(calls.toArray(new ProcedureUsage[0]));
+        if (!this.loadedOnly || procedure.isBodyLoaded()) {
+	        ExecutableBody body = procedure.getBody();
+	        if (body != null) {
+	        	entry(body);
+	        }
+
+	        List<ProcedureUsage> calls = procedure.getCalls();
+	        if (calls != null && calls.size() > 0) {
+	        	entry(calls.toArray(new ProcedureUsage[0]));
+	        }
         }
 
     	removeVisitList(procedure);
@@ -972,6 +1001,14 @@ public class LanguageVisitor implements ILanguageEntry {
 		this.language = language;
 	}
 
+	/**
+	 * 読込済みの処理ブロックのみ探索するかを設定する.
+	 * @param loaded		true=未読込の処理ブロックを読み込まない
+	 */
+	public void setLoadedOnly(boolean loaded) {
+		this.loadedOnly = loaded;
+	}
+
 	/**
 	 * 付加情報ブロックの探索を行う
 	 * @param info		付加情報ブロック
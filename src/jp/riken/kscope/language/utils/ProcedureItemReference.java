@@ -0,0 +1,84 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.riken.kscope.language.utils;
+
+import java.io.Serializable;
+
+import jp.riken.kscope.language.Fortran;
+import jp.riken.kscope.language.Procedure;
+import jp.riken.kscope.language.generic.ProcedureWithNameOnly;
+
+/**
+ * データベースファイルのmodule procedure項目の参照クラス.<br/>
+ * 手続宣言が他のセクションに属するmodule procedure項目を、項目名と手続宣言の参照で出力する.
+ * 手続宣言のセクションは項目より後に出力される場合がある為、
+ * 読込時は項目のみを作成し、全てのモジュールセクションの読込後に手続宣言を設定する.
+ * @author RIKEN
+ */
+public class ProcedureItemReference implements Serializable {
+    /** シリアル番号 */
+    private static final long serialVersionUID = -4182073316652749185L;
+    /** 項目名 */
+    private String name;
+    /** 手続宣言の参照キー文字列:読込時にストリームで解決されないように文字列で保持する */
+    private String declaration;
+
+    /**
+     * コンストラクタ
+     * @param name			項目名
+     * @param declaration		手続宣言の参照キー文字列
+     */
+    private ProcedureItemReference(String name, String declaration) {
+        this.name = name;
+        this.declaration = declaration;
+    }
+
+    /**
+     * module procedure項目の参照を作成する.
+     * @param item		module procedure項目
+     * @return		参照:手続宣言の参照を作成できない場合はnull
+     */
+    public static ProcedureItemReference create(ProcedureWithNameOnly item) {
+        if (item.getDeclaration() == null) return null;
+        LanguageReference ref = LanguageReference.create(item.getDeclaration());
+        if (ref == null) return null;
+        return new ProcedureItemReference(item.getName(), ref.getKey());
+    }
+
+    /**
+     * module procedure項目を作成する.<br/>
+     * 手続宣言は設定しない.
+     * @return		module procedure項目
+     */
+    public ProcedureWithNameOnly createItem() {
+        return new ProcedureWithNameOnly(this.name);
+    }
+
+    /**
+     * データベースから手続宣言を取得する.
+     * @param fortran		フォートランデータベース
+     * @return		手続宣言:読込済みでない場合はnull
+     */
+    public Procedure resolveDeclaration(Fortran fortran) {
+        Object target = LanguageReference.parse(this.declaration).resolve(fortran);
+        if (target instanceof Procedure) {
+            return (Procedure) target;
+        }
+        return null;
+    }
+}
@@ -64,6 +64,7 @@ import jp.riken.kscope.action.ProjectClearLanguageAction;
 import jp.riken.kscope.action.ProjectDeleteFileAction;
 import jp.riken.kscope.action.ProjectPropertyAction;
 import jp.riken.kscope.action.ProjectRebuildAction;
+import jp.riken.kscope.action.ProjectWatchAction;
 import jp.riken.kscope.action.ProjectSettingKeywordAction;
 import jp.riken.kscope.action.ProjectSettingRequiredBFAction;
 import jp.riken.kscope.action.ProjectSettingOperationAction;
@@ -334,6 +335,11 @@ public class MainMenu extends JMenuBar implements  MenuListener {
         menuProject.add(menuProjectRebuild);
         menuProjectRebuild.addActionListener(new ProjectRebuildAction((this.controller)));
 
+        // プロジェクト：中間コード変更監視
+        JCheckBoxMenuItem menuProjectWatch = new JCheckBoxMenuItem(Message.getString("mainmenu.project.watch"));//中間コード変更監視
+        menuProject.add(menuProjectWatch);
+        menuProjectWatch.addActionListener(new ProjectWatchAction((this.controller)));
+
         // セパレータ
         menuProject.addSeparator();
         // プロジェクト:フォルダ追加...
@@ -471,6 +477,16 @@ public class MainMenu extends JMenuBar implements  MenuListener {
         menuAnalysis.add(menuAnalysisForward);
         menuAnalysisForward.addActionListener(new AnalysisTraceAction(this.controller, TRACE_DIR.FORWARD));
 
+        // 分析:トレース：イン(全階層)
+        JMenuItem menuAnalysisInsideAll = new JMenuItem(Message.getString("mainmenu.analysis.inall"));//トレース：イン(全階層)
+        menuAnalysis.add(menuAnalysisInsideAll);
+        menuAnalysisInsideAll.addActionListener(new AnalysisTraceAction(this.controller, TRACE_DIR.IN_ALL));
+
+        // 分析:トレース：アウト(全階層)
+        JMenuItem menuAnalysisOutsideAll = new JMenuItem(Message.getString("mainmenu.analysis.outall"));//トレース：アウト(全階層)
+        menuAnalysis.add(menuAnalysisOutsideAll);
+        menuAnalysisOutsideAll.addActionListener(new AnalysisTraceAction(this.controller, TRACE_DIR.OUT_ALL));
+
         // セパレータ
         menuAnalysis.addSeparator();
 
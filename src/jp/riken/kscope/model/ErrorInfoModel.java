@@ -31,6 +31,7 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import javax.swing.SwingUtilities;
 import javax.swing.table.DefaultTableModel;
 
+import jp.riken.kscope.Application;
 import jp.riken.kscope.Message;
 import jp.riken.kscope.data.CodeLine;
 import jp.riken.kscope.data.ErrorInfo;
@@ -77,6 +78,8 @@ public class ErrorInfoModel extends Observable {
      * モデルの変更を通知する
      */
     private void notifyModel() {
+        // ヘッドレス実行ではイベントディスパッチスレッドを使用しない
+        if (Application.isHeadless()) return;
         SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {
@@ -17,16 +17,27 @@
 
 package jp.riken.kscope.model;
 
+import java.awt.Color;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Observable;
 
 import javax.swing.SwingUtilities;
 
+import jp.riken.kscope.Application;
 import jp.riken.kscope.common.FILTER_TYPE;
 import jp.riken.kscope.component.FilterTreeModel;
 import jp.riken.kscope.component.FilterTreeNode;
+import jp.riken.kscope.language.IBlock;
 import jp.riken.kscope.language.Program;
+import jp.riken.kscope.profiler.ProfilerCostTree;
+import jp.riken.kscope.utils.SwingUtils;
 
 
 /**
@@ -42,6 +53,12 @@ public class LanguageTreeModel extends Observable {
     private List<FILTER_TYPE> listFilter;
     /** データベース */
     private Program languageDb;
+    /** プロファイラコスト集計:null=コスト表示なし */
+    private ProfilerCostTree costTree;
+    /** コスト最小の文字色 */
+    private Color costColorMin;
+    /** コスト最大の文字色 */
+    private Color costColorMax;
 
     /**
      * コンストラクタ
@@ -55,6 +72,8 @@ public class LanguageTreeModel extends Observable {
      * モデルの変更を通知する
      */
     public void notifyModel() {
+        // ヘッドレス実行ではイベントディスパッチスレッドを使用しない
+        if (Application.isHeadless()) return;
         SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {
@@ -71,6 +90,7 @@ public class LanguageTreeModel extends Observable {
     public void clearTreeModel() {
         FilterTreeNode rootNode = new FilterTreeNode("Structure tree");
         treeModel = new FilterTreeModel(rootNode);
+        treeModel.setComparator(getCostComparator());
 
         notifyModel();
     }
@@ -137,6 +157,30 @@ public class LanguageTreeModel extends Observable {
     	return true;
     }
 
+    /**
+     * ツリー情報をファイル出力する。
+     * @param   file   出力ファイル
+     */
+    public void writeFile(File file) {
+        // ルートノード
+        if (!isSetLanguageTree()) return;
+        FilterTreeNode root = getRootNode();
+
+        try {
+            // ファイル出力
+            PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(file)));
+
+            // ツリーをCSV文字列にする。
+            String buf = SwingUtils.toCsv(root);
+            // ファイル出力
+            pw.print(buf);
+
+            pw.close();
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
 
 	/**
 	 * データベースを取得する
@@ -153,6 +197,67 @@ public class LanguageTreeModel extends Observable {
 	public void setLanguageDb(Program language) {
 		this.languageDb = language;
 	}
+
+    /**
+     * プロファイラコスト集計を設定する.<br/>
+     * 構造ツリーは包括コストの降順に並べ、包括コストの割合に応じた文字色で表示する.
+     * @param tree			プロファイラコスト集計(null=コスト表示なし)
+     * @param minColor		コスト最小の文字色
+     * @param maxColor		コスト最大の文字色
+     */
+    public void setProfilerCostTree(ProfilerCostTree tree, Color minColor, Color maxColor) {
+        this.costTree = tree;
+        this.costColorMin = minColor;
+        this.costColorMax = maxColor;
+        treeModel.setComparator(getCostComparator());
+
+        notifyModel();
+    }
+
+    /**
+     * プロファイラコスト集計を取得する
+     * @return		プロファイラコスト集計
+     */
+    public ProfilerCostTree getProfilerCostTree() {
+        return this.costTree;
+    }
+
+    /**
+     * コスト最小の文字色を取得する
+     * @return		コスト最小の文字色
+     */
+    public Color getCostColorMin() {
+        return this.costColorMin;
+    }
+
+    /**
+     * コスト最大の文字色を取得する
+     * @return		コスト最大の文字色
+     */
+    public Color getCostColorMax() {
+        return this.costColorMax;
+    }
+
+    /**
+     * 包括コストの降順に子ノードを並べるコンパレータを取得する.<br/>
+     * ブロック以外のノード、コストのないブロックはコスト0とする.
+     * @return		子ノードの並べ替え(null=追加順)
+     */
+    private Comparator<FilterTreeNode> getCostComparator() {
+        final ProfilerCostTree tree = this.costTree;
+        if (tree == null) return null;
+        return new Comparator<FilterTreeNode>() {
+            @Override
+            public int compare(FilterTreeNode o1, FilterTreeNode o2) {
+                return Float.compare(getCost(o2), getCost(o1));
+            }
+            private float getCost(FilterTreeNode node) {
+                Object obj = node.getUserObject();
+                if (!(obj instanceof IBlock)) return 0.0F;
+                return tree.getInclusive((IBlock)obj);
+            }
+        };
+    }
 }
 
 
@@ -28,6 +28,7 @@ import javax.swing.SwingUtilities;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
 
+import jp.riken.kscope.Application;
 import jp.riken.kscope.language.Program;
 import jp.riken.kscope.utils.SwingUtils;
 
@@ -58,6 +59,8 @@ public class ModuleTreeModel extends Observable {
      */
     public void notifyModel() {
 
+        // ヘッドレス実行ではイベントディスパッチスレッドを使用しない
+        if (Application.isHeadless()) return;
         SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {
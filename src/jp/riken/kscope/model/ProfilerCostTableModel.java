@@ -44,7 +44,7 @@ import jp.riken.kscope.utils.StringUtils;
 public class ProfilerCostTableModel extends ProfilerTableBaseModel {
 
     /**
-     * テーブルヘッダーリスト(5列):コスト情報(手続).<br/>
+     * テーブルヘッダーリスト(9列):コスト情報(手続).<br/>
      * 1列目はコスト情報とする。
      */
     private String[] HEADER_COLUMNS_PROCEDURE = {"", 
@@ -52,9 +52,13 @@ public class ProfilerCostTableModel extends ProfilerTableBaseModel {
     		Message.getString("profilercallgraphmodel.header_columns.total-percentage"), //全体に占める割合(%) 
     		Message.getString("profileinfo_type.enum.procedure"), //手続 
     		Message.getString("profilercosttablemodel.header_columns.filename"), //ファイル名 
-    		Message.getString("profilercosttablemodel.header_columns.linenumber")}; //行番号
+    		Message.getString("profilercosttablemodel.header_columns.linenumber"), //行番号
+    		Message.getString("profilercosttablemodel.header_columns.processcount"), //プロセス数
+    		Message.getString("profilercosttablemodel.header_columns.minsampling"), //最小サンプリング数
+    		Message.getString("profilercosttablemodel.header_columns.maxsampling"), //最大サンプリング数
+    		Message.getString("profilercosttablemodel.header_columns.imbalance")}; //負荷不均衡率(%)
     /**
-     * テーブルヘッダーリスト(5列):コスト情報(ループ).<br/>
+     * テーブルヘッダーリスト(9列):コスト情報(ループ).<br/>
      * 1列目はコスト情報とする。
      */
     private String[] HEADER_COLUMNS_LOOP = {"", 
@@ -62,9 +66,13 @@ public class ProfilerCostTableModel extends ProfilerTableBaseModel {
     		Message.getString("profilercallgraphmodel.header_columns.total-percentage"), //全体に占める割合(%) 
     		Message.getString("profileinfo_type.enum.loop"), //ループ 
     		Message.getString("profilercosttablemodel.header_columns.filename"), //ファイル名 
-    		Message.getString("profilercosttablemodel.header_columns.linenumber")}; //行番号
+    		Message.getString("profilercosttablemodel.header_columns.linenumber"), //行番号
+    		Message.getString("profilercosttablemodel.header_columns.processcount"), //プロセス数
+    		Message.getString("profilercosttablemodel.header_columns.minsampling"), //最小サンプリング数
+    		Message.getString("profilercosttablemodel.header_columns.maxsampling"), //最大サンプリング数
+    		Message.getString("profilercosttablemodel.header_columns.imbalance")}; //負荷不均衡率(%)
     /**
-     * テーブルヘッダーリスト(5列):コスト情報(ライン).<br/>
+     * テーブルヘッダーリスト(9列):コスト情報(ライン).<br/>
      * 1列目はコスト情報とする。
      */
     private String[] HEADER_COLUMNS_LINE = {"", 
@@ -72,25 +80,30 @@ public class ProfilerCostTableModel extends ProfilerTableBaseModel {
     		Message.getString("profilercallgraphmodel.header_columns.total-percentage"), //全体に占める割合(%) 
     		Message.getString("profileinfo_type.enum.line"), //ライン 
     		Message.getString("profilercosttablemodel.header_columns.filename"), //ファイル名 
-    		Message.getString("profilercosttablemodel.header_columns.linenumber")}; //行番号
+    		Message.getString("profilercosttablemodel.header_columns.linenumber"), //行番号
+    		Message.getString("profilercosttablemodel.header_columns.processcount"), //プロセス数
+    		Message.getString("profilercosttablemodel.header_columns.minsampling"), //最小サンプリング数
+    		Message.getString("profilercosttablemodel.header_columns.maxsampling"), //最大サンプリング数
+    		Message.getString("profilercosttablemodel.header_columns.imbalance")}; //負荷不均衡率(%)
     /** テーブル列の表示状態 */
-    private boolean[] visibledcolumns = {false, true, true, true, true, true};
+    private boolean[] visibledcolumns = {false, true, true, true, true, true, true, true, true, true};
     /**
      * テーブル列サイズ
      * -1=非表示とする
      */
-    private int[] HEADER_COLUMNS_PREFERREDWIDTH = { -1, 120, 140, 240, 160, 80 };
+    private int[] HEADER_COLUMNS_PREFERREDWIDTH = { -1, 120, 140, 240, 160, 80, 80, 120, 120, 120 };
 
     /**
      * テーブル列最小サイズ.<br/>
      * -1=非表示とする
      */
-    private int[] HEADER_COLUMNS_MINWIDTH = {-1, 80, 80, 80, 80, 80};
+    private int[] HEADER_COLUMNS_MINWIDTH = {-1, 80, 80, 80, 80, 80, 80, 80, 80, 80};
 
     /**
      * テーブル列配置.<br/>
      */
-    private int[] COLUMNS_ALIGNMENTS = {SwingConstants.LEFT, SwingConstants.RIGHT, SwingConstants.RIGHT, SwingConstants.LEFT, SwingConstants.LEFT, SwingConstants.LEFT};
+    private int[] COLUMNS_ALIGNMENTS = {SwingConstants.LEFT, SwingConstants.RIGHT, SwingConstants.RIGHT, SwingConstants.LEFT, SwingConstants.LEFT, SwingConstants.LEFT,
+    		SwingConstants.RIGHT, SwingConstants.RIGHT, SwingConstants.RIGHT, SwingConstants.RIGHT};
 
     /** タイトル */
     private String title;
@@ -399,6 +412,13 @@ public class ProfilerCostTableModel extends ProfilerTableBaseModel {
             if (info.getCodeLine() != null) {
                 cols[5] = info.getCodeLine().getLineno();
             }
+            // プロセス間の統計:複数プロセスの集計時のみ
+            if (info.getProcessCount() > 0) {
+                cols[6] = info.getProcessCount();
+                cols[7] = (int)info.getMinSampling();
+                cols[8] = (int)info.getMaxSampling();
+                cols[9] = formatImbalance(info);
+            }
             tableModel.addRow(cols);
 
             // 最大表示行数（初期値が0の場合は最大表示行数設定なし）
@@ -508,10 +528,49 @@ public class ProfilerCostTableModel extends ProfilerTableBaseModel {
             }
             buf.append(", ");
         }
+        // プロセス数
+        if (visibledcolumns[6]) {
+            if (info.getProcessCount() > 0) {
+                buf.append(info.getProcessCount());
+            }
+            buf.append(", ");
+        }
+        // 最小サンプリング数
+        if (visibledcolumns[7]) {
+            if (info.getProcessCount() > 0) {
+                buf.append(info.getMinSampling());
+            }
+            buf.append(", ");
+        }
+        // 最大サンプリング数
+        if (visibledcolumns[8]) {
+            if (info.getProcessCount() > 0) {
+                buf.append(info.getMaxSampling());
+            }
+            buf.append(", ");
+        }
+        // 負荷不均衡率(%)
+        if (visibledcolumns[9]) {
+            if (info.getProcessCount() > 0) {
+                buf.append(formatImbalance(info));
+            }
+            buf.append(", ");
+        }
         buf.delete(buf.length()-2, buf.length());
         return buf.toString();
     }
 
+    /**
+     * 負荷不均衡率(%)の表示文字列を取得する
+     * @param info		コスト情報
+     * @return		負荷不均衡率(%)の表示文字列
+     */
+    private String formatImbalance(ProfilerDprofData info) {
+        float value = new BigDecimal(String.valueOf(info.getImbalance()*100)).setScale(ProfilerProperties.COST_RATIO_SCALE, BigDecimal.ROUND_HALF_UP).floatValue();
+        String format = "%.0" + ProfilerProperties.COST_RATIO_SCALE + "f";
+        return String.format(format, value);
+    }
+
 
     /**
      * ヘッダー列の表示状態を取得する
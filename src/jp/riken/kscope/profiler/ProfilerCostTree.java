@@ -0,0 +1,370 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.riken.kscope.profiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import jp.riken.kscope.language.ExecutableBody;
+import jp.riken.kscope.language.IBlock;
+import jp.riken.kscope.language.Procedure;
+import jp.riken.kscope.language.ProcedureUsage;
+
+/**
+ * ブロック毎のプロファイラコスト集計クラス.<br/>
+ * ブロックに関連付けたコスト情報(ライン、手続)を自ブロックのコストとして、
+ * ブロックツリーを親ブロックへ、静的なコールグラフを呼出元のCALL文へ積算し、
+ * ブロック毎の排他コスト(手続内のみ)と包括コスト(呼出先手続を含む)を求める.<br/>
+ * ブロックは呼出元の手続が先となる順に、手続内では親ブロックが先となる順に番号付けし、
+ * 集計値はブロック番号をインデックスとするプリミティブ配列に保持する.
+ * 集計は番号の逆順に1回走査するのみである.
+ * 再帰呼出となる呼出は包括コストに含めない.
+ * 呼出先の包括コストは、呼出先を呼び出すCALL文の数で等分する.
+ * @author RIKEN
+ */
+public class ProfilerCostTree {
+
+    /** ブロック:ブロック番号順 */
+    private IBlock[] nodes = new IBlock[16];
+    /** 親ブロック番号:手続は-1 */
+    private int[] parents = new int[16];
+    /** 呼出先手続のブロック番号:CALL文以外は-1 */
+    private int[] callees = new int[16];
+    /** 排他コスト */
+    private float[] exclusives = new float[16];
+    /** 包括コスト */
+    private float[] inclusives = new float[16];
+    /** ブロック数 */
+    private int size = 0;
+    /** ブロック番号索引:{ブロック, ブロック番号} */
+    private Map<IBlock, Integer> indexes = new IdentityHashMap<IBlock, Integer>();
+    /** 全体のコスト */
+    private float total = 0.0F;
+
+    /**
+     * コンストラクタ.<br/>
+     * ブロックに関連付け済みのコスト情報からコストを集計する.
+     * @param costline			コスト情報:ライン
+     * @param costprocedure		コスト情報:手続
+     */
+    public ProfilerCostTree(ProfilerDprofData[] costline, ProfilerDprofData[] costprocedure) {
+        // 手続毎の自ブロックのコスト
+        Map<Procedure, CostList> costs = new IdentityHashMap<Procedure, CostList>();
+        if (costline != null) {
+            for (ProfilerDprofData data : costline) {
+                addCost(costs, data.getBlock(), data.getSampling());
+            }
+        }
+        // 手続のコストの内、ラインに関連付けられなかったコストは手続のコストとする
+        if (costprocedure != null) {
+            for (ProfilerDprofData data : costprocedure) {
+                IBlock block = data.getBlock();
+                if (!(block instanceof Procedure)) continue;
+                CostList list = costs.get(block);
+                float rest = data.getSampling() - (list != null ? list.sum : 0.0F);
+                if (rest > 0.0F) {
+                    addCost(costs, block, rest);
+                }
+            }
+        }
+        if (costs.size() <= 0) return;
+
+        // 呼出元が先となる手続の順にブロック番号を付ける
+        List<Procedure> procedures = sortProcedures(collectProcedures(costs.keySet()));
+        Map<Procedure, Integer> orders = new IdentityHashMap<Procedure, Integer>();
+        for (int i = 0; i < procedures.size(); i++) {
+            orders.put(procedures.get(i), i);
+        }
+        int[] starts = new int[procedures.size()];
+        for (int i = 0; i < procedures.size(); i++) {
+            Procedure procedure = procedures.get(i);
+            starts[i] = this.size;
+            addNode(procedure, procedure);
+            CostList list = costs.get(procedure);
+            if (list != null) {
+                for (int n = 0; n < list.blocks.size(); n++) {
+                    int node = addNode(list.blocks.get(n), procedure);
+                    this.exclusives[node] += list.costs[n];
+                    this.total += list.costs[n];
+                }
+            }
+            for (ProcedureUsage call : procedure.getCalls()) {
+                Integer callee = orders.get(call.getCallDefinition());
+                // 呼出先が集計対象外、又は再帰呼出となる手続は積算しない
+                if (callee == null || callee.intValue() <= i) continue;
+                if (getProcedure(call) != procedure) continue;
+                int node = addNode(call, procedure);
+                this.callees[node] = callee.intValue();
+            }
+        }
+        // 呼出先の手続順を手続のブロック番号に変換し、呼出先手続毎のCALL文の数を求める
+        int[] calls = new int[this.size];
+        for (int node = 0; node < this.size; node++) {
+            if (this.callees[node] >= 0) {
+                this.callees[node] = starts[this.callees[node]];
+                calls[this.callees[node]]++;
+            }
+        }
+
+        // 呼出先、子ブロックが先となる逆順に積算する
+        System.arraycopy(this.exclusives, 0, this.inclusives, 0, this.size);
+        for (int node = this.size - 1; node >= 0; node--) {
+            int callee = this.callees[node];
+            if (callee >= 0) {
+                this.inclusives[node] += this.inclusives[callee] / calls[callee];
+            }
+            int parent = this.parents[node];
+            if (parent >= 0) {
+                this.exclusives[parent] += this.exclusives[node];
+                this.inclusives[parent] += this.inclusives[node];
+            }
+        }
+    }
+
+    /**
+     * 手続毎の自ブロックのコストに追加する.
+     * @param costs			手続毎の自ブロックのコスト
+     * @param block			ブロック
+     * @param cost			コスト
+     */
+    private void addCost(Map<Procedure, CostList> costs, IBlock block, float cost) {
+        Procedure procedure = getProcedure(block);
+        if (procedure == null) return;
+        CostList list = costs.get(procedure);
+        if (list == null) {
+            list = new CostList();
+            costs.put(procedure, list);
+        }
+        list.add(block, cost);
+    }
+
+    /**
+     * コストの存在する手続と、その呼出元の手続を取得する.
+     * @param procedures		コストの存在する手続
+     * @return		集計対象の手続
+     */
+    private List<Procedure> collectProcedures(Iterable<Procedure> procedures) {
+        Map<Procedure, Boolean> founds = new IdentityHashMap<Procedure, Boolean>();
+        List<Procedure> list = new ArrayList<Procedure>();
+        for (Procedure procedure : procedures) {
+            if (founds.put(procedure, Boolean.TRUE) == null) {
+                list.add(procedure);
+            }
+        }
+        for (int i = 0; i < list.size(); i++) {
+            for (ProcedureUsage call : list.get(i).getCallMember()) {
+                Procedure caller = getProcedure(call);
+                if (caller != null && founds.put(caller, Boolean.TRUE) == null) {
+                    list.add(caller);
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 呼出元の手続が先となる順(コールグラフの深さ優先探索の帰りがけ順の逆順)に手続を並べる.
+     * @param procedures		集計対象の手続
+     * @return		並べ替えた手続
+     */
+    private List<Procedure> sortProcedures(List<Procedure> procedures) {
+        Map<Procedure, Integer> ids = new IdentityHashMap<Procedure, Integer>();
+        for (int i = 0; i < procedures.size(); i++) {
+            ids.put(procedures.get(i), i);
+        }
+        // 呼出先の手続番号
+        int[][] edges = new int[procedures.size()][];
+        for (int i = 0; i < edges.length; i++) {
+            List<Integer> callees = new ArrayList<Integer>();
+            for (ProcedureUsage call : procedures.get(i).getCalls()) {
+                Integer callee = ids.get(call.getCallDefinition());
+                if (callee != null) {
+                    callees.add(callee);
+                }
+            }
+            edges[i] = new int[callees.size()];
+            for (int n = 0; n < edges[i].length; n++) {
+                edges[i][n] = callees.get(n);
+            }
+        }
+
+        // 再帰呼出に備えて、スタックを用いて深さ優先探索を行う
+        boolean[] visited = new boolean[edges.length];
+        int[] stack = new int[edges.length];
+        int[] positions = new int[edges.length];
+        Procedure[] sorted = new Procedure[edges.length];
+        int count = edges.length;
+        for (int root = 0; root < edges.length; root++) {
+            if (visited[root]) continue;
+            int depth = 0;
+            stack[depth] = root;
+            positions[depth] = 0;
+            visited[root] = true;
+            while (depth >= 0) {
+                int node = stack[depth];
+                if (positions[depth] < edges[node].length) {
+                    int callee = edges[node][positions[depth]++];
+                    if (!visited[callee]) {
+                        visited[callee] = true;
+                        depth++;
+                        stack[depth] = callee;
+                        positions[depth] = 0;
+                    }
+                }
+                else {
+                    sorted[--count] = procedures.get(node);
+                    depth--;
+                }
+            }
+        }
+        return Arrays.asList(sorted);
+    }
+
+    /**
+     * ブロックと親ブロックにブロック番号を付ける.
+     * @param block			ブロック
+     * @param procedure		ブロックの属する手続
+     * @return		ブロック番号
+     */
+    private int addNode(IBlock block, Procedure procedure) {
+        Integer index = this.indexes.get(block);
+        if (index != null) return index.intValue();
+
+        int parent = -1;
+        if (block != procedure) {
+            IBlock mother = getParentBlock(block);
+            parent = addNode(mother != null ? mother : procedure, procedure);
+        }
+        if (this.size >= this.nodes.length) {
+            int capacity = this.size * 2;
+            this.nodes = Arrays.copyOf(this.nodes, capacity);
+            this.parents = Arrays.copyOf(this.parents, capacity);
+            this.callees = Arrays.copyOf(this.callees, capacity);
+            this.exclusives = Arrays.copyOf(this.exclusives, capacity);
+            this.inclusives = Arrays.copyOf(this.inclusives, capacity);
+        }
+        int node = this.size++;
+        this.nodes[node] = block;
+        this.parents[node] = parent;
+        this.callees[node] = -1;
+        this.indexes.put(block, node);
+        return node;
+    }
+
+    /**
+     * 親ブロックを取得する.
+     * @param block		ブロック
+     * @return		親ブロック
+     */
+    private static IBlock getParentBlock(IBlock block) {
+        if (block instanceof ExecutableBody) {
+            return ((ExecutableBody)block).getParent();
+        }
+        return block.getMotherBlock();
+    }
+
+    /**
+     * ブロックの属する手続を取得する.
+     * @param block		ブロック
+     * @return		手続:存在しない場合はnull
+     */
+    private static Procedure getProcedure(IBlock block) {
+        IBlock parent = block;
+        while (parent != null && !(parent instanceof Procedure)) {
+            parent = getParentBlock(parent);
+        }
+        return (Procedure)parent;
+    }
+
+    /**
+     * 排他コスト(呼出先手続を含まないコスト)を取得する.
+     * @param block		ブロック
+     * @return		排他コスト
+     */
+    public float getExclusive(IBlock block) {
+        Integer node = this.indexes.get(block);
+        if (node == null) return 0.0F;
+        return this.exclusives[node];
+    }
+
+    /**
+     * 包括コスト(呼出先手続を含むコスト)を取得する.
+     * @param block		ブロック
+     * @return		包括コスト
+     */
+    public float getInclusive(IBlock block) {
+        Integer node = this.indexes.get(block);
+        if (node == null) return 0.0F;
+        return this.inclusives[node];
+    }
+
+    /**
+     * 全体に対する包括コストの割合を取得する.
+     * @param block		ブロック
+     * @return		包括コストの割合(0.0～1.0)
+     */
+    public float getInclusiveRatio(IBlock block) {
+        if (this.total <= 0.0F) return 0.0F;
+        return getInclusive(block) / this.total;
+    }
+
+    /**
+     * 全体のコストを取得する.
+     * @return		全体のコスト
+     */
+    public float getTotal() {
+        return this.total;
+    }
+
+    /**
+     * コストの存在するブロックであるかチェックする.
+     * @param block		ブロック
+     * @return		true=コストの存在するブロック
+     */
+    public boolean contains(IBlock block) {
+        return this.indexes.containsKey(block);
+    }
+
+    /**
+     * 手続内のブロックとコストのリスト
+     */
+    private static class CostList {
+        /** ブロック */
+        private List<IBlock> blocks = new ArrayList<IBlock>();
+        /** コスト */
+        private float[] costs = new float[4];
+        /** コストの合計 */
+        private float sum = 0.0F;
+
+        /**
+         * ブロックとコストを追加する.
+         * @param block		ブロック
+         * @param cost		コスト
+         */
+        private void add(IBlock block, float cost) {
+            if (this.blocks.size() >= this.costs.length) {
+                this.costs = Arrays.copyOf(this.costs, this.costs.length * 2);
+            }
+            this.costs[this.blocks.size()] = cost;
+            this.blocks.add(block);
+            this.sum += cost;
+        }
+    }
+}
@@ -42,6 +42,12 @@ public class ProfilerDprofData extends ProfilerBaseData implements ISourceBargra
     private float ratio;
     /** 累計サンプリング回数:Dprof */
     private float sumSampling;
+    /** プロセス数:複数プロセスの集計時のみ */
+    private int processCount;
+    /** プロセス間の最小サンプリング回数:複数プロセスの集計時のみ */
+    private float minSampling;
+    /** プロセス間の最大サンプリング回数:複数プロセスの集計時のみ */
+    private float maxSampling;
 
     /**
      * コンストラクタ
@@ -181,6 +187,68 @@ public class ProfilerDprofData extends ProfilerBaseData implements ISourceBargra
         this.sumSampling = count;
     }
 
+    /**
+     * 集計プロセス数を取得する.<br/>
+     * 単一ファイルの読込時は0とする.
+     * @return		集計プロセス数
+     */
+    public int getProcessCount() {
+        return processCount;
+    }
+
+    /**
+     * 集計プロセス数を設定する
+     * @param count		集計プロセス数
+     */
+    public void setProcessCount(int count) {
+        this.processCount = count;
+    }
+
+    /**
+     * プロセス間の最小サンプリング回数を取得する
+     * @return		最小サンプリング回数
+     */
+    public float getMinSampling() {
+        return minSampling;
+    }
+
+    /**
+     * プロセス間の最小サンプリング回数を設定する
+     * @param count		最小サンプリング回数
+     */
+    public void setMinSampling(float count) {
+        this.minSampling = count;
+    }
+
+    /**
+     * プロセス間の最大サンプリング回数を取得する
+     * @return		最大サンプリング回数
+     */
+    public float getMaxSampling() {
+        return maxSampling;
+    }
+
+    /**
+     * プロセス間の最大サンプリング回数を設定する
+     * @param count		最大サンプリング回数
+     */
+    public void setMaxSampling(float count) {
+        this.maxSampling = count;
+    }
+
+    /**
+     * プロセス間の負荷不均衡率を取得する.<br/>
+     * (最大サンプリング回数 - 平均サンプリング回数) / 最大サンプリング回数とする.
+     * 0.0=均衡 〜 1.0に近い程不均衡.単一ファイルの読込時は0.0とする.
+     * @return		負荷不均衡率
+     */
+    public float getImbalance() {
+        if (this.processCount <= 0) return 0.0F;
+        if (this.maxSampling <= 0.0F) return 0.0F;
+        float average = this.sampling / this.processCount;
+        return (this.maxSampling - average) / this.maxSampling;
+    }
+
     /**
      * バーグラフのタイプ名を取得する
      * @return		バーグラフタイプ名
@@ -45,6 +45,8 @@ public class ProfilerInfo {
     private Map<String, List<ProfilerEprofData>> eventCounter;
     /** 詳細プロファイラ測定区間情報 */
     private ProfilerMeasureInfo measureInfo;
+    /** ブロック毎のプロファイラコスト集計 */
+    private Map<String, ProfilerCostTree> costTree;
 
     /**
      * プロファイラ:コスト情報(手続)
@@ -142,6 +144,27 @@ public class ProfilerInfo {
         putMapProfilerEprofData(this.eventCounter, key, data);
     }
 
+    /**
+     * ブロック毎のプロファイラコスト集計を取得する
+     * @param key		プロファイラキー文字列
+     * @return ブロック毎のプロファイラコスト集計
+     */
+    public ProfilerCostTree getCostTree(String key) {
+        if (this.costTree == null) return null;
+        return this.costTree.get(key);
+    }
+    /**
+     * ブロック毎のプロファイラコスト集計を設定する
+     * @param key  プロファイラキー文字列
+     * @param tree ブロック毎のプロファイラコスト集計
+     */
+    public void putCostTree(String key, ProfilerCostTree tree) {
+        if (this.costTree == null) {
+            this.costTree = new TreeMap<String, ProfilerCostTree>();
+        }
+        this.costTree.put(key, tree);
+    }
+
     /**
      * MapからProfilerDprofData[]を取得する
      * @param map		プロファイラMapデータ
@@ -228,6 +251,9 @@ public class ProfilerInfo {
         if (this.eventCounter != null) {
             this.eventCounter.clear();
         }
+        if (this.costTree != null) {
+            this.costTree.clear();
+        }
     }
 
     /**
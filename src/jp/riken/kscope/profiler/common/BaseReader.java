@@ -14,26 +14,60 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package jp.riken.kscope.profiler.common;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
+import jp.riken.kscope.Message;
 import jp.riken.kscope.profiler.utils.ProfilerReaderUtil;
 
 /**
- * プロファイラ読込基底クラス
+ * プロファイラ読込基底クラス.<br/>
+ * 読込バッファは{@link #mapFile(File)}にて作成し、エンディアンはバッファ作成時に設定する.
+ * 各値の取得はバッファから直接読み込む.
  * @author RIKEN
  */
 public abstract class BaseReader {
 
+    /** 文字列読込用の作業バッファ */
+    private byte[] stringBuf = new byte[64];
+
+    /**
+     * プロファイラファイルをメモリマップして読込バッファを作成する.<br/>
+     * バッファのバイト順は{@link #getEndian()}から設定する.
+     * マップしたバッファはファイルクローズ後も参照可能である.
+     * @param file		プロファイラファイル
+     * @return		読込バッファ
+     * @throws IOException		ファイル読込エラー
+     */
+    protected ByteBuffer mapFile(File file) throws IOException {
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            FileChannel channel = fis.getChannel();
+            long fileSize = channel.size();
+            if (fileSize > Integer.MAX_VALUE) {
+                throw new IOException(Message.getString("basereader.exception.filesize", file.getName())); //プロファイラファイルのサイズが大きすぎる為、読み込めません。[%s]
+            }
+            ByteBuffer byteBuf = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            byteBuf.order(ProfilerReaderUtil.toByteOrder(getEndian()));
+            return byteBuf;
+        }
+        finally {
+            fis.close();
+        }
+    }
+
     /**
      * バイトバッファからint(4バイト)値を取得する
      * @param byteBuf		バイトバッファ
      * @return		int(4バイト)値
      */
     protected int getInt(ByteBuffer byteBuf) {
-        return ProfilerReaderUtil.convertInt(getByteArray(byteBuf, ProfilerReaderUtil.SIZEOF_INT), getEndian());
+        return byteBuf.getInt();
     }
 
     /**
@@ -42,7 +76,7 @@ public abstract class BaseReader {
      * @return		short(2バイト)値
      */
     protected short getShort(ByteBuffer byteBuf) {
-        return ProfilerReaderUtil.convertShort(getByteArray(byteBuf, ProfilerReaderUtil.SIZEOF_SHORT), getEndian());
+        return byteBuf.getShort();
     }
 
     /**
@@ -51,7 +85,7 @@ public abstract class BaseReader {
      * @return		long(8バイト)値
      */
     protected long getLong(ByteBuffer byteBuf) {
-        return ProfilerReaderUtil.convertLong(getByteArray(byteBuf, ProfilerReaderUtil.SIZEOF_LONG), getEndian());
+        return byteBuf.getLong();
     }
 
     /**
@@ -60,7 +94,7 @@ public abstract class BaseReader {
      * @return		float(4バイト)値
      */
     protected float getFloat(ByteBuffer byteBuf) {
-        return ProfilerReaderUtil.convertFloat(getByteArray(byteBuf, ProfilerReaderUtil.SIZEOF_FLOAT), getEndian());
+        return byteBuf.getFloat();
     }
 
     /**
@@ -69,7 +103,7 @@ public abstract class BaseReader {
      * @return		double(8バイト)値
      */
     protected double getDouble(ByteBuffer byteBuf) {
-        return ProfilerReaderUtil.convertDouble(getByteArray(byteBuf, ProfilerReaderUtil.SIZEOF_DOUBLE), getEndian());
+        return byteBuf.getDouble();
     }
 
     /**
@@ -79,9 +113,19 @@ public abstract class BaseReader {
      * @return		文字列
      */
     protected String getString(ByteBuffer byteBuf, int length) {
-        return ProfilerReaderUtil.convertString(getByteArray(byteBuf, length), length, getEndian());
+        if (this.stringBuf.length < length) {
+            this.stringBuf = new byte[length];
+        }
+        byteBuf.get(this.stringBuf, 0, length);
+        return new String(this.stringBuf, 0, length);
     }
 
+    /**
+     * バイトバッファからバイト配列を取得する
+     * @param byteBuf		バイトバッファ
+     * @param length		バイト長
+     * @return		バイト配列
+     */
     protected byte[] getByteArray(ByteBuffer byteBuf, int length) {
         byte[] temp = new byte[length];
         byteBuf.get(temp, 0, length);
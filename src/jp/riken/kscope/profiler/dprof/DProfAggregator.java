@@ -0,0 +1,488 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.riken.kscope.profiler.dprof;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import jp.riken.kscope.data.CodeLine;
+import jp.riken.kscope.data.SourceFile;
+import jp.riken.kscope.profiler.ProfilerDprofData;
+
+/**
+ * 複数プロセスのDProfileの集計クラス.<br/>
+ * プロセス(プロファイラファイル)毎にスレッドのサンプリング回数を積算し、
+ * (ファイル, シンボル, 開始行, 終了行)毎にプロセス間の合計、最小、最大を集計する.
+ * 集計値はプリミティブ配列に保持し、読込済みのDProfReaderは集計後に破棄できる.<br/>
+ * ワーカースレッド毎に集計を行い、{@link #merge(DProfAggregator)}で1つにまとめる.
+ * 1つのインスタンスはスレッドセーフではない.
+ * @author RIKEN
+ */
+public class DProfAggregator {
+
+    /** ファイル名リスト:集計ファイルインデックス順 */
+    private List<String> fileNames = new ArrayList<String>();
+    /** ファイル名索引:{ファイル名, 集計ファイルインデックス} */
+    private Map<String, Integer> fileIndexes = new HashMap<String, Integer>();
+    /** シンボル名リスト:集計シンボルインデックス順 */
+    private List<String> symbolNames = new ArrayList<String>();
+    /** シンボル名索引:{シンボル名, 集計シンボルインデックス} */
+    private Map<String, Integer> symbolIndexes = new HashMap<String, Integer>();
+    /** コスト集計:ライン */
+    private CostTable lineTable = new CostTable();
+    /** コスト集計:ループ */
+    private CostTable loopTable = new CostTable();
+    /** コスト集計:手続 */
+    private CostTable procedureTable = new CostTable();
+    /** 集計プロセス数 */
+    private int processCount = 0;
+
+    /**
+     * 読込済みのDProfReaderを1プロセスとして集計する.
+     * @param reader		読込済みDProfReader
+     */
+    public void add(DProfReader reader) {
+        if (reader == null) return;
+
+        // プロファイラファイルのファイルインデックスから集計ファイルインデックスへの変換表
+        int[] files = new int[0];
+        FileRecord fileRecord = reader.getFileInfoList();
+        if (fileRecord != null) {
+            files = new int[fileRecord.getFileInfoCount()];
+            for (int i = 0; i < files.length; i++) {
+                files[i] = getFileIndex(fileRecord.getFileInfo(i).getFileName());
+            }
+        }
+        // スレッド毎のシンボルインデックスから集計シンボルインデックスへの変換表
+        SymbolRecord symbolRecord = reader.getSymbolInfoList();
+        int[][] symbols = new int[0][];
+        if (symbolRecord != null) {
+            symbols = new int[symbolRecord.getSymbolListCount()][];
+            for (int i = 0; i < symbols.length; i++) {
+                List<SymbolInfo> list = symbolRecord.getSymbolList(i).getSymbolList();
+                symbols[i] = new int[list.size()];
+                for (int j = 0; j < symbols[i].length; j++) {
+                    symbols[i][j] = getSymbolIndex(list.get(j).getSymbolName());
+                }
+            }
+        }
+
+        // コスト情報:ライン
+        List<ArrayList<LineInfo>> lineInfoList = reader.getLineInfoList();
+        if (lineInfoList != null) {
+            for (int thread = 0; thread < lineInfoList.size(); thread++) {
+                for (LineInfo info : lineInfoList.get(thread)) {
+                    int symbol = toSymbolIndex(symbols, thread, info.getSymbolIndex());
+                    if (symbol < 0) continue;
+                    int file = toFileIndex(files, info.getFileIndex());
+                    this.lineTable.addSampling(file, symbol, info.getLineNo(), info.getLineNo(), info.getSampNum());
+                }
+            }
+        }
+        // コスト情報:ループ
+        List<ArrayList<LoopInfo>> loopInfoList = reader.getLoopInfoList();
+        if (loopInfoList != null) {
+            for (int thread = 0; thread < loopInfoList.size(); thread++) {
+                for (LoopInfo info : loopInfoList.get(thread)) {
+                    int symbol = toSymbolIndex(symbols, thread, info.getSymbolIndex());
+                    if (symbol < 0) continue;
+                    int file = toFileIndex(files, info.getFileIndex());
+                    this.loopTable.addSampling(file, symbol, info.getLineLoopStart(), info.getLineLoopEnd(), info.getSampNum());
+                }
+            }
+        }
+        // コスト情報:手続
+        if (symbolRecord != null) {
+            for (int thread = 0; thread < symbols.length; thread++) {
+                List<SymbolInfo> list = symbolRecord.getSymbolList(thread).getSymbolList();
+                for (int i = 0; i < list.size(); i++) {
+                    SymbolInfo info = list.get(i);
+                    int file = toFileIndex(files, info.getFileIndex());
+                    this.procedureTable.addSampling(file, symbols[thread][i],
+                                info.getLineSymbolStart(), info.getLineSymbolEnd(), info.getSampNum());
+                }
+            }
+        }
+
+        // プロセスのサンプリング回数を集計値に反映する
+        this.lineTable.endProcess();
+        this.loopTable.endProcess();
+        this.procedureTable.endProcess();
+        this.processCount++;
+    }
+
+    /**
+     * 他の集計結果をマージする.
+     * @param other		マージする集計結果
+     */
+    public void merge(DProfAggregator other) {
+        if (other == null) return;
+
+        int[] files = new int[other.fileNames.size()];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = getFileIndex(other.fileNames.get(i));
+        }
+        int[] symbols = new int[other.symbolNames.size()];
+        for (int i = 0; i < symbols.length; i++) {
+            symbols[i] = getSymbolIndex(other.symbolNames.get(i));
+        }
+        this.lineTable.merge(other.lineTable, files, symbols);
+        this.loopTable.merge(other.loopTable, files, symbols);
+        this.procedureTable.merge(other.procedureTable, files, symbols);
+        this.processCount += other.processCount;
+    }
+
+    /**
+     * 集計プロセス数を取得する
+     * @return		集計プロセス数
+     */
+    public int getProcessCount() {
+        return this.processCount;
+    }
+
+    /**
+     * コスト情報リスト:ラインを取得する
+     * @return		コスト情報リスト:ライン
+     */
+    public ProfilerDprofData[] getCostInfoLine() {
+        return createCostInfo(this.lineTable);
+    }
+
+    /**
+     * コスト情報リスト:ループを取得する
+     * @return		コスト情報リスト:ループ
+     */
+    public ProfilerDprofData[] getCostInfoLoop() {
+        return createCostInfo(this.loopTable);
+    }
+
+    /**
+     * コスト情報リスト:手続を取得する
+     * @return		コスト情報リスト:手続
+     */
+    public ProfilerDprofData[] getCostInfoProcedure() {
+        return createCostInfo(this.procedureTable);
+    }
+
+    /**
+     * 集計結果からコスト情報リストを生成する.<br/>
+     * 一部のプロセスにのみ存在するコスト情報の最小サンプリング回数は0とする.
+     * @param table		コスト集計
+     * @return		コスト情報リスト:集計結果が無い場合はnull
+     */
+    private ProfilerDprofData[] createCostInfo(CostTable table) {
+        if (table.size <= 0) return null;
+
+        // ソースファイルはファイル毎に共有する
+        SourceFile[] sources = new SourceFile[this.fileNames.size()];
+        ProfilerDprofData[] list = new ProfilerDprofData[table.size];
+        for (int i = 0; i < table.size; i++) {
+            String filename = null;
+            int file = table.files[i];
+            if (file >= 0) {
+                filename = this.fileNames.get(file);
+                if (sources[file] == null) {
+                    sources[file] = new SourceFile(filename);
+                }
+            }
+            ProfilerDprofData cost = new ProfilerDprofData();
+            cost.setSymbol(this.symbolNames.get(table.symbols[i]));
+            cost.setSampling((float) table.sums[i]);
+            cost.setProcessCount(this.processCount);
+            cost.setMaxSampling((float) table.maxs[i]);
+            if (table.counts[i] < this.processCount) {
+                cost.setMinSampling(0.0F);
+            }
+            else {
+                cost.setMinSampling((float) table.mins[i]);
+            }
+            CodeLine line = new CodeLine(null, table.starts[i], table.ends[i], filename);
+            if (filename != null) {
+                line.setSourceFile(sources[file]);
+            }
+            cost.setCodeLine(line);
+            list[i] = cost;
+        }
+        return list;
+    }
+
+    /**
+     * ファイル名の集計ファイルインデックスを取得する.未登録の場合は登録する.
+     * @param name		ファイル名
+     * @return		集計ファイルインデックス
+     */
+    private int getFileIndex(String name) {
+        Integer index = this.fileIndexes.get(name);
+        if (index == null) {
+            index = this.fileNames.size();
+            this.fileNames.add(name);
+            this.fileIndexes.put(name, index);
+        }
+        return index;
+    }
+
+    /**
+     * シンボル名の集計シンボルインデックスを取得する.未登録の場合は登録する.
+     * @param name		シンボル名
+     * @return		集計シンボルインデックス
+     */
+    private int getSymbolIndex(String name) {
+        Integer index = this.symbolIndexes.get(name);
+        if (index == null) {
+            index = this.symbolNames.size();
+            this.symbolNames.add(name);
+            this.symbolIndexes.put(name, index);
+        }
+        return index;
+    }
+
+    /**
+     * プロファイラファイルのファイルインデックスを集計ファイルインデックスに変換する.
+     * @param files		変換表
+     * @param index		プロファイラファイルのファイルインデックス
+     * @return		集計ファイルインデックス:ファイル無しの場合は-1
+     */
+    private static int toFileIndex(int[] files, int index) {
+        if (index < 0 || index >= files.length) return -1;
+        return files[index];
+    }
+
+    /**
+     * スレッドのシンボルインデックスを集計シンボルインデックスに変換する.
+     * @param symbols		変換表
+     * @param thread		スレッド番号
+     * @param index			スレッドのシンボルインデックス
+     * @return		集計シンボルインデックス:シンボルが存在しない場合は-1
+     */
+    private static int toSymbolIndex(int[][] symbols, int thread, int index) {
+        if (thread >= symbols.length) return -1;
+        if (index < 0 || index >= symbols[thread].length) return -1;
+        return symbols[thread][index];
+    }
+
+    /**
+     * コスト集計テーブル.<br/>
+     * (集計ファイルインデックス, 集計シンボルインデックス, 開始行, 終了行)をキーとするオープンアドレス法のハッシュ表で、
+     * キー、集計値をエントリ番号をインデックスとするプリミティブ配列に保持する.
+     * エントリ番号は登録順とする.
+     */
+    private static class CostTable {
+        /** 空スロット */
+        private static final int EMPTY = -1;
+        /** エントリ数 */
+        private int size = 0;
+        /** 集計ファイルインデックス */
+        private int[] files = new int[16];
+        /** 集計シンボルインデックス */
+        private int[] symbols = new int[16];
+        /** 開始行番号 */
+        private int[] starts = new int[16];
+        /** 終了行番号 */
+        private int[] ends = new int[16];
+        /** プロセス間の合計サンプリング回数 */
+        private double[] sums = new double[16];
+        /** プロセス間の最小サンプリング回数 */
+        private double[] mins = new double[16];
+        /** プロセス間の最大サンプリング回数 */
+        private double[] maxs = new double[16];
+        /** サンプリング回数が存在したプロセス数 */
+        private int[] counts = new int[16];
+        /** 集計中プロセスのサンプリング回数 */
+        private double[] process = new double[16];
+        /** 集計中プロセスで更新されたエントリ番号 */
+        private int[] touched = new int[16];
+        /** 集計中プロセスで更新されたエントリ数 */
+        private int touchedCount = 0;
+        /** エントリを最後に更新したプロセスの通番 */
+        private int[] stamps = new int[16];
+        /** 集計中プロセスの通番 */
+        private int serial = 1;
+        /** ハッシュスロット:エントリ番号 */
+        private int[] slots = newSlots(32);
+
+        /**
+         * 集計中プロセスのサンプリング回数を積算する.
+         * @param file			集計ファイルインデックス
+         * @param symbol		集計シンボルインデックス
+         * @param start			開始行番号
+         * @param end			終了行番号
+         * @param sampling		サンプリング回数
+         */
+        void addSampling(int file, int symbol, int start, int end, float sampling) {
+            int index = indexOf(file, symbol, start, end);
+            if (this.stamps[index] != this.serial) {
+                this.stamps[index] = this.serial;
+                if (this.touchedCount >= this.touched.length) {
+                    this.touched = Arrays.copyOf(this.touched, this.touched.length * 2);
+                }
+                this.touched[this.touchedCount++] = index;
+            }
+            this.process[index] += sampling;
+        }
+
+        /**
+         * 集計中プロセスのサンプリング回数を合計、最小、最大に反映する.
+         */
+        void endProcess() {
+            for (int i = 0; i < this.touchedCount; i++) {
+                int index = this.touched[i];
+                double value = this.process[index];
+                accumulate(index, value, value, value, 1);
+                this.process[index] = 0.0;
+            }
+            this.touchedCount = 0;
+            this.serial++;
+        }
+
+        /**
+         * 他の集計テーブルをマージする.
+         * @param other			マージする集計テーブル
+         * @param files			集計ファイルインデックスの変換表
+         * @param symbols		集計シンボルインデックスの変換表
+         */
+        void merge(CostTable other, int[] files, int[] symbols) {
+            for (int i = 0; i < other.size; i++) {
+                int file = other.files[i] >= 0 ? files[other.files[i]] : -1;
+                int index = indexOf(file, symbols[other.symbols[i]], other.starts[i], other.ends[i]);
+                accumulate(index, other.sums[i], other.mins[i], other.maxs[i], other.counts[i]);
+            }
+        }
+
+        /**
+         * 集計値を反映する.
+         * @param index		エントリ番号
+         * @param sum		合計
+         * @param min		最小
+         * @param max		最大
+         * @param count		プロセス数
+         */
+        private void accumulate(int index, double sum, double min, double max, int count) {
+            if (this.counts[index] == 0) {
+                this.mins[index] = min;
+                this.maxs[index] = max;
+            }
+            else {
+                this.mins[index] = Math.min(this.mins[index], min);
+                this.maxs[index] = Math.max(this.maxs[index], max);
+            }
+            this.sums[index] += sum;
+            this.counts[index] += count;
+        }
+
+        /**
+         * キーのエントリ番号を取得する.未登録の場合は登録する.
+         * @param file			集計ファイルインデックス
+         * @param symbol		集計シンボルインデックス
+         * @param start			開始行番号
+         * @param end			終了行番号
+         * @return		エントリ番号
+         */
+        private int indexOf(int file, int symbol, int start, int end) {
+            int mask = this.slots.length - 1;
+            int slot = hash(file, symbol, start, end) & mask;
+            while (true) {
+                int index = this.slots[slot];
+                if (index == EMPTY) break;
+                if (this.files[index] == file && this.symbols[index] == symbol
+                    && this.starts[index] == start && this.ends[index] == end) {
+                    return index;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            int index = this.size;
+            if (index >= this.files.length) {
+                grow();
+            }
+            this.files[index] = file;
+            this.symbols[index] = symbol;
+            this.starts[index] = start;
+            this.ends[index] = end;
+            this.slots[slot] = index;
+            this.size++;
+            // 負荷率を1/2以下とする
+            if (this.size * 2 > this.slots.length) {
+                rehash();
+            }
+            return index;
+        }
+
+        /**
+         * エントリ配列を拡張する.
+         */
+        private void grow() {
+            int capacity = this.files.length * 2;
+            this.files = Arrays.copyOf(this.files, capacity);
+            this.symbols = Arrays.copyOf(this.symbols, capacity);
+            this.starts = Arrays.copyOf(this.starts, capacity);
+            this.ends = Arrays.copyOf(this.ends, capacity);
+            this.sums = Arrays.copyOf(this.sums, capacity);
+            this.mins = Arrays.copyOf(this.mins, capacity);
+            this.maxs = Arrays.copyOf(this.maxs, capacity);
+            this.counts = Arrays.copyOf(this.counts, capacity);
+            this.process = Arrays.copyOf(this.process, capacity);
+            this.stamps = Arrays.copyOf(this.stamps, capacity);
+        }
+
+        /**
+         * ハッシュスロットを拡張して再登録する.
+         */
+        private void rehash() {
+            this.slots = newSlots(this.slots.length * 2);
+            int mask = this.slots.length - 1;
+            for (int index = 0; index < this.size; index++) {
+                int slot = hash(this.files[index], this.symbols[index], this.starts[index], this.ends[index]) & mask;
+                while (this.slots[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                this.slots[slot] = index;
+            }
+        }
+
+        /**
+         * 空のハッシュスロットを生成する.
+         * @param capacity		スロット数:2のべき乗
+         * @return		ハッシュスロット
+         */
+        private static int[] newSlots(int capacity) {
+            int[] slots = new int[capacity];
+            Arrays.fill(slots, EMPTY);
+            return slots;
+        }
+
+        /**
+         * キーのハッシュ値を取得する.
+         * @param file			集計ファイルインデックス
+         * @param symbol		集計シンボルインデックス
+         * @param start			開始行番号
+         * @param end			終了行番号
+         * @return		ハッシュ値
+         */
+        private static int hash(int file, int symbol, int start, int end) {
+            int hash = file;
+            hash = hash * 31 + symbol;
+            hash = hash * 31 + start;
+            hash = hash * 31 + end;
+            // 下位ビットに上位ビットを拡散する
+            hash *= 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -17,7 +17,6 @@
 package jp.riken.kscope.profiler.dprof;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
@@ -30,7 +29,7 @@ import java.util.Map;
 
 import jp.riken.kscope.Message;
 import jp.riken.kscope.data.CodeLine;
-import jp.riken.kscope.data.SourceFile;
+import jp.riken.kscope.data.SourceFileRegistry;
 import jp.riken.kscope.profiler.IProfilerReader;
 import jp.riken.kscope.profiler.ProfilerDprofData;
 import jp.riken.kscope.profiler.ProfilerEprofData;
@@ -95,14 +94,8 @@ public class DProfReader extends BaseReader implements IProfilerReader {
         this.endian = endian;
         this.profFile = fDProf;
 
-        long fileSize = fDProf.length();
-        ByteBuffer byteBuf = ByteBuffer.allocate((int) fileSize);
-        FileInputStream fis = new FileInputStream(fDProf);
-
-        while (fis.available() > 0) {
-            byteBuf.put((byte) fis.read());
-        }
-        byteBuf.flip();
+        // ファイルをメモリマップして読み込む
+        ByteBuffer byteBuf = mapFile(fDProf);
 
         magicKey = readMagicKey(byteBuf);
         commonInfo = readCommonInfo(byteBuf);
@@ -113,8 +106,6 @@ public class DProfReader extends BaseReader implements IProfilerReader {
         lineInfoList = readLineInfo(byteBuf);
         loopInfoList = readLoopInfo(byteBuf);
         callGraphInfoList = readCallGraphInfo(byteBuf);
-
-        fis.close();
     }
 
     /**
@@ -607,7 +598,7 @@ public class DProfReader extends BaseReader implements IProfilerReader {
         // コード行
         CodeLine line = new CodeLine(null, linenostart, linenoend, filename);
         if (filename != null) {
-        	line.setSourceFile(new SourceFile(filename));
+        	line.setSourceFile(SourceFileRegistry.getInstance().getSourceFile(filename));
         }
         cost.setCodeLine(line);
 
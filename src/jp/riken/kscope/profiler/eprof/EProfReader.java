@@ -17,7 +17,6 @@
 package jp.riken.kscope.profiler.eprof;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
@@ -95,20 +94,12 @@ public class EProfReader extends BaseReader implements IProfilerReader {
         this.endian = endian;
         this.profFile = fEProf;
 
-        long fileSize = fEProf.length();
-        ByteBuffer byteBuf = ByteBuffer.allocate((int) fileSize);
-        FileInputStream fis = new FileInputStream(fEProf);
-
-        while (fis.available() > 0) {
-            byteBuf.put((byte) fis.read());
-        }
-        byteBuf.flip();
+        // ファイルをメモリマップして読み込む
+        ByteBuffer byteBuf = mapFile(fEProf);
 
         magicKey = readMagicKey(byteBuf);
         commonInfo = readCommonInfo(byteBuf);
         eventInfo = readEventCounterInfo(byteBuf);
-
-        fis.close();
     }
 
     /**
@@ -66,6 +66,21 @@ public class ProfilerReaderUtil {
     public static final int SIZEOF_LONG = 0x08;
 
 
+    /**
+     * エンディアン指定からバイト順を取得する
+     *
+     * @param endian
+     *            エンディアン指定 ProfilerReaderUtil.LITTLE_ENDIAN または
+     *            ProfilerReaderUtil.BIG_ENDIANを指定する
+     * @return バイト順
+     */
+    public static ByteOrder toByteOrder(int endian) {
+        if (endian == LITTLE_ENDIAN) {
+            return ByteOrder.LITTLE_ENDIAN;
+        }
+        return ByteOrder.BIG_ENDIAN;
+    }
+
     private static void setEndian(ByteBuffer byteBuf, int endian) {
         switch (endian) {
         case (LITTLE_ENDIAN):
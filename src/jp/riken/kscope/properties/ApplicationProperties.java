@@ -39,6 +39,22 @@ public class ApplicationProperties extends PropertiesBase {
     private final String NEWPROJECT_SAVE = "newproject_save";
     /** ソースファイルのエクスポートの除外ファイル有無プロパティ */
     private final String EXPORTSOURCE_EXCLUDE = "exportsource_exclude";
+    /** XMLファイルのパースワーカースレッド数プロパティ */
+    private final String PARSE_THREAD_COUNT = "parse_thread_count";
+    /** 概要パースを先行して構造ツリーを表示するプロパティ */
+    private final String PARSE_OUTLINE_FIRST = "parse_outline_first";
+    /** XMLファイルのパース結果キャッシュの上限サイズ(MB)プロパティ */
+    private final String PARSE_CACHE_SIZE = "parse_cache_size";
+    /** XMLファイルのパース結果キャッシュフォルダプロパティ */
+    private final String PARSE_CACHE_FOLDER = "parse_cache_folder";
+    /** XMLファイル変更監視の通知待機時間(ミリ秒)プロパティ */
+    private final String PROJECT_WATCH_DELAY = "project_watch_delay";
+    /** make実行中にXMLファイルを先行パースするプロパティ */
+    private final String PARSE_DURING_MAKE = "parse_during_make";
+    /** 対話処理タスクのワーカースレッド数プロパティ */
+    private final String TASK_THREAD_COUNT = "task_thread_count";
+    /** パース結果キャッシュのデフォルトフォルダ:ユーザホームからの相対パス */
+    private final String DEFAULT_PARSE_CACHE_FOLDER = ".kscope" + File.separator + "parse_cache";
 
     /**
      * コンストラクタ
@@ -123,6 +139,75 @@ public class ApplicationProperties extends PropertiesBase {
         	}
         	this.put(key, val);
         }
+        // XMLファイルのパースワーカースレッド数
+        {
+        	key = PARSE_THREAD_COUNT;
+        	int count = 1;
+        	String val = xml.getString("//settings/application[@key='" + key + "']/@value");
+        	if (StringUtils.isNumeric(val)) {
+        		count = Integer.parseInt(val);
+        	}
+        	this.putInt(key, count);
+        }
+        // 概要パースの先行表示:未設定の場合は並列パースの場合のみ先行する
+        {
+        	key = PARSE_OUTLINE_FIRST;
+        	boolean b = (this.getParseThreadCount() > 1);
+        	String val = xml.getString("//settings/application[@key='" + key + "']/@value");
+        	if (!StringUtils.isNullOrEmpty(val)) {
+        		b = val.equalsIgnoreCase("true");
+        	}
+        	this.putBoolean(key, b);
+        }
+        // パース結果キャッシュの上限サイズ(MB)
+        {
+        	key = PARSE_CACHE_SIZE;
+        	int size = 512;
+        	String val = xml.getString("//settings/application[@key='" + key + "']/@value");
+        	if (StringUtils.isNumeric(val)) {
+        		size = Integer.parseInt(val);
+        	}
+        	this.putInt(key, size);
+        }
+        // パース結果キャッシュフォルダ
+        {
+        	key = PARSE_CACHE_FOLDER;
+        	String val = xml.getString("//settings/application[@key='" + key + "']/@value");
+        	if (StringUtils.isNullOrEmpty(val)) {
+        		val = "";
+        	}
+        	this.put(key, val);
+        }
+        // XMLファイル変更監視の通知待機時間(ミリ秒)
+        {
+        	key = PROJECT_WATCH_DELAY;
+        	int delay = 1000;
+        	String val = xml.getString("//settings/application[@key='" + key + "']/@value");
+        	if (StringUtils.isNumeric(val)) {
+        		delay = Integer.parseInt(val);
+        	}
+        	this.putInt(key, delay);
+        }
+        // make実行中のXMLファイル先行パース
+        {
+        	key = PARSE_DURING_MAKE;
+        	boolean b = true;
+        	String val = xml.getString("//settings/application[@key='" + key + "']/@value");
+        	if (!StringUtils.isNullOrEmpty(val)) {
+        		b = val.equalsIgnoreCase("true");
+        	}
+        	this.putBoolean(key, b);
+        }
+        // 対話処理タスクのワーカースレッド数
+        {
+        	key = TASK_THREAD_COUNT;
+        	int count = 2;
+        	String val = xml.getString("//settings/application[@key='" + key + "']/@value");
+        	if (StringUtils.isNumeric(val)) {
+        		count = Integer.parseInt(val);
+        	}
+        	this.putInt(key, count);
+        }
     }
 
     /**
@@ -178,6 +263,84 @@ public class ApplicationProperties extends PropertiesBase {
     	return this.getBoolean(NEWPROJECT_SAVE, false);
     }
 
+    /**
+     * XMLファイルのパースワーカースレッド数を取得する.<br/>
+     * 設定値が0以下の場合は、利用可能なプロセッサ数とする.
+     * @return		パースワーカースレッド数:1=逐次パース
+     */
+    public int getParseThreadCount() {
+    	int count = this.getInt(PARSE_THREAD_COUNT, 1);
+    	if (count <= 0) {
+    		count = Runtime.getRuntime().availableProcessors();
+    	}
+    	return count;
+    }
+
+    /**
+     * 概要パースを先行して構造ツリー、モジュールツリーを表示するか否かを取得する.<br/>
+     * 未設定の場合は、パースワーカースレッド数が2以上の場合のみ先行する.
+     * 逐次パースでは概要パースの終了後に詳細パースを行うため、先行すると全体のパース時間が長くなる.
+     * @return		true=概要パースを先行する
+     */
+    public boolean isParseOutlineFirst() {
+    	return this.getBoolean(PARSE_OUTLINE_FIRST, this.getParseThreadCount() > 1);
+    }
+
+    /**
+     * XMLファイルのパース結果キャッシュの上限サイズを取得する.
+     * @return		上限サイズ(バイト):0=キャッシュしない
+     */
+    public long getParseCacheSize() {
+    	int size = this.getInt(PARSE_CACHE_SIZE, 512);
+    	if (size <= 0) return 0;
+    	return (long)size * 1024 * 1024;
+    }
+
+    /**
+     * XMLファイルのパース結果キャッシュフォルダを取得する.<br/>
+     * 未設定の場合は、ユーザホームの.kscope/parse_cacheとする.
+     * @return		パース結果キャッシュフォルダ
+     */
+    public File getParseCacheFolder() {
+    	String folder = this.get(PARSE_CACHE_FOLDER, "");
+    	if (StringUtils.isNullOrEmpty(folder)) {
+    		return new File(System.getProperty("user.home"), DEFAULT_PARSE_CACHE_FOLDER);
+    	}
+    	return new File(folder);
+    }
+
+    /**
+     * XMLファイル変更監視の通知待機時間を取得する.<br/>
+     * 待機時間の間に変更がなくなるまで、変更をまとめてから構造解析を再実行する.
+     * @return		通知待機時間(ミリ秒)
+     */
+    public long getProjectWatchDelay() {
+    	int delay = this.getInt(PROJECT_WATCH_DELAY, 1000);
+    	if (delay < 0) return 0;
+    	return delay;
+    }
+
+    /**
+     * make実行中に生成されたXMLファイルを先行パースするか否かを取得する.
+     * @return		true=make実行中に先行パースする
+     */
+    public boolean isParseDuringMake() {
+    	return this.getBoolean(PARSE_DURING_MAKE, true);
+    }
+
+    /**
+     * 検索等の対話処理タスクのワーカースレッド数を取得する.<br/>
+     * 0以下が設定されている場合はプロセッサ数とする.
+     * @return		対話処理タスクのワーカースレッド数
+     */
+    public int getTaskThreadCount() {
+    	int count = this.getInt(TASK_THREAD_COUNT, 2);
+    	if (count <= 0) {
+    		count = Runtime.getRuntime().availableProcessors();
+    	}
+    	return count;
+    }
+
     /**
      * ソースファイルエクスポートの除外ファイルパターン文字列を取得
      * @return		exclude
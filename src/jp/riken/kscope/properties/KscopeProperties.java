@@ -35,6 +35,7 @@ import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 
+import jp.riken.kscope.Application;
 import jp.riken.kscope.Message;
 import jp.riken.kscope.common.FILTER_TYPE;
 import jp.riken.kscope.utils.ResourceUtils;
@@ -132,10 +133,10 @@ public class KscopeProperties {
             InputStream is = null;
             is = ResourceUtils.getPropertiesFile(PROPERTIES_FILE);
             if (is == null) {
-            	JOptionPane.showMessageDialog(null,
+            	showErrorMessage(
             			Message.getString("kscopeproperties.errdialog.cannnotopenpropertyfile"), //プロパティファイルを開くことができませんでした。
-            			Message.getString("dialog.common.error"), //エラー
-            			JOptionPane.ERROR_MESSAGE);
+            			Message.getString("dialog.common.error")); //エラー
+            	return;
             }
 
             // XMLパース
@@ -156,17 +157,31 @@ public class KscopeProperties {
             parseClangComment(doc);
 
         } catch (IOException e) {
-        	JOptionPane.showMessageDialog(null, e, "Error", JOptionPane.ERROR_MESSAGE);
+        	showErrorMessage(e, "Error");
             e.printStackTrace();
         } catch (ParserConfigurationException e) {
-        	JOptionPane.showMessageDialog(null, e, "Error", JOptionPane.ERROR_MESSAGE);
+        	showErrorMessage(e, "Error");
             e.printStackTrace();
         } catch (SAXException e) {
-        	JOptionPane.showMessageDialog(null, e, "Error", JOptionPane.ERROR_MESSAGE);
+        	showErrorMessage(e, "Error");
             e.printStackTrace();
         }
     }
 
+    /**
+     * プロパティファイルの読込エラーを表示する.<br/>
+     * ヘッドレス(バッチ)実行の場合は、標準エラー出力に出力する.
+     * @param message		エラーメッセージ
+     * @param title		タイトル
+     */
+    private static void showErrorMessage(Object message, String title) {
+        if (Application.isHeadless()) {
+            System.err.println(message);
+            return;
+        }
+        JOptionPane.showMessageDialog(null, message, title, JOptionPane.ERROR_MESSAGE);
+    }
+
     /**
      * Fortran:固定形式(72桁)拡張子を取得する。
      *
@@ -603,6 +603,8 @@ public class AnalysisMemoryService extends AnalysisBaseService {
 
 		VariableMemoryEntry entry = new VariableMemoryEntry(language);
         LanguageVisitor visitor = new LanguageVisitor(entry);
+        // アクセス先メモリを設定した変数を含む処理ブロックはデータベースを開いた時に読込済みである
+        visitor.setLoadedOnly(true);
         visitor.entry();
         // アクセス先メモリの設定されている変数の取得
         Variable[] vars = entry.getListVariable();
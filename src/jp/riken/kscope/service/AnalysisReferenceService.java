@@ -16,11 +16,8 @@
  */
 package jp.riken.kscope.service;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import javax.swing.tree.DefaultMutableTreeNode;
@@ -29,13 +26,11 @@ import javax.swing.tree.DefaultTreeModel;
 import jp.riken.kscope.Message;
 import jp.riken.kscope.data.CodeLine;
 import jp.riken.kscope.data.SourceFile;
-import jp.riken.kscope.language.Common;
 import jp.riken.kscope.language.Fortran;
 import jp.riken.kscope.language.IBlock;
 import jp.riken.kscope.language.Procedure;
 import jp.riken.kscope.language.ProgramUnit;
-import jp.riken.kscope.language.UseState;
-import jp.riken.kscope.language.Variable;
+import jp.riken.kscope.language.ReferenceIndex;
 import jp.riken.kscope.language.VariableDefinition;
 import jp.riken.kscope.model.ReferenceModel;
 
@@ -97,27 +92,22 @@ public class AnalysisReferenceService extends AnalysisBaseService {
         mother.add(dec);
         decNode.add(mother);
 
-        Set<ProgramUnit> refdefUnit = new HashSet<ProgramUnit>();// 参照・定義しているプログラム単位のセット
-        // 宣言が属するプログラム単位、および副プログラム単位による参照・定義の一覧を作成する
-        refdefUnit.addAll(this.searchChildrenWithScope(variable));
-
-        // USE文による参照・定義の一覧を作成する
-        refdefUnit.addAll(variable.getReferMember());
-
-        for (ProgramUnit pu : refdefUnit) {
-            String name = variable.get_name();
-            // USE文による名前の変換が無いかチェック
-            List<UseState> uses = pu.getUseList();
-            for (UseState use : uses) {
-                name = use.translation(variable);
-                if (!(name.equalsIgnoreCase(variable.get_name()))) {
-                    break;
-                }
+        // 参照・定義索引から、宣言が属するプログラム単位、副プログラム単位、USE文、
+        // COMMON文、EQUIVALENCE文の別名による参照・定義の一覧を作成する
+        ReferenceIndex index = this.fortranDb.getReferenceIndex();
+        for (ReferenceIndex.Entry entry : index.getEntries(variable)) {
+            ProgramUnit pu = entry.getUnit();
+            if (entry.getAlias() != null) {
+                // 別名の宣言
+                DefaultMutableTreeNode defAlias = new DefaultMutableTreeNode(entry.getAlias());
+                DefaultMutableTreeNode motherAlias = new DefaultMutableTreeNode(entry.getAlias().getMother());
+                defAlias.setAllowsChildren(false);
+                motherAlias.add(defAlias);
+                decNode.add(motherAlias);
             }
 
             // 参照一覧を作成する
-            Map<String, Set<IBlock>> refs = pu.getRefVariableNames();
-            Set<IBlock> blk = refs.get(name);
+            Set<IBlock> blk = entry.getReferences();
             if (blk != null) {
                 DefaultMutableTreeNode pr = new DefaultMutableTreeNode(pu);
                 for (IBlock bk : blk) {
@@ -128,8 +118,7 @@ public class AnalysisReferenceService extends AnalysisBaseService {
             }
 
             // 定義一覧を作成する
-            Map<String, Set<IBlock>> defs = pu.getDefVariableNames();
-            blk = defs.get(name);
+            blk = entry.getDefinitions();
             if (blk != null) {
                 DefaultMutableTreeNode pr = new DefaultMutableTreeNode(pu);
                 for (IBlock bk : blk) {
@@ -140,75 +129,6 @@ public class AnalysisReferenceService extends AnalysisBaseService {
             }
         }
 
-        // COMMON属性の場合の一覧
-        if (this.fortranDb.getCommonMap() != null) {
-            ProgramUnit motherUnit = variable.getMother();
-            List<Common> comList = motherUnit.getCommonList();
-            List<ProgramUnit> comUnits = new ArrayList<ProgramUnit>();
-            String comName = "";
-            int varidx = 0;
-            searchCom:
-                for (Common com: comList) {
-                	varidx = 0;
-                    for (Variable var: com.getVariables()) {
-                        if (var.getName().equalsIgnoreCase(variable.get_name())) {
-                            comName = com.getName();
-                            comUnits = this.fortranDb.getCommonUnit(comName);
-                            break searchCom;
-                        }
-                        varidx++;
-                    }
-                }
-            for (ProgramUnit pu: comUnits) {
-                if (!(refdefUnit.contains(pu))) {
-                    List<Common> puComs = pu.getCommonList();
-                    String localName = "";
-                    for (Common cm: puComs) {
-                    	if (cm.getVariables() == null || cm.getVariables().size() <= 0) continue;
-                    	if (cm.getVariables().size() <= varidx) continue;
-                        if (cm.getName().equalsIgnoreCase(comName)) {
-                            localName = cm.getVariables().get(varidx).getName();
-                            break;
-                        }
-                    }
-                    VariableDefinition def = pu.getVariableMap(localName);
-                    if (def != null) {
-                        // 宣言
-                        DefaultMutableTreeNode defCom = new DefaultMutableTreeNode(
-                                def);
-                        DefaultMutableTreeNode motherCom = new DefaultMutableTreeNode(
-                                def.getMother());
-                        defCom.setAllowsChildren(false);
-                        motherCom.add(defCom);
-                        decNode.add(motherCom);
-                        // 参照一覧を作成する
-                        Map<String, Set<IBlock>> refs = pu.getRefVariableNames();
-                        Set<IBlock> blk = refs.get(localName);
-                        if (blk != null) {
-                            DefaultMutableTreeNode pr = new DefaultMutableTreeNode(pu);
-                            for (IBlock bk : blk) {
-                                DefaultMutableTreeNode bl = new DefaultMutableTreeNode(bk);
-                                pr.add(bl);
-                            }
-                            refNode.add(pr);
-                        }
-
-                        // 定義一覧を作成する
-                        Map<String, Set<IBlock>> defs = pu.getDefVariableNames();
-                        blk = defs.get(localName);
-                        if (blk != null) {
-                            DefaultMutableTreeNode pr = new DefaultMutableTreeNode(pu);
-                            for (IBlock bk : blk) {
-                                DefaultMutableTreeNode bl = new DefaultMutableTreeNode(bk);
-                                pr.add(bl);
-                            }
-                            defNode.add(pr);
-                        }
-                    }
-                }
-            }
-        }
-
         // ツリーの生成
         DefaultTreeModel tree = new DefaultTreeModel(root);
 
@@ -216,31 +136,6 @@ public class AnalysisReferenceService extends AnalysisBaseService {
         this.modelReference.setTreeModel(tree);
     }
 
-    /**
-     * 指定した変数宣言の属するプログラム単位内において、有効域となるプログラム単位のセットを返す。
-     *
-     * @param var
-     *            変数宣言
-     * @return プログラム単位のセット。少なくとも宣言が属するモジュールを要素に持つ。
-     */
-    private Set<ProgramUnit> searchChildrenWithScope(VariableDefinition var) {
-        Set<ProgramUnit> pus = new HashSet<ProgramUnit>();
-        pus.add(var.getMother());
-        for (Procedure child : var.getMother().getChildren()) {
-            // 副プログラムに同一の名前の宣言が無ければ追加
-            if (child.get_variable(var.get_name()) == null) {
-                pus.add(child);
-            }
-            for (Procedure grnd : child.getChildren()) {
-                if (grnd.get_variable(var.get_name()) == null) {
-                    pus.add(grnd);
-                }
-            }
-        }
-
-        return pus;
-    }
-
     /**
      * ソースコード上で選択された文字列から参照一覧を作成する.
      *
@@ -16,7 +16,10 @@
  */
 package jp.riken.kscope.service;
 
+import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -42,9 +45,11 @@ import jp.riken.kscope.language.ProcedureUsage;
 import jp.riken.kscope.language.Selection;
 import jp.riken.kscope.language.Substitution;
 import jp.riken.kscope.model.SearchResultModel;
+import jp.riken.kscope.utils.SourceGrepIndex;
 import jp.riken.kscope.utils.StringUtils;
 import jp.riken.kscope.utils.SwingUtils;
 import jp.riken.kscope.utils.TextFileReader;
+import jp.riken.kscope.utils.TextSearchMatcher;
 
 /**
  * 分析:検索サービスクラス
@@ -82,6 +87,8 @@ public class AnalysisSearchService extends AnalysisBaseService {
     private final int MAX_SEARCHED_NODECOUNT = 1024;
     /** エラーメッセージ */
     private String errorMessage;
+    /** ファイル検索索引(null=索引を使用しない) */
+    private SourceGrepIndex grepIndex;
 
     /**
      * コンストラクタ
@@ -262,46 +269,40 @@ public class AnalysisSearchService extends AnalysisBaseService {
         if (files == null) return;
         Application.status.setProgressStart(true);
 
+        // 検索条件をコンパイルする
+        TextSearchMatcher matcher = new TextSearchMatcher(
+                                this.searchText,
+                                this.sensitivecase, this.regex,
+                                this.word, this.variable);
+        int[] trigrams = SourceGrepIndex.getTrigrams(matcher.getLiterals());
+        if (this.grepIndex != null) {
+            // 更新されたファイルの索引を作成する
+            Application.status.setMessageStatus("indexing...");
+            this.grepIndex.update(Arrays.asList(files));
+        }
+
         // 検索結果と一致するコード行を取得する
         ArrayList<CodeLine> list = new ArrayList<CodeLine>();
         for (SourceFile file : files) {
             // キャンセルチェック
             if (this.isCancel()) {
                 break;
+            }
+            // 索引により検索文字列を含まないファイルは除外する
+            Charset charset = null;
+            if (this.grepIndex != null) {
+                if (!this.grepIndex.mayContain(file, trigrams)) continue;
+                charset = this.grepIndex.getCharset(file);
             }
         	Application.status.setMessageStatus("searching... : " + file.toString());
 
-            CodeLine[] codes = readSourceFile(file);
-            if (codes == null || codes.length <= 0) continue;
-            for (CodeLine code : codes) {
-                // 最大検索数に達しているかチェックする.
-            	if (this.searchedNodeCount > this.MAX_SEARCHED_NODECOUNT) {
-            		String msg = Message.getString("analysissearchservice.error.maxsearchedcount");
-            		this.addErrorInfo(msg);
-            		this.setErrorMessage(msg);
-            		cancelRunning();	// 検索を中止する.
-            		break;
-            	}
-
-                String line = code.getStatement();
-                // 検索結果と一致するか
-                boolean result = false;
-                if (this.variable) {
-                    // 変数(=トレース)検索
-                    result = StringUtils.existsSearchWord(line, this.searchText);
-                }
-                else {
-                    // テキスト検索
-                    result = StringUtils.existsSearchText(
-                                            line,
-                                            this.searchText,
-                                            this.sensitivecase, this.regex,
-                                            this.word);
-                }
-                if (result) {
-                    list.add(code);
-                    this.searchedNodeCount++;
-                }
+            searchSourceFile(file, charset, matcher, list);
+        }
+        if (this.grepIndex != null) {
+            try {
+                this.grepIndex.save();
+            } catch (IOException ex) {
+                ex.printStackTrace();
             }
         }
 
@@ -375,35 +376,39 @@ public class AnalysisSearchService extends AnalysisBaseService {
 
 
     /**
-     * ファイルからコード行を取得する
+     * ファイルから検索条件と一致するコード行を取得する.<br/>
+     * 一致したコード行のみコード行を生成する.
      * @param file			ソースファイル
-     * @return				コード行リスト
+     * @param charset		ファイルの文字セット(null=文字コードを判別する)
+     * @param matcher		検索条件
+     * @param list			検索結果コード行リスト
      */
-    private CodeLine[] readSourceFile(SourceFile file) {
-
-        ArrayList<CodeLine> list = new ArrayList<CodeLine>();
+    private void searchSourceFile(SourceFile file, Charset charset, TextSearchMatcher matcher, List<CodeLine> list) {
         try {
-            TextFileReader reader = new TextFileReader(file.getFile());
+            TextFileReader reader = new TextFileReader(file.getFile(), charset);
             String line;
             int line_no = 0;
             while ((line = reader.readLine()) != null) {
                 line_no++;
-                // コードラインの生成、追加を行う
-                String fn = null;
-                if (file != null) {
-                	fn = file.getPath();
+                // 最大検索数に達しているかチェックする.
+            	if (this.searchedNodeCount > this.MAX_SEARCHED_NODECOUNT) {
+            		String msg = Message.getString("analysissearchservice.error.maxsearchedcount");
+            		this.addErrorInfo(msg);
+            		this.setErrorMessage(msg);
+            		cancelRunning();	// 検索を中止する.
+            		break;
+            	}
+                String statement = line.trim();
+                // 検索結果と一致するか
+                if (matcher.matches(statement)) {
+                    // コードラインの生成、追加を行う
+                    list.add(new CodeLine(file, statement, line_no, file.getPath()));
+                    this.searchedNodeCount++;
                 }
-                list.add(new CodeLine(file, line.trim(), line_no, fn));
             }
-
         } catch (Exception e) {
-            return null;
+            return;
         }
-
-        if (list.size() <= 0) return null;
-
-        // 読込コード行リスト
-        return list.toArray(new CodeLine[0]);
     }
 
     /**
@@ -812,6 +817,14 @@ public class AnalysisSearchService extends AnalysisBaseService {
 		this.searchFiles = files;
 	}
 
+    /**
+     * ファイル検索索引を設定する
+     * @param index		ファイル検索索引(null=索引を使用しない)
+     */
+    public void setGrepIndex(SourceGrepIndex index) {
+        this.grepIndex = index;
+    }
+
 	/**
 	 * 検索済みプロシージャリストに追加済みかチェックする.
 	 * @param proc		プロシージャ
@@ -27,18 +27,18 @@ import javax.swing.tree.DefaultTreeModel;
 
 import jp.riken.kscope.data.CodeLine;
 //import jp.riken.kscope.data.SourceFile;
+import jp.riken.kscope.language.ArgumentBindingGraph;
 import jp.riken.kscope.language.Block;
 import jp.riken.kscope.language.Condition;
 import jp.riken.kscope.language.ExecutableBody;
 import jp.riken.kscope.language.Fortran;
 import jp.riken.kscope.language.IBlock;
-import jp.riken.kscope.language.KeywordArgument;
 import jp.riken.kscope.language.Procedure;
 import jp.riken.kscope.language.ProcedureUsage;
 import jp.riken.kscope.language.ProgramUnit;
 import jp.riken.kscope.language.Selection;
 import jp.riken.kscope.language.Substitution;
-import jp.riken.kscope.language.Variable;
+import jp.riken.kscope.language.utils.LanguageDatabase;
 import jp.riken.kscope.language.utils.LanguageUtils;
 import jp.riken.kscope.model.TraceResultModel;
 
@@ -184,20 +184,86 @@ public class AnalysisTraceService extends AnalysisBaseService {
     /**
      * トレース:インを行う.<br/>
      * トレース対象変数名, トレースブロックからサブルーチン、関数のプロシージャを探索する.
+     * 実引数と仮引数の対応は引数結合グラフから取得する.
      *
      * @param block
      *            トレースブロック(現在のトレースの選択ブロック)
      * @return トレース結果モデルリスト
      */
     public TraceResultModel[] analysisTraceIn(IBlock block) {
+        List<ArgumentBindingGraph.Binding> bindings = getTraceInBindings(block);
+        if (bindings == null) {
+            return null;
+        }
+
+        // トレースモデル
+        List<TraceResultModel> listTrace = new ArrayList<TraceResultModel>();
+        for (ArgumentBindingGraph.Binding binding : bindings) {
+            ProcedureUsage pu = binding.getCall();
+            Procedure proc = binding.getCallee(); // call文の定義先
+            TraceResultModel modelTrace = createTraceModel(proc, binding.getDummy(), proc);
+            modelTrace.setBlocklabel(pu.toDefinitionHTMLString(binding.getArgIndex())); // トレース先ダイアログ表示用のラベル
+            listTrace.add(modelTrace);
+        }
+
+        return listTrace.toArray(new TraceResultModel[0]);
+    }
+
+    /**
+     * トレース:イン(全階層)を行う.<br/>
+     * トレースブロックの手続き呼出から、呼出先の仮引数を実引数とする手続き呼出を辿り、
+     * 到達する全ての手続きのトレース結果を取得する.再帰呼出により到達済みの手続きと変数は展開しない.
+     * トレース結果モデルのトレースパスには、トレースブロックより後の呼出先手続き、手続き呼出を設定する.
+     *
+     * @param block
+     *            トレースブロック(現在のトレースの選択ブロック)
+     * @return トレース結果モデルリスト
+     */
+    public TraceResultModel[] analysisTraceInAll(IBlock block) {
+        List<ArgumentBindingGraph.Binding> bindings = getTraceInBindings(block);
+        if (bindings == null) {
+            return null;
+        }
+        ArgumentBindingGraph graph = this.fortranDb.getArgumentBindingGraph();
+
+        // トレースモデル
+        List<TraceResultModel> listTrace = new ArrayList<TraceResultModel>();
+        for (ArgumentBindingGraph.Trace trace : graph.traceIn(bindings)) {
+            ArgumentBindingGraph.Binding last = trace.getLast();
+            Procedure proc = last.getCallee();
+            TraceResultModel modelTrace = createTraceModel(proc, last.getDummy(), proc);
+            // トレースパス:呼出先手続き、次の手続き呼出
+            List<IBlock> paths = new ArrayList<IBlock>();
+            ArgumentBindingGraph.Binding[] hops = trace.getBindings();
+            for (int i = 0; i < hops.length; i++) {
+                if (i > 0) {
+                    paths.add(hops[i].getCall());
+                }
+                paths.add(hops[i].getCallee());
+            }
+            modelTrace.setTracePath(paths.toArray(new IBlock[0]));
+            modelTrace.setBlocklabel(toTraceHTMLString(trace, false)); // トレース先ダイアログ表示用のラベル
+            listTrace.add(modelTrace);
+        }
+
+        return listTrace.toArray(new TraceResultModel[0]);
+    }
+
+    /**
+     * トレース:インの開始の結合を取得する.<br/>
+     * トレースブロックの手続き呼出で、トレース対象変数を実引数とする結合を取得する.
+     *
+     * @param block
+     *            トレースブロック
+     * @return 結合リスト。トレースブロックが手続き呼出、代入文でない場合はnull
+     */
+    private List<ArgumentBindingGraph.Binding> getTraceInBindings(IBlock block) {
         if (block == null) {
             return null;
         }
         List<ProcedureUsage> pus = new ArrayList<ProcedureUsage>();
-        ProcedureUsage punit = null;
         if (block instanceof ProcedureUsage) {
-            punit = (ProcedureUsage) block;
-            pus.add(punit);
+            pus.add((ProcedureUsage) block);
         } else if (block instanceof Substitution) {
             Set<ProcedureUsage> funcCalls = ((Substitution) block)
                     .getRightValue().getAllFunctions();
@@ -206,63 +272,25 @@ public class AnalysisTraceService extends AnalysisBaseService {
             return null;
         }
 
-        // トレースモデル
-        List<TraceResultModel> listTrace = new ArrayList<TraceResultModel>();
-        for (ProcedureUsage pu: pus) {
-            Procedure proc = null; // call文の定義先
-            if (pu.getCallDefinition() != null) {
-                proc = pu.getCallDefinition();
-            } else {
-                // TODO 定義がない場合、それを提示すべきか
-                return null;
-            }
-            String actualArg = this.traceWord.toLowerCase(); // プログラム単位内での実引数名
-
-            Set<Integer> numArgs = pu.numberOfArg(actualArg);
-            numArgsLoop:
-                for (int numArg : numArgs) {
-                    String dummyArg;
-                    Variable var = proc.getArgument(numArg);
-                    if (var == null) {
-                        // 対応する引数が見つからないので処理終了
-                        continue numArgsLoop;
-                    } else {
-                        dummyArg = var.getName();
-                    }
-                // キーワード引数をチェック
-                if (pu.getArguments().get(numArg) instanceof KeywordArgument) {
-                    KeywordArgument keywrd = (KeywordArgument) pu
-                            .getArguments().get(numArg);
-                    if (keywrd != null) {
-                        dummyArg = keywrd.getKeyword();
-                    }
-                }
-
-                    // 参照一覧モデルに設定する
-                Set<IBlock> refdefs = proc.getRefDefBlocks(dummyArg);
-                    DefaultMutableTreeNode root = new DefaultMutableTreeNode(proc);
-                for (IBlock blk : refdefs) {
-                    this.addBlockToRoot(root, blk);
-                    }
-
-                    // ツリーの生成
-                    DefaultTreeModel tree = new DefaultTreeModel(root);
-                    TraceResultModel modelTrace = new TraceResultModel();
-                    modelTrace.setTraceWord(dummyArg); // トレース対象変数名
-                    modelTrace.setTreeModel(tree); // 表示ツリーモデル
-                    modelTrace.setTitle(dummyArg); // 表示タイトル
-                    modelTrace.setSelectedBlock(proc); // 選択ブロック
-                    modelTrace.setBlocklabel(pu.toDefinitionHTMLString(numArg)); // トレース先ダイアログ表示用のラベル
-                    listTrace.add(modelTrace);
+        Procedure caller = LanguageDatabase.getOwnerProcedure(block); // トレースブロックが属する手続き
+        String actualArg = this.traceWord.toLowerCase(); // プログラム単位内での実引数名
+        ArgumentBindingGraph graph = this.fortranDb.getArgumentBindingGraph();
+        List<ArgumentBindingGraph.Binding> bindings = new ArrayList<ArgumentBindingGraph.Binding>();
+        for (ProcedureUsage pu : pus) {
+            // 定義が無い手続き呼出は結合を持たない
+            for (ArgumentBindingGraph.Binding binding : graph.getBindings(caller, pu)) {
+                if (binding.hasActual(actualArg)) {
+                    bindings.add(binding);
                 }
+            }
         }
-
-        return listTrace.toArray(new TraceResultModel[0]);
+        return bindings;
     }
 
     /**
      * トレース:アウトを行う。<br/>
      * 指定した手続きを呼び出しているブロックを探索する。
+     * 仮引数と実引数の対応は引数結合グラフから取得する.
      *
      * @param block
      *            トレースブロック(現在のトレースのルートブロック)
@@ -281,52 +309,26 @@ public class AnalysisTraceService extends AnalysisBaseService {
         }
 
         String dummyArg = this.traceWord.toLowerCase();
-        int numDummyArg = currentProc.getNumOfDummyArgument(dummyArg); // dummyArgの順番
-        if (numDummyArg < 0) {
+        if (currentProc.getNumOfDummyArgument(dummyArg) < 0) {
             return null;
         }
-        // Procedureをcallしている手続き呼び出しブロックを取得する
-        Set<ProcedureUsage> calls = currentProc.getCallMember();
+        // 仮引数に結合している手続き呼出を取得する
+        ArgumentBindingGraph graph = this.fortranDb.getArgumentBindingGraph();
+        List<ArgumentBindingGraph.Binding> bindings = graph.getCallerBindings(currentProc, dummyArg);
 
         // トレースモデルの作成
         List<TraceResultModel> listTrace = new ArrayList<TraceResultModel>();
         // 各プログラム単位に対してトレースを実施する
 
-        for (ProcedureUsage currentCall : calls) {
-            Procedure proc = currentCall.getMyProcedure(); // currentCallが属するプログラム単位
-
-            int numActualArg = currentCall.getNumOfActualArgument(dummyArg,
-                    numDummyArg);
-            if (numActualArg < 0) {
-                continue;
-            }
-            // 仮引数に対応する変数名のリストに変換する
-            Set<String> actualArgs = currentCall
-                    .getActualArgument(numActualArg);
-            for (String actualArg : actualArgs) {
-                Set<IBlock> refdefs = proc.getRefDefBlocks(actualArg);
-
-                DefaultMutableTreeNode root = new DefaultMutableTreeNode(proc);
-
-                if (refdefs != null) {
-                    for (IBlock refdef : refdefs) {
-                        // 参照一覧モデルに設定する
-                        this.addBlockToRoot(root, refdef);
-                    }
-                }
-
-                // ツリーの生成
-                DefaultTreeModel tree = new DefaultTreeModel(root);
-
-                TraceResultModel modelTrace = new TraceResultModel();
-                modelTrace.setTraceWord(actualArg); // トレース対象変数名
-                modelTrace.setTreeModel(tree); // 表示ツリーモデル
-                modelTrace.setTitle(actualArg); // 表示タイトル
-                modelTrace.setSelectedBlock(currentCall); // 選択ブロック
-                modelTrace.setBlocklabel(currentCall.toHTMLString(numActualArg,
+        for (ArgumentBindingGraph.Binding binding : bindings) {
+            ProcedureUsage currentCall = binding.getCall();
+            Procedure proc = binding.getCaller(); // currentCallが属するプログラム単位
+            // 仮引数に対応する変数名のリスト
+            for (String actualArg : binding.getActuals()) {
+                TraceResultModel modelTrace = createTraceModel(proc, actualArg, currentCall);
+                modelTrace.setBlocklabel(currentCall.toHTMLString(binding.getArgIndex(),
                         actualArg)); // トレース先ダイアログ表示用のラベル
                 listTrace.add(modelTrace);
-
             }
         }
 
@@ -352,6 +354,113 @@ public class AnalysisTraceService extends AnalysisBaseService {
         return new TraceResultModel[] { forwardModel };
     }
 
+    /**
+     * トレース:アウト(全階層)を行う.<br/>
+     * 手続きの仮引数に結合する呼出元の実引数を辿り、到達する全ての手続きのトレース結果を取得する.
+     * 再帰呼出により到達済みの手続きと変数は展開しない.
+     * トレース結果モデルのトレースパスには、トレースブロックより後の手続き呼出、呼出元手続きを設定する.
+     *
+     * @param block
+     *            トレースブロック(現在のトレースのルートブロック)
+     * @return トレース結果モデルリスト
+     */
+    public TraceResultModel[] analysisTraceOutAll(IBlock block) {
+        if (!(block instanceof Procedure)) {
+            return null;
+        }
+        Procedure currentProc = (Procedure) block;
+        String dummyArg = this.traceWord.toLowerCase();
+        if (currentProc.getNumOfDummyArgument(dummyArg) < 0) {
+            return null;
+        }
+        ArgumentBindingGraph graph = this.fortranDb.getArgumentBindingGraph();
+
+        // トレースモデルの作成
+        List<TraceResultModel> listTrace = new ArrayList<TraceResultModel>();
+        for (ArgumentBindingGraph.Trace trace : graph.traceOut(currentProc, dummyArg)) {
+            ArgumentBindingGraph.Binding last = trace.getLast();
+            TraceResultModel modelTrace = createTraceModel(last.getCaller(), trace.getName(), last.getCall());
+            // トレースパス:手続き呼出、呼出元手続き
+            List<IBlock> paths = new ArrayList<IBlock>();
+            for (ArgumentBindingGraph.Binding hop : trace.getBindings()) {
+                paths.add(hop.getCall());
+                paths.add(hop.getCaller());
+            }
+            modelTrace.setTracePath(paths.toArray(new IBlock[0]));
+            modelTrace.setBlocklabel(toTraceHTMLString(trace, true)); // トレース先ダイアログ表示用のラベル
+            listTrace.add(modelTrace);
+        }
+
+        return listTrace.toArray(new TraceResultModel[0]);
+    }
+
+    /**
+     * トレース結果モデルを作成する.<br/>
+     * 手続き内で変数を参照・定義しているブロックから表示ツリーを作成する.
+     *
+     * @param proc
+     *            トレース先手続き
+     * @param name
+     *            トレース対象変数名
+     * @param selected
+     *            選択ブロック
+     * @return トレース結果モデル
+     */
+    private TraceResultModel createTraceModel(Procedure proc, String name, IBlock selected) {
+        // 参照一覧モデルに設定する
+        Set<IBlock> refdefs = proc.getRefDefBlocks(name);
+        DefaultMutableTreeNode root = new DefaultMutableTreeNode(proc);
+        if (refdefs != null) {
+            for (IBlock blk : refdefs) {
+                this.addBlockToRoot(root, blk);
+            }
+        }
+
+        // ツリーの生成
+        DefaultTreeModel tree = new DefaultTreeModel(root);
+        TraceResultModel modelTrace = new TraceResultModel();
+        modelTrace.setTraceWord(name); // トレース対象変数名
+        modelTrace.setTreeModel(tree); // 表示ツリーモデル
+        modelTrace.setTitle(name); // 表示タイトル
+        modelTrace.setSelectedBlock(selected); // 選択ブロック
+        return modelTrace;
+    }
+
+    /**
+     * 全階層トレースのHTML表現を返す.<br/>
+     * 経路の手続きとトレース対象変数を順に表示し、到達した変数をハイライトする.
+     *
+     * @param trace
+     *            全階層トレース
+     * @param out
+     *            true=トレース:アウト(呼出元手続き), false=トレース:イン(呼出先手続き)
+     * @return HTML表現文字列
+     */
+    private String toTraceHTMLString(ArgumentBindingGraph.Trace trace, boolean out) {
+        StringBuilder html = new StringBuilder();
+        html.append("<html>");
+        ArgumentBindingGraph.Binding[] hops = trace.getBindings();
+        String[] names = trace.getNames();
+        for (int i = 0; i < hops.length; i++) {
+            if (i > 0) {
+                html.append(" -&gt; ");
+            }
+            Procedure proc = out ? hops[i].getCaller() : hops[i].getCallee();
+            html.append(proc.get_name());
+            html.append("(");
+            if (i == hops.length - 1) {
+                html.append("<span style='color:red;'>");
+                html.append(names[i]);
+                html.append("</span>");
+            } else {
+                html.append(names[i]);
+            }
+            html.append(")");
+        }
+        html.append("</html>");
+        return html.toString();
+    }
+
     /**
      * トレース対象変数名を取得する.
      *
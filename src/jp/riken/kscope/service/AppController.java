@@ -21,8 +21,11 @@ import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 
 import jp.riken.kscope.Application;
 import jp.riken.kscope.Message;
@@ -32,10 +35,12 @@ import jp.riken.kscope.common.ANALYSIS_PANEL;
 import jp.riken.kscope.common.Constant;
 import jp.riken.kscope.common.FILTER_TYPE;
 import jp.riken.kscope.common.PROFILERINFO_TYPE;
+import jp.riken.kscope.common.TASK_PRIORITY;
 import jp.riken.kscope.data.CodeLine;
 import jp.riken.kscope.data.ErrorInfo;
 import jp.riken.kscope.data.Keyword;
 import jp.riken.kscope.data.SourceFile;
+import jp.riken.kscope.data.SourceFileRegistry;
 import jp.riken.kscope.dialog.ProfilerLegendDialog;
 import jp.riken.kscope.gui.AnalysisView;
 import jp.riken.kscope.gui.ConsolePanel;
@@ -118,12 +123,18 @@ public class AppController implements PropertyChangeListener {
     /** 変数アクセス先メモリ設定 */
     private VariableMemoryProperties propertiesVariable;
 
-    /** フォートランデータベース */
-    private Fortran fortranLanguage;
+    /** フォートランデータベース:公開中のスナップショット */
+    private final AtomicReference<Fortran> fortranLanguage = new AtomicReference<Fortran>();
 
-    /** スレッドタスク */
+    /** フォートランデータベースのバージョン:スナップショットを入れ替える毎に更新する */
+    private final AtomicLong languageVersion = new AtomicLong();
+
+    /** スレッドタスク:プログレスダイアログに表示するタスク */
     private FutureService<Integer> threadFuture;
 
+    /** タスクスケジューラ */
+    private final TaskScheduler taskScheduler = new TaskScheduler();
+
     /** 構造ツリーフィルタ */
     private List<FILTER_TYPE> listLanguageFilter;
 
@@ -215,7 +226,7 @@ public class AppController implements PropertyChangeListener {
         this.setListLanguageFilter(filters);
 
         // フォートランデータベースの作成
-        fortranLanguage = new Fortran();
+        fortranLanguage.set(new Fortran());
         // プロファイラ情報クラス
         profilerInfo = new ProfilerInfo();
 
@@ -259,6 +270,9 @@ public class AppController implements PropertyChangeListener {
         if (this.propertiesApplication == null) {
         	this.propertiesApplication = new ApplicationProperties();
         }
+        // 対話処理タスクのワーカースレッド数
+        this.taskScheduler.setThreadCount(TASK_PRIORITY.INTERACTIVE,
+        		this.propertiesApplication.getTaskThreadCount());
         
         // メニュー表示選択をコピーする
         this.mainframe.getMenuMain().clearSelectedMenu();
@@ -485,19 +499,49 @@ public class AppController implements PropertyChangeListener {
 
 
     /**
-     * フォートランデータベースを取得する
+     * フォートランデータベースを取得する.<br/>
+     * 構造解析再実行で作成されたデータベースは、公開中のスナップショットと変更の無いプログラム単位を共有して入れ替える.
+     * 分析は取得したデータベースを最後まで参照すること.
+     * 構造解析再実行は公開中のスナップショットの処理ブロックを全て読み込んでから複製するため、入れ替えたスナップショットも変更されずに参照できる.
      * @return		フォートランデータベース
      */
     public Fortran getFortranLanguage() {
-        return fortranLanguage;
+        return this.fortranLanguage.get();
     }
 
     /**
-     * フォートランデータベースを設定する
+     * フォートランデータベースを設定する.<br/>
+     * 公開中のスナップショットを入れ替えて、バージョンを更新する.
      * @param  value		フォートランデータベース
      */
     public void setFortranLanguage(Fortran value) {
-        this.fortranLanguage = value;
+        this.fortranLanguage.set(value);
+        this.languageVersion.incrementAndGet();
+    }
+
+    /**
+     * 公開中のスナップショットが指定データベースである場合のみ、フォートランデータベースを入れ替える.<br/>
+     * 構造解析再実行中にプロジェクトが開き直された場合等は入れ替えない.
+     * 入れ替えたスナップショットは処理ブロックを全て読み込み済みで遅延読込を終了しているため、参照中の分析はそのまま参照を続ける.
+     * @param expect		再実行元のフォートランデータベース
+     * @param value			作成フォートランデータベース
+     * @return		true=入替成功
+     */
+    public boolean replaceFortranLanguage(Fortran expect, Fortran value) {
+        if (!this.fortranLanguage.compareAndSet(expect, value)) {
+            return false;
+        }
+        this.languageVersion.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * フォートランデータベースのバージョンを取得する.<br/>
+     * スナップショットを入れ替える毎に更新される.
+     * @return		フォートランデータベースのバージョン
+     */
+    public long getLanguageVersion() {
+        return this.languageVersion.get();
     }
 
     /**
@@ -601,7 +645,12 @@ public class AppController implements PropertyChangeListener {
      * フォートランデータベースをクリアする
      */
     public void clearFortranLanguage() {
-        this.fortranLanguage = new Fortran();
+        // 処理ブロックの遅延読込を終了する
+        Fortran current = this.fortranLanguage.get();
+        if (current != null) {
+            current.closeProcedureLoader();
+        }
+        setFortranLanguage(new Fortran());
         // 変数アクセス先メモリプロパティクリア
         this.propertiesVariable.clearVariableMemory();
     }
@@ -617,12 +666,24 @@ public class AppController implements PropertyChangeListener {
      * @param result		終了コード
      */
     public void finishThreadFuture(Integer result) {
+        finishThreadFuture(this.threadFuture, result);
+    }
+
+    /**
+     * スレッドタスクの終了通知を受け取り、メッセージボックスを表示する.<br/>
+     * プログレスダイアログに表示中のタスクの場合は、プログレスダイアログを閉じる.
+     * @param future		終了スレッドタスク
+     * @param result		終了コード
+     */
+    public void finishThreadFuture(FutureService<Integer> future, Integer result) {
 
-        // プログレスダイアログを閉じる
-        WindowProgressAction progress = new WindowProgressAction(this);
-        progress.closeProgressDialog();
-        // プログレスバーのクリア
-        Application.status.setProgressStart(false);
+        if (future == null || future == this.threadFuture) {
+            // プログレスダイアログを閉じる
+            WindowProgressAction progress = new WindowProgressAction(this);
+            progress.closeProgressDialog();
+            // プログレスバーのクリア
+            Application.status.setProgressStart(false);
+        }
 
 		// コンソール
 		ConsolePanel console = this.getMainframe().getPanelAnalysisView().getPanelConsole();
@@ -636,8 +697,8 @@ public class AppController implements PropertyChangeListener {
 
         if (result == Constant.ERROR_RESULT) {
         	String errmsg = null;
-        	if (this.threadFuture != null) {
-        		errmsg = this.threadFuture.getMessage();
+        	if (future != null) {
+        		errmsg = future.getMessage();
         	}
         	//エラーにより終了しました。
         	String msg = Message.getString("appcontroller.thread.message.error");
@@ -682,6 +743,14 @@ public class AppController implements PropertyChangeListener {
         this.threadFuture = threadFuture;
     }
 
+    /**
+     * タスクスケジューラを取得する
+     * @return		タスクスケジューラ
+     */
+    public TaskScheduler getTaskScheduler() {
+        return this.taskScheduler;
+    }
+
 
     /**
      * プロパティ変更通知.<br/>
@@ -693,18 +762,42 @@ public class AppController implements PropertyChangeListener {
 
         if (Constant.PROPERTYNAME_THREADDONE.equals(event.getPropertyName())) {
             // スレッド終了イベント
-            Integer result = (Integer)event.getNewValue();
+            final Integer result = (Integer)event.getNewValue();
+            @SuppressWarnings("unchecked")
+            final FutureService<Integer> future = (event.getSource() instanceof FutureService) ?
+                    (FutureService<Integer>)event.getSource() : null;
 
             // スレッドタスクの終了通知を受け取り、メッセージボックスを表示する
-            finishThreadFuture(result);
+            // ワーカースレッドをメッセージボックスで止めない
+            if (SwingUtilities.isEventDispatchThread()) {
+                finishThreadFuture(future, result);
+            }
+            else {
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        finishThreadFuture(future, result);
+                    }
+                });
+            }
         }
     }
 
     /**
-     * スレッドタスクの終了状態をチェックする
+     * スレッドタスクの終了状態をチェックする.<br/>
+     * プロジェクトを変更するバックグラウンド処理のタスクが実行中、実行待ちでないかチェックする.
+     * 対話処理のタスクはバックグラウンド処理と並行して実行できる.
      * @return		true=スレッドタスク終了
      */
     public boolean isThreadTaskDone() {
+        return !this.taskScheduler.isRunning(TASK_PRIORITY.BACKGROUND);
+    }
+
+    /**
+     * プログレスダイアログに表示するスレッドタスクの終了状態をチェックする
+     * @return		true=スレッドタスク終了
+     */
+    public boolean isCurrentThreadTaskDone() {
         if (this.threadFuture == null) { return true; }
         return this.threadFuture.isDone();
     }
@@ -756,6 +849,8 @@ public class AppController implements PropertyChangeListener {
     	createProperties(clear);
         // 初期化を行う
         initialize();
+        // 前のプロジェクトのソースファイル登録を削除する
+        SourceFileRegistry.getInstance().clear();
     }
 
     /**
@@ -963,6 +1058,7 @@ public class AppController implements PropertyChangeListener {
         }
         this.mainframe.getPanelAnalysisView().clearProfilerInfo();
         this.mainframe.getPanelSourceView().clearBargraphData();
+        this.getLanguageTreeModel().setProfilerCostTree(null, null, null);
     }
 
     /**
@@ -0,0 +1,551 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.riken.kscope.service;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.tree.TreeNode;
+
+import jp.riken.kscope.Message;
+import jp.riken.kscope.common.PROFILERINFO_TYPE;
+import jp.riken.kscope.component.FilterTreeNode;
+import jp.riken.kscope.data.FILE_TYPE;
+import jp.riken.kscope.data.RequiredBFResult;
+import jp.riken.kscope.data.SourceFile;
+import jp.riken.kscope.language.Fortran;
+import jp.riken.kscope.language.Procedure;
+import jp.riken.kscope.model.ErrorInfoModel;
+import jp.riken.kscope.model.FileTreeModel;
+import jp.riken.kscope.model.LanguageTreeModel;
+import jp.riken.kscope.model.ModuleTreeModel;
+import jp.riken.kscope.model.ProfilerCallGraphModel;
+import jp.riken.kscope.model.ProfilerCostTableModel;
+import jp.riken.kscope.model.ProfilerEventCounterModel;
+import jp.riken.kscope.model.ProfilerTableBaseModel;
+import jp.riken.kscope.model.ProjectModel;
+import jp.riken.kscope.model.RequiredBFModel;
+import jp.riken.kscope.profiler.ProfilerInfo;
+import jp.riken.kscope.properties.ApplicationProperties;
+import jp.riken.kscope.properties.KeywordProperties;
+import jp.riken.kscope.properties.KscopeProperties;
+import jp.riken.kscope.properties.OperationProperties;
+import jp.riken.kscope.properties.ProfilerProperties;
+import jp.riken.kscope.properties.ProgramProperties;
+import jp.riken.kscope.properties.ProjectProperties;
+import jp.riken.kscope.properties.RemoteBuildProperties;
+import jp.riken.kscope.properties.RequiredBFProperties;
+import jp.riken.kscope.properties.SourceProperties;
+import jp.riken.kscope.properties.VariableMemoryProperties;
+import jp.riken.kscope.utils.JsonUtils;
+import jp.riken.kscope.xcodeml.XcodeMLParserStax;
+
+/**
+ * バッチ解析サービス.<br/>
+ * GUIを表示せずに、プロジェクトの開く、構造解析、要求Byte/FLOP算出、プロファイラデータの読込を行い、
+ * 構造ツリー、モジュールツリー、要求Byte/FLOP、プロファイラコスト情報をJSON又はCSVファイルに出力する.<br/>
+ * 各処理はGUIと同じサービス、モデルを使用する.
+ * @author RIKEN
+ */
+public class BatchService extends BaseService {
+
+    /** 出力形式:JSON */
+    public static final String FORMAT_JSON = "json";
+    /** 出力形式:CSV */
+    public static final String FORMAT_CSV = "csv";
+
+    /** プロジェクトフォルダ */
+    private File projectFolder;
+    /** XcodeMLファイル、検索フォルダリスト */
+    private List<File> xmlFiles = new ArrayList<File>();
+    /** プロファイラデータファイル、フォルダリスト */
+    private List<File> profilerFiles = new ArrayList<File>();
+    /** 出力フォルダ */
+    private File outputFolder = new File(".");
+    /** 出力形式 */
+    private String outputFormat = FORMAT_JSON;
+    /** true=データベースを再作成する */
+    private boolean build = false;
+    /** パースワーカースレッド数(0以下はアプリケーションプロパティの設定値) */
+    private int threadCount = 0;
+
+    /** プロジェクトモデル */
+    private ProjectModel modelProject;
+    /** フォートランデータベース */
+    private Fortran fortran;
+    /** 構造ツリーモデル */
+    private LanguageTreeModel modelLanguage;
+    /** モジュールツリーモデル */
+    private ModuleTreeModel modelModule;
+    /** 要求Byte/FLOPモデル */
+    private RequiredBFModel modelRequiredBF;
+    /** プロファイラモデル */
+    private ProfilerTableBaseModel[] modelProfilers;
+    /** 出力ファイルリスト */
+    private List<File> outputFiles = new ArrayList<File>();
+
+    /** プロジェクトプロパティ */
+    private ProjectProperties propertiesProject;
+    /** ソースビュー設定 */
+    private SourceProperties propertiesSource;
+    /** キーワードプロパティ */
+    private KeywordProperties propertiesKeyword;
+    /** 外部ツールプロパティ */
+    private ProgramProperties propertiesProgram;
+    /** 演算カウントプロパティ */
+    private OperationProperties propertiesOperand;
+    /** プロファイラプロパティ */
+    private ProfilerProperties propertiesProfiler;
+    /** 要求Byte/FLOP設定プロパティ */
+    private RequiredBFProperties propertiesMemory;
+    /** 変数アクセス先メモリ設定 */
+    private VariableMemoryProperties propertiesVariable;
+    /** リモートビルドプロパティ */
+    private RemoteBuildProperties propertiesRemoteBuild;
+
+    /**
+     * コンストラクタ
+     */
+    public BatchService() {
+        super(new ErrorInfoModel());
+    }
+
+    /**
+     * バッチ解析を実行する.
+     * @return		true=出力完了
+     * @throws Exception		プロパティ読込エラー、プロジェクトオープンエラー
+     */
+    public boolean execute() throws Exception {
+        // プロパティ設定
+        createProperties();
+
+        // プロジェクトを開く
+        this.modelProject = new ProjectModel();
+        if (this.projectFolder != null) {
+            this.modelProject.setProjectFolder(this.projectFolder);
+            File projectFile = new File(this.projectFolder, KscopeProperties.PROJECT_FILE);
+            if (projectFile.exists()) {
+                openProject();
+            }
+        }
+
+        // データベースを作成、読み込む
+        if (!createLanguage()) {
+            return false;
+        }
+
+        // 要求Byte/FLOPを算出する
+        calcRequiredBF();
+
+        // プロファイラデータを読み込む
+        if (this.profilerFiles.size() > 0) {
+            loadProfiler();
+        }
+
+        // 結果を出力する
+        return writeResults();
+    }
+
+    /**
+     * プロパティ設定を生成する.
+     * @throws Exception		プロパティ読込エラー
+     */
+    private void createProperties() throws Exception {
+        this.propertiesProject = new ProjectProperties();
+        this.propertiesSource = new SourceProperties();
+        this.propertiesKeyword = new KeywordProperties();
+        this.propertiesProgram = new ProgramProperties();
+        this.propertiesOperand = new OperationProperties();
+        this.propertiesProfiler = new ProfilerProperties();
+        // バーグラフの色設定
+        PROFILERINFO_TYPE.setProfilerProperties(this.propertiesProfiler);
+        this.propertiesMemory = new RequiredBFProperties();
+        this.propertiesMemory.setDefaultProperties(new RequiredBFProperties());
+        this.propertiesVariable = new VariableMemoryProperties(this.propertiesMemory);
+        this.propertiesRemoteBuild = new RemoteBuildProperties();
+        if (this.threadCount <= 0) {
+            this.threadCount = new ApplicationProperties().getParseThreadCount();
+        }
+    }
+
+    /**
+     * プロジェクトを開く.
+     * @throws Exception		プロジェクトオープンエラー
+     */
+    private void openProject() throws Exception {
+        ProjectService service = new ProjectService(this.modelProject);
+        service.setPropertiesKeyword(this.propertiesKeyword);
+        service.setPropertiesExtension(this.propertiesProgram);
+        service.setPropertiesOperand(this.propertiesOperand);
+        service.setPropertiesSource(this.propertiesSource);
+        service.setPropertiesProfiler(this.propertiesProfiler);
+        service.setPropertiesProject(this.propertiesProject);
+        service.setPropertiesMemory(this.propertiesMemory);
+        service.setRBproperties(this.propertiesRemoteBuild);
+        service.setErrorInfoModel(this.getErrorInfoModel());
+
+        service.openProject(this.projectFolder);
+        // プロジェクトフォルダは起動引数のフォルダとする
+        this.modelProject.setProjectFolder(this.projectFolder);
+    }
+
+    /**
+     * データベースを作成する.<br/>
+     * プロジェクトにデータベースが存在し、再作成しない場合はデータベースを読み込む.
+     * それ以外はXcodeMLファイルを構造解析する.
+     * @return		true=作成完了
+     */
+    private boolean createLanguage() {
+        this.modelLanguage = new LanguageTreeModel();
+        this.modelModule = new ModuleTreeModel();
+
+        File settingsFolder = null;
+        if (this.projectFolder != null) {
+            settingsFolder = new File(this.projectFolder, KscopeProperties.SETTINGS_FOLDER);
+        }
+        SourceFile[] files = getXmlSourceFiles();
+
+        LanguageService service = new LanguageService(files, new Fortran(), new XcodeMLParserStax());
+        service.setErrorInfoModel(this.getErrorInfoModel());
+        FileTreeModel modelFile = new FileTreeModel();
+        modelFile.setProjectFolder(this.projectFolder);
+        FileTreeModel modelXml = new FileTreeModel();
+        modelXml.setProjectFolder(this.projectFolder);
+        service.setSourceTreeModel(modelFile);
+        service.setXmlTreeModel(modelXml);
+        service.setLanguageTreeModel(this.modelLanguage);
+        service.setModuleTreeModel(this.modelModule);
+        service.setParseThreadCount(this.threadCount);
+        service.setProjectFolder(this.projectFolder);
+
+        if (!this.build && settingsFolder != null
+            && new File(settingsFolder, KscopeProperties.DATABASE_FILE).exists()) {
+            // データベースの読込
+            try {
+                service.readLanguage(settingsFolder);
+            } catch (Exception ex) {
+                // エラー情報は追加済み
+            }
+        }
+        else {
+            if (files == null || files.length <= 0) {
+                this.addErrorInfo(Message.getString("batchservice.error.noxml")); //構造解析するXcodeMLファイルがありません。
+                return false;
+            }
+            // 構造解析
+            service.parseSourceFile();
+        }
+        this.fortran = service.getFortranLanguage();
+        if (this.fortran == null) {
+            this.addErrorInfo(Message.getString("batchservice.error.database")); //データベースを作成できませんでした。
+            return false;
+        }
+
+        // アクセス先メモリの設定している変数の取得
+        AnalysisMemoryService serviceMemory = new AnalysisMemoryService();
+        serviceMemory.setPropertiesVariableMemory(this.propertiesVariable);
+        serviceMemory.createVariableMemoryProperties(this.fortran);
+
+        return true;
+    }
+
+    /**
+     * 構造解析するXcodeMLファイルを取得する.<br/>
+     * XcodeMLファイル、検索フォルダが指定されている場合は、指定ファイル、フォルダ配下のXcodeMLファイルとする.
+     * それ以外はプロジェクトの選択XcodeMLファイルとする.
+     * @return		XcodeMLファイルリスト
+     */
+    private SourceFile[] getXmlSourceFiles() {
+        if (this.xmlFiles.size() > 0) {
+            ProjectService service = new ProjectService(this.modelProject);
+            return service.getSourceFiles(this.xmlFiles.toArray(new File[0]), FILE_TYPE.XCODEML_XML, true);
+        }
+        List<SourceFile> listSource = this.modelProject.getListSelectedFile();
+        if (listSource == null) return null;
+        List<SourceFile> list = new ArrayList<SourceFile>();
+        for (SourceFile file : listSource) {
+            if (FILE_TYPE.isXcodemlFile(file.getFile())) {
+                list.add(file);
+            }
+        }
+        return list.toArray(new SourceFile[0]);
+    }
+
+    /**
+     * 構造ツリーの手続きの要求Byte/FLOPを算出する.
+     */
+    private void calcRequiredBF() {
+        this.modelRequiredBF = new RequiredBFModel();
+        this.modelRequiredBF.setModelLanguageTree(this.modelLanguage);
+
+        AnalysisMemoryService service = new AnalysisMemoryService();
+        service.setProperitiesRequiredBF(this.propertiesMemory);
+        service.setPropertiesOperand(this.propertiesOperand);
+        service.setModelRequiredBF(this.modelRequiredBF);
+        service.setPropertiesVariableMemory(this.propertiesVariable);
+
+        // 構造ツリーの手続き毎に算出する
+        Map<Procedure, Boolean> checked = new IdentityHashMap<Procedure, Boolean>();
+        List<RequiredBFResult> results = new ArrayList<RequiredBFResult>();
+        searchProcedure(this.modelLanguage.getRootNode(), service, checked, results);
+        if (results.size() <= 0) return;
+        service.setAnalysisPanel(results.toArray(new RequiredBFResult[0]));
+    }
+
+    /**
+     * 構造ツリーから手続きを検索して要求Byte/FLOPを算出する.
+     * @param parent		親ノード
+     * @param service		要求Byte/FLOP算出サービス
+     * @param checked		算出済み手続き
+     * @param results		算出結果リスト
+     */
+    private void searchProcedure(FilterTreeNode parent, AnalysisMemoryService service,
+                    Map<Procedure, Boolean> checked, List<RequiredBFResult> results) {
+        if (parent.getUserObject() instanceof Procedure) {
+            Procedure proc = (Procedure) parent.getUserObject();
+            if (checked.put(proc, Boolean.TRUE) == null) {
+                results.add(service.calcRequiredBF(proc));
+            }
+        }
+        int count = parent.getChildCount();
+        for (int i = 0; i < count; i++) {
+            searchProcedure(parent.getChildAt(i), service, checked, results);
+        }
+    }
+
+    /**
+     * プロファイラデータを読み込む.
+     */
+    private void loadProfiler() {
+        this.modelProfilers = new ProfilerTableBaseModel[] {
+            new ProfilerCostTableModel(PROFILERINFO_TYPE.COST_PROCEDURE),
+            new ProfilerCostTableModel(PROFILERINFO_TYPE.COST_LOOP),
+            new ProfilerCostTableModel(PROFILERINFO_TYPE.COST_LINE),
+            new ProfilerCallGraphModel(PROFILERINFO_TYPE.CALLGRAPH),
+            new ProfilerEventCounterModel(PROFILERINFO_TYPE.EVENTCOUNTER_CACHE),
+            new ProfilerEventCounterModel(PROFILERINFO_TYPE.EVENTCOUNTER_INSTRUCTIONS),
+            new ProfilerEventCounterModel(PROFILERINFO_TYPE.EVENTCOUNTER_MEM_ACCESS),
+            new ProfilerEventCounterModel(PROFILERINFO_TYPE.EVENTCOUNTER_PERFORMANCE),
+            new ProfilerEventCounterModel(PROFILERINFO_TYPE.EVENTCOUNTER_STATISTICS)
+        };
+        for (ProfilerTableBaseModel model : this.modelProfilers) {
+            model.setProfilerProperties(this.propertiesProfiler);
+        }
+
+        ProfilerService service = new ProfilerService();
+        service.setErrorInfoModel(this.getErrorInfoModel());
+        service.setProfilerModels(this.modelProfilers);
+        List<SourceFile> listSource = this.fortran.getProcedureFileList();
+        if (listSource != null) {
+            service.setSourceFiles(listSource.toArray(new SourceFile[0]));
+        }
+        service.setProfilerInfo(new ProfilerInfo());
+        service.setFortranLanguage(this.fortran);
+        service.setPropertiesProfiler(this.propertiesProfiler);
+        service.loadProfilerDataFiles(this.profilerFiles.toArray(new File[0]));
+    }
+
+    /**
+     * 解析結果を出力フォルダに出力する.
+     * @return		true=出力完了
+     */
+    private boolean writeResults() {
+        if (!this.outputFolder.exists() && !this.outputFolder.mkdirs()) {
+            this.addErrorInfo(Message.getString("batchservice.error.output", this.outputFolder.getPath())); //出力フォルダを作成できません。
+            return false;
+        }
+        boolean json = FORMAT_JSON.equalsIgnoreCase(this.outputFormat);
+        String ext = json ? "." + FORMAT_JSON : "." + FORMAT_CSV;
+
+        try {
+            // 構造ツリー
+            File file = new File(this.outputFolder, "calltree" + ext);
+            if (json) {
+                writeText(file, JsonUtils.toJson(this.modelLanguage.getRootNode()));
+            } else {
+                this.modelLanguage.writeFile(file);
+            }
+            this.outputFiles.add(file);
+
+            // モジュールツリー
+            TreeNode root = this.modelModule.getRootNode();
+            if (root != null && root.getChildCount() > 0) {
+                file = new File(this.outputFolder, "moduletree" + ext);
+                if (json) {
+                    writeText(file, JsonUtils.toJson(root));
+                } else {
+                    this.modelModule.writeFile(file);
+                }
+                this.outputFiles.add(file);
+            }
+
+            // 要求Byte/FLOP
+            if (!this.modelRequiredBF.isEmpty()) {
+                file = new File(this.outputFolder, "requiredbf" + ext);
+                if (json) {
+                    writeText(file, JsonUtils.toJson(this.modelRequiredBF.getTableModel(), null));
+                } else {
+                    this.modelRequiredBF.writeFile(file);
+                }
+                this.outputFiles.add(file);
+            }
+
+            // プロファイラ
+            if (this.modelProfilers != null) {
+                for (ProfilerTableBaseModel model : this.modelProfilers) {
+                    if (model.isEmpty()) continue;
+                    file = new File(this.outputFolder,
+                            "profiler_" + model.getEnumInfo().name().toLowerCase() + ext);
+                    if (json) {
+                        writeText(file, toJson(model));
+                    } else {
+                        model.writeFile(file);
+                    }
+                    this.outputFiles.add(file);
+                }
+            }
+
+            // エラー情報
+            ErrorInfoModel modelError = this.getErrorInfoModel();
+            if (!modelError.isEmpty()) {
+                file = new File(this.outputFolder, "errors" + ext);
+                if (json) {
+                    writeText(file, JsonUtils.toJson(modelError.getTableModel(), null));
+                } else {
+                    modelError.writeFile(file);
+                }
+                this.outputFiles.add(file);
+            }
+        } catch (IOException ex) {
+            this.addErrorInfo(ex);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * プロファイラモデルをJSON文字列に変換する.<br/>
+     * [{"key":サブタイトル, "table":テーブル}]とする.
+     * @param model		プロファイラモデル
+     * @return		JSON文字列
+     */
+    private String toJson(ProfilerTableBaseModel model) {
+        StringBuilder buf = new StringBuilder();
+        boolean[] visibled = model.getVisibledColumns();
+        buf.append("[");
+        for (int i = 0; i < model.getInfoMapCount(); i++) {
+            if (i > 0) buf.append(",");
+            buf.append("\n{\"key\": ");
+            buf.append(JsonUtils.escapeJson(model.getSubTitle(i)));
+            buf.append(",\n \"table\": ");
+            buf.append(JsonUtils.toJson(model.getInfoTableModel(i), visibled).trim());
+            buf.append("}");
+        }
+        buf.append("\n]\n");
+        return buf.toString();
+    }
+
+    /**
+     * テキストをUTF-8でファイル出力する.
+     * @param file		出力ファイル
+     * @param text		出力テキスト
+     * @throws IOException		出力エラー
+     */
+    private void writeText(File file, String text) throws IOException {
+        PrintWriter pw = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file), "UTF-8")));
+        try {
+            pw.print(text);
+        } finally {
+            pw.close();
+        }
+    }
+
+    /**
+     * 出力ファイルリストを取得する.
+     * @return		出力ファイルリスト
+     */
+    public List<File> getOutputFiles() {
+        return this.outputFiles;
+    }
+
+    /**
+     * プロジェクトフォルダを設定する.
+     * @param folder		プロジェクトフォルダ
+     */
+    public void setProjectFolder(File folder) {
+        this.projectFolder = folder;
+    }
+
+    /**
+     * XcodeMLファイル、検索フォルダを追加する.
+     * @param file		XcodeMLファイル、検索フォルダ
+     */
+    public void addXmlFile(File file) {
+        this.xmlFiles.add(file);
+    }
+
+    /**
+     * プロファイラデータファイル、フォルダを追加する.
+     * @param file		プロファイラデータファイル、フォルダ
+     */
+    public void addProfilerFile(File file) {
+        this.profilerFiles.add(file);
+    }
+
+    /**
+     * 出力フォルダを設定する.
+     * @param folder		出力フォルダ
+     */
+    public void setOutputFolder(File folder) {
+        this.outputFolder = folder;
+    }
+
+    /**
+     * 出力形式を設定する.
+     * @param format		出力形式(json, csv)
+     */
+    public void setOutputFormat(String format) {
+        this.outputFormat = format;
+    }
+
+    /**
+     * データベースの再作成を設定する.
+     * @param build		true=データベースを再作成する
+     */
+    public void setBuild(boolean build) {
+        this.build = build;
+    }
+
+    /**
+     * パースワーカースレッド数を設定する.
+     * @param count		パースワーカースレッド数
+     */
+    public void setThreadCount(int count) {
+        this.threadCount = count;
+    }
+}
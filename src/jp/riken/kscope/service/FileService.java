@@ -29,9 +29,10 @@ import java.util.Calendar;
 import jp.riken.kscope.Message;
 import jp.riken.kscope.data.CodeLine;
 import jp.riken.kscope.data.SourceFile;
+import jp.riken.kscope.data.SourceFileRegistry;
+import jp.riken.kscope.data.SourceLines;
 import jp.riken.kscope.model.ErrorInfoModel;
 import jp.riken.kscope.model.PropertiesTableModel;
-import jp.riken.kscope.utils.TextFileReader;
 
 
 /**
@@ -210,16 +211,15 @@ public class FileService extends BaseService {
         }
         ArrayList<CodeLine> list = new ArrayList<CodeLine>();
         try {
-            TextFileReader reader = new TextFileReader(readfile);
-            String line;
-            int line_no = 0;
-            while ((line = reader.readLine()) != null) {
-                line_no++;
+            // 行テキストを登録し、コード行は行テキストからソースコード文を取得する
+            SourceLines lines = new SourceLines(readfile, null);
+            SourceFileRegistry.getInstance().putLines(file, lines);
+            for (int line_no = 1; line_no <= lines.getLineCount(); line_no++) {
                 // コードラインの生成、追加を行う
-                list.add(new CodeLine(file, line, line_no, file.getPath()));
+                list.add(CodeLine.createSourceLine(file, line_no, file.getPath()));
             }
             // 文字コードをセットする
-            this.charset = reader.getCharset();
+            this.charset = lines.getCharset();
 
         } catch (Exception ex) {
             this.addErrorInfo(ex);
@@ -23,9 +23,11 @@ import java.beans.PropertyChangeSupport;
 import java.lang.Integer;
 
 import jp.riken.kscope.common.Constant;
+import jp.riken.kscope.common.TASK_PRIORITY;
 
 /**
- * スレッドタスクサービスクラス
+ * スレッドタスクサービスクラス.<br/>
+ * タスクスケジューラで実行する場合は、タスク名、優先度、実行中の進捗状況を保持する.
  * @author RIKEN
  * @param <Integer>		スレッド終了コード
  */
@@ -36,6 +38,18 @@ public class FutureService<Integer> extends FutureTask<Integer> {
     private PropertyChangeSupport threadEvent;
     /** スレッド終了メッセージ */
     private String message;
+    /** タスク名 */
+    private String taskName;
+    /** タスク優先度 */
+    private TASK_PRIORITY priority = TASK_PRIORITY.BACKGROUND;
+    /** 実行開始フラグ */
+    private volatile boolean started = false;
+    /** 進捗メッセージ */
+    private volatile String progressMessage;
+    /** 進捗値 */
+    private volatile int progressValue = -1;
+    /** 進捗最大値 */
+    private volatile int progressMax = -1;
 
     /**
      * コンストラクタ
@@ -120,4 +134,95 @@ public class FutureService<Integer> extends FutureTask<Integer> {
 	public void setMessage(String message) {
 		this.message = message;
 	}
+
+	/**
+	 * タスク名を取得する
+	 * @return タスク名
+	 */
+	public String getTaskName() {
+		return taskName;
+	}
+
+	/**
+	 * タスク名を設定する.
+	 * @param taskName タスク名
+	 */
+	public void setTaskName(String taskName) {
+		this.taskName = taskName;
+	}
+
+	/**
+	 * タスク優先度を取得する
+	 * @return タスク優先度
+	 */
+	public TASK_PRIORITY getPriority() {
+		return priority;
+	}
+
+	/**
+	 * タスク優先度を設定する.
+	 * @param priority タスク優先度
+	 */
+	public void setPriority(TASK_PRIORITY priority) {
+		this.priority = priority;
+	}
+
+	/**
+	 * タスクが実行開始済みであるかチェックする.
+	 * @return true=実行開始済み/false=実行待ち
+	 */
+	public boolean isStarted() {
+		return started;
+	}
+
+	/**
+	 * スレッド実行を行う.
+	 */
+	@Override
+	public void run() {
+		this.started = true;
+		super.run();
+	}
+
+	/**
+	 * 進捗メッセージを取得する
+	 * @return 進捗メッセージ
+	 */
+	public String getProgressMessage() {
+		return progressMessage;
+	}
+
+	/**
+	 * 進捗メッセージを設定する.
+	 * @param message 進捗メッセージ
+	 */
+	public void setProgressMessage(String message) {
+		this.progressMessage = message;
+	}
+
+	/**
+	 * 進捗値を取得する
+	 * @return 進捗値(-1=進捗値なし)
+	 */
+	public int getProgressValue() {
+		return progressValue;
+	}
+
+	/**
+	 * 進捗最大値を取得する
+	 * @return 進捗最大値(-1=進捗値なし)
+	 */
+	public int getProgressMax() {
+		return progressMax;
+	}
+
+	/**
+	 * 進捗値を設定する.
+	 * @param value 進捗値
+	 * @param max 進捗最大値(-1=進捗値なし)
+	 */
+	public void setProgress(int value, int max) {
+		this.progressValue = value;
+		this.progressMax = max;
+	}
 }
@@ -23,12 +23,11 @@ import java.util.Map;
 import java.util.Set;
 
 import jp.riken.kscope.data.CodeLine;
-import jp.riken.kscope.data.SourceFile;
 import jp.riken.kscope.language.Block;
-import jp.riken.kscope.language.Condition;
 import jp.riken.kscope.language.ExecutableBody;
 import jp.riken.kscope.language.Fortran;
 import jp.riken.kscope.language.IBlock;
+import jp.riken.kscope.language.LineIndex;
 import jp.riken.kscope.language.Module;
 import jp.riken.kscope.language.Procedure;
 import jp.riken.kscope.language.ProcedureUsage;
@@ -75,20 +74,15 @@ public class LanguageSearcher {
         if (this.searchCode == null) return null;
         if (this.searchCode.getSourceFile() == null) return null;
         if (this.fortranDb == null) return null;
-        Map<String, Module> modules = this.fortranDb.getModules();
-        if (modules == null || modules.size() <= 0) {
-            return null;
-        }
 
-        // モジュール探索を行う
-        Set<String> keySet = modules.keySet();
-        for (String key : keySet) {
-            Module module = modules.get(key);
-            IBlock block = selectCodeLine(module);
-            if (block != null) return block;
-        }
+        // 行番号索引から開始行が一致するモジュール、副プログラムを検索する
+        LineIndex index = this.fortranDb.getLineIndex();
+        IBlock block = index.getStartUnit(this.searchCode);
+        if (block != null) return block;
 
-        return null;
+        // 検索コード行を含む手続きの処理ブロックを検索する
+        Procedure procedure = index.getProcedure(this.searchCode);
+        return index.getStartBlock(procedure, this.searchCode);
     }
 
     /**
@@ -235,195 +229,4 @@ public class LanguageSearcher {
         if (list.size() <= 0) return null;
         return list.toArray(new IBlock[0]);
     }
-
-    /**
-     * モジュールから検索コード行と一致するブロックを検索する。
-     * @param module		検索モジュール
-     * @return			検索結果ブロック
-     */
-    private IBlock selectCodeLine(Module module) {
-        if (this.searchCode == null) return null;
-        if (this.fortranDb == null) return null;
-        if (module == null) return null;
-
-        // 検索ブロックが検索コード行と一致するかチェックする
-        if (isMatchCodeLine(module)) return module;
-
-        // 副プログラム単位.
-        Procedure[] childrens = module.get_children();
-        if (childrens != null) {
-            for (Procedure children : childrens) {
-                IBlock block = selectCodeLine(children);
-                if (block != null) return block;
-            }
-        }
-
-        return null;
-    }
-
-    /**
-     * 手続きから検索コード行と一致するブロックを検索する。
-     * @param procedure		検索プロシージャ
-     * @return			検索結果ブロック
-     */
-    private IBlock selectCodeLine(Procedure procedure) {
-        if (this.searchCode == null) return null;
-        if (this.fortranDb == null) return null;
-        if (procedure == null) return null;
-
-        // 検索ブロックが検索コード行と一致するかチェックする
-        if (isMatchCodeLine(procedure)) return procedure;
-        // 検索ブロックが検索コード行の範囲であるかチェックする
-        if (!isBlockCodeLine(procedure)) return null;
-
-        // 副プログラム単位.
-        Procedure[] childrens = procedure.get_children();
-        if (childrens != null) {
-            for (Procedure children : childrens) {
-                IBlock block = selectCodeLine(children);
-                if (block != null) return block;
-            }
-        }
-
-        ExecutableBody body = procedure.getBody();
-        IBlock block = selectCodeLine(body);
-
-        return block;
-    }
-
-    /**
-     * 手続きから検索コード行と一致するブロックを検索する。
-     * @param body		検索処理ブロック
-     * @return			検索結果ブロック
-     */
-    private IBlock selectCodeLine(ExecutableBody body) {
-        if (this.searchCode == null) return null;
-        if (this.fortranDb == null) return null;
-        if (body == null) return null;
-
-        ArrayList<Block> list = body.getChildren();
-        if (list == null) return null;
-        for (Block children : list) {
-            IBlock block = null;
-            if (children instanceof Selection) {
-                block = selectCodeLine((Selection)children);
-            }
-            else {
-                block = selectCodeLine(children);
-            }
-
-            if (block != null) return block;
-        }
-        return null;
-    }
-
-
-    /**
-     * 手続きから検索コード行と一致するブロックを検索する。
-     * @param block		検索ブロック
-     * @return			検索結果ブロック
-     */
-    private IBlock selectCodeLine(Block block) {
-        if (this.searchCode == null) return null;
-        if (this.fortranDb == null) return null;
-        if (block == null) return null;
-
-        // 検索ブロックが検索コード行と一致するかチェックする
-        if (isMatchCodeLine(block)) return block;
-        // 検索ブロックが検索コード行の範囲であるかチェックする
-        if (!isBlockCodeLine(block)) return null;
-
-        ArrayList<Block> list = block.getChildren();
-        if (list != null) {
-            for (Block children : list) {
-                IBlock result = selectCodeLine(children);
-                if (result != null) return result;
-            }
-        }
-
-        return null;
-    }
-
-    /**
-     * 条件分岐文(IF, SELECT)と検索コード行が一致するかチェックする
-     * @param block		検索分岐ブロック
-     * @return			検索結果ブロック
-     */
-    private IBlock selectCodeLine(Selection block) {
-        if (this.searchCode == null) return null;
-        if (this.fortranDb == null) return null;
-        if (block == null) return null;
-
-        // 検索ブロックが検索コード行と一致するかチェックする
-        if (isMatchCodeLine(block)) return block;
-        // 検索ブロックが検索コード行の範囲であるかチェックする
-        if (!isBlockCodeLine(block)) return null;
-        // 条件文
-        List<Condition> list = block.getConditions();
-        if (list != null) {
-            for (Condition condition : list) {
-                IBlock result = selectCodeLine(condition);
-                if (result != null) return result;
-            }
-        }
-        // 子要素の検索を行う
-        return selectCodeLine((Block)block);
-    }
-
-    /**
-     * 検索ブロックが検索コード行の範囲であるかチェックする
-     * @param block		検索ブロック
-     * @return			true=ブロック範囲
-     */
-    private boolean isBlockCodeLine(IBlock block) {
-        if (this.searchCode == null) return false;
-        if (this.searchCode.getSourceFile() == null) return false;
-        if (block == null) return false;
-        CodeLine blockCode = block.getStartCodeLine();
-        if (blockCode == null) return false;
-
-        // 検索ファイルが一致しているか
-        SourceFile file = this.searchCode.getSourceFile();
-        if (!file.equals(blockCode.getSourceFile())) return false;
-
-        // 検索行番号がブロックの範囲内に存在するか？
-        int searchStartno = this.searchCode.getStartLine();
-        int searchEndno = this.searchCode.getEndLine();
-        int blockStartno = block.getStartCodeLine().getStartLine();
-        int blockEndno = block.getEndCodeLine().getEndLine();
-
-        if (blockStartno > searchEndno || searchStartno > blockEndno) {
-            return false;
-        }
-
-        return true;
-    }
-
-    /**
-     * 検索ブロックが検索コード行と一致するかチェックする
-     * @param block		検索ブロック
-     * @return			true=ブロック範囲
-     */
-    private boolean isMatchCodeLine(IBlock block) {
-        if (this.searchCode == null) return false;
-        if (this.searchCode.getSourceFile() == null) return false;
-        if (block == null) return false;
-        CodeLine blockCode = block.getStartCodeLine();
-        if (blockCode == null) return false;
-
-        // 検索ファイルが一致しているか
-        SourceFile file = this.searchCode.getSourceFile();
-        if (!file.equals(blockCode.getSourceFile())) return false;
-
-        // 検索行番号がブロックのと一致するか？
-        int searchStartno = this.searchCode.getStartLine();
-        //int searchEndno = this.searchCode.getEndLine();
-        int blockStartno = block.getStartCodeLine().getStartLine();
-        //int blockEndno = block.getEndCodeLine().getEndLine();
-
-        // 開始行が一致したら、一致したと見なす。
-        if (blockStartno != searchStartno) return false;
-
-        return true;
-    }
 }
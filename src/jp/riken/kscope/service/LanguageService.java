@@ -17,6 +17,7 @@
 package jp.riken.kscope.service;
 
 import java.beans.PropertyChangeListener;
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
@@ -38,6 +39,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -47,6 +55,8 @@ import javax.swing.tree.DefaultMutableTreeNode;
 import jp.riken.kscope.Application;
 import jp.riken.kscope.Message;
 import jp.riken.kscope.component.FilterTreeNode;
+import jp.riken.kscope.data.CodeLine;
+import jp.riken.kscope.data.ErrorInfo;
 import jp.riken.kscope.data.SourceFile;
 import jp.riken.kscope.exception.LanguageException;
 import jp.riken.kscope.information.InformationBase;
@@ -68,6 +78,7 @@ import jp.riken.kscope.language.Fortran;
 import jp.riken.kscope.language.GoTo;
 import jp.riken.kscope.language.IBlock;
 import jp.riken.kscope.language.IVariableType;
+import jp.riken.kscope.language.LanguageCompactor;
 import jp.riken.kscope.language.Module;
 import jp.riken.kscope.language.Pause;
 import jp.riken.kscope.language.Procedure;
@@ -92,8 +103,12 @@ import jp.riken.kscope.language.generic.IProcedureItem;
 import jp.riken.kscope.language.generic.ProcedureItem;
 import jp.riken.kscope.language.generic.ProcedureWithNameOnly;
 import jp.riken.kscope.language.generic.Procedures;
+import jp.riken.kscope.language.utils.LanguageDatabase;
+import jp.riken.kscope.language.utils.LanguageDatabaseReader;
+import jp.riken.kscope.language.utils.LanguageDatabaseWriter;
 import jp.riken.kscope.language.utils.LanguageVisitor;
 import jp.riken.kscope.language.utils.ValidateLanguage;
+import jp.riken.kscope.model.ErrorInfoModel;
 import jp.riken.kscope.model.FileTreeModel;
 import jp.riken.kscope.model.LanguageTreeModel;
 import jp.riken.kscope.model.ModuleTreeModel;
@@ -101,8 +116,12 @@ import jp.riken.kscope.model.PropertiesTableModel;
 import jp.riken.kscope.parser.IAnalyseParser;
 import jp.riken.kscope.properties.KscopeProperties;
 import jp.riken.kscope.utils.Logger;
+import jp.riken.kscope.utils.SourceGrepIndex;
 import jp.riken.kscope.utils.StringUtils;
 import jp.riken.kscope.utils.SwingUtils;
+import jp.riken.kscope.xcodeml.DbUpdater;
+import jp.riken.kscope.xcodeml.XcodeMLParseCache;
+import jp.riken.kscope.xcodeml.XcodeMLParserStax;
 
 
 /**
@@ -151,6 +170,18 @@ public class LanguageService extends BaseService {
     private int treeDepth = 2;
     /** データベースシリアライズストリーム */
     private volatile ObjectInputStream languageStream;
+    /** データベースファイル読込 */
+    private volatile LanguageDatabaseReader databaseReader;
+    /** パースワーカースレッド数:1=逐次パース */
+    private int parseThreadCount = 1;
+    /** パースワーカースレッドプール */
+    private volatile ExecutorService parseExecutor;
+    /** 概要パースを先行して構造ツリー、モジュールツリーを表示する */
+    private boolean outlineFirst = false;
+    /** パース結果キャッシュ(null=キャッシュしない) */
+    private XcodeMLParseCache parseCache;
+    /** make実行中のXMLファイル先行パース(null=先行パースしない) */
+    private ProjectMakePipeline makePipeline;
 
     /**
      * コンストラクタ.
@@ -250,45 +281,58 @@ public class LanguageService extends BaseService {
 
         try {
             ArrayList<SourceFile> sourceFileList = new ArrayList<SourceFile>();
-            for (SourceFile file : filelist) {
-                try {
-                    String filename = file.toString();
-                    Pattern pattern = Pattern.compile("^[^\\.].*$");
-                    Matcher matcher = pattern.matcher(filename);
-                    boolean b = matcher.matches();
-                    if (b) {
-                        Application.status.setMessageStatus(filename);
-
-                        // ソースファイルからファイルを読み込む
-                        fortranParser.readFile(file);
-
-                        // 読込コード行を構文解析する。
-                        fortranParser.parseFile(fortranDb);
-
-                        // オリジナルフォートランソースファイルの取得
-                        sourceFileList.add(fortranParser.getLanguageFile());
-
-                        // パースエラーの取得
-                        if (fortranParser.getErrorInfos() != null) {
-                        	this.addErrorInfos(fortranParser.getErrorInfos());
+            if ((this.parseThreadCount > 1 || this.parseCache != null || this.makePipeline != null)
+                && this.fortranParser instanceof XcodeMLParserStax) {
+                // ワーカースレッドで並列にパースする:キャッシュはファイル単位の部分データベースで行う
+                if (!parseSourceFileParallel(filelist, sourceFileList)) {
+                    return;
+                }
+            }
+            else {
+                // 概要パースを行い、ツリーを先行して表示する
+                if (this.outlineFirst && canPublishOutline()) {
+                    publishOutline(parseOutline(filelist));
+                }
+                for (SourceFile file : filelist) {
+                    try {
+                        String filename = file.toString();
+                        Pattern pattern = Pattern.compile("^[^\\.].*$");
+                        Matcher matcher = pattern.matcher(filename);
+                        boolean b = matcher.matches();
+                        if (b) {
+                            Application.status.setMessageStatus(filename);
+
+                            // ソースファイルからファイルを読み込む
+                            fortranParser.readFile(file);
+
+                            // 読込コード行を構文解析する。
+                            fortranParser.parseFile(fortranDb);
+
+                            // オリジナルフォートランソースファイルの取得
+                            sourceFileList.add(fortranParser.getLanguageFile());
+
+                            // パースエラーの取得
+                            if (fortranParser.getErrorInfos() != null) {
+                            	this.addErrorInfos(fortranParser.getErrorInfos());
+                            }
                         }
-                    }
-                } catch (LanguageException lang_ex) {
-                    Logger.error(lang_ex);
-                    Logger.error(lang_ex.getCodeInfo());
+                    } catch (LanguageException lang_ex) {
+                        Logger.error(lang_ex);
+                        Logger.error(lang_ex.getCodeInfo());
 
-                    // エラー箇所の情報をセットする
-                    this.addErrorInfo(lang_ex);
+                        // エラー箇所の情報をセットする
+                        this.addErrorInfo(lang_ex);
 
-                    // エラーメッセージ
-                    //String error_message = lang_ex.getMessage();
-                    //lang_ex.printStackTrace();
-                    //JOptionPane.showMessageDialog(null, error_message, "Analyse Error", JOptionPane.ERROR_MESSAGE);
-                }
+                        // エラーメッセージ
+                        //String error_message = lang_ex.getMessage();
+                        //lang_ex.printStackTrace();
+                        //JOptionPane.showMessageDialog(null, error_message, "Analyse Error", JOptionPane.ERROR_MESSAGE);
+                    }
 
-                // キャンセルチェック
-                if (this.isCancel()) {
-                    return;
+                    // キャンセルチェック
+                    if (this.isCancel()) {
+                        return;
+                    }
                 }
             }
 
@@ -325,6 +369,9 @@ public class LanguageService extends BaseService {
 	            }
             }
 
+            // 識別子、式の文字列を共有し、空のコレクションを解放する
+            compactLanguage(true);
+
             // ソースファイルリストの設定
             fortranDb.setSourceFileList(sourceFileList);
 
@@ -364,9 +411,309 @@ public class LanguageService extends BaseService {
 
             // エラー箇所の情報をセットする
             this.addErrorInfo(error_message);
+        } finally {
+            // 先行パースの終了
+            if (this.makePipeline != null) {
+                this.makePipeline.shutdown();
+            }
+        }
+    }
+
+
+    /**
+     * データベースを圧縮し、推定削減量をログ出力する.<br/>
+     * 識別子、式、コード行の文字列をプロジェクトの識別子テーブルで共有し、空のコレクションを共有の空コレクションに置き換える.
+     * @param trim		true=リストの余剰容量を解放する
+     */
+    private void compactLanguage(boolean trim) {
+        Application.status.setMessageStatus("compact database...");
+        LanguageCompactor ingest = this.fortranDb.getIngestCompactor();
+        if (ingest != null) {
+            Logger.info(ingest.getReport());
         }
+        LanguageCompactor compactor = new LanguageCompactor(trim ? "analysis" : "open", this.fortranDb.getIdentifierTable());
+        compactor.setTrimLists(trim);
+        compactor.compact(this.fortranDb);
+        Logger.info(compactor.getReport());
     }
 
+    /**
+     * XMLファイルをワーカースレッドで並列にパースする.<br/>
+     * XMLファイル毎に部分データベースを構築し、ファイル順にフォートランデータベースへマージする.
+     * @param filelist				解析XMLファイルリスト
+     * @param sourceFileList		オリジナルフォートランソースファイルリスト
+     * @return		false=キャンセル
+     * @throws Exception			パースエラー
+     */
+    private boolean parseSourceFileParallel(List<SourceFile> filelist, List<SourceFile> sourceFileList) throws Exception {
+        final File baseFolder = this.projectFolder;
+        // ワーカースレッド毎のパーサ
+        final ThreadLocal<XcodeMLParserStax> parsers = new ThreadLocal<XcodeMLParserStax>() {
+            @Override
+            protected XcodeMLParserStax initialValue() {
+                XcodeMLParserStax parser = new XcodeMLParserStax();
+                parser.setBaseFolder(baseFolder);
+                return parser;
+            }
+        };
+        // ワーカースレッド毎の概要パーサ
+        final ThreadLocal<XcodeMLParserStax> outlineParsers = new ThreadLocal<XcodeMLParserStax>() {
+            @Override
+            protected XcodeMLParserStax initialValue() {
+                XcodeMLParserStax parser = new XcodeMLParserStax();
+                parser.setBaseFolder(baseFolder);
+                parser.setOutline(true);
+                return parser;
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(this.parseThreadCount, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "kscope-parser");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.parseExecutor = executor;
+
+        try {
+            List<SourceFile> targets = new ArrayList<SourceFile>();
+            List<Future<ParseResult>> futures = new ArrayList<Future<ParseResult>>();
+            Pattern pattern = Pattern.compile("^[^\\.].*$");
+            for (SourceFile file : filelist) {
+                if (!pattern.matcher(file.toString()).matches()) continue;
+                targets.add(file);
+            }
+            // 概要パースを詳細パースより先に実行する
+            List<Future<ParseResult>> outlines = new ArrayList<Future<ParseResult>>();
+            if (this.outlineFirst && canPublishOutline()) {
+                for (SourceFile file : targets) {
+                    outlines.add(executor.submit(createParseTask(file, outlineParsers)));
+                }
+            }
+            for (SourceFile file : targets) {
+                futures.add(executor.submit(createParseTask(file, parsers)));
+            }
+
+            // 詳細パースの実行中に概要データベースでツリーを先行して表示する
+            if (outlines.size() > 0) {
+                Fortran outline = new Fortran();
+                for (Future<ParseResult> future : outlines) {
+                    try {
+                        outline.mergeProgram(future.get().fortran);
+                    } catch (CancellationException ex) {
+                        return false;
+                    } catch (ExecutionException ex) {
+                        // パースエラーは詳細パースで登録する
+                        if (this.isCancel()) return false;
+                    }
+                }
+                publishOutline(outline);
+            }
+
+            // 逐次パースと同じファイル順で部分データベースをマージする
+            for (int i=0; i<futures.size(); i++) {
+                Application.status.setMessageStatus(targets.get(i).toString());
+                ParseResult result = null;
+                try {
+                    result = futures.get(i).get();
+                } catch (CancellationException ex) {
+                    return false;
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof InterruptedException && this.isCancel()) {
+                        return false;
+                    }
+                    if (cause instanceof Exception) {
+                        throw (Exception) cause;
+                    }
+                    throw ex;
+                }
+                mergeParseResult(result, sourceFileList);
+
+                // キャンセルチェック
+                if (this.isCancel()) {
+                    return false;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            this.parseExecutor = null;
+        }
+
+        return true;
+    }
+
+    /**
+     * XMLファイルのパースタスクを作成する.
+     * @param file			XMLファイル
+     * @param parsers		ワーカースレッド毎のパーサ
+     * @return		パースタスク
+     */
+    private Callable<ParseResult> createParseTask(final SourceFile file, final ThreadLocal<XcodeMLParserStax> parsers) {
+        return new Callable<ParseResult>() {
+            @Override
+            public ParseResult call() throws Exception {
+                if (isCancel()) {
+                    throw new InterruptedException();
+                }
+                XcodeMLParserStax parser = parsers.get();
+                parser.resetContext();
+
+                ParseResult result = new ParseResult();
+                // make実行中の先行パース結果を使用する
+                if (makePipeline != null && !parser.isOutline()) {
+                    ProjectMakePipeline.Result prefetch = makePipeline.take(file, projectFolder);
+                    if (prefetch != null) {
+                        result.fortran = prefetch.getFortran();
+                        result.languageFile = prefetch.getLanguageFile();
+                        result.errorInfos = prefetch.getErrorInfos();
+                        return result;
+                    }
+                }
+                // パース結果キャッシュから読み込む
+                XcodeMLParseCache cache = parser.isOutline() ? null : parseCache;
+                String key = null;
+                if (cache != null) {
+                    key = cache.getKey(file, projectFolder);
+                    XcodeMLParseCache.Entry entry = cache.load(key, file);
+                    if (entry != null) {
+                        result.fortran = entry.getFortran();
+                        result.languageFile = entry.getLanguageFile();
+                        return result;
+                    }
+                }
+
+                result.fortran = new Fortran();
+                // 識別子はプロジェクトの識別子テーブルで共有する
+                result.fortran.setIdentifierTable(fortranDb.getIdentifierTable());
+                try {
+                    // ソースファイルからファイルを読み込む
+                    parser.readFile(file);
+                    // 読込コード行を部分データベースに構文解析する。
+                    parser.parseFile(result.fortran);
+                    // オリジナルフォートランソースファイルの取得
+                    result.languageFile = parser.getLanguageFile();
+                    // パースエラーの取得
+                    result.errorInfos = parser.getErrorInfos();
+                } catch (LanguageException lang_ex) {
+                    result.exception = lang_ex;
+                }
+                // パースエラーのないパース結果をキャッシュする
+                if (cache != null && result.exception == null
+                    && (result.errorInfos == null || result.errorInfos.length <= 0)) {
+                    cache.store(key, result.fortran, result.languageFile);
+                }
+                return result;
+            }
+        };
+    }
+
+    /**
+     * 概要パースによるツリーの先行表示が可能であるかチェックする.
+     * @return		true=先行表示可能
+     */
+    private boolean canPublishOutline() {
+        if (!(this.fortranParser instanceof XcodeMLParserStax)) return false;
+        if (this.modelLanguage == null && this.modelModule == null) return false;
+        return true;
+    }
+
+    /**
+     * XMLファイルの概要パースを行う.<br/>
+     * 概要パースはプログラム単位、USE文、CALL文のみを解析した概要データベースを作成する.
+     * パースエラーは詳細パースで登録する.
+     * @param filelist		解析XMLファイルリスト
+     * @return		概要データベース
+     * @throws InterruptedException		キャンセル
+     */
+    private Fortran parseOutline(List<SourceFile> filelist) throws InterruptedException {
+        Application.status.setMessageStatus("parsing outline...");
+        XcodeMLParserStax parser = new XcodeMLParserStax();
+        parser.setBaseFolder(this.projectFolder);
+        parser.setOutline(true);
+        Fortran outline = new Fortran();
+        for (SourceFile file : filelist) {
+            if (this.isCancel()) {
+                throw new InterruptedException();
+            }
+            parser.resetContext();
+            try {
+                parser.readFile(file);
+                parser.parseFile(outline);
+            } catch (LanguageException lang_ex) {
+                // パースエラーは詳細パースで登録する
+            }
+        }
+        return outline;
+    }
+
+    /**
+     * 概要データベースで構造ツリー、モジュールツリーを表示する.<br/>
+     * 詳細パースの終了後、ツリーは同じツリーモデルに詳細データベースで再作成される.
+     * @param outline		概要データベース
+     */
+    private void publishOutline(Fortran outline) {
+        if (this.isCancel()) return;
+        outline.analyseDB();
+
+        LanguageService service = new LanguageService(outline);
+        service.setLanguageTreeModel(this.modelLanguage);
+        service.setModuleTreeModel(this.modelModule);
+        service.setSourceTreeModel(this.modelFile);
+        service.setXmlTreeModel(this.modelXml);
+        // 概要データベースのエラーは登録しない
+        service.setErrorInfoModel(new ErrorInfoModel());
+        service.setExplorerView();
+    }
+
+    /**
+     * ファイル単位のパース結果をフォートランデータベースにマージする.
+     * @param result				パース結果
+     * @param sourceFileList		オリジナルフォートランソースファイルリスト
+     */
+    private void mergeParseResult(ParseResult result, List<SourceFile> sourceFileList) {
+        // 部分データベースのマージ
+        List<ProgramUnit[]> duplicates = this.fortranDb.mergeProgram(result.fortran);
+        for (ProgramUnit[] duplicate : duplicates) {
+            if (duplicate[0].get_start() == null) continue;
+            CodeLine line = duplicate[0].get_start().getLineInfo();
+            String msg = DbUpdater.getDuplicateErrorMessage(duplicate[0].get_name(), duplicate[1]);
+            if (line == null || msg == null) continue;
+            this.addErrorInfo(line, msg);
+        }
+
+        if (result.exception != null) {
+            Logger.error(result.exception);
+            Logger.error(result.exception.getCodeInfo());
+
+            // エラー箇所の情報をセットする
+            this.addErrorInfo(result.exception);
+            return;
+        }
+
+        // オリジナルフォートランソースファイルの取得
+        sourceFileList.add(result.languageFile);
+
+        // パースエラーの取得
+        if (result.errorInfos != null) {
+            this.addErrorInfos(result.errorInfos);
+        }
+    }
+
+    /**
+     * ファイル単位のパース結果クラス.
+     */
+    private static class ParseResult {
+        /** 部分データベース */
+        private Fortran fortran;
+        /** オリジナルフォートランソースファイル */
+        private SourceFile languageFile;
+        /** パースエラー情報 */
+        private ErrorInfo[] errorInfos;
+        /** パース例外 */
+        private LanguageException exception;
+    }
 
     /**
      * スレッドの実行がキャンセルであるかチェックする
@@ -388,6 +735,10 @@ public class LanguageService extends BaseService {
         if (this.fortranDb != null) {
         	this.fortranDb.setCancel(true);
         }
+        ExecutorService executor = this.parseExecutor;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
         try {
 	        if (this.languageStream != null) {
 	        	this.languageStream.close();
@@ -395,6 +746,13 @@ public class LanguageService extends BaseService {
 	        }
 		} catch (IOException ex) {
 		}
+        try {
+	        if (this.databaseReader != null) {
+	        	this.databaseReader.close();
+	        	this.databaseReader = null;
+	        }
+		} catch (IOException ex) {
+		}
     }
 
     /**
@@ -1364,22 +1722,45 @@ public class LanguageService extends BaseService {
         		String error = Message.getString("languageservice.readlanguage.notexists.database.error", KscopeProperties.DATABASE_FILE);
         		throw new LanguageException(error);
         	}
-            // (2012/5/24) changed by Tomiyama
-            languageStream = new ObjectInputStream(new FileInputStream(folder.getPath() + File.separator + KscopeProperties.DATABASE_FILE));
-            if (debug) System.out.println("Reading file "+folder.getPath() + File.separator + KscopeProperties.DATABASE_FILE);
-            try {
-            	this.fortranDb = (Fortran) languageStream.readObject();
-            }
-            catch (java.io.StreamCorruptedException ex) {
-            	System.err.println("Error reading from "+folder.getPath() + File.separator + KscopeProperties.DATABASE_FILE);
-            	ex.printStackTrace();
+            File dbFile = new File(folder.getPath() + File.separator + KscopeProperties.DATABASE_FILE);
+            if (debug) System.out.println("Reading file "+dbFile.getPath());
+            if (LanguageDatabase.isDatabaseFile(dbFile)) {
+            	// バイナリフォーマットのデータベースファイル
+            	// 処理ブロックは最初にアクセスされた時に読み込み、宣言と呼び出しを対応付ける.
+            	databaseReader = new LanguageDatabaseReader(dbFile);
+            	try {
+            		this.fortranDb = databaseReader.openLanguage();
+            	}
+            	catch (IOException ex) {
+            		databaseReader.close();
+            		throw ex;
+            	}
+            	catch (ClassNotFoundException ex) {
+            		databaseReader.close();
+            		throw ex;
+            	}
+            	databaseReader = null;
             }
-            finally {
-            	languageStream.close();
+            else {
+	            // (2012/5/24) changed by Tomiyama
+	            // 旧形式(ObjectOutputStream)のデータベースファイル
+	            languageStream = new ObjectInputStream(new BufferedInputStream(new FileInputStream(dbFile)));
+	            try {
+	            	this.fortranDb = (Fortran) languageStream.readObject();
+	            }
+	            catch (java.io.StreamCorruptedException ex) {
+	            	System.err.println("Error reading from "+dbFile.getPath());
+	            	ex.printStackTrace();
+	            }
+	            finally {
+	            	languageStream.close();
+	            }
+	            languageStream = null;
+	            this.fortranDb.analyseDB();
             }
-            languageStream = null;
 
-            this.fortranDb.analyseDB();
+	        // 空のコレクションを解放する:データベースファイルのリストは余剰容量を持たない
+	        compactLanguage(false);
 
 	        // ソースファイルリストの設定を行う
 	    	List<SourceFile> listSrc = this.fortranDb.getProcedureFileList();
@@ -1452,12 +1833,21 @@ public class LanguageService extends BaseService {
          */
         try {
             // (2012/5/24) added by Tomiyama
-            ObjectOutputStream oos = new ObjectOutputStream(
-                    new FileOutputStream(folder.getPath() + File.separator + KscopeProperties.DATABASE_FILE));
-            oos.writeObject(this.fortranDb);
-            oos.close();
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
+            // モジュール単位のバイナリフォーマットで出力する
+            LanguageDatabaseWriter writer = new LanguageDatabaseWriter(this.fortranDb);
+            writer.write(new File(folder.getPath() + File.separator + KscopeProperties.DATABASE_FILE));
+
+            // ファイル検索索引を更新する
+            List<SourceFile> indexFiles = new ArrayList<SourceFile>();
+            if (this.fortranDb.getSourceFileList() != null) {
+                indexFiles.addAll(this.fortranDb.getSourceFileList());
+            }
+            if (this.files != null) {
+                indexFiles.addAll(Arrays.asList(this.files));
+            }
+            SourceGrepIndex index = SourceGrepIndex.open(folder);
+            index.update(indexFiles);
+            index.save();
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -1508,6 +1898,42 @@ public class LanguageService extends BaseService {
     	this.files = files;
     }
 
+    /**
+     * パースワーカースレッド数を設定する.
+     * @param count		パースワーカースレッド数:1以下=逐次パース
+     */
+    public void setParseThreadCount(int count) {
+        this.parseThreadCount = count;
+    }
+
+    /**
+     * 概要パースを先行するか設定する.<br/>
+     * 概要パースの結果で構造ツリー、モジュールツリーを先行して表示し、詳細パースの終了後に再作成する.
+     * 逐次パースの場合は概要パースの終了後に詳細パースを行うため、パース時間は概要パースの分だけ長くなる.
+     * @param outline		true=概要パースを先行する
+     */
+    public void setOutlineFirst(boolean outline) {
+        this.outlineFirst = outline;
+    }
+
+    /**
+     * パース結果キャッシュを設定する.<br/>
+     * XcodeMLパーサの場合、キャッシュ済みのXMLファイルはパースを行わずキャッシュから読み込む.
+     * @param cache		パース結果キャッシュ(null=キャッシュしない)
+     */
+    public void setParseCache(XcodeMLParseCache cache) {
+        this.parseCache = cache;
+    }
+
+    /**
+     * make実行中のXMLファイル先行パースを設定する.<br/>
+     * XcodeMLパーサの場合、先行パース済みのXMLファイルはパースを行わず先行パース結果を使用する.
+     * @param pipeline		make実行中のXMLファイル先行パース(null=先行パースしない)
+     */
+    public void setMakePipeline(ProjectMakePipeline pipeline) {
+        this.makePipeline = pipeline;
+    }
+
     /**
      * パーサーを設定する
      * @param parser		パーサー
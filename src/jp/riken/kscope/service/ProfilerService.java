@@ -28,6 +28,13 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.JOptionPane;
 
@@ -38,16 +45,20 @@ import jp.riken.kscope.data.SourceFile;
 import jp.riken.kscope.language.Expression;
 import jp.riken.kscope.language.Fortran;
 import jp.riken.kscope.language.IBlock;
+import jp.riken.kscope.language.LineIndex;
 import jp.riken.kscope.language.Procedure;
 import jp.riken.kscope.language.ProcedureUsage;
+import jp.riken.kscope.language.ProgramUnit;
 import jp.riken.kscope.model.ProfilerMeasureModel;
 import jp.riken.kscope.model.ProfilerTableBaseModel;
 import jp.riken.kscope.profiler.IProfilerReader;
+import jp.riken.kscope.profiler.ProfilerCostTree;
 import jp.riken.kscope.profiler.ProfilerDprofData;
 import jp.riken.kscope.profiler.ProfilerEprofData;
 import jp.riken.kscope.profiler.ProfilerInfo;
 import jp.riken.kscope.profiler.ProfilerMeasureInfo;
 import jp.riken.kscope.profiler.ProfilerMeasureInfo.MeasureData;
+import jp.riken.kscope.profiler.dprof.DProfAggregator;
 import jp.riken.kscope.profiler.dprof.DProfReader;
 import jp.riken.kscope.profiler.eprof.EProfReader;
 import jp.riken.kscope.profiler.utils.ProfilerReaderUtil;
@@ -71,6 +82,8 @@ public class ProfilerService extends BaseService {
     private String fileType;
     /** PAイベント指定値:EPRFのみ */
     private String paEventName;
+    /** 最後に集計したプロファイラコスト集計 */
+    private ProfilerCostTree costTree;
     /** フォートラン構文解析結果格納データベース. */
     private Fortran fortranDb;
     /** 詳細プロファイラ測定区間情報モデル */
@@ -121,6 +134,140 @@ public class ProfilerService extends BaseService {
         return;
     }
 
+    /**
+     * 複数のプロファイラデータを読み込む.<br/>
+     * フォルダが指定された場合は、フォルダ内のファイルを読込対象とする.
+     * DProfファイルが複数ある場合は、プロセス毎のプロファイラデータとしてワーカースレッドで並列に集計し、
+     * 1つのコスト情報としてモデルにセットする.
+     * DProfファイル以外のファイルはファイル毎に読み込む.
+     * @param files  		プロファイラデータファイル、フォルダリスト
+     */
+    public void loadProfilerDataFiles(File[] files) {
+        if (files == null || files.length <= 0) return;
+
+        // 読込ファイルリスト
+        List<File> targets = new ArrayList<File>();
+        for (File file : files) {
+            if (file.isDirectory()) {
+                File[] children = file.listFiles();
+                if (children == null) continue;
+                Arrays.sort(children);
+                for (File child : children) {
+                    if (child.isFile() && !child.isHidden()) {
+                        targets.add(child);
+                    }
+                }
+            }
+            else {
+                targets.add(file);
+            }
+        }
+
+        // DProfファイルとそれ以外のファイルに分ける
+        List<File> dprofFiles = new ArrayList<File>();
+        for (File file : targets) {
+            IProfilerReader reader = factoryProfilerReader(file);
+            if (reader instanceof DProfReader) {
+                dprofFiles.add(file);
+            }
+            else {
+                loadProfilerDataFile(file);
+            }
+        }
+        if (dprofFiles.size() == 1) {
+            loadProfilerDataFile(dprofFiles.get(0));
+        }
+        else if (dprofFiles.size() > 1) {
+            aggregateDprofFiles(dprofFiles);
+        }
+
+        return;
+    }
+
+    /**
+     * 複数プロセスのDProfファイルをワーカースレッドで並列に集計し、モデルにセットする.<br/>
+     * ワーカースレッド毎にDProfAggregatorで集計し、読込終了後にマージする.
+     * 読込エラーとなったファイルは集計から除外する.
+     * @param files		DProfファイルリスト
+     */
+    private void aggregateDprofFiles(final List<File> files) {
+        int threadCount = Math.min(Runtime.getRuntime().availableProcessors(), files.size());
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "kscope-profiler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        // 読込エラー:{ファイル, 例外}
+        final Map<File, Exception> errors = Collections.synchronizedMap(new HashMap<File, Exception>());
+        final AtomicInteger next = new AtomicInteger(0);
+        List<Future<DProfAggregator>> futures = new ArrayList<Future<DProfAggregator>>();
+        for (int i = 0; i < threadCount; i++) {
+            futures.add(executor.submit(new Callable<DProfAggregator>() {
+                @Override
+                public DProfAggregator call() {
+                    DProfAggregator aggregator = new DProfAggregator();
+                    int index;
+                    while ((index = next.getAndIncrement()) < files.size()) {
+                        File file = files.get(index);
+                        try {
+                            // 1プロセスずつ読み込み、集計後に読込データを破棄する
+                            IProfilerReader reader = factoryProfilerReader(file);
+                            reader.readFile(file);
+                            aggregator.add((DProfReader) reader);
+                        } catch (Exception ex) {
+                            errors.put(file, ex);
+                        }
+                    }
+                    return aggregator;
+                }
+            }));
+        }
+
+        DProfAggregator result = new DProfAggregator();
+        try {
+            for (Future<DProfAggregator> future : futures) {
+                result.merge(future.get());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            this.addErrorInfo(ex);
+            return;
+        } catch (ExecutionException ex) {
+            ex.printStackTrace();
+            this.addErrorInfo(ex);
+            return;
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (File file : files) {
+            Exception ex = errors.get(file);
+            if (ex == null) continue;
+            ex.printStackTrace();
+            this.addErrorInfo(file.getName() + " : " + ex.getMessage());
+        }
+        if (result.getProcessCount() <= 0) return;
+
+        // 集計キー:フォルダ名 [プロセス数]
+        File folder = files.get(0).getAbsoluteFile().getParentFile();
+        String name = (folder != null) ? folder.getName() : files.get(0).getName();
+        String key = Message.getString("profilerservice.aggregate.key", name, result.getProcessCount()); //%s [%dプロセス]
+
+        // コールグラフはスレッド毎のスタック情報である為、集計しない
+        setDprofModel(key,
+                      result.getCostInfoLine(),
+                      result.getCostInfoLoop(),
+                      result.getCostInfoProcedure(),
+                      null);
+        // ファイルタイプ
+        this.fileType = "DPRF";
+        this.paEventName = null;
+    }
+
     /**
      * Dprofコスト情報をモデルにセットする
      * @param reader		プロファイラリーダ
@@ -129,8 +276,27 @@ public class ProfilerService extends BaseService {
         // 読込ファイル名
         File file = reader.getProfFile();
         String key = file.getName();
-        // コスト情報:ラインを取得する
-        ProfilerDprofData[] costline = reader.getCostInfoLine();
+        setDprofModel(key,
+                      reader.getCostInfoLine(),
+                      reader.getCostInfoLoop(),
+                      reader.getCostInfoProcedure(),
+                      reader.getDprofCallGraphInfo());
+    }
+
+    /**
+     * Dprofコスト情報をモデルにセットする
+     * @param key				コスト情報キー
+     * @param costline			コスト情報:ライン
+     * @param costloop			コスト情報:ループ
+     * @param costprocedure		コスト情報:手続
+     * @param callgraph			コールグラフ情報
+     */
+    private void setDprofModel(String key,
+                               ProfilerDprofData[] costline,
+                               ProfilerDprofData[] costloop,
+                               ProfilerDprofData[] costprocedure,
+                               ProfilerDprofData[] callgraph) {
+        // コスト情報:ライン
         {
             // コスト情報タイプ、全体に対する割合をセットし、ソートを行う。
             PROFILERINFO_TYPE type = PROFILERINFO_TYPE.COST_LINE;
@@ -141,8 +307,7 @@ public class ProfilerService extends BaseService {
             }
         }
 
-        // コスト情報:ループを取得する
-        ProfilerDprofData[] costloop = reader.getCostInfoLoop();
+        // コスト情報:ループ
         {
             // コスト情報タイプ、全体に対する割合をセットし、ソートを行う。
             PROFILERINFO_TYPE type = PROFILERINFO_TYPE.COST_LOOP;
@@ -153,8 +318,7 @@ public class ProfilerService extends BaseService {
             }
         }
 
-        // コスト情報:手続を取得する
-        ProfilerDprofData[] costprocedure = reader.getCostInfoProcedure();
+        // コスト情報:手続
         {
             // コスト情報タイプ、全体に対する割合をセットし、ソートを行う。
             PROFILERINFO_TYPE type = PROFILERINFO_TYPE.COST_PROCEDURE;
@@ -165,8 +329,7 @@ public class ProfilerService extends BaseService {
             }
         }
 
-        // コールグラフ情報を取得する
-        ProfilerDprofData[] callgraph = reader.getDprofCallGraphInfo();
+        // コールグラフ情報
         {
             // コスト情報タイプ
             PROFILERINFO_TYPE type = PROFILERINFO_TYPE.CALLGRAPH;
@@ -183,6 +346,9 @@ public class ProfilerService extends BaseService {
             this.profilerInfo.putCostLoop(key, costloop);
             this.profilerInfo.putCostProcedure(key, costprocedure);
             this.profilerInfo.putCallgraph(key, callgraph);
+            // ブロックツリー、コールグラフに沿ってコストを集計する
+            this.costTree = new ProfilerCostTree(costline, costprocedure);
+            this.profilerInfo.putCostTree(key, this.costTree);
         }
 
         return;
@@ -254,11 +420,11 @@ public class ProfilerService extends BaseService {
             if (toolfile == null) continue;
             info.getCodeLine().setSourceFile(toolfile);
 
-            // コード行情報から、それが属するプログラム単位を探索し返す。
-            // IBlock block = searchCodeLine(code);
-            // if (block != null) {
-            //    info.setBlock(block);
-            // }
+            // コード行情報から、それが属するブロックを探索し関連付ける。
+            IBlock block = searchCodeLine(code, type);
+            if (block != null) {
+                info.setBlock(block);
+            }
         }
 
         if (type != PROFILERINFO_TYPE.CALLGRAPH) {
@@ -477,24 +643,51 @@ public class ProfilerService extends BaseService {
         return fileType;
     }
 
+    /**
+     * 最後に読み込んだDprofファイルのプロファイラコスト集計を取得する
+     * @return		プロファイラコスト集計(null=Dprofファイル未読込)
+     */
+    public ProfilerCostTree getCostTree() {
+        return this.costTree;
+    }
+
 
     /**
-     * コード行情報から、それが属するプログラム単位を探索し返す。
+     * コード行情報から、それが属するブロックを探索し返す。<br/>
+     * 手続コストは開始行の手続、ループコストは開始行のブロック、
+     * ラインコストはコード行を含む最も内側のブロックとする.
      *
      * @param line
      *            コード行情報
-     * @return プログラム単位。無ければnullを返す。
+     * @param type
+     *            コスト情報タイプ
+     * @return ブロック。無ければnullを返す。
      */
-    @SuppressWarnings("unused")
-    private IBlock searchCodeLine(CodeLine line) {
+    private IBlock searchCodeLine(CodeLine line, PROFILERINFO_TYPE type) {
         if (line == null) return null;
         if (this.fortranDb == null) return null;
         SourceFile file = line.getSourceFile();
         if (file == null) return null;
-        LanguageSearcher searcher = new LanguageSearcher(this.fortranDb, line);
-        IBlock block = searcher.searchCodeLine();
+        LineIndex index = this.fortranDb.getLineIndex();
+        Procedure procedure = index.getProcedure(line);
+        if (type == PROFILERINFO_TYPE.COST_PROCEDURE || type == PROFILERINFO_TYPE.CALLGRAPH) {
+            ProgramUnit unit = index.getStartUnit(line);
+            if (unit instanceof Procedure) {
+                return unit;
+            }
+            return procedure;
+        }
+        if (procedure == null) return null;
+        if (type == PROFILERINFO_TYPE.COST_LOOP) {
+            IBlock block = index.getStartBlock(procedure, line);
+            if (block != null) {
+                return block;
+            }
+        }
+        IBlock[] blocks = index.getBlocks(procedure, line);
+        if (blocks == null || blocks.length <= 0) return null;
 
-        return block;
+        return blocks[0];
     }
 
     /**
@@ -0,0 +1,317 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.riken.kscope.service;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import jp.riken.kscope.data.ErrorInfo;
+import jp.riken.kscope.data.FILE_TYPE;
+import jp.riken.kscope.data.SourceFile;
+import jp.riken.kscope.language.Fortran;
+import jp.riken.kscope.properties.ApplicationProperties;
+import jp.riken.kscope.utils.Logger;
+import jp.riken.kscope.xcodeml.XcodeMLParseCache;
+import jp.riken.kscope.xcodeml.XcodeMLParserStax;
+
+/**
+ * make実行中のXMLファイル先行パースクラス.<br/>
+ * makeコマンドの実行中にXMLファイル検索パスを監視して、書込みが終了したXMLファイルから
+ * ワーカースレッドで部分データベースにパースする.
+ * 書込みの終了は、変更通知の待機時間の間に変更がないことで判定する.
+ * パース結果は、パース時と更新日付、サイズが同じ場合のみ構造解析で使用する.
+ * 使用できないパース結果のXMLファイルは、構造解析で通常通りパースする.
+ * @author RIKEN
+ */
+public class ProjectMakePipeline implements PropertyChangeListener {
+
+    /** XMLファイル検索パスリスト */
+    private List<File> listSearchPath;
+    /** パーサの基準フォルダ */
+    private File baseFolder;
+    /** パースワーカースレッド数 */
+    private int threadCount;
+    /** 変更通知の待機時間(ミリ秒) */
+    private long delay;
+    /** パース結果キャッシュ */
+    private XcodeMLParseCache cache;
+    /** XMLファイル変更監視サービス */
+    private ProjectWatchService serviceWatch;
+    /** パースワーカースレッド */
+    private ExecutorService executor;
+    /** ワーカースレッド毎のパーサ */
+    private ThreadLocal<XcodeMLParserStax> parsers;
+    /** 先行パース結果:key=XMLファイル */
+    private Map<File, Prefetch> prefetches = new ConcurrentHashMap<File, Prefetch>();
+
+    /**
+     * make実行中の先行パースを作成する.<br/>
+     * アプリケーションプロパティで先行パースを行わない設定の場合はnullを返す.
+     * @param properties		アプリケーションプロパティ
+     * @param list				XMLファイル検索パスリスト
+     * @param baseFolder		パーサの基準フォルダ(構造解析のパーサと同じフォルダ)
+     * @return		先行パース(null=先行パースを行わない)
+     */
+    public static ProjectMakePipeline create(ApplicationProperties properties, List<File> list, File baseFolder) {
+        if (properties == null || !properties.isParseDuringMake()) return null;
+        if (list == null || list.size() <= 0) return null;
+        ProjectMakePipeline pipeline = new ProjectMakePipeline(list, baseFolder,
+                properties.getParseThreadCount(), properties.getProjectWatchDelay());
+        pipeline.cache = XcodeMLParseCache.open(properties.getParseCacheFolder(), properties.getParseCacheSize());
+        return pipeline;
+    }
+
+    /**
+     * コンストラクタ
+     * @param list				XMLファイル検索パスリスト
+     * @param baseFolder		パーサの基準フォルダ
+     * @param threadCount		パースワーカースレッド数
+     * @param delay				変更通知の待機時間(ミリ秒)
+     */
+    public ProjectMakePipeline(List<File> list, File baseFolder, int threadCount, long delay) {
+        this.listSearchPath = list;
+        this.baseFolder = baseFolder;
+        this.threadCount = threadCount > 0 ? threadCount : 1;
+        this.delay = delay;
+    }
+
+    /**
+     * XMLファイルの監視と先行パースを開始する.<br/>
+     * makeコマンドの実行前に呼び出す.
+     * @throws IOException		監視フォルダの登録エラー
+     */
+    public synchronized void start() throws IOException {
+        if (this.serviceWatch != null) return;
+        final File folder = this.baseFolder;
+        this.parsers = new ThreadLocal<XcodeMLParserStax>() {
+            @Override
+            protected XcodeMLParserStax initialValue() {
+                XcodeMLParserStax parser = new XcodeMLParserStax();
+                parser.setBaseFolder(folder);
+                return parser;
+            }
+        };
+        this.executor = Executors.newFixedThreadPool(this.threadCount, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "kscope-make-parser");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        ProjectWatchService service = new ProjectWatchService(this.listSearchPath, this.delay);
+        service.addPropertyChangeListener(this);
+        try {
+            service.start();
+        } catch (IOException ex) {
+            this.executor.shutdownNow();
+            this.executor = null;
+            throw ex;
+        }
+        this.serviceWatch = service;
+    }
+
+    /**
+     * XMLファイルの監視を終了する.<br/>
+     * makeコマンドの終了後に呼び出す.実行中の先行パースは継続する.
+     */
+    public synchronized void finishMake() {
+        if (this.serviceWatch == null) return;
+        this.serviceWatch.stop();
+        this.serviceWatch.removePropertyChangeListener(this);
+    }
+
+    /**
+     * 先行パースを終了して、パース結果を破棄する.
+     */
+    public synchronized void shutdown() {
+        finishMake();
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+        }
+        this.prefetches.clear();
+    }
+
+    /**
+     * XMLファイル変更通知イベント.<br/>
+     * 監視スレッドから呼び出される.変更XMLファイルの先行パースを登録する.
+     * @param event		変更通知イベント
+     */
+    @Override
+    public void propertyChange(PropertyChangeEvent event) {
+        if (!ProjectWatchService.PROPERTY_CHANGED_FILES.equals(event.getPropertyName())) return;
+        @SuppressWarnings("unchecked")
+        List<File> files = (List<File>)event.getNewValue();
+        if (files == null) return;
+        for (File file : files) {
+            submit(file.getAbsoluteFile());
+        }
+    }
+
+    /**
+     * XMLファイルの先行パースを登録する.<br/>
+     * 登録済みの先行パースは中止して、新しい先行パースに置き換える.
+     * @param file		XMLファイル
+     */
+    private synchronized void submit(final File file) {
+        if (this.executor == null || this.executor.isShutdown()) return;
+        Prefetch old = this.prefetches.remove(file);
+        if (old != null) {
+            old.future.cancel(true);
+        }
+        if (!file.isFile()) return;
+
+        Prefetch prefetch = new Prefetch();
+        prefetch.modified = file.lastModified();
+        prefetch.length = file.length();
+        prefetch.future = this.executor.submit(new Callable<Result>() {
+            @Override
+            public Result call() throws Exception {
+                return parse(file);
+            }
+        });
+        this.prefetches.put(file, prefetch);
+    }
+
+    /**
+     * XMLファイルを部分データベースにパースする.
+     * @param file		XMLファイル
+     * @return		パース結果
+     * @throws Exception		パースエラー
+     */
+    private Result parse(File file) throws Exception {
+        XcodeMLParserStax parser = this.parsers.get();
+        parser.resetContext();
+        SourceFile xml = new SourceFile(file, FILE_TYPE.XCODEML_XML);
+        Result result = new Result();
+        result.fortran = new Fortran();
+        parser.readFile(xml);
+        parser.parseFile(result.fortran);
+        result.languageFile = parser.getLanguageFile();
+        result.errorInfos = parser.getErrorInfos();
+        if (this.cache != null && (result.errorInfos == null || result.errorInfos.length <= 0)) {
+            this.cache.store(this.cache.getKey(xml, this.baseFolder), result.fortran, result.languageFile);
+        }
+        return result;
+    }
+
+    /**
+     * XMLファイルの先行パース結果を取得する.<br/>
+     * 先行パース中の場合は、パースの終了を待つ.
+     * パース時からXMLファイルが変更されている、パースに失敗した、基準フォルダが異なる場合はnullを返す.
+     * 取得したパース結果は先行パースから削除する.
+     * @param xml				XMLファイル
+     * @param folder			構造解析のパーサの基準フォルダ
+     * @return		パース結果(null=先行パース結果なし)
+     * @throws InterruptedException		割り込み例外
+     */
+    public Result take(SourceFile xml, File folder) throws InterruptedException {
+        if (xml == null || xml.getFile() == null) return null;
+        if (this.baseFolder == null ? folder != null : !this.baseFolder.equals(folder)) return null;
+        File file = xml.getFile().getAbsoluteFile();
+        Prefetch prefetch = this.prefetches.remove(file);
+        if (prefetch == null) return null;
+        // パース時から変更されたXMLファイル
+        if (prefetch.modified != file.lastModified() || prefetch.length != file.length()) {
+            prefetch.future.cancel(true);
+            return null;
+        }
+        Result result = null;
+        try {
+            result = prefetch.future.get();
+        } catch (CancellationException ex) {
+            return null;
+        } catch (ExecutionException ex) {
+            // 構造解析でパースしてエラーを登録する
+            Logger.debug(String.valueOf(ex.getCause()));
+            return null;
+        }
+        // パース中に変更されたXMLファイル
+        if (prefetch.modified != file.lastModified() || prefetch.length != file.length()) {
+            return null;
+        }
+        // XMLファイルにソースファイル、ソースファイルにXMLファイルを関連付ける
+        if (result.languageFile != null) {
+            xml.updateModifyDate();
+            xml.setRelationFile(result.languageFile);
+            result.languageFile.setRelationFile(xml);
+        }
+        return result;
+    }
+
+    /**
+     * 先行パースの登録情報クラス.
+     */
+    private static class Prefetch {
+        /** パース時のXMLファイル更新日付 */
+        private long modified;
+        /** パース時のXMLファイルサイズ */
+        private long length;
+        /** パースタスク */
+        private Future<Result> future;
+    }
+
+    /**
+     * 先行パース結果クラス.
+     */
+    public static class Result {
+        /** 部分データベース */
+        private Fortran fortran;
+        /** オリジナルフォートランソースファイル */
+        private SourceFile languageFile;
+        /** パースエラー情報 */
+        private ErrorInfo[] errorInfos;
+
+        /**
+         * 部分データベースを取得する.
+         * @return		部分データベース
+         */
+        public Fortran getFortran() {
+            return this.fortran;
+        }
+
+        /**
+         * オリジナルフォートランソースファイルを取得する.
+         * @return		オリジナルフォートランソースファイル
+         */
+        public SourceFile getLanguageFile() {
+            return this.languageFile;
+        }
+
+        /**
+         * パースエラー情報を取得する.
+         * @return		パースエラー情報
+         */
+        public ErrorInfo[] getErrorInfos() {
+            return this.errorInfos;
+        }
+    }
+}
@@ -17,18 +17,24 @@
 package jp.riken.kscope.service;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 
 import jp.riken.kscope.Application;
 import jp.riken.kscope.Message;
+import jp.riken.kscope.data.CodeLine;
+import jp.riken.kscope.data.ErrorInfo;
 import jp.riken.kscope.data.FILE_TYPE;
 import jp.riken.kscope.data.SourceFile;
 import jp.riken.kscope.exception.LanguageException;
@@ -39,14 +45,20 @@ import jp.riken.kscope.language.Fortran;
 import jp.riken.kscope.language.IBlock;
 import jp.riken.kscope.language.IInformation;
 import jp.riken.kscope.language.Module;
+import jp.riken.kscope.language.Procedure;
 import jp.riken.kscope.language.ProgramUnit;
+import jp.riken.kscope.language.utils.DependencyGraph;
+import jp.riken.kscope.language.utils.LanguageSnapshot;
 import jp.riken.kscope.language.utils.LanguageVisitor;
 import jp.riken.kscope.language.utils.ValidateLanguage;
 import jp.riken.kscope.model.ProjectModel;
+import jp.riken.kscope.properties.ApplicationProperties;
 import jp.riken.kscope.properties.ProjectProperties;
 import jp.riken.kscope.properties.RemoteBuildProperties;
 import jp.riken.kscope.utils.Logger;
 import jp.riken.kscope.utils.SwingUtils;
+import jp.riken.kscope.xcodeml.DbUpdater;
+import jp.riken.kscope.xcodeml.XcodeMLParseCache;
 import jp.riken.kscope.xcodeml.XcodeMLParserStax;
 
 
@@ -72,6 +84,12 @@ public class ProjectMakeService  extends BaseService {
 	private List<File> listSearchPath;
 	/** スレッド実行フラグ true:実行継続/false:中止. */
 	private boolean m_running = true;
+	/** 変更XMLファイルリスト(null=検索パスから再構築XMLファイルを検索する) */
+	private List<File> changedFiles;
+	/** データベースの入替をイベントディスパッチスレッドで行う */
+	private boolean swapOnEventThread = false;
+	/** make実行中のXMLファイル先行パース(null=先行パースしない) */
+	private ProjectMakePipeline makePipeline;
 
 	private AppController controller;
 
@@ -107,9 +125,16 @@ public class ProjectMakeService  extends BaseService {
 
 		try {
 			// XMLファイルリスト取得
-			ProjectService service = new ProjectService();
-			SourceFile[] listBuildXml = service.getSourceFiles(this.listSearchPath.toArray(new File[0]),
-					FILE_TYPE.XCODEML_XML, true);
+			SourceFile[] listBuildXml = null;
+			if (this.changedFiles != null) {
+				// 変更XMLファイルのみ現在のXMLファイルリストに反映する
+				listBuildXml = getChangedXmlFiles(this.changedFiles);
+			}
+			else {
+				ProjectService service = new ProjectService();
+				listBuildXml = service.getSourceFiles(this.listSearchPath.toArray(new File[0]),
+						FILE_TYPE.XCODEML_XML, true);
+			}
 			// ソースファイルが存在するかチェックする.
 			listBuildXml = validateXmlFiles(listBuildXml);
 			if (listBuildXml == null || listBuildXml.length <= 0) {
@@ -137,19 +162,54 @@ public class ProjectMakeService  extends BaseService {
 				return false;
 			}
 
+			// 現在のプログラム単位
+			List<ProgramUnit> currentUnits = DependencyGraph.getUnits(this.currentDb);
+
 			// 更新ファイルのパースを行う.
 			Fortran buildDb = parseSourceFile(listUpdate);
+			// 更新ファイルのプログラム単位
+			List<ProgramUnit> changeUnits = DependencyGraph.getUnits(buildDb);
 
 			// データベースのモジュールコピーを行う
 			copyModules(buildDb, this.currentDb, listDelete);
 
-			// 変数定義の関連付けを行う.
-			buildDb.analyseDB();
+			// 依存関係から更新、削除ファイルの影響を受ける手続きを取得する.
+			DependencyGraph graph = new DependencyGraph(buildDb);
+			List<ProgramUnit> removeUnits = new ArrayList<ProgramUnit>();
+			for (ProgramUnit unit : currentUnits) {
+				if (graph.getOwner(unit) == null) {
+					removeUnits.add(unit);
+				}
+			}
+			Map<ProgramUnit, Set<Procedure>> affected = graph.getAffectedProcedures(changeUnits, removeUnits);
+
+			// 公開中のデータベースは分析から参照されるため変更しない.
+			// 影響を受けるプログラム単位と、それらを参照するプログラム単位を複製して、その他のプログラム単位は公開中のデータベースと共有する.
+			LanguageSnapshot snapshot = LanguageSnapshot.copy(this.currentDb, affected.keySet(), changeUnits, removeUnits);
+			snapshot.replaceUnits(buildDb);
+			buildDb.setSnapshotLinker(snapshot);
+
+			List<ProgramUnit> analyseUnits = new ArrayList<ProgramUnit>(changeUnits);
+			List<Procedure> analyseProcs = new ArrayList<Procedure>();
+			for (ProgramUnit unit : changeUnits) {
+				DependencyGraph.collectProcedures(unit, analyseProcs);
+			}
+			for (ProgramUnit unit : graph.getUnits()) {
+				if (affected.containsKey(unit)) {
+					analyseUnits.add(snapshot.resolve(unit));
+					for (Procedure proc : affected.get(unit)) {
+						analyseProcs.add(snapshot.resolve(proc));
+					}
+				}
+			}
+
+			// 影響を受ける手続きのみ変数定義の関連付けを行う.
+			buildDb.reanalyseProcedures(removeUnits, analyseProcs);
 
-			// データベースの検証を行う.
+			// 影響を受けるプログラム単位のみデータベースの検証を行う.
 			ValidateLanguage validate = new ValidateLanguage(buildDb);
 			LanguageVisitor visitor = new LanguageVisitor(validate);
-			visitor.entry();
+			visitor.entryUnits(analyseUnits);
 			int error = validate.analyseTypes();
 			if (error > 0) {
 				this.getErrorInfoModel().addErrorInfos(validate.getErrorList());
@@ -157,11 +217,27 @@ public class ProjectMakeService  extends BaseService {
 				this.addErrorInfo(msg);
 			}
 
-			// 作成データベースを元のデータベースにコピーする
-			this.currentDb.copyShallow(buildDb);
+			// 再解析、再利用したプログラム単位数を出力する.
+			String msg = Message.getString("projectmakeservice.rebuild.dependency",
+							analyseUnits.size(), graph.getUnits().size() - analyseUnits.size(),
+							analyseProcs.size());
+			this.writeConsole(msg);
 
-			// XMLファイルリストを設定する
-			this.projectModel.setListXmlFile(listBuildXml);
+			// 作成データベースを元のデータベースに入れ替える
+			if (!swapDatabase(buildDb, listBuildXml)) {
+				// 再構築中にデータベースが入れ替えられた為、作成データベースを破棄しました。
+				this.addErrorInfo(Message.getString("projectmakeservice.rebuild.replaced"));
+				return false;
+			}
+			buildDb.setSnapshotLinker(null);
+			// 入替後に、変数の参照・定義索引、引数結合グラフを作成する
+			Fortran publishDb = (this.controller != null) ? buildDb : this.currentDb;
+			publishDb.getReferenceIndex();
+			publishDb.getArgumentBindingGraph();
+			if (this.controller != null) {
+				this.writeConsole(Message.getString("projectmakeservice.rebuild.snapshot",
+								this.controller.getLanguageVersion()));
+			}
 
 			return true;
 
@@ -190,11 +266,115 @@ public class ProjectMakeService  extends BaseService {
 			this.addErrorInfo(error_message);
 			return false;
 		} finally {
+			// 先行パースの終了
+			if (this.makePipeline != null) {
+				this.makePipeline.shutdown();
+			}
 			Application.status.setProgressStart(false);
 		}
 
 	}
 
+	/**
+	 * 作成データベースを新しいスナップショットとして公開して、XMLファイルリストを設定する.<br/>
+	 * 公開中のスナップショットは入替後も変更しないため、実行中の分析は元のスナップショットを参照し続ける.
+	 * 元のスナップショットの処理ブロックは複製時に全て読み込まれているため、入替後も分析から参照できる.
+	 * イベントディスパッチスレッドで入れ替える場合は、入替中に画面からデータベースを参照しない.
+	 * 
+	 * @param buildDb
+	 *            作成データベース
+	 * @param listBuildXml
+	 *            再構築XMLファイルリスト
+	 * @return true=入替成功/false=再構築中に公開中のスナップショットが入れ替えられた
+	 * @throws InterruptedException
+	 *             割り込み例外
+	 * @throws InvocationTargetException
+	 *             入替エラー
+	 */
+	private boolean swapDatabase(final Fortran buildDb, final SourceFile[] listBuildXml)
+			throws InterruptedException, InvocationTargetException {
+		final boolean[] result = {true};
+		Runnable swap = new Runnable() {
+			@Override
+			public void run() {
+				if (controller != null) {
+					// 作成データベースを公開する
+					result[0] = controller.replaceFortranLanguage(currentDb, buildDb);
+					if (!result[0]) return;
+				}
+				else {
+					// 作成データベースを元のデータベースにコピーする
+					currentDb.closeProcedureLoader();
+					currentDb.copyShallow(buildDb);
+				}
+				// XMLファイルリストを設定する
+				projectModel.setListXmlFile(listBuildXml);
+			}
+		};
+		if (this.swapOnEventThread && !SwingUtilities.isEventDispatchThread()) {
+			SwingUtilities.invokeAndWait(swap);
+		}
+		else {
+			swap.run();
+		}
+		return result[0];
+	}
+
+	/**
+	 * 変更XMLファイルを現在のXMLファイルリストに反映した再構築XMLファイルリストを取得する.<br/>
+	 * 存在しない変更XMLファイルはリストから削除し、現在のリストにない変更XMLファイルは追加する.
+	 * 
+	 * @param changes
+	 *            変更XMLファイルリスト
+	 * @return 再構築XMLファイルリスト
+	 */
+	private SourceFile[] getChangedXmlFiles(List<File> changes) {
+		List<SourceFile> listChange = new ArrayList<SourceFile>();
+		for (File file : changes) {
+			listChange.add(new SourceFile(file, FILE_TYPE.XCODEML_XML));
+		}
+		List<SourceFile> list = new ArrayList<SourceFile>();
+		for (SourceFile src : this.currentDb.getSourceFileList()) {
+			SourceFile xml = src.getRelationFile();
+			if (xml == null || list.contains(xml)) continue;
+			int idx = listChange.indexOf(xml);
+			if (idx < 0) {
+				list.add(xml);
+				continue;
+			}
+			// 変更XMLファイル:削除されたファイルはリストに追加しない
+			SourceFile change = listChange.remove(idx);
+			if (change.getFile().isFile()) {
+				list.add(change);
+			}
+		}
+		// 追加XMLファイル
+		for (SourceFile change : listChange) {
+			if (change.getFile().isFile() && FILE_TYPE.isXcodemlFile(change.getFile())) {
+				list.add(change);
+			}
+		}
+		return list.toArray(new SourceFile[0]);
+	}
+
+	/**
+	 * コンソールにメッセージを出力する.
+	 *
+	 * @param message
+	 *            出力メッセージ
+	 */
+	private void writeConsole(String message) {
+		Application.status.setMessageStatus(message);
+		if (this.outStream == null)
+			return;
+		try {
+			this.outStream.write((message + "\n").getBytes());
+			this.outStream.flush();
+		} catch (IOException ex) {
+			Logger.error(ex);
+		}
+	}
+
 	/**
 	 * XMLファイルを検証する. ソースファイルが存在するかチェックする.
 	 * 
@@ -454,6 +634,9 @@ public class ProjectMakeService  extends BaseService {
 		}
 		Application.status.setMessageStatus(build_command);
 
+		// 生成XMLファイルの先行パースを開始する
+		startMakePipeline();
+
 		// makeコマンド実行
 		int result = -1;
 		try {
@@ -464,6 +647,10 @@ public class ProjectMakeService  extends BaseService {
 					System.out.println("Running command locally: " + build_command);
 				result = SwingUtils.processRun(build_command.split(" "), this.workdirectory, this.outStream);
 			}
+			// make終了:XMLファイルの監視を終了する
+			if (this.makePipeline != null) {
+				this.makePipeline.finishMake();
+			}
 			if (result != 0) { // 中間コードの生成に失敗した場合は継続するか確認
 				if (JOptionPane.showConfirmDialog(null,
 						Message.getString("projectmakeservice.executemakecommand.continue.message"),
@@ -471,6 +658,9 @@ public class ProjectMakeService  extends BaseService {
 						JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION) {
 					// ステータスメッセージ
 					Application.status.setProgressStart(false);
+					if (this.makePipeline != null) {
+						this.makePipeline.shutdown();
+					}
 					return false;
 				}
 			}
@@ -478,10 +668,29 @@ public class ProjectMakeService  extends BaseService {
 			return true;
 		} catch (Exception ex) {
 			ex.printStackTrace();
+			if (this.makePipeline != null) {
+				this.makePipeline.shutdown();
+			}
 			throw ex;
 		}
 	}
 
+	/**
+	 * makeコマンドで生成されるXMLファイルの先行パースを開始する.<br/>
+	 * 監視フォルダの登録に失敗した場合は、先行パースを行わない.
+	 */
+	private void startMakePipeline() {
+		if (this.makePipeline == null)
+			return;
+		try {
+			this.makePipeline.start();
+		} catch (IOException ex) {
+			Logger.error(ex);
+			this.makePipeline.shutdown();
+			this.makePipeline = null;
+		}
+	}
+
 	/**
 	 * @param pproperties
 	 * @return
@@ -492,6 +701,39 @@ public class ProjectMakeService  extends BaseService {
 		return pproperties.useRemoteBuild() && pproperties.useServer();
 	}
 
+	/**
+	 * 変更XMLファイルリストを設定する.<br/>
+	 * 設定した場合、再構築時に検索パスの検索を行わず、変更XMLファイルのみ更新日付を比較する.
+	 * 
+	 * @param files
+	 *            変更XMLファイルリスト(null=検索パスを検索する)
+	 */
+	public void setChangedFiles(List<File> files) {
+		this.changedFiles = files;
+	}
+
+	/**
+	 * make実行中のXMLファイル先行パースを設定する.<br/>
+	 * 設定した場合、makeコマンドの実行中に生成されたXMLファイルをパースして、構造解析で使用する.
+	 * 
+	 * @param pipeline
+	 *            make実行中のXMLファイル先行パース(null=先行パースしない)
+	 */
+	public void setMakePipeline(ProjectMakePipeline pipeline) {
+		this.makePipeline = pipeline;
+	}
+
+	/**
+	 * データベースの入替をイベントディスパッチスレッドで行うか設定する.<br/>
+	 * 画面操作中にバックグラウンドで再構築する場合に設定する.
+	 * 
+	 * @param eventThread
+	 *            true=イベントディスパッチスレッドで入れ替える
+	 */
+	public void setSwapOnEventThread(boolean eventThread) {
+		this.swapOnEventThread = eventThread;
+	}
+
 	/**
 	 * XMLファイル検索パスリストを設定する.
 	 * 
@@ -518,26 +760,55 @@ public class ProjectMakeService  extends BaseService {
 		if (updateFiles == null)
 			return fortranDb;
 
-		// XMLパーサの作成
+		// XMLパーサの作成:構造解析と同じくプロジェクトフォルダを基準フォルダとする
+		File baseFolder = (this.projectModel != null) ? this.projectModel.getProjectFolder() : null;
 		XcodeMLParserStax fortranParser = new XcodeMLParserStax();
+		fortranParser.setBaseFolder(baseFolder);
 		ArrayList<SourceFile> sourceFileList = new ArrayList<SourceFile>();
+		// パース結果キャッシュ
+		XcodeMLParseCache cache = null;
+		if (this.controller != null && this.controller.getPropertiesApplication() != null) {
+			ApplicationProperties properties = this.controller.getPropertiesApplication();
+			cache = XcodeMLParseCache.open(properties.getParseCacheFolder(), properties.getParseCacheSize());
+		}
+		int prefetchCount = 0;
 		for (SourceFile file : updateFiles) {
 			try {
 				String filename = file.toString();
 				Application.status.setMessageStatus(filename);
 
-				// ソースファイルからファイルを読み込む
-				fortranParser.readFile(file);
+				// make実行中の先行パース結果
+				ProjectMakePipeline.Result prefetch = null;
+				if (this.makePipeline != null) {
+					prefetch = this.makePipeline.take(file, baseFolder);
+				}
+				if (prefetch != null) {
+					// 先行パースの部分データベースをマージする
+					mergePartDb(fortranDb, prefetch.getFortran());
+					sourceFileList.add(prefetch.getLanguageFile());
+					if (prefetch.getErrorInfos() != null) {
+						this.addErrorInfos(prefetch.getErrorInfos());
+					}
+					prefetchCount++;
+				}
+				else if (cache != null) {
+					// パース結果キャッシュを使用して部分データベースをマージする
+					parseSourceFile(fortranParser, cache, baseFolder, file, fortranDb, sourceFileList);
+				}
+				else {
+					// ソースファイルからファイルを読み込む
+					fortranParser.readFile(file);
 
-				// 読込コード行を構文解析する。
-				fortranParser.parseFile(fortranDb);
+					// 読込コード行を構文解析する。
+					fortranParser.parseFile(fortranDb);
 
-				// オリジナルフォートランソースファイルの取得
-				sourceFileList.add(fortranParser.getLanguageFile());
+					// オリジナルフォートランソースファイルの取得
+					sourceFileList.add(fortranParser.getLanguageFile());
 
-				// パースエラーの取得
-				if (fortranParser.getErrorInfos() != null) {
-					this.addErrorInfos(fortranParser.getErrorInfos());
+					// パースエラーの取得
+					if (fortranParser.getErrorInfos() != null) {
+						this.addErrorInfos(fortranParser.getErrorInfos());
+					}
 				}
 			} catch (Exception lang_ex) {
 				// エラー箇所の情報をセットする
@@ -550,12 +821,89 @@ public class ProjectMakeService  extends BaseService {
 			}
 		}
 
+		if (this.makePipeline != null) {
+			// make実行中に先行パースしたXMLファイル数を出力する.
+			this.writeConsole(Message.getString("projectmakeservice.rebuild.prefetch",
+							prefetchCount, updateFiles.length));
+		}
+
 		// ソースファイルリストの設定
 		fortranDb.setSourceFileList(sourceFileList);
 
 		return fortranDb;
 	}
 
+	/**
+	 * パース結果キャッシュを使用してXMLファイルをパースする.<br/>
+	 * キャッシュ済みのXMLファイルはキャッシュの部分データベースをマージする.
+	 * 未キャッシュのXMLファイルは部分データベースにパースしてマージし、パースエラーがなければキャッシュする.
+	 * 
+	 * @param parser
+	 *            XMLパーサ
+	 * @param cache
+	 *            パース結果キャッシュ
+	 * @param baseFolder
+	 *            パーサの基準フォルダ
+	 * @param file
+	 *            XMLファイル
+	 * @param fortranDb
+	 *            フォートランデータベース
+	 * @param sourceFileList
+	 *            オリジナルフォートランソースファイルリスト
+	 * @throws InterruptedException
+	 *             割り込み例外
+	 */
+	private void parseSourceFile(XcodeMLParserStax parser, XcodeMLParseCache cache, File baseFolder, SourceFile file,
+			Fortran fortranDb, List<SourceFile> sourceFileList) throws InterruptedException {
+		String key = cache.getKey(file, baseFolder);
+		XcodeMLParseCache.Entry entry = cache.load(key, file);
+		Fortran partDb = null;
+		SourceFile languageFile = null;
+		if (entry != null) {
+			partDb = entry.getFortran();
+			languageFile = entry.getLanguageFile();
+		}
+		else {
+			partDb = new Fortran();
+			parser.resetContext();
+			parser.readFile(file);
+			parser.parseFile(partDb);
+			languageFile = parser.getLanguageFile();
+			ErrorInfo[] errors = parser.getErrorInfos();
+			if (errors != null && errors.length > 0) {
+				this.addErrorInfos(errors);
+			}
+			else {
+				cache.store(key, partDb, languageFile);
+			}
+		}
+
+		// 部分データベースのマージ
+		mergePartDb(fortranDb, partDb);
+		// オリジナルフォートランソースファイルの取得
+		sourceFileList.add(languageFile);
+	}
+
+	/**
+	 * 部分データベースをフォートランデータベースにマージする.<br/>
+	 * 重複するプログラム単位はエラー情報に登録する.
+	 * 
+	 * @param fortranDb
+	 *            フォートランデータベース
+	 * @param partDb
+	 *            部分データベース
+	 */
+	private void mergePartDb(Fortran fortranDb, Fortran partDb) {
+		List<ProgramUnit[]> duplicates = fortranDb.mergeProgram(partDb);
+		for (ProgramUnit[] duplicate : duplicates) {
+			if (duplicate[0].get_start() == null) continue;
+			CodeLine line = duplicate[0].get_start().getLineInfo();
+			String msg = DbUpdater.getDuplicateErrorMessage(duplicate[0].get_name(), duplicate[1]);
+			if (line == null || msg == null) continue;
+			this.addErrorInfo(line, msg);
+		}
+	}
+
 	/**
 	 * モジュールコピーを行う.
 	 * 
@@ -0,0 +1,302 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.riken.kscope.service;
+
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import jp.riken.kscope.data.FILE_TYPE;
+import jp.riken.kscope.properties.KscopeProperties;
+import jp.riken.kscope.utils.Logger;
+
+/**
+ * XMLファイル変更監視サービスクラス.<br/>
+ * XMLファイル検索パスのフォルダをWatchServiceに登録して、XMLファイルの追加、更新、削除を監視する.
+ * 連続した変更通知は、待機時間の間に変更がなくなるまでまとめてから変更XMLファイルリストを通知する.
+ * 変更通知はPropertyChangeEvent(プロパティ名=PROPERTY_CHANGED_FILES、新しい値=変更XMLファイルリスト)で
+ * 監視スレッドから行う.変更通知の処理中に発生した変更は、処理の終了後に通知する.
+ * @author RIKEN
+ */
+public class ProjectWatchService implements Runnable {
+
+    /** 変更XMLファイル通知プロパティ名 */
+    public static final String PROPERTY_CHANGED_FILES = "watch_changed_files";
+    /** 変更が続く場合に通知を待機する最大回数 */
+    private static final int MAX_DEBOUNCE_COUNT = 10;
+
+    /** XMLファイル検索パスリスト */
+    private List<File> listSearchPath;
+    /** 変更通知の待機時間(ミリ秒) */
+    private long delay;
+    /** ファイル変更監視 */
+    private WatchService watcher;
+    /** 監視フォルダ */
+    private Map<WatchKey, Path> keys = new HashMap<WatchKey, Path>();
+    /** サブフォルダを含めて監視するフォルダ */
+    private Set<Path> treeFolders = new HashSet<Path>();
+    /** 監視XMLファイル:検索パスにファイルを指定した場合 */
+    private Set<Path> watchFiles = new HashSet<Path>();
+    /** 監視スレッド */
+    private Thread thread;
+    /** 監視実行フラグ */
+    private volatile boolean running = false;
+    /** 変更通知 */
+    private PropertyChangeSupport changes = new PropertyChangeSupport(this);
+
+    /**
+     * コンストラクタ
+     * @param list		XMLファイル検索パスリスト
+     * @param delay		変更通知の待機時間(ミリ秒)
+     */
+    public ProjectWatchService(List<File> list, long delay) {
+        this.listSearchPath = list;
+        this.delay = delay;
+    }
+
+    /**
+     * 変更通知リスナを追加する.
+     * @param listener		変更通知リスナ
+     */
+    public void addPropertyChangeListener(PropertyChangeListener listener) {
+        this.changes.addPropertyChangeListener(listener);
+    }
+
+    /**
+     * 変更通知リスナを削除する.
+     * @param listener		変更通知リスナ
+     */
+    public void removePropertyChangeListener(PropertyChangeListener listener) {
+        this.changes.removePropertyChangeListener(listener);
+    }
+
+    /**
+     * 監視を開始する.
+     * @throws IOException		監視フォルダの登録エラー
+     */
+    public synchronized void start() throws IOException {
+        if (this.running) return;
+        this.watcher = FileSystems.getDefault().newWatchService();
+        this.keys.clear();
+        this.treeFolders.clear();
+        this.watchFiles.clear();
+        try {
+            if (this.listSearchPath != null) {
+                for (File file : this.listSearchPath) {
+                    Path path = file.getAbsoluteFile().toPath();
+                    if (Files.isDirectory(path)) {
+                        registerTree(path);
+                    }
+                    else if (path.getParent() != null && Files.isDirectory(path.getParent())) {
+                        this.watchFiles.add(path);
+                        register(path.getParent());
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            this.watcher.close();
+            this.watcher = null;
+            throw ex;
+        }
+        this.running = true;
+        this.thread = new Thread(this, "kscope-watch");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * 監視を停止する.<br/>
+     * 変更通知の処理中の場合は、処理の終了後に停止する.
+     */
+    public synchronized void stop() {
+        this.running = false;
+        if (this.watcher != null) {
+            try {
+                this.watcher.close();
+            } catch (IOException ex) {
+                Logger.error(ex);
+            }
+        }
+        this.thread = null;
+    }
+
+    /**
+     * 監視中であるかチェックする.
+     * @return		true=監視中
+     */
+    public boolean isRunning() {
+        return this.running;
+    }
+
+    /**
+     * 監視スレッドを実行する.
+     */
+    @Override
+    public void run() {
+        WatchService service = this.watcher;
+        try {
+            while (this.running) {
+                // 最初の変更を待機する
+                Set<File> files = new LinkedHashSet<File>();
+                WatchKey key = service.take();
+                collectChanges(key, files);
+
+                // 待機時間の間に変更がなくなるまで変更をまとめる
+                int count = 0;
+                while (this.running && count++ < MAX_DEBOUNCE_COUNT) {
+                    key = service.poll(this.delay, TimeUnit.MILLISECONDS);
+                    if (key == null) break;
+                    do {
+                        collectChanges(key, files);
+                    } while ((key = service.poll()) != null);
+                }
+                if (!this.running) break;
+                if (files.size() <= 0) continue;
+
+                // 変更XMLファイルリストを通知する
+                this.changes.firePropertyChange(PROPERTY_CHANGED_FILES, null, new ArrayList<File>(files));
+            }
+        } catch (InterruptedException ex) {
+            // 監視停止
+        } catch (ClosedWatchServiceException ex) {
+            // 監視停止
+        } finally {
+            this.running = false;
+        }
+    }
+
+    /**
+     * 監視フォルダの変更XMLファイルを取得する.<br/>
+     * 作成されたサブフォルダは監視フォルダに登録する.
+     * @param key		監視キー
+     * @param files		変更XMLファイルリスト
+     */
+    private void collectChanges(WatchKey key, Set<File> files) {
+        Path folder = this.keys.get(key);
+        if (folder != null) {
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // 通知漏れ:監視フォルダのXMLファイルをすべて変更とする
+                    collectFiles(folder, files);
+                    continue;
+                }
+                Path path = folder.resolve((Path) event.context());
+                if (Files.isDirectory(path)) {
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                        && this.treeFolders.contains(folder)) {
+                        try {
+                            registerTree(path);
+                            collectFiles(path, files);
+                        } catch (IOException ex) {
+                            Logger.error(ex);
+                        }
+                    }
+                    continue;
+                }
+                if (isWatchFile(folder, path)) {
+                    files.add(path.toFile());
+                }
+            }
+        }
+        if (!key.reset()) {
+            this.keys.remove(key);
+        }
+    }
+
+    /**
+     * 監視フォルダのXMLファイルを取得する.
+     * @param folder		監視フォルダ
+     * @param files			変更XMLファイルリスト
+     */
+    private void collectFiles(Path folder, Set<File> files) {
+        File[] list = folder.toFile().listFiles();
+        if (list == null) return;
+        for (File file : list) {
+            if (file.isFile() && isWatchFile(folder, file.toPath())) {
+                files.add(file);
+            }
+        }
+    }
+
+    /**
+     * 監視対象のXMLファイルであるかチェックする.
+     * @param folder		監視フォルダ
+     * @param path			変更ファイル
+     * @return		true=監視対象のXMLファイル
+     */
+    private boolean isWatchFile(Path folder, Path path) {
+        if (this.watchFiles.contains(path)) return true;
+        if (!this.treeFolders.contains(folder)) return false;
+        return FILE_TYPE.isXcodemlFile(path.toFile());
+    }
+
+    /**
+     * フォルダとサブフォルダを監視フォルダに登録する.<br/>
+     * XMLファイルの検索と同様に設定フォルダは登録しない.
+     * @param root		フォルダ
+     * @throws IOException		登録エラー
+     */
+    private void registerTree(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                // 設定フォルダは監視しない
+                if (dir.getFileName() != null
+                    && KscopeProperties.SETTINGS_FOLDER.equalsIgnoreCase(dir.getFileName().toString())) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                treeFolders.add(dir);
+                register(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * フォルダを監視フォルダに登録する.
+     * @param folder		フォルダ
+     * @throws IOException		登録エラー
+     */
+    private void register(Path folder) throws IOException {
+        WatchKey key = folder.register(this.watcher,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+        this.keys.put(key, folder);
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.riken.kscope.service;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jp.riken.kscope.common.Constant;
+import jp.riken.kscope.common.TASK_PRIORITY;
+
+/**
+ * タスクスケジューラクラス.<br/>
+ * スレッドタスクを優先度毎のワーカースレッドプールで実行する.
+ * 検索等の対話処理は、構造解析等のバックグラウンド処理の実行中も別のワーカースレッドで実行する.
+ * ワーカースレッド数を超えたタスクは実行待ちとして登録順に実行する.
+ * タスクの登録、終了はPropertyChangeEvent(プロパティ名=PROPERTY_TASKS)で通知する.
+ * @author RIKEN
+ */
+public class TaskScheduler implements PropertyChangeListener {
+
+    /** タスク一覧変更通知プロパティ名 */
+    public static final String PROPERTY_TASKS = "scheduler_tasks";
+
+    /** 実行中タスク:ワーカースレッドでタスクの実行中のみ設定する.タスクから起動したスレッドには継承しない */
+    private static final ThreadLocal<FutureService<Integer>> currentTask
+                    = new ThreadLocal<FutureService<Integer>>();
+
+    /** 優先度毎のワーカースレッドプール */
+    private Map<TASK_PRIORITY, ThreadPoolExecutor> executors
+                    = new EnumMap<TASK_PRIORITY, ThreadPoolExecutor>(TASK_PRIORITY.class);
+    /** 登録タスクリスト:登録順 */
+    private List<FutureService<Integer>> tasks = new CopyOnWriteArrayList<FutureService<Integer>>();
+    /** タスク一覧変更通知 */
+    private PropertyChangeSupport changes = new PropertyChangeSupport(this);
+
+    /**
+     * コンストラクタ.<br/>
+     * 対話処理、バックグラウンド処理ともワーカースレッド数は1とする.
+     */
+    public TaskScheduler() {
+        for (TASK_PRIORITY priority : TASK_PRIORITY.values()) {
+            this.executors.put(priority, createExecutor(priority));
+        }
+    }
+
+    /**
+     * ワーカースレッドプールを作成する.
+     * @param priority		タスク優先度
+     * @return		ワーカースレッドプール
+     */
+    private ThreadPoolExecutor createExecutor(final TASK_PRIORITY priority) {
+        ThreadFactory factory = new ThreadFactory() {
+            private AtomicInteger count = new AtomicInteger();
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable,
+                        "kscope-task-" + priority.name().toLowerCase() + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(priority.getThreadPriority());
+                return thread;
+            }
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), factory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * ワーカースレッド数を設定する.
+     * @param priority		タスク優先度
+     * @param count			ワーカースレッド数(1以上)
+     */
+    public void setThreadCount(TASK_PRIORITY priority, int count) {
+        if (count <= 0) count = 1;
+        ThreadPoolExecutor executor = this.executors.get(priority);
+        if (count >= executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(count);
+            executor.setCorePoolSize(count);
+        }
+        else {
+            executor.setCorePoolSize(count);
+            executor.setMaximumPoolSize(count);
+        }
+    }
+
+    /**
+     * タスク一覧変更リスナを追加する.
+     * @param listener		タスク一覧変更リスナ
+     */
+    public void addPropertyChangeListener(PropertyChangeListener listener) {
+        this.changes.addPropertyChangeListener(listener);
+    }
+
+    /**
+     * タスク一覧変更リスナを削除する.
+     * @param listener		タスク一覧変更リスナ
+     */
+    public void removePropertyChangeListener(PropertyChangeListener listener) {
+        this.changes.removePropertyChangeListener(listener);
+    }
+
+    /**
+     * タスクを登録して実行する.<br/>
+     * 優先度のワーカースレッドが空いていない場合は実行待ちとする.
+     * @param future		スレッドタスク
+     * @param name			タスク名
+     * @param priority		タスク優先度
+     */
+    public void execute(final FutureService<Integer> future, String name, TASK_PRIORITY priority) {
+        if (future == null) return;
+        if (priority == null) priority = TASK_PRIORITY.BACKGROUND;
+        future.setTaskName(name);
+        future.setPriority(priority);
+        future.addPropertyChangeListener(this);
+        this.tasks.add(future);
+        this.changes.firePropertyChange(PROPERTY_TASKS, null, getTasks());
+
+        this.executors.get(priority).execute(new Runnable() {
+            @Override
+            public void run() {
+                // 実行待ち中にキャンセルされたタスクは実行しない
+                if (future.isDone()) return;
+                currentTask.set(future);
+                try {
+                    future.run();
+                } finally {
+                    currentTask.remove();
+                }
+            }
+        });
+    }
+
+    /**
+     * タスクの終了通知.<br/>
+     * 終了したタスクをタスク一覧から削除する.
+     * @param event		イベント情報
+     */
+    @Override
+    public void propertyChange(PropertyChangeEvent event) {
+        if (!Constant.PROPERTYNAME_THREADDONE.equals(event.getPropertyName())) return;
+        if (this.tasks.remove(event.getSource())) {
+            this.changes.firePropertyChange(PROPERTY_TASKS, null, getTasks());
+        }
+    }
+
+    /**
+     * 登録タスクリストを取得する.
+     * @return		登録タスクリスト(実行中、実行待ち):登録順
+     */
+    public List<FutureService<Integer>> getTasks() {
+        return new ArrayList<FutureService<Integer>>(this.tasks);
+    }
+
+    /**
+     * 指定優先度のタスクが実行中、実行待ちであるかチェックする.
+     * @param priority		タスク優先度(null=すべての優先度)
+     * @return		true=実行中、実行待ちのタスクあり
+     */
+    public boolean isRunning(TASK_PRIORITY priority) {
+        for (FutureService<Integer> task : this.tasks) {
+            if (task.isDone()) continue;
+            if (priority == null || priority == task.getPriority()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 実行中のスレッドのタスクに進捗メッセージを設定する.<br/>
+     * タスクのスレッド以外から呼び出された場合は何もしない.
+     * @param message		進捗メッセージ
+     */
+    public static void setTaskMessage(String message) {
+        FutureService<Integer> task = currentTask.get();
+        if (task == null) return;
+        task.setProgressMessage(message);
+    }
+
+    /**
+     * 実行中のスレッドのタスクに進捗値を設定する.<br/>
+     * タスクのスレッド以外から呼び出された場合は何もしない.
+     * @param value		進捗値
+     * @param max		進捗最大値(-1=進捗値なし)
+     */
+    public static void setTaskProgress(int value, int max) {
+        FutureService<Integer> task = currentTask.get();
+        if (task == null) return;
+        task.setProgress(value, max);
+    }
+}
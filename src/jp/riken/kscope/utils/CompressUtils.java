@@ -0,0 +1,196 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.riken.kscope.utils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.zip.GZIPInputStream;
+
+import jp.riken.kscope.Message;
+
+/**
+ * 圧縮ファイルユーティリティクラス.<br/>
+ * gzip, zstd圧縮ファイルを展開しながら読み込む.
+ * 圧縮形式はファイル先頭のマジックナンバーから判定する.
+ * zstdの展開はクラスパス上のzstdライブラリ(aircompressor又はzstd-jni)を使用する.
+ * @author RIKEN
+ */
+public class CompressUtils {
+
+    /** gzip圧縮拡張子 */
+    public static final String EXT_GZIP = "gz";
+    /** zstd圧縮拡張子 */
+    public static final String EXT_ZSTD = "zst";
+    /** 圧縮拡張子リスト */
+    public static final String[] EXT_COMPRESS = {EXT_GZIP, EXT_ZSTD};
+
+    /** 読込バッファーサイズ = 256KB */
+    private static final int BUFFER_SIZE = 256 * 1024;
+    /** gzipマジックナンバー */
+    private static final int[] MAGIC_GZIP = {0x1f, 0x8b};
+    /** zstdマジックナンバー */
+    private static final int[] MAGIC_ZSTD = {0x28, 0xb5, 0x2f, 0xfd};
+    /** zstd展開ストリームクラス:pure Java実装を優先する */
+    private static final String[] ZSTD_STREAM_CLASSES = {
+        "io.airlift.compress.zstd.ZstdInputStream",
+        "com.github.luben.zstd.ZstdInputStream"
+    };
+
+    /**
+     * 圧縮拡張子を持つファイル名であるかチェックする.
+     * @param name		ファイル名
+     * @return		true=圧縮拡張子を持つ
+     */
+    public static boolean isCompressedName(String name) {
+        return getCompressExtension(name) != null;
+    }
+
+    /**
+     * 圧縮拡張子を除いたファイル名を取得する.<br/>
+     * 例:m1.xml.gz → m1.xml
+     * @param name		ファイル名
+     * @return		圧縮拡張子を除いたファイル名
+     */
+    public static String getUncompressedName(String name) {
+        String ext = getCompressExtension(name);
+        if (ext == null) return name;
+        return name.substring(0, name.length() - ext.length() - 1);
+    }
+
+    /**
+     * ファイル名の圧縮拡張子を取得する.
+     * @param name		ファイル名
+     * @return		圧縮拡張子(null=非圧縮)
+     */
+    private static String getCompressExtension(String name) {
+        if (name == null) return null;
+        String lower = name.toLowerCase();
+        for (String ext : EXT_COMPRESS) {
+            if (lower.endsWith("." + ext)) {
+                return ext;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * ファイルの入力ストリームを取得する.<br/>
+     * 圧縮ファイルは展開ストリームを返す.返すストリームはバッファリングされている.
+     * @param file		読込ファイル
+     * @return		入力ストリーム
+     * @throws IOException		ファイル読込エラー
+     */
+    public static InputStream openInputStream(File file) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+        try {
+            if (startsWith(in, MAGIC_GZIP)) {
+                return new BufferedInputStream(new GZIPInputStream(in, BUFFER_SIZE), BUFFER_SIZE);
+            }
+            if (startsWith(in, MAGIC_ZSTD)) {
+                return new BufferedInputStream(openZstdStream(file, in), BUFFER_SIZE);
+            }
+        } catch (IOException ex) {
+            in.close();
+            throw ex;
+        }
+        return in;
+    }
+
+    /**
+     * ファイルのすべてのデータを読み込む.<br/>
+     * 圧縮ファイルは展開したデータを返す.
+     * @param file		読込ファイル
+     * @return		ファイルデータ
+     * @throws IOException		ファイル読込エラー
+     */
+    public static byte[] readAllBytes(File file) throws IOException {
+        InputStream in = openInputStream(file);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(file.length(), Integer.MAX_VALUE - 8));
+            byte[] buf = new byte[64 * 1024];
+            int len;
+            while ((len = in.read(buf)) >= 0) {
+                out.write(buf, 0, len);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * ストリームの先頭がマジックナンバーと一致するかチェックする.<br/>
+     * ストリームの読込位置は変更しない.
+     * @param in		入力ストリーム(mark対応)
+     * @param magic		マジックナンバー
+     * @return		true=一致
+     * @throws IOException		ファイル読込エラー
+     */
+    private static boolean startsWith(InputStream in, int[] magic) throws IOException {
+        in.mark(magic.length);
+        try {
+            for (int value : magic) {
+                if (in.read() != value) return false;
+            }
+            return true;
+        } finally {
+            in.reset();
+        }
+    }
+
+    /**
+     * zstd展開ストリームを生成する.
+     * @param file		読込ファイル
+     * @param in		圧縮データ入力ストリーム
+     * @return		展開ストリーム
+     * @throws IOException		zstdライブラリがない、展開ストリームの生成エラー
+     */
+    private static InputStream openZstdStream(File file, InputStream in) throws IOException {
+        for (String name : ZSTD_STREAM_CLASSES) {
+            Class<?> clazz;
+            try {
+                clazz = Class.forName(name);
+            } catch (ClassNotFoundException ex) {
+                continue;
+            } catch (LinkageError ex) {
+                continue;
+            }
+            try {
+                Constructor<?> constructor = clazz.getConstructor(InputStream.class);
+                return (InputStream) constructor.newInstance(in);
+            } catch (InvocationTargetException ex) {
+                if (ex.getCause() instanceof IOException) {
+                    throw (IOException) ex.getCause();
+                }
+                throw new IOException(ex.getCause());
+            } catch (ReflectiveOperationException ex) {
+                continue;
+            } catch (LinkageError ex) {
+                continue;
+            }
+        }
+        // zstd圧縮ファイルを展開できません。zstdライブラリをlibフォルダに配置してください。[ファイル=%s]
+        throw new IOException(Message.getString("compressutils.error.zstd", file.getPath()));
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.riken.kscope.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.table.TableModel;
+import javax.swing.tree.TreeNode;
+
+/**
+ * JSON出力ユーティリティクラス.<br/>
+ * ツリーノード、テーブルモデルをJSON文字列に変換する.
+ * ヘッドレス実行で使用するため、AWT、Swingのコンポーネントクラスを参照しない.
+ * 
+ * @author RIKEN
+ * 
+ */
+public class JsonUtils {
+
+	/**
+	 * TreeNodeからJSON文字列に変換する.<br/>
+	 * ノードは{"name":ノード文字列, "children":[子ノード]}とする.子ノードが無い場合はchildrenを出力しない.
+	 * 
+	 * @param node
+	 *            ツリーノード
+	 * @return JSON文字列
+	 */
+	public static String toJson(TreeNode node) {
+		StringBuilder buf = new StringBuilder();
+		toJson(node, 0, buf);
+		buf.append("\n");
+		return buf.toString();
+	}
+
+	/**
+	 * TreeNodeからJSON文字列に変換する
+	 * 
+	 * @param node
+	 *            ツリーノード
+	 * @param depth
+	 *            階層
+	 * @param buf
+	 *            出力バッファ
+	 */
+	private static void toJson(TreeNode node, int depth, StringBuilder buf) {
+		StringBuilder indent = new StringBuilder();
+		for (int i = 0; i < depth; i++) {
+			indent.append("  ");
+		}
+		buf.append(indent).append("{\"name\": ").append(escapeJson(String.valueOf(node)));
+		int count = node.getChildCount();
+		if (count > 0) {
+			buf.append(", \"children\": [\n");
+			for (int i = 0; i < count; i++) {
+				if (i > 0) buf.append(",\n");
+				toJson(node.getChildAt(i), depth + 1, buf);
+			}
+			buf.append("\n").append(indent).append("]");
+		}
+		buf.append("}");
+	}
+
+	/**
+	 * TableModelからJSON文字列に変換する.<br/>
+	 * {"columns":[列名], "rows":[[行データ]]}とする.数値、真偽値はJSONの数値、真偽値として出力する.
+	 * 出力列はtoCsvと同じとする.
+	 * 
+	 * @param model
+	 *            テーブルモデル
+	 * @param visibled
+	 *            出力列設定
+	 * @return JSON文字列
+	 */
+	public static String toJson(TableModel model, boolean[] visibled) {
+		StringBuilder buf = new StringBuilder();
+
+		// 出力列
+		List<Integer> columns = new ArrayList<Integer>();
+		for (int i = 0; i < model.getColumnCount(); i++) {
+			if (visibled != null && !visibled[i])
+				continue;
+			String name = model.getColumnName(i);
+			// 列名が空は出力しない。
+			if (name == null || name.isEmpty())
+				continue;
+			columns.add(i);
+		}
+
+		// ヘッダー
+		buf.append("{\"columns\": [");
+		for (int i = 0; i < columns.size(); i++) {
+			if (i > 0) buf.append(", ");
+			buf.append(escapeJson(model.getColumnName(columns.get(i))));
+		}
+		buf.append("],\n \"rows\": [");
+
+		// データ
+		for (int i = 0; i < model.getRowCount(); i++) {
+			buf.append(i > 0 ? ",\n  [" : "\n  [");
+			for (int j = 0; j < columns.size(); j++) {
+				if (j > 0) buf.append(", ");
+				buf.append(toJsonValue(model.getValueAt(i, columns.get(j))));
+			}
+			buf.append("]");
+		}
+		buf.append("]}\n");
+
+		return buf.toString();
+	}
+
+	/**
+	 * JSONの値に変換する
+	 * 
+	 * @param value
+	 *            値
+	 * @return JSON値文字列
+	 */
+	private static String toJsonValue(Object value) {
+		if (value == null)
+			return "null";
+		if (value instanceof Boolean)
+			return value.toString();
+		if (value instanceof Number) {
+			double number = ((Number) value).doubleValue();
+			if (!Double.isNaN(number) && !Double.isInfinite(number)) {
+				return value.toString();
+			}
+		}
+		return escapeJson(value.toString());
+	}
+
+	/**
+	 * JSON出力文字列をエスケープする.<br/>
+	 * ダブルクォーテーションで囲み、ダブルクォーテーション、'\\'、制御文字をエスケープする.
+	 * 
+	 * @param text
+	 *            JSON出力文字列
+	 * @return エスケープ文字列
+	 */
+	public static String escapeJson(String text) {
+		if (text == null)
+			return "null";
+		StringBuilder buf = new StringBuilder(text.length() + 2);
+		buf.append('"');
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+			case '"':
+				buf.append("\\\"");
+				break;
+			case '\\':
+				buf.append("\\\\");
+				break;
+			case '\n':
+				buf.append("\\n");
+				break;
+			case '\r':
+				buf.append("\\r");
+				break;
+			case '\t':
+				buf.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					buf.append(String.format("\\u%04x", (int) c));
+				} else {
+					buf.append(c);
+				}
+			}
+		}
+		buf.append('"');
+		return buf.toString();
+	}
+}
@@ -0,0 +1,350 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.riken.kscope.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import jp.riken.kscope.data.SourceFile;
+
+/**
+ * ファイル検索用のトライグラム索引クラス.<br/>
+ * ソースファイル毎に、行内に出現する3文字組(大文字・小文字の区別なし)の集合を保持する.
+ * 検索時は必須リテラルの3文字組をすべて含むファイルのみを照合対象とする.
+ * 索引はファイルの更新日時、サイズが変更されたファイルのみ再作成し、設定フォルダに保存する.
+ * @author RIKEN
+ */
+public class SourceGrepIndex {
+
+    /** 索引ファイル名 */
+    public static final String INDEX_FILE = "grep.idx";
+    /** 索引ファイル識別子 */
+    private static final int INDEX_MAGIC = 0x4B475250;    // "KGRP"
+    /** 索引ファイルバージョン */
+    private static final int INDEX_VERSION = 1;
+    /** 3文字組のキー数 */
+    private static final int TRIGRAM_KEYS = 1 << 24;
+
+    /** 読込済み索引 */
+    private static SourceGrepIndex current;
+
+    /** 索引フォルダ(null=保存しない) */
+    private File folder;
+    /** ファイル索引:キー=ファイル絶対パス */
+    private Map<String, Entry> entries = new HashMap<String, Entry>();
+    /** 更新フラグ */
+    private boolean modified = false;
+    /** 3文字組集合の作業領域 */
+    private BitSet workKeys;
+
+    /**
+     * ファイル索引クラス
+     */
+    private static class Entry {
+        /** ファイル更新日時 */
+        long lastModified;
+        /** ファイルサイズ */
+        long length;
+        /** 文字セット名 */
+        String charset;
+        /** 3文字組キー:昇順の差分を可変長符号化する */
+        byte[] trigrams;
+    }
+
+    /**
+     * コンストラクタ
+     * @param folder		索引フォルダ(null=保存しない)
+     */
+    private SourceGrepIndex(File folder) {
+        this.folder = folder;
+    }
+
+    /**
+     * 索引を取得する.<br/>
+     * 同一フォルダの索引は読込済みの索引を返す.
+     * @param folder		索引フォルダ(設定フォルダ)(null=保存しない)
+     * @return		索引
+     */
+    public static synchronized SourceGrepIndex open(File folder) {
+        if (current != null) {
+            if (folder == null ? current.folder == null : folder.equals(current.folder)) {
+                return current;
+            }
+        }
+        SourceGrepIndex index = new SourceGrepIndex(folder);
+        if (folder != null) {
+            try {
+                index.read(new File(folder, INDEX_FILE));
+            } catch (IOException ex) {
+                // 読込エラーは索引を再作成する
+                index.entries.clear();
+            }
+        }
+        current = index;
+        return index;
+    }
+
+    /**
+     * ファイルの索引を更新する.<br/>
+     * 未作成、更新日時、サイズが変更されたファイルのみ索引を作成する.
+     * @param files		索引対象ファイル
+     */
+    public synchronized void update(Collection<SourceFile> files) {
+        if (files == null) return;
+        for (SourceFile file : files) {
+            if (file == null || file.getFile() == null) continue;
+            File target = file.getFile().getAbsoluteFile();
+            String path = target.getPath();
+            Entry entry = this.entries.get(path);
+            if (entry != null
+                && entry.lastModified == target.lastModified()
+                && entry.length == target.length()) {
+                continue;
+            }
+            this.modified = true;
+            try {
+                this.entries.put(path, createEntry(target));
+            } catch (IOException ex) {
+                this.entries.remove(path);
+            }
+        }
+        this.workKeys = null;
+    }
+
+    /**
+     * 必須リテラルの3文字組キーを取得する.
+     * @param literals		必須リテラル
+     * @return		3文字組キー(昇順)
+     */
+    public static int[] getTrigrams(Collection<String> literals) {
+        if (literals == null) return new int[0];
+        SortedSet<Integer> keys = new TreeSet<Integer>();
+        for (String literal : literals) {
+            if (literal == null || literal.length() < 3) continue;
+            int key = (foldChar(literal.charAt(0)) << 8) | foldChar(literal.charAt(1));
+            for (int i = 2; i < literal.length(); i++) {
+                key = ((key << 8) | foldChar(literal.charAt(i))) & (TRIGRAM_KEYS - 1);
+                keys.add(key);
+            }
+        }
+        int[] list = new int[keys.size()];
+        int n = 0;
+        for (Integer key : keys) {
+            list[n++] = key;
+        }
+        return list;
+    }
+
+    /**
+     * ファイルが必須リテラルをすべて含む可能性があるかチェックする.<br/>
+     * 索引のないファイル、3文字組キーのない場合はtrueとする.
+     * @param file			ソースファイル
+     * @param keys			必須リテラルの3文字組キー(昇順)
+     * @return		true=照合対象ファイル
+     */
+    public synchronized boolean mayContain(SourceFile file, int[] keys) {
+        if (file == null || file.getFile() == null) return true;
+        if (keys == null || keys.length <= 0) return true;
+        Entry entry = this.entries.get(file.getFile().getAbsoluteFile().getPath());
+        if (entry == null) return true;
+
+        // 索引の3文字組と昇順に突き合わせる
+        int n = 0;
+        int value = 0;
+        int pos = 0;
+        byte[] data = entry.trigrams;
+        while (pos < data.length) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos++];
+                delta |= (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            value += delta;
+            if (value < keys[n]) continue;
+            if (value > keys[n]) return false;
+            if (++n >= keys.length) return true;
+        }
+        return false;
+    }
+
+    /**
+     * ファイルの文字セットを取得する.
+     * @param file		ソースファイル
+     * @return		文字セット(null=索引なし)
+     */
+    public synchronized Charset getCharset(SourceFile file) {
+        if (file == null || file.getFile() == null) return null;
+        Entry entry = this.entries.get(file.getFile().getAbsoluteFile().getPath());
+        if (entry == null || entry.charset == null) return null;
+        try {
+            return Charset.forName(entry.charset);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * 索引を保存する.<br/>
+     * 更新がない場合、索引フォルダがない場合は保存しない.
+     * @throws IOException		書込エラー
+     */
+    public synchronized void save() throws IOException {
+        if (!this.modified) return;
+        if (this.folder == null || !this.folder.isDirectory()) return;
+
+        File file = new File(this.folder, INDEX_FILE);
+        File temp = new File(this.folder, INDEX_FILE + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(INDEX_VERSION);
+            out.writeInt(this.entries.size());
+            for (Map.Entry<String, Entry> item : this.entries.entrySet()) {
+                Entry entry = item.getValue();
+                out.writeUTF(item.getKey());
+                out.writeLong(entry.lastModified);
+                out.writeLong(entry.length);
+                out.writeUTF(entry.charset != null ? entry.charset : "");
+                out.writeInt(entry.trigrams.length);
+                out.write(entry.trigrams);
+            }
+        } finally {
+            out.close();
+        }
+        if (file.exists() && !file.delete()) {
+            temp.delete();
+            throw new IOException("cannot replace " + file.getPath());
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("cannot rename " + temp.getPath());
+        }
+        this.modified = false;
+    }
+
+    /**
+     * 索引ファイルを読み込む.
+     * @param file		索引ファイル
+     * @throws IOException		読込エラー
+     */
+    private void read(File file) throws IOException {
+        if (!file.exists()) return;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION) {
+                throw new IOException("invalid index " + file.getPath());
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                Entry entry = new Entry();
+                entry.lastModified = in.readLong();
+                entry.length = in.readLong();
+                String charset = in.readUTF();
+                entry.charset = charset.isEmpty() ? null : charset;
+                entry.trigrams = new byte[in.readInt()];
+                in.readFully(entry.trigrams);
+                this.entries.put(path, entry);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * ファイル索引を作成する.
+     * @param file		索引対象ファイル
+     * @return		ファイル索引
+     * @throws IOException		読込エラー
+     */
+    private Entry createEntry(File file) throws IOException {
+        Entry entry = new Entry();
+        entry.lastModified = file.lastModified();
+        entry.length = file.length();
+
+        if (this.workKeys == null) {
+            this.workKeys = new BitSet(TRIGRAM_KEYS);
+        }
+        BitSet keys = this.workKeys;
+        keys.clear();
+        TextFileReader reader = new TextFileReader(file);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            addTrigrams(line, keys);
+        }
+        if (reader.getCharset() != null) {
+            entry.charset = reader.getCharset().name();
+        }
+
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        int last = 0;
+        for (int key = keys.nextSetBit(0); key >= 0; key = keys.nextSetBit(key + 1)) {
+            int delta = key - last;
+            last = key;
+            while ((delta & ~0x7f) != 0) {
+                buf.write((delta & 0x7f) | 0x80);
+                delta >>>= 7;
+            }
+            buf.write(delta);
+        }
+        entry.trigrams = buf.toByteArray();
+        return entry;
+    }
+
+    /**
+     * 文字列の3文字組キーを追加する.
+     * @param text		文字列
+     * @param keys		3文字組キー集合
+     */
+    private static void addTrigrams(String text, BitSet keys) {
+        if (text == null || text.length() < 3) return;
+        int key = (foldChar(text.charAt(0)) << 8) | foldChar(text.charAt(1));
+        for (int i = 2; i < text.length(); i++) {
+            key = ((key << 8) | foldChar(text.charAt(i))) & (TRIGRAM_KEYS - 1);
+            keys.set(key);
+        }
+    }
+
+    /**
+     * 文字を索引キーに変換する.<br/>
+     * 大文字・小文字を同一視して、非ASCII文字は下位7bitに縮約する.
+     * @param c		文字
+     * @return		索引キー(0～255)
+     */
+    private static int foldChar(char c) {
+        char lower = Character.toLowerCase(Character.toUpperCase(c));
+        if (lower < 0x80) return lower;
+        return 0x80 | (lower & 0x7f);
+    }
+}
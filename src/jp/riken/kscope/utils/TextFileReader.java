@@ -63,6 +63,20 @@ public class TextFileReader {
 		this.m_file = file;
 	}
 
+	/**
+	 * コンストラクタ.<br/>
+	 * 文字セットが判明しているファイルは文字コードの判別を行わない.
+	 * 
+	 * @param file
+	 *            読込ファイル
+	 * @param charset
+	 *            ファイルの文字セット(null=文字コードを判別する)
+	 */
+	public TextFileReader(File file, Charset charset) {
+		this.m_file = file;
+		this.m_charset = charset;
+	}
+
 	/**
 	 * ファイルから読み込み、ファイルデータを文字列で返す。
 	 * 
@@ -76,11 +90,18 @@ public class TextFileReader {
 		int bufferSize = FILEIO_BUFFERSIZE * 1024;
 
 		// ソースファイルを読み込む
-		m_buffer = new byte[(int) m_file.length()];
-		FileInputStream fis = new FileInputStream(m_file);
-		BufferedInputStream bis = new BufferedInputStream(fis, bufferSize);
-		bis.read(m_buffer);
-		fis.close();
+		if (CompressUtils.isCompressedName(m_file.getName())) {
+			// 圧縮ファイルは展開したデータを読み込む
+			m_buffer = CompressUtils.readAllBytes(m_file);
+		} else {
+			m_buffer = new byte[(int) m_file.length()];
+			FileInputStream fis = new FileInputStream(m_file);
+			BufferedInputStream bis = new BufferedInputStream(fis, bufferSize);
+			bis.read(m_buffer);
+			fis.close();
+		}
+		if (m_charset != null)
+			return;
 
 		// 読込データの文字コードチェック
 		String enc = StringUtils.getDetectedCharset(m_buffer);
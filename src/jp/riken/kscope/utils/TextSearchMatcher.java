@@ -0,0 +1,371 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.riken.kscope.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import jp.riken.kscope.properties.KscopeProperties;
+
+/**
+ * テキスト検索照合クラス.<br/>
+ * 検索条件を事前にコンパイルして、ソースコード行との照合を行う.
+ * 索引による絞込み用に、一致行が必ず含む文字列(必須リテラル)を抽出する.
+ * @author RIKEN
+ */
+public class TextSearchMatcher {
+
+    /** 単語検索の区切り文字:デリミタとHTML変換対象文字 */
+    private static final String WORD_DELIMITERS = KscopeProperties.DELIMITER_CHARS + "\"@&<>";
+
+    /** 検索文字列 */
+    private String search;
+    /** 大文字・小文字の区別(true=大文字・小文字の区別を行う) */
+    private boolean sensitivecase;
+    /** 単語検索 */
+    private boolean word;
+    /** 変数検索(=トレース) */
+    private boolean variable;
+    /** 正規表現パターン(正規表現検索以外はnull) */
+    private Pattern pattern;
+    /** 必須リテラル */
+    private List<String> literals;
+
+    /**
+     * コンストラクタ
+     * @param search			検索文字列
+     * @param sensitivecase		大文字・小文字の区別(true=大文字・小文字の区別を行う)
+     * @param regex			正規表現
+     * @param word				単語検索
+     * @param variable			変数検索(=トレース)
+     */
+    public TextSearchMatcher(String search, boolean sensitivecase, boolean regex, boolean word, boolean variable) {
+        this.search = search;
+        this.sensitivecase = sensitivecase;
+        this.word = word;
+        this.variable = variable;
+        this.literals = new ArrayList<String>();
+        if (search == null || search.isEmpty()) return;
+        if (regex && !variable) {
+            int flags = Pattern.MULTILINE;
+            if (!sensitivecase) {
+                // 大文字・小文字の区別を行わない
+                flags |= Pattern.CASE_INSENSITIVE;
+            }
+            this.pattern = Pattern.compile(search, flags);
+            this.literals = getRegexLiterals(search);
+        }
+        else {
+            this.literals.add(search);
+        }
+    }
+
+    /**
+     * コード行が検索条件と一致するかチェックする.
+     * @param line		コード行
+     * @return		true=一致
+     */
+    public boolean matches(String line) {
+        if (line == null || line.isEmpty()) return false;
+        if (this.search == null || this.search.isEmpty()) return false;
+        if (this.variable) {
+            // 変数(=トレース)検索:含まない行はトークン分解を行わない
+            if (indexOf(line, this.search, 0, false) < 0) return false;
+            return StringUtils.existsSearchWord(line, this.search);
+        }
+        if (this.pattern != null) {
+            return this.pattern.matcher(line).find();
+        }
+
+        int from = 0;
+        int start;
+        while ((start = indexOf(line, this.search, from, this.sensitivecase)) >= 0) {
+            int end = start + this.search.length();
+            if (!this.word) return true;
+            // 検索結果の前後の文字がデリミタであるかチェックする
+            if ((start == 0 || isDelimiter(line.charAt(start - 1)))
+                && (end >= line.length() || isDelimiter(line.charAt(end)))) {
+                return true;
+            }
+            from = start + 1;
+        }
+        return false;
+    }
+
+    /**
+     * 必須リテラルを取得する.<br/>
+     * 一致行は大文字・小文字の区別をしない場合、すべての必須リテラルを含む.
+     * @return		必須リテラルリスト
+     */
+    public List<String> getLiterals() {
+        return this.literals;
+    }
+
+    /**
+     * 文字列を検索する.
+     * @param text				検索対象文字列
+     * @param search			検索文字列
+     * @param from				検索開始位置
+     * @param sensitivecase	大文字・小文字の区別(true=大文字・小文字の区別を行う)
+     * @return		一致位置(-1=不一致)
+     */
+    private static int indexOf(String text, String search, int from, boolean sensitivecase) {
+        if (sensitivecase) {
+            return text.indexOf(search, from);
+        }
+        int last = text.length() - search.length();
+        for (int i = from; i <= last; i++) {
+            if (text.regionMatches(true, i, search, 0, search.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 単語の区切り文字であるかチェックする.
+     * @param c		チェック文字
+     * @return		true=区切り文字
+     */
+    private static boolean isDelimiter(char c) {
+        return Character.isWhitespace(c) || WORD_DELIMITERS.indexOf(c) >= 0;
+    }
+
+    /**
+     * 正規表現から必須リテラルを抽出する.<br/>
+     * グループ、文字クラス内の文字列は対象外とする.
+     * 最上位で選択(|)を含む場合、必須リテラルはなしとする.
+     * @param regex		正規表現
+     * @return		必須リテラルリスト
+     */
+    private static List<String> getRegexLiterals(String regex) {
+        List<String> list = new ArrayList<String>();
+        StringBuilder run = new StringBuilder();
+        int len = regex.length();
+        int i = 0;
+        while (i < len) {
+            char c = regex.charAt(i);
+            if (c == '|') {
+                // 選択:必須リテラルなし
+                return new ArrayList<String>();
+            }
+            if (c == '\\') {
+                if (i + 1 >= len) break;
+                char next = regex.charAt(i + 1);
+                if (next == 'Q') {
+                    // 引用範囲は解析しない
+                    return new ArrayList<String>();
+                }
+                if (Character.isLetterOrDigit(next)) {
+                    // 文字クラス、後方参照、文字コード等:エスケープ全体を読み飛ばす
+                    addLiteral(list, run);
+                    i = skipQuantifier(regex, skipEscape(regex, i + 1));
+                    continue;
+                }
+                i = appendLiteral(regex, i + 2, next, run, list);
+                continue;
+            }
+            if (c == '(' || c == '[') {
+                addLiteral(list, run);
+                i = skipQuantifier(regex, skipGroup(regex, i));
+                continue;
+            }
+            if (c == '.' || c == '^' || c == '$' || c == ')' || c == ']'
+                || c == '*' || c == '+' || c == '?' || c == '{') {
+                addLiteral(list, run);
+                i = skipQuantifier(regex, i + 1);
+                continue;
+            }
+            i = appendLiteral(regex, i + 1, c, run, list);
+        }
+        addLiteral(list, run);
+        return list;
+    }
+
+    /**
+     * リテラル文字を追加する.<br/>
+     * 後続の数量子が0回を許す場合は追加しない.
+     * @param regex		正規表現
+     * @param next		リテラル文字の次の位置
+     * @param c			リテラル文字
+     * @param run		リテラル文字列
+     * @param list		必須リテラルリスト
+     * @return		次の解析位置
+     */
+    private static int appendLiteral(String regex, int next, char c, StringBuilder run, List<String> list) {
+        char quantifier = next < regex.length() ? regex.charAt(next) : 0;
+        if (quantifier == '*' || quantifier == '?' || quantifier == '{') {
+            addLiteral(list, run);
+            return skipQuantifier(regex, next);
+        }
+        run.append(c);
+        if (quantifier == '+') {
+            addLiteral(list, run);
+            return skipQuantifier(regex, next);
+        }
+        return next;
+    }
+
+    /**
+     * リテラル文字列を必須リテラルリストに追加する.
+     * @param list		必須リテラルリスト
+     * @param run		リテラル文字列
+     */
+    private static void addLiteral(List<String> list, StringBuilder run) {
+        if (run.length() > 0) {
+            list.add(run.toString());
+            run.setLength(0);
+        }
+    }
+
+    /**
+     * 英数字のエスケープシーケンスを読み飛ばす.<br/>
+     * 16進(x, u)、8進(0)、制御文字(c)、名前付きグループ参照(k)、文字プロパティ(p, P)、後方参照(数字)を対象とする.
+     * @param regex		正規表現
+     * @param index		エスケープ記号の次の文字の位置
+     * @return		エスケープシーケンスの次の位置
+     */
+    private static int skipEscape(String regex, int index) {
+        int len = regex.length();
+        char c = regex.charAt(index);
+        int i = index + 1;
+        switch (c) {
+        case 'x':
+            if (i < len && regex.charAt(i) == '{') {
+                int close = regex.indexOf('}', i);
+                return close < 0 ? len : close + 1;
+            }
+            return skipDigits(regex, i, 2, 16);
+        case 'u':
+            return skipDigits(regex, i, 4, 16);
+        case '0':
+            return skipDigits(regex, i, 3, 8);
+        case 'c':
+            return Math.min(i + 1, len);
+        case 'k':
+            if (i < len && regex.charAt(i) == '<') {
+                int close = regex.indexOf('>', i);
+                return close < 0 ? len : close + 1;
+            }
+            return i;
+        case 'p':
+        case 'P':
+            if (i < len && regex.charAt(i) == '{') {
+                int close = regex.indexOf('}', i);
+                return close < 0 ? len : close + 1;
+            }
+            return Math.min(i + 1, len);
+        default:
+            if (c >= '1' && c <= '9') {
+                // 後方参照:後続の数字を含める
+                return skipDigits(regex, i, len, 10);
+            }
+            return i;
+        }
+    }
+
+    /**
+     * 数字を指定桁数まで読み飛ばす.
+     * @param regex		正規表現
+     * @param index		開始位置
+     * @param max		最大桁数
+     * @param radix		基数
+     * @return		数字の次の位置
+     */
+    private static int skipDigits(String regex, int index, int max, int radix) {
+        int i = index;
+        int len = regex.length();
+        while (i < len && i - index < max && Character.digit(regex.charAt(i), radix) >= 0) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * 数量子を読み飛ばす.
+     * @param regex		正規表現
+     * @param index		数量子の開始位置
+     * @return		数量子の次の位置
+     */
+    private static int skipQuantifier(String regex, int index) {
+        int i = index;
+        int len = regex.length();
+        while (i < len) {
+            char c = regex.charAt(i);
+            if (c == '*' || c == '+' || c == '?') {
+                i++;
+            }
+            else if (c == '{') {
+                int close = regex.indexOf('}', i);
+                i = close < 0 ? len : close + 1;
+            }
+            else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * グループ又は文字クラスを読み飛ばす.
+     * @param regex		正規表現
+     * @param index		開始括弧の位置
+     * @return		終了括弧の次の位置
+     */
+    private static int skipGroup(String regex, int index) {
+        int len = regex.length();
+        if (regex.charAt(index) == '[') {
+            // 文字クラス:先頭の']'は文字とする
+            int depth = 0;
+            for (int i = index; i < len; i++) {
+                char c = regex.charAt(i);
+                if (c == '\\') {
+                    i++;
+                }
+                else if (c == '[') {
+                    depth++;
+                    if (i + 1 < len && regex.charAt(i + 1) == '^') i++;
+                    if (i + 1 < len && regex.charAt(i + 1) == ']') i++;
+                }
+                else if (c == ']') {
+                    depth--;
+                    if (depth == 0) return i + 1;
+                }
+            }
+            return len;
+        }
+        int i = index + 1;
+        while (i < len) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            }
+            else if (c == '(' || c == '[') {
+                i = skipGroup(regex, i);
+            }
+            else if (c == ')') {
+                return i + 1;
+            }
+            else {
+                i++;
+            }
+        }
+        return len;
+    }
+}
@@ -25,6 +25,7 @@ import java.util.List;
 
 import jp.riken.kscope.data.CodeLine;
 import jp.riken.kscope.data.SourceFile;
+import jp.riken.kscope.data.SourceFileRegistry;
 import jp.riken.kscope.exception.XcodeMLException;
 import jp.riken.kscope.utils.FileUtils;
 import jp.riken.kscope.utils.StringUtils;
@@ -312,7 +313,7 @@ public class CodeBuilder extends XcodeMLVisitorImpl {
             end_no = Integer.parseInt(endlineno);
         }
 
-        // ソースファイル、ソースコード行
+        // ソースファイル、ソースコード行:同一パスのソースファイルは共有する
         File srcFile = FileUtils.joinFilePath(_context.getSourceXmlFile()
                 .getFile().getParentFile(), filename);
         SourceFile codeFile = null;
@@ -320,11 +321,11 @@ public class CodeBuilder extends XcodeMLVisitorImpl {
         	if (_context.getBaseFolder() != null) {
         		String path = FileUtils.getRelativePath(srcFile, _context.getBaseFolder());
         		if (path != null) {
-        			codeFile = new SourceFile(path);
+        			codeFile = SourceFileRegistry.getInstance().getSourceFile(path);
         		}
         	}
         	else {
-        		codeFile = new SourceFile(srcFile);
+        		codeFile = SourceFileRegistry.getInstance().getSourceFile(srcFile);
         	}
         }
 
@@ -1881,16 +1881,28 @@ public class DbUpdater extends XcodeMLVisitorImpl {
 	 * @param duplicateUnit		重複ブロック
 	 */
 	private void addDuplicateError(String overridename, CodeLine lineInfo, ProgramUnit duplicateUnit) {
-		if (overridename == null) return;
 		if (lineInfo == null) return;
-		if (duplicateUnit == null) return;
+    	String msg = getDuplicateErrorMessage(overridename, duplicateUnit);
+    	if (msg == null) return;
+    	addErrorInfo(lineInfo, msg);
+	}
+
+	/**
+	 * プロシージャの重複エラーメッセージ文字列を作成する.
+	 * @param overridename		重複プロシージャ名
+	 * @param duplicateUnit		重複ブロック
+	 * @return			エラーメッセージ文字列. 作成できない場合はnull
+	 */
+	public static String getDuplicateErrorMessage(String overridename, ProgramUnit duplicateUnit) {
+		if (overridename == null) return null;
+		if (duplicateUnit == null) return null;
 
 		String errorname = overridename;
 		if (!overridename.equalsIgnoreCase(duplicateUnit.get_name())) {
 			errorname += "," + duplicateUnit.get_name();
 		}
     	String dupInfo = getErrorLineInfo(duplicateUnit);
-    	if (dupInfo == null) return;
+    	if (dupInfo == null) return null;
     	String key = null;
 		// dbupdate.error.duplicate.module=[警告] MODULE[%s]が重複しています。override=%s.
 		if (duplicateUnit instanceof Module) {
@@ -1910,9 +1922,8 @@ public class DbUpdater extends XcodeMLVisitorImpl {
 				key = "dbupdate.error.duplicate.function";
 			}
 		}
-		if (key == null) return;
-    	String msg = Message.getString(key, errorname, dupInfo);
-    	addErrorInfo(lineInfo, msg);
+		if (key == null) return null;
+    	return Message.getString(key, errorname, dupInfo);
 	}
 
 	/**
@@ -1920,7 +1931,7 @@ public class DbUpdater extends XcodeMLVisitorImpl {
 	 * @param block		エラーブロック
 	 * @return			エラー表示文字列
 	 */
-	private String getErrorLineInfo(ProgramUnit block) {
+	private static String getErrorLineInfo(ProgramUnit block) {
 		if (block == null) return null;
 		if (block.get_start() == null) return null;
 		if (block.get_start().getLineInfo() == null) return null;
@@ -0,0 +1,431 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.riken.kscope.xcodeml;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import jp.riken.kscope.data.SourceFile;
+import jp.riken.kscope.language.Fortran;
+import jp.riken.kscope.language.Module;
+import jp.riken.kscope.language.Procedure;
+import jp.riken.kscope.language.ProgramUnit;
+import jp.riken.kscope.language.VariableDefinition;
+import jp.riken.kscope.properties.KscopeProperties;
+import jp.riken.kscope.utils.FileUtils;
+
+/**
+ * XMLファイルのパース結果キャッシュクラス.<br/>
+ * XMLファイル単位の部分データベースを、XMLファイルの内容のハッシュ値をキーとしてキャッシュフォルダに保存する.
+ * 同一内容のXMLファイルはプロジェクト、再ビルドをまたいでキャッシュから読み込み、パースを行わない.
+ * 部分データベースのソースファイルパスはXMLファイルの配置フォルダの基準フォルダからの相対パスで作成されるため、
+ * キーにはK-scopeバージョンと相対パスを含める.基準フォルダの絶対パスは含めないため、
+ * 同一の相対パスに同一内容のXMLファイルを持つプロジェクト間でキャッシュを共有する.
+ * 構造解析、再実行とも同一のキーでキャッシュを参照する.
+ * キャッシュサイズが上限を超えた場合は、最終アクセス日時(ファイル更新日時)の古いキャッシュから削除する.
+ * @author RIKEN
+ */
+public class XcodeMLParseCache {
+
+    /** キャッシュファイル拡張子 */
+    public static final String CACHE_EXT = ".kpc";
+    /** キャッシュファイル識別子 */
+    private static final int CACHE_MAGIC = 0x4B504348;    // "KPCH"
+    /** キャッシュファイルバージョン:部分データベースのクラス構成を変更した場合は更新する */
+    private static final int CACHE_VERSION = 1;
+    /** 読込バッファーサイズ */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** 読込済みキャッシュ */
+    private static XcodeMLParseCache current;
+
+    /** キャッシュフォルダ */
+    private File folder;
+    /** キャッシュサイズ上限(バイト) */
+    private long capacity;
+    /** キャッシュサイズ(バイト) */
+    private long size;
+
+    /**
+     * キャッシュ部分データベースクラス
+     */
+    public static class Entry {
+        /** 部分データベース */
+        private Fortran fortran;
+        /** オリジナルフォートランソースファイル */
+        private SourceFile languageFile;
+
+        /**
+         * 部分データベースを取得する.
+         * @return		部分データベース
+         */
+        public Fortran getFortran() {
+            return this.fortran;
+        }
+
+        /**
+         * オリジナルフォートランソースファイルを取得する.
+         * @return		オリジナルフォートランソースファイル
+         */
+        public SourceFile getLanguageFile() {
+            return this.languageFile;
+        }
+    }
+
+    /**
+     * キャッシュファイルフィルタ
+     */
+    private static final FileFilter CACHE_FILTER = new FileFilter() {
+        @Override
+        public boolean accept(File file) {
+            return file.isFile() && file.getName().endsWith(CACHE_EXT);
+        }
+    };
+
+    /**
+     * コンストラクタ
+     * @param folder		キャッシュフォルダ
+     * @param capacity		キャッシュサイズ上限(バイト)
+     */
+    private XcodeMLParseCache(File folder, long capacity) {
+        this.folder = folder;
+        this.capacity = capacity;
+    }
+
+    /**
+     * キャッシュを取得する.<br/>
+     * 同一フォルダのキャッシュは読込済みのキャッシュを返す.
+     * @param folder		キャッシュフォルダ
+     * @param capacity		キャッシュサイズ上限(バイト)
+     * @return		キャッシュ(null=キャッシュしない)
+     */
+    public static synchronized XcodeMLParseCache open(File folder, long capacity) {
+        if (folder == null || capacity <= 0) return null;
+        if (current != null && folder.equals(current.folder)) {
+            current.capacity = capacity;
+            return current;
+        }
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+            return null;
+        }
+        XcodeMLParseCache cache = new XcodeMLParseCache(folder, capacity);
+        cache.size = getFolderSize(folder);
+        current = cache;
+        return cache;
+    }
+
+    /**
+     * キャッシュフォルダのキャッシュファイルをすべて削除する.
+     * @param folder		キャッシュフォルダ
+     * @return		削除キャッシュファイル数
+     */
+    public static synchronized int clear(File folder) {
+        if (folder == null || !folder.isDirectory()) return 0;
+        File[] files = folder.listFiles(CACHE_FILTER);
+        if (files == null) return 0;
+        int count = 0;
+        for (File file : files) {
+            if (file.delete()) count++;
+        }
+        if (current != null && folder.equals(current.folder)) {
+            current.size = getFolderSize(folder);
+        }
+        return count;
+    }
+
+    /**
+     * XMLファイルのキャッシュキーを取得する.<br/>
+     * XMLファイルの内容と、部分データベースのソースファイルパスを決めるXMLファイルの配置フォルダから作成する.
+     * @param xml			XMLファイル
+     * @param baseFolder	パーサの基準フォルダ
+     * @return		キャッシュキー(null=キー作成エラー)
+     */
+    public String getKey(SourceFile xml, File baseFolder) {
+        if (xml == null || xml.getFile() == null) return null;
+        File file = xml.getFile().getAbsoluteFile();
+        if (!file.isFile()) return null;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            Charset utf8 = Charset.forName("UTF-8");
+            digest.update((KscopeProperties.APPLICATION_VERSION + "\0" + CACHE_VERSION + "\0").getBytes(utf8));
+            digest.update((getLocation(file.getParentFile(), baseFolder) + "\0").getBytes(utf8));
+            InputStream in = new FileInputStream(file);
+            try {
+                byte[] buf = new byte[BUFFER_SIZE];
+                int len;
+                while ((len = in.read(buf)) >= 0) {
+                    digest.update(buf, 0, len);
+                }
+            } finally {
+                in.close();
+            }
+            StringBuilder key = new StringBuilder();
+            for (byte b : digest.digest()) {
+                key.append(String.format("%02x", b & 0xff));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            return null;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * キャッシュキーに含めるXMLファイルの配置フォルダを取得する.<br/>
+     * 基準フォルダ配下の場合は基準フォルダからの相対パス、その他の場合は絶対パスとする.
+     * パーサは基準フォルダ配下のソースファイルを相対パス、その他のソースファイルを絶対パスとするため、
+     * 相対パスと絶対パスは区別する.
+     * @param folder		XMLファイルの配置フォルダ
+     * @param baseFolder	パーサの基準フォルダ
+     * @return		配置フォルダ
+     */
+    private static String getLocation(File folder, File baseFolder) {
+        if (folder == null) return "";
+        if (baseFolder != null) {
+            String path = FileUtils.getRelativePath(folder, baseFolder);
+            if (path != null && !new File(path).isAbsolute()) {
+                return "rel:" + path.replace(File.separatorChar, '/');
+            }
+        }
+        return "abs:" + folder.getAbsolutePath();
+    }
+
+    /**
+     * キャッシュから部分データベースを読み込む.<br/>
+     * 読込に成功したキャッシュファイルは最終アクセス日時を更新する.
+     * 読み込めないキャッシュファイルは削除する.
+     * @param key		キャッシュキー
+     * @param xml		XMLファイル:オリジナルフォートランソースファイルと関連付ける
+     * @return		キャッシュ部分データベース(null=キャッシュなし)
+     */
+    public Entry load(String key, SourceFile xml) {
+        if (key == null) return null;
+        File file = getCacheFile(key);
+        if (!file.isFile()) return null;
+        try {
+            DataInputStream data = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+            try {
+                if (data.readInt() != CACHE_MAGIC || data.readInt() != CACHE_VERSION) {
+                    throw new IOException("invalid cache " + file.getPath());
+                }
+                ObjectInputStream in = new ObjectInputStream(
+                        new BufferedInputStream(new InflaterInputStream(data), BUFFER_SIZE));
+                Entry entry = new Entry();
+                entry.languageFile = (SourceFile) in.readObject();
+                entry.fortran = (Fortran) in.readObject();
+                // 未解析の変数名マップ
+                @SuppressWarnings("unchecked")
+                Map<ProgramUnit, HashMap<String, VariableDefinition>> maps
+                        = (Map<ProgramUnit, HashMap<String, VariableDefinition>>) in.readObject();
+                for (Map.Entry<ProgramUnit, HashMap<String, VariableDefinition>> item : maps.entrySet()) {
+                    for (Map.Entry<String, VariableDefinition> var : item.getValue().entrySet()) {
+                        item.getKey().putVariableMap(var.getKey(), var.getValue());
+                    }
+                }
+                if (entry.languageFile != null && xml != null) {
+                    // XMLファイルにソースファイル、ソースファイルにXMLファイルを関連付ける
+                    xml.updateModifyDate();
+                    xml.setRelationFile(entry.languageFile);
+                    entry.languageFile.setRelationFile(xml);
+                }
+                file.setLastModified(System.currentTimeMillis());
+                return entry;
+            } finally {
+                data.close();
+            }
+        } catch (IOException ex) {
+            remove(file);
+        } catch (ClassNotFoundException ex) {
+            remove(file);
+        } catch (ClassCastException ex) {
+            remove(file);
+        }
+        return null;
+    }
+
+    /**
+     * 部分データベースをキャッシュに保存する.<br/>
+     * キャッシュサイズが上限を超えた場合は、古いキャッシュを削除する.
+     * @param key				キャッシュキー
+     * @param fortran			部分データベース
+     * @param languageFile		オリジナルフォートランソースファイル
+     */
+    public void store(String key, Fortran fortran, SourceFile languageFile) {
+        if (key == null || fortran == null) return;
+        File file = getCacheFile(key);
+        File temp = new File(this.folder, key + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), BUFFER_SIZE));
+            try {
+                data.writeInt(CACHE_MAGIC);
+                data.writeInt(CACHE_VERSION);
+                DeflaterOutputStream deflater = new DeflaterOutputStream(data, new Deflater(Deflater.BEST_SPEED), BUFFER_SIZE);
+                ObjectOutputStream out = new ObjectOutputStream(deflater);
+                out.writeObject(languageFile);
+                out.writeObject(fortran);
+                out.writeObject(getVariableMaps(fortran));
+                out.flush();
+                deflater.finish();
+            } finally {
+                data.close();
+            }
+            long length = temp.length();
+            if (file.exists()) {
+                // 他プロセスで保存済み
+                temp.delete();
+                return;
+            }
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                return;
+            }
+            if (addSize(length) > this.capacity) {
+                evict();
+            }
+        } catch (IOException ex) {
+            temp.delete();
+        }
+    }
+
+    /**
+     * 部分データベースのプログラム単位の変数名マップを取得する.<br/>
+     * 変数名マップは非シリアライズ対象であるが、部分データベースの解析に必要であるため別途キャッシュする.
+     * @param fortran		部分データベース
+     * @return		変数名マップ
+     */
+    private Map<ProgramUnit, HashMap<String, VariableDefinition>> getVariableMaps(Fortran fortran) {
+        Map<ProgramUnit, HashMap<String, VariableDefinition>> maps
+                = new IdentityHashMap<ProgramUnit, HashMap<String, VariableDefinition>>();
+        if (fortran.getModules() == null) return maps;
+        for (Module module : fortran.getModules().values()) {
+            collectVariableMaps(module, maps);
+        }
+        return maps;
+    }
+
+    /**
+     * プログラム単位と子プログラム単位の変数名マップを取得する.
+     * @param unit		プログラム単位
+     * @param maps		変数名マップ
+     */
+    private void collectVariableMaps(ProgramUnit unit, Map<ProgramUnit, HashMap<String, VariableDefinition>> maps) {
+        HashMap<String, VariableDefinition> map = unit.getVariableMap();
+        if (map != null && map.size() > 0) {
+            maps.put(unit, map);
+        }
+        if (unit.getChildren() == null) return;
+        for (Procedure child : unit.getChildren()) {
+            collectVariableMaps(child, maps);
+        }
+    }
+
+    /**
+     * 古いキャッシュファイルを削除して、キャッシュサイズを上限以下にする.
+     */
+    private synchronized void evict() {
+        File[] files = this.folder.listFiles(CACHE_FILTER);
+        if (files == null) return;
+        long total = 0;
+        for (int i = 0; i < files.length; i++) {
+            total += files[i].length();
+        }
+        // 最終アクセス日時の古い順
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File o1, File o2) {
+                long t1 = o1.lastModified();
+                long t2 = o2.lastModified();
+                return t1 < t2 ? -1 : (t1 > t2 ? 1 : 0);
+            }
+        });
+        for (int i = 0; i < files.length && total > this.capacity; i++) {
+            long length = files[i].length();
+            if (files[i].delete()) {
+                total -= length;
+            }
+        }
+        this.size = total;
+    }
+
+    /**
+     * キャッシュファイルを削除する.
+     * @param file		キャッシュファイル
+     */
+    private void remove(File file) {
+        long length = file.length();
+        if (file.delete()) {
+            addSize(-length);
+        }
+    }
+
+    /**
+     * キャッシュサイズを加算する.
+     * @param length		加算サイズ(バイト)
+     * @return		加算後のキャッシュサイズ
+     */
+    private synchronized long addSize(long length) {
+        this.size += length;
+        return this.size;
+    }
+
+    /**
+     * キャッシュファイルを取得する.
+     * @param key		キャッシュキー
+     * @return		キャッシュファイル
+     */
+    private File getCacheFile(String key) {
+        return new File(this.folder, key + CACHE_EXT);
+    }
+
+    /**
+     * キャッシュフォルダのキャッシュファイルサイズの合計を取得する.
+     * @param folder		キャッシュフォルダ
+     * @return		キャッシュファイルサイズの合計(バイト)
+     */
+    private static long getFolderSize(File folder) {
+        File[] files = folder.listFiles(CACHE_FILTER);
+        if (files == null) return 0;
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        return total;
+    }
+}
@@ -18,9 +18,12 @@
 package jp.riken.kscope.xcodeml;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.Stack;
 
 import javax.xml.bind.JAXBContext;
@@ -38,8 +41,10 @@ import jp.riken.kscope.data.SourceFile;
 import jp.riken.kscope.exception.LanguageException;
 import jp.riken.kscope.exception.XcodeMLException;
 import jp.riken.kscope.language.Fortran;
+import jp.riken.kscope.utils.CompressUtils;
 import jp.riken.kscope.utils.FileUtils;
 import jp.riken.kscope.xcodeml.xml.IXmlNode;
+import jp.riken.kscope.xcodeml.xml.gen.Declarations;
 import jp.riken.kscope.xcodeml.xml.gen.FcontainsStatement;
 import jp.riken.kscope.xcodeml.xml.gen.FfunctionDefinition;
 import jp.riken.kscope.xcodeml.xml.gen.FmoduleDefinition;
@@ -59,13 +64,27 @@ import jp.riken.kscope.xcodeml.xml.gen.XcodeProgram;
  */
 public class XcodeMLParserStax extends XcodeMLParserCls {
 
+    /** 概要パースで通常のパースを行う要素 */
+    private static final Set<String> OUTLINE_ELEMENTS = new HashSet<String>(Arrays.asList(
+            "globalSymbols", "globalDeclarations", "FmoduleDefinition", "FfunctionDefinition",
+            "FcontainsStatement", "body", "exprStatement"));
+    /** 概要パースで子要素へ進む制御文要素 */
+    private static final Set<String> OUTLINE_CONTROLS = new HashSet<String>(Arrays.asList(
+            "FdoStatement", "FdoWhileStatement", "FdoConcurrentStatement", "FifStatement",
+            "then", "else", "FselectCaseStatement", "FcaseLabel", "FwhereStatement",
+            "FforallStatement", "blockStatement"));
+
     /** StAX 用ファクトリ */
     private XMLInputFactory factory = null;
 
-    /** JAXB 用ファクトリ */
-    private JAXBContext context = null;
+    /** JAXB 用ファクトリ:スレッドセーフであるので全パーサで共有する */
+    private static JAXBContext context = null;
     /** JAXB アンマーシャラー */
     private Unmarshaller unmarshaller = null;
+    /** XML要素直接組立 */
+    private XcodeMLStaxBuilder builder = null;
+    /** 概要パース:プログラム単位、USE文、CALL文のみ登録する */
+    private boolean outline = false;
     /** 現在処理中ノード */
     protected Stack<IXmlNode> m_nodeStack = null;
     /** Fortranデータベース */
@@ -88,29 +107,12 @@ public class XcodeMLParserStax extends XcodeMLParserCls {
             // StAX用ファクトリの生成
             factory = XMLInputFactory.newInstance();
 
-            // JAXB用ファクトリの生成
-            context = JAXBContext.newInstance(ObjectFactory.class);
             // アンマーシャラー生成
-            unmarshaller = context.createUnmarshaller();
+            unmarshaller = getContext().createUnmarshaller();
+            builder = new XcodeMLStaxBuilder(unmarshaller);
 
             // XcodeMLパース設定
-            m_xmodContext = new XcodeMLContext();
-            // デバッグ出力
-            // XcodeMLOption.setDebugOutput(true);
-
-//            String outputFilePath = "xcodeml_debug.txt";
-//            PrintWriter writer = new PrintWriter(new BufferedWriter(
-//                    new FileWriter(outputFilePath)));
-
-            CodeBuilder fwriter = new CodeBuilder(m_xmodContext);
-//            fwriter.setWriter(writer);
-
-            m_xmodContext.setCodeBuilder(fwriter);
-
-            m_xmodVisitor = new XcodeMLVisitor(m_xmodContext);
-
-            // 現在のFfunctionDefinition、FmoduleDefinitionのスタックリスト
-            m_nodeStack = new Stack<IXmlNode>();
+            createContext();
 
         } catch (FactoryConfigurationError e) {
             e.printStackTrace();
@@ -122,6 +124,61 @@ public class XcodeMLParserStax extends XcodeMLParserCls {
 
     }
 
+    /**
+     * JAXB用ファクトリを取得する.<br/>
+     * JAXB用ファクトリの生成は高コストであるので、初回のみ生成する.
+     * @return		JAXB用ファクトリ
+     * @throws JAXBException		生成エラー
+     */
+    private static synchronized JAXBContext getContext() throws JAXBException {
+        if (context == null) {
+            context = JAXBContext.newInstance(ObjectFactory.class);
+        }
+        return context;
+    }
+
+    /**
+     * XcodeMLパース設定を生成する.
+     * データ型テーブル、ソースコード生成クラス、XMLノードスタックを新規に作成する。
+     */
+    private void createContext() {
+        // ソースファイルの基準フォルダは引き継ぐ
+        File baseFolder = null;
+        if (m_xmodContext != null) {
+            baseFolder = m_xmodContext.getBaseFolder();
+        }
+
+        // XcodeMLパース設定
+        m_xmodContext = new XcodeMLContext();
+        m_xmodContext.setBaseFolder(baseFolder);
+        // デバッグ出力
+        // XcodeMLOption.setDebugOutput(true);
+
+//        String outputFilePath = "xcodeml_debug.txt";
+//        PrintWriter writer = new PrintWriter(new BufferedWriter(
+//                new FileWriter(outputFilePath)));
+
+        CodeBuilder fwriter = new CodeBuilder(m_xmodContext);
+//        fwriter.setWriter(writer);
+
+        m_xmodContext.setCodeBuilder(fwriter);
+
+        m_xmodVisitor = new XcodeMLVisitor(m_xmodContext);
+
+        // 現在のFfunctionDefinition、FmoduleDefinitionのスタックリスト
+        m_nodeStack = new Stack<IXmlNode>();
+    }
+
+    /**
+     * XcodeMLパース設定をクリアする.<br/>
+     * パーサを複数ファイルで再利用する場合に、前ファイルのデータ型テーブル等を破棄する。
+     */
+    public void resetContext() {
+        createContext();
+        m_program = null;
+        this.languageFile = null;
+    }
+
     /**
      * ソースファイルからファイルを読み込み、事前処理を行う。
      *
@@ -158,8 +215,8 @@ public class XcodeMLParserStax extends XcodeMLParserCls {
         m_xmodContext.setSourceXmlFile(m_sourceFile);
 
         try {
-            String xmlfile = m_sourceFile.getPath();
-            stream = new FileInputStream(xmlfile);
+            // 圧縮ファイル(gzip, zstd)は展開しながら読み込む
+            stream = CompressUtils.openInputStream(m_sourceFile.getFile());
 
             // パーサの生成
             reader = factory.createXMLStreamReader(stream);
@@ -176,6 +233,9 @@ public class XcodeMLParserStax extends XcodeMLParserCls {
                     // XcodeProgram
                     if (parseXcodeProgram(reader)) {
                     }
+                    // 概要パースの対象外要素
+                    else if (this.outline && parseOutline(reader)) {
+                    }
                     // typeTable、globalSymbols
                     else if (unmarshalType(reader)) {
                     }
@@ -304,8 +364,15 @@ public class XcodeMLParserStax extends XcodeMLParserCls {
                 }
             }
 
-            // アンマーシャリング
-            IXmlNode node = (IXmlNode) unmarshaller.unmarshal(reader);
+            IXmlNode node = null;
+            if (XcodeMLStaxBuilder.isSupported(elem_name)) {
+                // 頻出する文はJAXBを使用せずに組み立てる
+                node = builder.build(reader);
+            }
+            else {
+                // アンマーシャリング
+                node = (IXmlNode) unmarshaller.unmarshal(reader);
+            }
 
             invokeEnter(node);
 
@@ -318,6 +385,119 @@ public class XcodeMLParserStax extends XcodeMLParserCls {
         return true;
     }
 
+    /**
+     * 概要パースの要素を処理する.<br/>
+     * typeTableは関数型(FfunctionType)のみ、declarationsはUSE文、INTERFACE文のみアンマーシャリングを行う.
+     * 制御文はCALL文を探索する為に子要素へ進み、その他の文、式は読み飛ばす.
+     * @param reader     ストリームリーダー
+     * @return    true=処理済み/false=通常のパースを行う
+     * @throws XcodeMLException     XMLリードエラー
+     * @throws XMLStreamException     XMLリードエラー
+     */
+    private boolean parseOutline(XMLStreamReader reader)
+            throws XcodeMLException, XMLStreamException {
+
+        String elem_name = reader.getLocalName();
+        if (OUTLINE_ELEMENTS.contains(elem_name)) {
+            return false;
+        }
+        if ("name".equals(elem_name)
+            && !m_nodeStack.isEmpty()
+            && m_nodeStack.peek() instanceof FfunctionDefinition) {
+            return false;
+        }
+        if (OUTLINE_CONTROLS.contains(elem_name)) {
+            // 子要素のCALL文をパースする
+            return true;
+        }
+        try {
+            if ("typeTable".equals(elem_name)) {
+                TypeTable table = new TypeTable();
+                unmarshalChildren(reader, table.getFbasicTypeOrFfunctionTypeOrFstructType(), "FfunctionType");
+                if (m_program == null) {
+                    m_program = new XcodeProgram();
+                }
+                m_program.setTypeTable(table);
+                invokeEnter(table);
+                return true;
+            }
+            if ("declarations".equals(elem_name)) {
+                Declarations declarations = new Declarations();
+                unmarshalChildren(reader, declarations.getVarDeclOrExternDeclOrFuseDecl(), "FuseDecl", "FuseOnlyDecl", "FinterfaceDecl");
+                invokeEnter(declarations);
+                return true;
+            }
+        } catch (JAXBException ex) {
+            // 例外処理:アンマーシャリングに失敗しました。[要素名=%s]
+            throw new XcodeMLException(Message.getString("xcodemlparserstax.error.unmarshaller",
+                                                         elem_name));
+        }
+
+        // 読み飛ばす
+        skipElement(reader);
+        return true;
+    }
+
+    /**
+     * 指定要素名(前方一致)の子要素のみアンマーシャリングを行い、他の子要素は読み飛ばす.<br/>
+     * 終了後のストリームリーダーは親要素の終了タグに位置する.
+     * @param reader     ストリームリーダー(親要素の開始タグに位置する)
+     * @param list       子要素の追加リスト
+     * @param prefixes   アンマーシャリングを行う要素名の前方一致文字列
+     * @throws JAXBException      アンマーシャリングエラー
+     * @throws XMLStreamException     XMLリードエラー
+     */
+    private void unmarshalChildren(XMLStreamReader reader, List<IXmlNode> list, String... prefixes)
+            throws JAXBException, XMLStreamException {
+        int event = reader.next();
+        while (event != XMLStreamReader.END_ELEMENT) {
+            if (event == XMLStreamReader.START_ELEMENT) {
+                if (startsWith(reader.getLocalName(), prefixes)) {
+                    // JAXBは終了タグの次のイベントまで読み込む
+                    Object obj = unmarshaller.unmarshal(reader);
+                    if (obj instanceof IXmlNode) {
+                        list.add((IXmlNode) obj);
+                    }
+                    event = reader.getEventType();
+                    continue;
+                }
+                skipElement(reader);
+            }
+            event = reader.next();
+        }
+    }
+
+    /**
+     * 要素名が前方一致文字列のいずれかで始まるかチェックする.
+     * @param name       要素名
+     * @param prefixes   前方一致文字列
+     * @return    true=一致
+     */
+    private static boolean startsWith(String name, String[] prefixes) {
+        for (String prefix : prefixes) {
+            if (name.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 現在の要素を読み飛ばす.<br/>
+     * 終了後のストリームリーダーは要素の終了タグに位置する.
+     * @param reader     ストリームリーダー(開始タグに位置する)
+     * @throws XMLStreamException     XMLリードエラー
+     */
+    private void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamReader.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamReader.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
     /**
      * JAXBでアンマーシャリングを行わず、XML要素を直接取得する。
      *
@@ -536,8 +716,8 @@ public class XcodeMLParserStax extends XcodeMLParserCls {
         InputStream stream = null;
 
         try {
-            String xmlfile = m_sourceFile.getPath();
-            stream = new FileInputStream(xmlfile);
+            // 圧縮ファイル(gzip, zstd)は展開しながら読み込む
+            stream = CompressUtils.openInputStream(m_sourceFile.getFile());
 
             // パーサの生成
             reader = factory.createXMLStreamReader(stream);
@@ -597,6 +777,24 @@ public class XcodeMLParserStax extends XcodeMLParserCls {
         firePropertyChange("prograss_clear", null, null);
     }
 
+    /**
+     * 概要パースを設定する.<br/>
+     * 概要パースはプログラム単位、USE文、CALL文のみをデータベースに登録し、
+     * 変数宣言、式、CALL文以外の文の解析を行わない.
+     * @param outline		true=概要パース
+     */
+    public void setOutline(boolean outline) {
+        this.outline = outline;
+    }
+
+    /**
+     * 概要パースであるか取得する.
+     * @return		true=概要パース
+     */
+    public boolean isOutline() {
+        return this.outline;
+    }
+
     /**
      * ソースファイルの基準フォルダを設定する
      * @param	folder	ソースファイルの基準フォルダ
@@ -0,0 +1,554 @@
+/*
+ * K-scope
+ * Copyright 2012-2013 RIKEN, Japan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.riken.kscope.xcodeml;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import jp.riken.kscope.Message;
+import jp.riken.kscope.exception.XcodeMLException;
+import jp.riken.kscope.xcodeml.xml.IDefBaseStatement;
+import jp.riken.kscope.xcodeml.xml.IXmlNode;
+import jp.riken.kscope.xcodeml.xml.gen.Arguments;
+import jp.riken.kscope.xcodeml.xml.gen.ArrayIndex;
+import jp.riken.kscope.xcodeml.xml.gen.Body;
+import jp.riken.kscope.xcodeml.xml.gen.Condition;
+import jp.riken.kscope.xcodeml.xml.gen.Declarations;
+import jp.riken.kscope.xcodeml.xml.gen.DefChoiceScope;
+import jp.riken.kscope.xcodeml.xml.gen.DefModelBinaryOperation;
+import jp.riken.kscope.xcodeml.xml.gen.DivExpr;
+import jp.riken.kscope.xcodeml.xml.gen.Else;
+import jp.riken.kscope.xcodeml.xml.gen.ExprStatement;
+import jp.riken.kscope.xcodeml.xml.gen.FarrayRef;
+import jp.riken.kscope.xcodeml.xml.gen.FassignStatement;
+import jp.riken.kscope.xcodeml.xml.gen.FcharacterConstant;
+import jp.riken.kscope.xcodeml.xml.gen.FconcatExpr;
+import jp.riken.kscope.xcodeml.xml.gen.FdoStatement;
+import jp.riken.kscope.xcodeml.xml.gen.FifStatement;
+import jp.riken.kscope.xcodeml.xml.gen.FintConstant;
+import jp.riken.kscope.xcodeml.xml.gen.FlogicalConstant;
+import jp.riken.kscope.xcodeml.xml.gen.FmemberRef;
+import jp.riken.kscope.xcodeml.xml.gen.FpowerExpr;
+import jp.riken.kscope.xcodeml.xml.gen.FrealConstant;
+import jp.riken.kscope.xcodeml.xml.gen.FunctionCall;
+import jp.riken.kscope.xcodeml.xml.gen.IndexRange;
+import jp.riken.kscope.xcodeml.xml.gen.LogAndExpr;
+import jp.riken.kscope.xcodeml.xml.gen.LogEQExpr;
+import jp.riken.kscope.xcodeml.xml.gen.LogEQVExpr;
+import jp.riken.kscope.xcodeml.xml.gen.LogGEExpr;
+import jp.riken.kscope.xcodeml.xml.gen.LogGTExpr;
+import jp.riken.kscope.xcodeml.xml.gen.LogLEExpr;
+import jp.riken.kscope.xcodeml.xml.gen.LogLTExpr;
+import jp.riken.kscope.xcodeml.xml.gen.LogNEQExpr;
+import jp.riken.kscope.xcodeml.xml.gen.LogNEQVExpr;
+import jp.riken.kscope.xcodeml.xml.gen.LogNotExpr;
+import jp.riken.kscope.xcodeml.xml.gen.LogOrExpr;
+import jp.riken.kscope.xcodeml.xml.gen.LowerBound;
+import jp.riken.kscope.xcodeml.xml.gen.MinusExpr;
+import jp.riken.kscope.xcodeml.xml.gen.MulExpr;
+import jp.riken.kscope.xcodeml.xml.gen.Name;
+import jp.riken.kscope.xcodeml.xml.gen.PlusExpr;
+import jp.riken.kscope.xcodeml.xml.gen.Step;
+import jp.riken.kscope.xcodeml.xml.gen.Then;
+import jp.riken.kscope.xcodeml.xml.gen.UnaryMinusExpr;
+import jp.riken.kscope.xcodeml.xml.gen.UpperBound;
+import jp.riken.kscope.xcodeml.xml.gen.Value;
+import jp.riken.kscope.xcodeml.xml.gen.Var;
+import jp.riken.kscope.xcodeml.xml.gen.VarDecl;
+import jp.riken.kscope.xcodeml.xml.gen.VarRef;
+
+/**
+ * XcodeML要素の直接組立クラス.<br/>
+ * 出現頻度の高い文(代入文、DO文、IF文、式文、変数宣言)とその式を、
+ * JAXBのアンマーシャリングを使用せずにStAXイベントから直接XML要素クラスに組み立てる.
+ * 対応しない要素はJAXBでアンマーシャリングを行う.
+ * @author RIKEN
+ */
+public class XcodeMLStaxBuilder {
+
+    /** 直接組立を行う文要素 */
+    private static final Set<String> STATEMENTS = new HashSet<String>();
+    /** 式要素の格納メソッド:キー=式の格納要素クラス */
+    private static final Map<Class<?>, Map<Class<?>, Method>> EXPRESSION_SETTERS =
+            new ConcurrentHashMap<Class<?>, Map<Class<?>, Method>>();
+
+    static {
+        STATEMENTS.add("FassignStatement");
+        STATEMENTS.add("FdoStatement");
+        STATEMENTS.add("FifStatement");
+        STATEMENTS.add("exprStatement");
+        STATEMENTS.add("varDecl");
+        STATEMENTS.add("declarations");
+    }
+
+    /** JAXB アンマーシャラー:対応しない要素に使用する */
+    private Unmarshaller unmarshaller;
+    /** 読込済みイベントフラグ:JAXBは終了タグの次のイベントまで読み込む */
+    private boolean advanced = false;
+
+    /**
+     * コンストラクタ
+     * @param unmarshaller		JAXB アンマーシャラー
+     */
+    public XcodeMLStaxBuilder(Unmarshaller unmarshaller) {
+        this.unmarshaller = unmarshaller;
+    }
+
+    /**
+     * 直接組立を行う文要素であるかチェックする.
+     * @param name		要素名
+     * @return		true=直接組立を行う
+     */
+    public static boolean isSupported(String name) {
+        return STATEMENTS.contains(name);
+    }
+
+    /**
+     * 現在の開始要素から終了要素までをXML要素クラスに組み立てる.<br/>
+     * 終了後のストリームリーダーは要素の終了タグに位置する.
+     * @param reader		ストリームリーダー(開始要素に位置する)
+     * @return		XML要素
+     * @throws XcodeMLException		組立エラー
+     */
+    public IXmlNode build(XMLStreamReader reader) throws XcodeMLException {
+        String name = reader.getLocalName();
+        this.advanced = false;
+        try {
+            return buildElement(reader);
+        } catch (XMLStreamException ex) {
+            // 例外処理:アンマーシャリングに失敗しました。[要素名=%s]
+            throw new XcodeMLException(Message.getString("xcodemlparserstax.error.unmarshaller", name), ex);
+        } catch (JAXBException ex) {
+            // 例外処理:アンマーシャリングに失敗しました。[要素名=%s]
+            throw new XcodeMLException(Message.getString("xcodemlparserstax.error.unmarshaller", name), ex);
+        }
+    }
+
+    /**
+     * 要素を組み立てる.
+     * @param reader		ストリームリーダー
+     * @return		XML要素
+     * @throws XMLStreamException		XMLリードエラー
+     * @throws JAXBException		アンマーシャリングエラー
+     * @throws XcodeMLException		組立エラー
+     */
+    private IXmlNode buildElement(XMLStreamReader reader)
+            throws XMLStreamException, JAXBException, XcodeMLException {
+        String name = reader.getLocalName();
+
+        // 式
+        if ("Var".equals(name)) {
+            Var node = new Var();
+            node.setType(reader.getAttributeValue(null, "type"));
+            node.setScope(parseScope(reader.getAttributeValue(null, "scope")));
+            node.setValue(reader.getElementText());
+            return node;
+        }
+        if ("FintConstant".equals(name)) {
+            FintConstant node = new FintConstant();
+            node.setType(reader.getAttributeValue(null, "type"));
+            node.setKind(reader.getAttributeValue(null, "kind"));
+            node.setValue(reader.getElementText());
+            return node;
+        }
+        if ("FrealConstant".equals(name)) {
+            FrealConstant node = new FrealConstant();
+            node.setType(reader.getAttributeValue(null, "type"));
+            node.setKind(reader.getAttributeValue(null, "kind"));
+            node.setValue(reader.getElementText());
+            return node;
+        }
+        if ("FcharacterConstant".equals(name)) {
+            FcharacterConstant node = new FcharacterConstant();
+            node.setType(reader.getAttributeValue(null, "type"));
+            node.setKind(reader.getAttributeValue(null, "kind"));
+            node.setValue(reader.getElementText());
+            return node;
+        }
+        if ("FlogicalConstant".equals(name)) {
+            FlogicalConstant node = new FlogicalConstant();
+            node.setType(reader.getAttributeValue(null, "type"));
+            node.setKind(reader.getAttributeValue(null, "kind"));
+            node.setValue(reader.getElementText());
+            return node;
+        }
+        if ("name".equals(name)) {
+            Name node = new Name();
+            node.setType(reader.getAttributeValue(null, "type"));
+            node.setValue(reader.getElementText());
+            return node;
+        }
+        DefModelBinaryOperation operation = createOperation(name);
+        if (operation != null) {
+            operation.setType(reader.getAttributeValue(null, "type"));
+            while (nextChild(reader)) {
+                addNode(operation.getContent(), buildElement(reader));
+            }
+            return operation;
+        }
+        if ("functionCall".equals(name)) {
+            FunctionCall node = new FunctionCall();
+            node.setType(reader.getAttributeValue(null, "type"));
+            node.setIsIntrinsic(parseBoolean(reader.getAttributeValue(null, "is_intrinsic")));
+            while (nextChild(reader)) {
+                IXmlNode child = buildElement(reader);
+                if (child instanceof Name) {
+                    node.setName((Name) child);
+                } else if (child instanceof Arguments) {
+                    node.setArguments((Arguments) child);
+                }
+            }
+            return node;
+        }
+        if ("arguments".equals(name)) {
+            Arguments node = new Arguments();
+            while (nextChild(reader)) {
+                addNode(node.getFintConstantOrFrealConstantOrFcomplexConstant(), buildElement(reader));
+            }
+            return node;
+        }
+        if ("varRef".equals(name)) {
+            VarRef node = new VarRef();
+            node.setType(reader.getAttributeValue(null, "type"));
+            while (nextChild(reader)) {
+                setExpression(node, buildElement(reader));
+            }
+            return node;
+        }
+        if ("FarrayRef".equals(name)) {
+            FarrayRef node = new FarrayRef();
+            node.setType(reader.getAttributeValue(null, "type"));
+            while (nextChild(reader)) {
+                IXmlNode child = buildElement(reader);
+                if (child instanceof VarRef) {
+                    node.setVarRef((VarRef) child);
+                } else {
+                    addNode(node.getIndexRangeOrArrayIndexOrFarrayConstructor(), child);
+                }
+            }
+            return node;
+        }
+        if ("FmemberRef".equals(name)) {
+            FmemberRef node = new FmemberRef();
+            node.setType(reader.getAttributeValue(null, "type"));
+            node.setMember(reader.getAttributeValue(null, "member"));
+            while (nextChild(reader)) {
+                IXmlNode child = buildElement(reader);
+                if (child instanceof VarRef) {
+                    node.setVarRef((VarRef) child);
+                }
+            }
+            return node;
+        }
+        if ("indexRange".equals(name)) {
+            IndexRange node = new IndexRange();
+            node.setIsAssumedShape(parseBoolean(reader.getAttributeValue(null, "is_assumed_shape")));
+            node.setIsAssumedSize(parseBoolean(reader.getAttributeValue(null, "is_assumed_size")));
+            while (nextChild(reader)) {
+                IXmlNode child = buildElement(reader);
+                if (child instanceof LowerBound) {
+                    node.setLowerBound((LowerBound) child);
+                } else if (child instanceof UpperBound) {
+                    node.setUpperBound((UpperBound) child);
+                } else if (child instanceof Step) {
+                    node.setStep((Step) child);
+                }
+            }
+            return node;
+        }
+
+        // 式の格納要素
+        IXmlNode holder = null;
+        if ("arrayIndex".equals(name)) {
+            holder = new ArrayIndex();
+        } else if ("lowerBound".equals(name)) {
+            holder = new LowerBound();
+        } else if ("upperBound".equals(name)) {
+            holder = new UpperBound();
+        } else if ("step".equals(name)) {
+            holder = new Step();
+        } else if ("condition".equals(name)) {
+            holder = new Condition();
+        } else if ("value".equals(name)) {
+            holder = new Value();
+        }
+        if (holder != null) {
+            while (nextChild(reader)) {
+                setExpression(holder, buildElement(reader));
+            }
+            return holder;
+        }
+
+        // 文
+        if ("FassignStatement".equals(name)) {
+            FassignStatement node = new FassignStatement();
+            setStatementAttributes(reader, node);
+            while (nextChild(reader)) {
+                addNode(node.getContent(), buildElement(reader));
+            }
+            return node;
+        }
+        if ("exprStatement".equals(name)) {
+            ExprStatement node = new ExprStatement();
+            setStatementAttributes(reader, node);
+            while (nextChild(reader)) {
+                setExpression(node, buildElement(reader));
+            }
+            return node;
+        }
+        if ("FdoStatement".equals(name)) {
+            FdoStatement node = new FdoStatement();
+            setStatementAttributes(reader, node);
+            node.setConstructName(reader.getAttributeValue(null, "construct_name"));
+            while (nextChild(reader)) {
+                IXmlNode child = buildElement(reader);
+                if (child instanceof Var) {
+                    node.setVar((Var) child);
+                } else if (child instanceof IndexRange) {
+                    node.setIndexRange((IndexRange) child);
+                } else if (child instanceof Body) {
+                    node.setBody((Body) child);
+                }
+            }
+            return node;
+        }
+        if ("FifStatement".equals(name)) {
+            FifStatement node = new FifStatement();
+            setStatementAttributes(reader, node);
+            node.setConstructName(reader.getAttributeValue(null, "construct_name"));
+            while (nextChild(reader)) {
+                IXmlNode child = buildElement(reader);
+                if (child instanceof Condition) {
+                    node.setCondition((Condition) child);
+                } else if (child instanceof Then) {
+                    node.setThen((Then) child);
+                } else if (child instanceof Else) {
+                    node.setElse((Else) child);
+                }
+            }
+            return node;
+        }
+        if ("then".equals(name) || "else".equals(name)) {
+            IDefBaseStatement node = "then".equals(name) ? new Then() : new Else();
+            setStatementAttributes(reader, node);
+            while (nextChild(reader)) {
+                IXmlNode child = buildElement(reader);
+                if (!(child instanceof Body)) continue;
+                if (node instanceof Then) {
+                    ((Then) node).setBody((Body) child);
+                } else {
+                    ((Else) node).setBody((Body) child);
+                }
+            }
+            return (IXmlNode) node;
+        }
+        if ("body".equals(name)) {
+            Body node = new Body();
+            while (nextChild(reader)) {
+                addNode(node.getFifStatementOrFdoStatementOrFdoWhileStatement(), buildElement(reader));
+            }
+            return node;
+        }
+        if ("varDecl".equals(name)) {
+            VarDecl node = new VarDecl();
+            setStatementAttributes(reader, node);
+            while (nextChild(reader)) {
+                IXmlNode child = buildElement(reader);
+                if (child instanceof Name) {
+                    node.setName((Name) child);
+                } else if (child instanceof Value) {
+                    node.setValue((Value) child);
+                }
+            }
+            return node;
+        }
+        if ("declarations".equals(name)) {
+            Declarations node = new Declarations();
+            while (nextChild(reader)) {
+                addNode(node.getVarDeclOrExternDeclOrFuseDecl(), buildElement(reader));
+            }
+            return node;
+        }
+
+        // その他の要素はJAXBでアンマーシャリングを行う
+        return unmarshal(reader);
+    }
+
+    /**
+     * 次の子要素の開始タグに移動する.
+     * @param reader		ストリームリーダー
+     * @return		true=子要素の開始タグ/false=親要素の終了タグ
+     * @throws XMLStreamException		XMLリードエラー
+     */
+    private boolean nextChild(XMLStreamReader reader) throws XMLStreamException {
+        int event;
+        if (this.advanced) {
+            // JAXBで読込済みのイベントから判定する
+            this.advanced = false;
+            event = reader.getEventType();
+        }
+        else if (reader.hasNext()) {
+            event = reader.next();
+        }
+        else {
+            return false;
+        }
+        while (true) {
+            if (event == XMLStreamReader.START_ELEMENT) return true;
+            if (event == XMLStreamReader.END_ELEMENT) return false;
+            if (!reader.hasNext()) return false;
+            event = reader.next();
+        }
+    }
+
+    /**
+     * JAXBでアンマーシャリングを行う.
+     * @param reader		ストリームリーダー
+     * @return		XML要素
+     * @throws JAXBException		アンマーシャリングエラー
+     */
+    private IXmlNode unmarshal(XMLStreamReader reader) throws JAXBException {
+        Object obj = this.unmarshaller.unmarshal(reader);
+        this.advanced = true;
+        if (obj instanceof JAXBElement) {
+            obj = ((JAXBElement<?>) obj).getValue();
+        }
+        if (obj instanceof IXmlNode) {
+            return (IXmlNode) obj;
+        }
+        return null;
+    }
+
+    /**
+     * 文要素の共通属性を設定する.
+     * @param reader		ストリームリーダー
+     * @param node			文要素
+     */
+    private void setStatementAttributes(XMLStreamReader reader, IDefBaseStatement node) {
+        node.setLineno(reader.getAttributeValue(null, "lineno"));
+        node.setEndlineno(reader.getAttributeValue(null, "endlineno"));
+        node.setRawlineno(reader.getAttributeValue(null, "rawlineno"));
+        node.setFile(reader.getAttributeValue(null, "file"));
+    }
+
+    /**
+     * 子要素リストに要素を追加する.
+     * @param list		子要素リスト
+     * @param node		追加要素
+     */
+    private void addNode(List<IXmlNode> list, IXmlNode node) {
+        if (node == null) return;
+        list.add(node);
+    }
+
+    /**
+     * 式の格納要素に式を設定する.<br/>
+     * 格納要素が対応しない式はJAXBと同様に無視する.
+     * @param holder		式の格納要素
+     * @param expr			式
+     * @throws XcodeMLException		設定エラー
+     */
+    private static void setExpression(IXmlNode holder, IXmlNode expr) throws XcodeMLException {
+        if (expr == null) return;
+        Map<Class<?>, Method> setters = EXPRESSION_SETTERS.get(holder.getClass());
+        if (setters == null) {
+            // 式の型を引数とする設定メソッドを取得する
+            setters = new HashMap<Class<?>, Method>();
+            for (Method method : holder.getClass().getMethods()) {
+                if (!method.getName().startsWith("set")) continue;
+                Class<?>[] params = method.getParameterTypes();
+                if (params.length != 1) continue;
+                if (!IXmlNode.class.isAssignableFrom(params[0])) continue;
+                setters.put(params[0], method);
+            }
+            EXPRESSION_SETTERS.put(holder.getClass(), setters);
+        }
+        Method setter = setters.get(expr.getClass());
+        if (setter == null) return;
+        try {
+            setter.invoke(holder, expr);
+        } catch (Exception ex) {
+            throw new XcodeMLException(ex);
+        }
+    }
+
+    /**
+     * 二項演算(単項演算)要素を生成する.
+     * @param name		要素名
+     * @return		二項演算要素(null=二項演算要素以外)
+     */
+    private static DefModelBinaryOperation createOperation(String name) {
+        if ("plusExpr".equals(name)) return new PlusExpr();
+        if ("minusExpr".equals(name)) return new MinusExpr();
+        if ("mulExpr".equals(name)) return new MulExpr();
+        if ("divExpr".equals(name)) return new DivExpr();
+        if ("FpowerExpr".equals(name)) return new FpowerExpr();
+        if ("FconcatExpr".equals(name)) return new FconcatExpr();
+        if ("logEQExpr".equals(name)) return new LogEQExpr();
+        if ("logNEQExpr".equals(name)) return new LogNEQExpr();
+        if ("logGEExpr".equals(name)) return new LogGEExpr();
+        if ("logGTExpr".equals(name)) return new LogGTExpr();
+        if ("logLEExpr".equals(name)) return new LogLEExpr();
+        if ("logLTExpr".equals(name)) return new LogLTExpr();
+        if ("logAndExpr".equals(name)) return new LogAndExpr();
+        if ("logOrExpr".equals(name)) return new LogOrExpr();
+        if ("logEQVExpr".equals(name)) return new LogEQVExpr();
+        if ("logNEQVExpr".equals(name)) return new LogNEQVExpr();
+        if ("unaryMinusExpr".equals(name)) return new UnaryMinusExpr();
+        if ("logNotExpr".equals(name)) return new LogNotExpr();
+        return null;
+    }
+
+    /**
+     * スコープ属性を変換する.
+     * @param value		属性値
+     * @return		スコープ(null=属性なし、不正値)
+     */
+    private static DefChoiceScope parseScope(String value) {
+        if (value == null) return null;
+        try {
+            return DefChoiceScope.fromValue(value);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * 真偽値属性を変換する.
+     * @param value		属性値
+     * @return		真偽値(null=属性なし、不正値)
+     */
+    private static Boolean parseBoolean(String value) {
+        if (value == null) return null;
+        String text = value.trim();
+        if ("true".equals(text) || "1".equals(text)) return Boolean.TRUE;
+        if ("false".equals(text) || "0".equals(text)) return Boolean.FALSE;
+        return null;
+    }
+}